@@ -39,6 +39,7 @@ import java.math.RoundingMode;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static org.junit.Assert.*;
@@ -257,4 +258,53 @@ public class TestDataSet {
         assertEquals(2, ds1.getData().size());
     }
 
+    @Test
+    public void testGetDataThenColumns() {
+        final DataSet ds1 = generateTestData();
+        ds1.normalizeRange(1, 0, 1);
+        // the rows hold the normalized numbers, and changes to them are seen by the column methods
+        assertEquals(0.5, (Double) ds1.getData().get(1)[1], AIFH.DEFAULT_PRECISION);
+        ds1.getData().get(1)[1] = "4";
+        assertEquals(4.0, ds1.getMax(1), AIFH.DEFAULT_PRECISION);
+        ds1.add(new Object[] {"Four", 5.0, "0.4"});
+        assertEquals(4, ds1.size());
+        assertEquals(5.0, ds1.getMax(1), AIFH.DEFAULT_PRECISION);
+    }
+
+    @Test
+    public void testGetDataLive() {
+        final DataSet ds1 = generateTestData();
+        final List<Object[]> data = ds1.getData();
+        final Object[] held = data.get(2);
+        ds1.normalizeRange(1, 0, 1);
+        // the list sees the normalized column, a row fetched before the change is released
+        assertEquals(0.0, (Double) data.get(0)[1], AIFH.DEFAULT_PRECISION);
+        assertEquals("3", held[1]);
+        held[1] = "100";
+        data.get(1)[1] = "999";
+        assertEquals(999.0, ds1.getMax(1), AIFH.DEFAULT_PRECISION);
+        assertEquals(1.0, (Double) data.get(2)[1], AIFH.DEFAULT_PRECISION);
+
+        data.set(0, new Object[] {"Zero", 0.0, "0.0"});
+        data.add(new Object[] {"Four", 4.0, "0.4"});
+        assertEquals("Two", data.remove(1)[0]);
+        assertEquals(3, ds1.size());
+        final List<BasicData> result = ds1.extractUnsupervisedLabeled(0);
+        assertEquals("Zero", result.get(0).getLabel());
+        assertEquals(0.0, result.get(0).getInput()[0], AIFH.DEFAULT_PRECISION);
+        assertEquals("Four", result.get(2).getLabel());
+    }
+
+    @Test
+    public void testEncodeNumericValues() {
+        final DataSet ds1 = generateTestData();
+        final Map<String, Integer> classes = ds1.encodeNumeric(0);
+        assertEquals(3, classes.size());
+        assertEquals(classes.get("Two"), ds1.getData().get(1)[0]);
+        // text values that are numbers are parsed once, when first used
+        final List<BasicData> result = ds1.extractSupervised(1, 2, 0, 1);
+        assertEquals(0.3, result.get(2).getInput()[1], AIFH.DEFAULT_PRECISION);
+        assertEquals((double) classes.get("Three"), result.get(2).getIdeal()[0], AIFH.DEFAULT_PRECISION);
+    }
+
 }
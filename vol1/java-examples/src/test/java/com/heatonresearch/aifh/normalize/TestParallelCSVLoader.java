@@ -0,0 +1,122 @@
+/*
+ * Artificial Intelligence for Humans
+ * Volume 1: Fundamental Algorithms
+ * Java Version
+ * http://www.aifh.org
+ * http://www.jeffheaton.com
+ *
+ * Code repository:
+ * https://github.com/jeffheaton/aifh
+
+ * Copyright 2013 by Jeff Heaton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For more information on Heaton Research copyrights, licenses
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+
+package com.heatonresearch.aifh.normalize;
+
+import com.heatonresearch.aifh.AIFHError;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test the parallel CSV loader.
+ */
+public class TestParallelCSVLoader {
+
+    private DataSet load(final String csv, final int threadCount) {
+        return new ParallelCSVLoader(threadCount).load(new ByteArrayInputStream(csv.getBytes()));
+    }
+
+    @Test
+    public void testQuotedFields() {
+        final DataSet ds = load("name,value\r\n\"a, b\",1\r\n\r\n\"two\nlines\",2\r\n\"say \"\"hi\"\"\",3", 2);
+
+        final String[] headers = {"name", "value"};
+        final DataSet expected = new DataSet(headers);
+        expected.add(new Object[]{"a, b", "1"});
+        expected.add(new Object[]{"two\nlines", "2"});
+        expected.add(new Object[]{"say \"hi\"", "3"});
+
+        assertTrue(expected.equals(ds));
+        assertEquals(1, ds.getMin(1), 0.0001);
+        assertEquals(3, ds.getMax(1), 0.0001);
+    }
+
+    @Test
+    public void testChunks() {
+        // large enough to be split, with quoted line breaks that a chunk boundary may fall within
+        final StringBuilder csv = new StringBuilder("id,name,value\n");
+        for (int i = 0; i < 150000; i++) {
+            csv.append(i).append(',');
+            if (i % 7 == 0) {
+                csv.append("\"line\nbreak ").append(i % 5).append('"');
+            } else {
+                csv.append("name").append(i % 11);
+            }
+            csv.append(',').append(i % 100 / 10.0).append('\n');
+        }
+        assertTrue(csv.length() > ParallelCSVLoader.MIN_CHUNK_SIZE * 2);
+
+        final DataSet single = load(csv.toString(), 1);
+        final DataSet parallel = load(csv.toString(), 4);
+        assertEquals(150000, parallel.size());
+        assertTrue(single.equals(parallel));
+        assertEquals(9.9, parallel.getMax(2), 0.0001);
+        assertEquals("line\nbreak 1", parallel.getData().get(149996)[1]);
+    }
+
+    @Test
+    public void testThreadCount() {
+        // records that start with an empty quoted field, with CRLF and quoted line breaks between them
+        final StringBuilder csv = new StringBuilder("name,id,value\r\n");
+        for (int i = 0; i < 150000; i++) {
+            if (i % 3 == 0) {
+                csv.append("\"\"");
+            } else if (i % 7 == 1) {
+                csv.append("\"two\r\nlines\"");
+            } else {
+                csv.append("name").append(i % 11);
+            }
+            csv.append(',').append(i).append(',');
+            csv.append(i % 5 == 0 ? "\"\"" : "x");
+            csv.append(i % 2 == 0 ? "\r\n" : "\n");
+        }
+        assertTrue(csv.length() > ParallelCSVLoader.MIN_CHUNK_SIZE * 2);
+
+        final DataSet single = load(csv.toString(), 1);
+        assertEquals(150000, single.size());
+        assertEquals("", single.getData().get(0)[0]);
+        assertEquals("", single.getData().get(0)[2]);
+        // CSVReader reads by line, so a quoted CRLF becomes a single line break
+        assertEquals("two\nlines", single.getData().get(1)[0]);
+        // the empty field must not depend on the records (or the chunk) before it
+        for (int i = 0; i < 150000; i += 3) {
+            assertEquals("", single.getData().get(i)[0]);
+        }
+        assertTrue(single.equals(load(csv.toString(), 2)));
+        assertTrue(single.equals(load(csv.toString(), 8)));
+    }
+
+    @Test(expected = AIFHError.class)
+    public void testColumnCount() {
+        load("a,b\n1,2\n1,2,3\n", 2);
+    }
+}
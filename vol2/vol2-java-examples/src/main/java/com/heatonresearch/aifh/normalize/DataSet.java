@@ -28,7 +28,6 @@
  */
 package com.heatonresearch.aifh.normalize;
 
-import au.com.bytecode.opencsv.CSVReader;
 import au.com.bytecode.opencsv.CSVWriter;
 import com.heatonresearch.aifh.AIFHError;
 import com.heatonresearch.aifh.general.data.BasicData;
@@ -40,13 +39,538 @@ import java.util.*;
 
 /**
  * Holds a data set.  This is usually loaded from a CSV.  It can also be generated.
+ *
+ * The data is stored by column.  A numeric column is a double[], and a text column is dictionary encoded: an int[]
+ * of codes, plus a list of the distinct strings.  Converting a text column to numeric therefore parses each distinct
+ * string once, and the normalization methods are plain loops over a double[].  Columns that mix types (i.e. a
+ * number placed in a text column) fall back to an Object[].
+ *
+ * The rows can still be accessed as a List of Object[] with getData.  The list is a view of the columns, each row is
+ * built when it is first fetched.  The rows that have been fetched are kept, and changes made to them are written
+ * back to the columns before any other method of the data set uses the columns.  The fetched rows are then released,
+ * so a row should be fetched again after such a call, an array fetched before it no longer belongs to the data set.
  */
 public class DataSet {
 
     /**
-     * The data loaded from a CSV, or other source.
+     * The number of rows each column initially has space for.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * The ways a column can be stored.
+     */
+    private enum ColumnType {
+        /**
+         * The column has no values yet.
+         */
+        EMPTY,
+        /**
+         * Numbers, stored as a double[].
+         */
+        NUMERIC,
+        /**
+         * Strings, stored as an int[] of codes into a dictionary of the distinct strings.
+         */
+        TEXT,
+        /**
+         * Anything else, stored as an Object[].  Used for columns that mix types.
+         */
+        OBJECT
+    }
+
+    /**
+     * One column of the data set.  A column has space for more rows than are used, the data set tracks the number
+     * of rows in use.
+     */
+    private static class Column {
+
+        /**
+         * How this column is stored.
+         */
+        private ColumnType type = ColumnType.EMPTY;
+
+        /**
+         * For a numeric column, true if the values were added as Integer objects (and are returned as Integer).
+         */
+        private boolean integral;
+
+        /**
+         * The values of a numeric column.
+         */
+        private double[] numbers;
+
+        /**
+         * The codes of a text column, an index into the dictionary.
+         */
+        private int[] codes;
+
+        /**
+         * The distinct strings of a text column.
+         */
+        private List<String> dictionary;
+
+        /**
+         * Maps each string of the dictionary to its code.
+         */
+        private Map<String, Integer> lookup;
+
+        /**
+         * For a text column, the numeric value of each string of the dictionary, where it is already known (see
+         * ParallelCSVLoader).  Null if none are known.
+         */
+        private double[] dictionaryNumbers;
+
+        /**
+         * For a text column, true for each string of the dictionary that has a known numeric value.
+         */
+        private boolean[] dictionaryIsNumber;
+
+        /**
+         * The values of a column that mixes types.
+         */
+        private Object[] objects;
+
+        /**
+         * The number of rows this column has space for.
+         */
+        private int capacity;
+
+        /**
+         * Construct an empty column.
+         * @param theCapacity The number of rows to make space for.
+         */
+        Column(final int theCapacity) {
+            this.capacity = theCapacity;
+        }
+
+        /**
+         * Construct a numeric column.
+         * @param theNumbers The values, the array is used, not copied.
+         * @param theIntegral True, if the values are returned as Integer objects.
+         */
+        Column(final double[] theNumbers, final boolean theIntegral) {
+            this.type = ColumnType.NUMERIC;
+            this.numbers = theNumbers;
+            this.integral = theIntegral;
+            this.capacity = theNumbers.length;
+        }
+
+        /**
+         * Make space for more rows.
+         * @param theCapacity The number of rows to make space for.
+         */
+        void grow(final int theCapacity) {
+            this.capacity = theCapacity;
+            if (this.numbers != null) {
+                this.numbers = Arrays.copyOf(this.numbers, theCapacity);
+            }
+            if (this.codes != null) {
+                this.codes = Arrays.copyOf(this.codes, theCapacity);
+            }
+            if (this.objects != null) {
+                this.objects = Arrays.copyOf(this.objects, theCapacity);
+            }
+        }
+
+        /**
+         * Get a value, as it would be stored in a row.
+         * @param row The row.
+         * @return The value.
+         */
+        Object get(final int row) {
+            switch (this.type) {
+                case NUMERIC:
+                    if (this.integral) {
+                        return (int) this.numbers[row];
+                    }
+                    return this.numbers[row];
+                case TEXT:
+                    return this.dictionary.get(this.codes[row]);
+                case OBJECT:
+                    return this.objects[row];
+                default:
+                    throw new AIFHError("The column has no values.");
+            }
+        }
+
+        /**
+         * Set a value.  The column changes to OBJECT storage if the value does not match the column's type.
+         * @param row The row.
+         * @param value The value.
+         * @param rowCount The number of rows in use.
+         */
+        void set(final int row, final Object value, final int rowCount) {
+            if (this.type == ColumnType.EMPTY) {
+                if (value instanceof Double || value instanceof Integer) {
+                    this.type = ColumnType.NUMERIC;
+                    this.integral = value instanceof Integer;
+                    this.numbers = new double[this.capacity];
+                } else if (value instanceof String) {
+                    this.type = ColumnType.TEXT;
+                    this.codes = new int[this.capacity];
+                    this.dictionary = new ArrayList<String>();
+                    this.lookup = new HashMap<String, Integer>();
+                } else {
+                    this.type = ColumnType.OBJECT;
+                    this.objects = new Object[this.capacity];
+                }
+            }
+
+            if (this.type == ColumnType.NUMERIC && !this.integral && value instanceof Double) {
+                this.numbers[row] = (Double) value;
+            } else if (this.type == ColumnType.NUMERIC && this.integral && value instanceof Integer) {
+                this.numbers[row] = (Integer) value;
+            } else if (this.type == ColumnType.TEXT && value instanceof String) {
+                this.codes[row] = encode((String) value);
+            } else {
+                if (this.type != ColumnType.OBJECT) {
+                    toObjects(rowCount);
+                }
+                this.objects[row] = value;
+            }
+        }
+
+        /**
+         * Find the code of a string, adding it to the dictionary if needed.
+         * @param str The string.
+         * @return The code.
+         */
+        private int encode(final String str) {
+            final Integer code = this.lookup.get(str);
+            if (code != null) {
+                return code;
+            }
+            this.dictionary.add(str);
+            this.lookup.put(str, this.dictionary.size() - 1);
+            return this.dictionary.size() - 1;
+        }
+
+        /**
+         * Append a block of dictionary encoded strings.  The block's dictionary is merged into this column's.
+         * @param start The first row to set.
+         * @param count The number of rows.
+         * @param blockCodes The code of each row, into the block's dictionary.
+         * @param blockDictionary The strings of the block.
+         * @param blockNumbers The numeric value of each string of the block.
+         * @param blockIsNumber True for each string of the block that is a number.
+         */
+        void append(final int start, final int count, final int[] blockCodes, final List<String> blockDictionary,
+                    final double[] blockNumbers, final boolean[] blockIsNumber) {
+            if (this.type != ColumnType.EMPTY && this.type != ColumnType.TEXT) {
+                for (int row = 0; row < count; row++) {
+                    set(start + row, blockDictionary.get(blockCodes[row]), start + row);
+                }
+                return;
+            }
+            if (this.type == ColumnType.EMPTY) {
+                this.type = ColumnType.TEXT;
+                this.codes = new int[this.capacity];
+                this.dictionary = new ArrayList<String>();
+                this.lookup = new HashMap<String, Integer>();
+            }
+
+            final int[] remap = new int[blockDictionary.size()];
+            for (int i = 0; i < remap.length; i++) {
+                remap[i] = encode(blockDictionary.get(i));
+            }
+            if (this.dictionaryNumbers == null || this.dictionaryNumbers.length < this.dictionary.size()) {
+                final int length = this.dictionaryNumbers == null ? this.dictionary.size()
+                        : Math.max(this.dictionary.size(), this.dictionaryNumbers.length * 2);
+                this.dictionaryNumbers = this.dictionaryNumbers == null ? new double[length]
+                        : Arrays.copyOf(this.dictionaryNumbers, length);
+                this.dictionaryIsNumber = this.dictionaryIsNumber == null ? new boolean[length]
+                        : Arrays.copyOf(this.dictionaryIsNumber, length);
+            }
+            for (int i = 0; i < remap.length; i++) {
+                if (blockIsNumber[i]) {
+                    this.dictionaryNumbers[remap[i]] = blockNumbers[i];
+                    this.dictionaryIsNumber[remap[i]] = true;
+                }
+            }
+
+            for (int row = 0; row < count; row++) {
+                this.codes[start + row] = remap[blockCodes[row]];
+            }
+        }
+
+        /**
+         * Change this column to OBJECT storage.
+         * @param rowCount The number of rows in use.
+         */
+        private void toObjects(final int rowCount) {
+            final Object[] result = new Object[this.capacity];
+            for (int row = 0; row < rowCount; row++) {
+                result[row] = get(row);
+            }
+            this.type = ColumnType.OBJECT;
+            this.objects = result;
+            this.numbers = null;
+            this.codes = null;
+            this.dictionary = null;
+            this.lookup = null;
+            this.dictionaryNumbers = null;
+            this.dictionaryIsNumber = null;
+        }
+
+        /**
+         * Change this column to numeric storage.  Each distinct string of a text column is parsed once.
+         * @param rowCount The number of rows in use.
+         * @param numberFormatter The number formatter used to parse strings.
+         * @return The values.
+         */
+        double[] toNumeric(final int rowCount, final NumberFormat numberFormatter) {
+            switch (this.type) {
+                case NUMERIC:
+                    break;
+                case TEXT:
+                    final double[] parsed = new double[this.dictionary.size()];
+                    final boolean[] used = new boolean[this.dictionary.size()];
+                    for (int row = 0; row < rowCount; row++) {
+                        final int code = this.codes[row];
+                        if (!used[code]) {
+                            used[code] = true;
+                            if (this.dictionaryIsNumber != null && code < this.dictionaryIsNumber.length
+                                    && this.dictionaryIsNumber[code]) {
+                                parsed[code] = this.dictionaryNumbers[code];
+                            } else {
+                                parsed[code] = parse(this.dictionary.get(code), numberFormatter);
+                            }
+                        }
+                    }
+                    this.numbers = new double[this.capacity];
+                    for (int row = 0; row < rowCount; row++) {
+                        this.numbers[row] = parsed[this.codes[row]];
+                    }
+                    this.codes = null;
+                    this.dictionary = null;
+                    this.lookup = null;
+                    this.dictionaryNumbers = null;
+                    this.dictionaryIsNumber = null;
+                    break;
+                case OBJECT:
+                    this.numbers = new double[this.capacity];
+                    for (int row = 0; row < rowCount; row++) {
+                        this.numbers[row] = parse(this.objects[row], numberFormatter);
+                    }
+                    this.objects = null;
+                    break;
+                default:
+                    this.numbers = new double[this.capacity];
+                    break;
+            }
+            this.type = ColumnType.NUMERIC;
+            this.integral = false;
+            return this.numbers;
+        }
+
+            /**
+         * Find the rows that equal a string.
+         * @param str The string.
+         * @param rowCount The number of rows in use.
+         * @param found Set to true for each row that equals the string.
+         */
+        void find(final String str, final int rowCount, final boolean[] found) {
+            if (this.type == ColumnType.TEXT) {
+                final Integer code = this.lookup.get(str);
+                if (code != null) {
+                    for (int row = 0; row < rowCount; row++) {
+                        found[row] |= this.codes[row] == code;
+                    }
+                }
+            } else if (this.type == ColumnType.OBJECT) {
+                for (int row = 0; row < rowCount; row++) {
+                    found[row] |= this.objects[row].toString().equals(str);
+                }
+            }
+            // Double and Integer values never equal a string that is not a number
+        }
+
+        /**
+         * Remove rows.
+         * @param remove For each row, true if it should be removed.
+         * @param rowCount The number of rows in use.
+         */
+        void remove(final boolean[] remove, final int rowCount) {
+            int target = 0;
+            for (int row = 0; row < rowCount; row++) {
+                if (!remove[row]) {
+                    if (this.numbers != null) {
+                        this.numbers[target] = this.numbers[row];
+                    }
+                    if (this.codes != null) {
+                        this.codes[target] = this.codes[row];
+                    }
+                    if (this.objects != null) {
+                        this.objects[target] = this.objects[row];
+                    }
+                    target++;
+                }
+            }
+            if (this.objects != null) {
+                Arrays.fill(this.objects, target, rowCount, null);
+            }
+        }
+
+        /**
+         * Find the classes (distinct strings) of this column, in the order they first occur.
+         * @param rowCount The number of rows in use.
+         * @param classes Receives the classes.
+         */
+        void findClasses(final int rowCount, final Set<String> classes) {
+            if (this.type == ColumnType.TEXT) {
+                final boolean[] seen = new boolean[this.dictionary.size()];
+                for (int row = 0; row < rowCount; row++) {
+                    final int code = this.codes[row];
+                    if (!seen[code]) {
+                        seen[code] = true;
+                        classes.add(this.dictionary.get(code));
+                    }
+                }
+            } else {
+                for (int row = 0; row < rowCount; row++) {
+                    classes.add(get(row).toString());
+                }
+            }
+        }
+
+        /**
+         * Find the class index of each row.
+         * @param rowCount The number of rows in use.
+         * @param classes The class indexes, from enumerateClasses.
+         * @return The class index of each row.
+         */
+        int[] classIndexes(final int rowCount, final Map<String, Integer> classes) {
+            final int[] result = new int[rowCount];
+            if (this.type == ColumnType.TEXT) {
+                final int[] codeClass = new int[this.dictionary.size()];
+                for (int i = 0; i < codeClass.length; i++) {
+                    final Integer index = classes.get(this.dictionary.get(i));
+                    codeClass[i] = index == null ? -1 : index;
+                }
+                for (int row = 0; row < rowCount; row++) {
+                    result[row] = codeClass[this.codes[row]];
+                }
+            } else {
+                for (int row = 0; row < rowCount; row++) {
+                    result[row] = classes.get(get(row).toString());
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * The list of rows returned by getData.
+     */
+    private final class RowList extends AbstractList<Object[]> implements RandomAccess {
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Object[] get(final int index) {
+            checkIndex(index);
+            if (DataSet.this.fetched == null) {
+                DataSet.this.fetched = new Object[DataSet.this.rowCount][];
+            } else if (index >= DataSet.this.fetched.length) {
+                DataSet.this.fetched = Arrays.copyOf(DataSet.this.fetched, DataSet.this.rowCount);
+            }
+            if (DataSet.this.fetched[index] == null) {
+                DataSet.this.fetched[index] = getRow(index);
+            }
+            return DataSet.this.fetched[index];
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Object[] set(final int index, final Object[] row) {
+            if (row.length != getHeaderCount()) {
+                throw new AIFHError("Found a row with " + row.length + " columns, when expecting "
+                        + getHeaderCount());
+            }
+            final Object[] result = get(index);
+            DataSet.this.fetched[index] = row;
+            return result;
+        }
+
+        /**
+         * Add a row, rows can only be added to the end.
+         * @param index The index, this must be the size of the list.
+         * @param row The row.
+         */
+        @Override
+        public void add(final int index, final Object[] row) {
+            if (index != DataSet.this.rowCount) {
+                throw new UnsupportedOperationException("Rows can only be added to the end of a data set.");
+            }
+            DataSet.this.add(row);
+            this.modCount++;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Object[] remove(final int index) {
+            final Object[] result = get(index);
+            columnar();
+            final boolean[] remove = new boolean[DataSet.this.rowCount];
+            remove[index] = true;
+            for (final Column col : DataSet.this.columns) {
+                col.remove(remove, DataSet.this.rowCount);
+            }
+            DataSet.this.rowCount--;
+            this.modCount++;
+            return result;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int size() {
+            return DataSet.this.rowCount;
+        }
+
+        /**
+         * Make sure a row index is in range.
+         * @param index The row index.
+         */
+        private void checkIndex(final int index) {
+            if (index < 0 || index >= DataSet.this.rowCount) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + DataSet.this.rowCount);
+            }
+        }
+    }
+
+    /**
+     * The rows fetched through getData, by row index (null for rows not fetched).  Null if no rows are fetched.
+     */
+    private Object[][] fetched;
+
+    /**
+     * The list of rows returned by getData.
+     */
+    private final List<Object[]> rowList = new RowList();
+
+    /**
+     * The data, by column.
      */
-    private final List<Object[]> data = new ArrayList<Object[]>();
+    private Column[] columns;
+
+    /**
+     * The number of rows in the columns.
+     */
+    private int rowCount;
+
+    /**
+     * The number of rows each column has space for.
+     */
+    private int capacity = INITIAL_CAPACITY;
+
     /**
      * The column headers.
      */
@@ -64,83 +588,92 @@ public class DataSet {
      */
     public DataSet(final String[] theHeaders) {
         this.headers = theHeaders;
+        this.columns = new Column[theHeaders.length];
+        for (int i = 0; i < this.columns.length; i++) {
+            this.columns[i] = new Column(this.capacity);
+        }
     }
 
     /**
-     * Convert a column to numeric.  Save the new Double object in place of the string.
+     * Parse a value to a number.
      *
-     * @param obj    The column array.
-     * @param column The column to change.
+     * @param value           The value, a Double is used as is.
+     * @param numberFormatter The number formatter used to parse strings.
      * @return The numeric value.
      */
-    private double convertNumeric(final Object[] obj, final int column) {
-        final double x;
-        if (obj[column] instanceof Double) {
-            x = (Double) obj[column];
-        } else {
-            try {
-                x = this.numberFormatter.parse(obj[column].toString()).doubleValue();
-                obj[column] = x;
-            } catch (ParseException e) {
-                throw new AIFHError(e);
+    private static double parse(final Object value, final NumberFormat numberFormatter) {
+        if (value instanceof Double) {
+            return (Double) value;
+        }
+        try {
+            return numberFormatter.parse(value.toString()).doubleValue();
+        } catch (ParseException e) {
+            throw new AIFHError(e);
+        }
+    }
+
+    /**
+     * Make sure the columns are up to date, writing back (and releasing) the rows fetched through getData.
+     */
+    private void columnar() {
+        if (this.fetched != null) {
+            final Object[][] rows = this.fetched;
+            this.fetched = null;
+            for (int row = 0; row < rows.length && row < this.rowCount; row++) {
+                if (rows[row] != null) {
+                    for (int i = 0; i < this.columns.length; i++) {
+                        this.columns[i].set(row, rows[row][i], this.rowCount);
+                    }
+                }
             }
         }
+    }
 
-        return x;
+    /**
+     * Convert a column to numeric.  The strings of the column are parsed, and the column stored as numbers.
+     *
+     * @param column The column to change.
+     * @return The numeric values of the column, only the first size() are used.
+     */
+    private double[] convertNumeric(final int column) {
+        columnar();
+        return this.columns[column].toNumeric(this.rowCount, this.numberFormatter);
+    }
+
+    /**
+     * Build a row from the columns.
+     *
+     * @param row The row index.
+     * @return The row.
+     */
+    private Object[] getRow(final int row) {
+        final Object[] result = new Object[this.columns.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = this.columns[i].get(row);
+        }
+        return result;
     }
 
     /**
-     * Load a CSV file from a file.
+     * Load a CSV file from a file.  The file is memory mapped, and parsed with one thread per processor (see
+     * ParallelCSVLoader).
      *
      * @param filename The filename.
      * @return The data set read.
      */
     public static DataSet load(final File filename) {
-        try {
-            final FileInputStream fis = new FileInputStream(filename);
-            final DataSet ds = load(fis);
-            fis.close();
-            return ds;
-        } catch (IOException ex) {
-            throw (new AIFHError(ex));
-        }
+        return new ParallelCSVLoader().load(filename);
     }
 
     /**
-     * Load a CSV from an input stream.
+     * Load a CSV from an input stream.  The stream is read into memory, and parsed with one thread per processor
+     * (see ParallelCSVLoader).
      *
      * @param is The input stream.
      * @return The loaded file.
      */
     public static DataSet load(final InputStream is) {
-        final DataSet result;
-
-        try {
-            final Reader reader = new InputStreamReader(is);
-            final CSVReader csv = new CSVReader(reader);
-
-            final String[] headers = csv.readNext();
-
-            result = new DataSet(headers);
-
-            String[] nextLine;
-            while ((nextLine = csv.readNext()) != null) {
-                if (nextLine.length <= 1) {
-                    continue;
-                } else if (nextLine.length != result.getHeaderCount()) {
-                    throw new AIFHError("Found a CSV line with "
-                            + nextLine.length + " columns, when expecting " + result.getHeaderCount());
-                }
-                final Object[] obj = new Object[result.getHeaderCount()];
-                System.arraycopy(nextLine, 0, obj, 0, nextLine.length);
-                result.add(obj);
-            }
-            csv.close();
-        } catch (IOException ex) {
-            throw (new AIFHError(ex));
-        }
-
-        return result;
+        return new ParallelCSVLoader().load(is);
     }
 
     /**
@@ -170,12 +703,13 @@ public class DataSet {
             final Writer writer = new OutputStreamWriter(os);
             final CSVWriter csv = new CSVWriter(writer);
 
+            ds.columnar();
             csv.writeNext(ds.getHeaders());
             final String[] items2 = new String[ds.getHeaderCount()];
 
-            for (final Object[] item : ds.getData()) {
+            for (int row = 0; row < ds.size(); row++) {
                 for (int i = 0; i < ds.getHeaderCount(); i++) {
-                    items2[i] = item[i].toString();
+                    items2[i] = ds.columns[i].get(row).toString();
                 }
                 csv.writeNext(items2);
             }
@@ -189,7 +723,7 @@ public class DataSet {
      * @return The number of columns (or headers).
      */
     public int getHeaderCount() {
-        return headers.length;
+        return this.headers.length;
     }
 
     /**
@@ -200,19 +734,62 @@ public class DataSet {
     }
 
     /**
-     * Add a row.
+     * Add a row.  The values are copied into the columns.
      *
      * @param row The row to add.
      */
     public void add(final Object[] row) {
-        this.data.add(row);
+        if (row.length != getHeaderCount()) {
+            throw new AIFHError("Found a row with " + row.length + " columns, when expecting " + getHeaderCount());
+        }
+
+        if (this.rowCount == this.capacity) {
+            this.capacity *= 2;
+            for (final Column col : this.columns) {
+                col.grow(this.capacity);
+            }
+        }
+
+        for (int i = 0; i < this.columns.length; i++) {
+            this.columns[i].set(this.rowCount, row[i], this.rowCount);
+        }
+        this.rowCount++;
     }
 
     /**
+     * Add a block of rows that are already dictionary encoded by column, used by ParallelCSVLoader.
+     *
+     * @param count        The number of rows.
+     * @param codes        For each column, the code of each row, into the column's block dictionary.
+     * @param dictionaries For each column, the distinct strings of the block.
+     * @param numbers      For each column, the numeric value of each string of the block.
+     * @param isNumber     For each column, true for each string of the block that is a number.
+     */
+    void addEncoded(final int count, final int[][] codes, final List<List<String>> dictionaries,
+                    final double[][] numbers, final boolean[][] isNumber) {
+        columnar();
+        if (this.rowCount + count > this.capacity) {
+            this.capacity = Math.max(this.capacity * 2, this.rowCount + count);
+            for (final Column col : this.columns) {
+                col.grow(this.capacity);
+            }
+        }
+
+        for (int i = 0; i < this.columns.length; i++) {
+            this.columns[i].append(this.rowCount, count, codes[i], dictionaries.get(i), numbers[i], isNumber[i]);
+        }
+        this.rowCount += count;
+    }
+
+    /**
+     * Get the data as rows.  The list is a view of the data set: rows can be read, replaced, removed and added (at
+     * the end).  Changes made to a row array are written back to the columns before any other method of the data
+     * set uses the columns, the row must be fetched again after that.
+     *
      * @return The row data.
      */
     public List<Object[]> getData() {
-        return this.data;
+        return this.rowList;
     }
 
     /**
@@ -222,10 +799,11 @@ public class DataSet {
      * @return The max numeric value.
      */
     public double getMax(final int column) {
+        final double[] values = convertNumeric(column);
         double result = Double.NEGATIVE_INFINITY;
 
-        for (final Object[] obj : this.data) {
-            result = Math.max(result, convertNumeric(obj, column));
+        for (int row = 0; row < this.rowCount; row++) {
+            result = Math.max(result, values[row]);
         }
 
         return result;
@@ -238,10 +816,11 @@ public class DataSet {
      * @return The min numeric value.
      */
     public double getMin(final int column) {
+        final double[] values = convertNumeric(column);
         double result = Double.POSITIVE_INFINITY;
 
-        for (final Object[] obj : this.data) {
-            result = Math.min(result, convertNumeric(obj, column));
+        for (int row = 0; row < this.rowCount; row++) {
+            result = Math.min(result, values[row]);
         }
 
         return result;
@@ -258,10 +837,10 @@ public class DataSet {
      * @param normalizedHigh The desired high normalized value.
      */
     public void normalizeRange(final int column, final double dataLow, final double dataHigh, final double normalizedLow, final double normalizedHigh) {
-        for (final Object[] obj : this.data) {
-            final double x = convertNumeric(obj, column);
+        final double[] values = convertNumeric(column);
 
-            obj[column] = ((x - dataLow)
+        for (int row = 0; row < this.rowCount; row++) {
+            values[row] = ((values[row] - dataLow)
                     / (dataHigh - dataLow))
                     * (normalizedHigh - normalizedLow) + normalizedLow;
         }
@@ -292,10 +871,10 @@ public class DataSet {
      * @param normalizedHigh The desired high normalized value.
      */
     public void deNormalizeRange(final int column, final double dataLow, final double dataHigh, final double normalizedLow, final double normalizedHigh) {
-        for (final Object[] obj : this.data) {
-            final double x = convertNumeric(obj, column);
+        final double[] values = convertNumeric(column);
 
-            obj[column] = ((dataLow - dataHigh) * x - normalizedHigh
+        for (int row = 0; row < this.rowCount; row++) {
+            values[row] = ((dataLow - dataHigh) * values[row] - normalizedHigh
                     * dataLow + dataHigh * normalizedLow)
                     / (normalizedLow - normalizedHigh);
         }
@@ -308,9 +887,10 @@ public class DataSet {
      * @param column The column to encode.
      */
     public void normalizeReciprocal(final int column) {
-        for (final Object[] obj : this.data) {
-            final double x = convertNumeric(obj, column);
-            obj[column] = 1 / x;
+        final double[] values = convertNumeric(column);
+
+        for (int row = 0; row < this.rowCount; row++) {
+            values[row] = 1 / values[row];
         }
     }
 
@@ -332,11 +912,11 @@ public class DataSet {
      * @return The numbered set.
      */
     public Map<String, Integer> enumerateClasses(final int column) {
+        columnar();
+
         // determine classes
         final Set<String> classes = new HashSet<String>();
-        for (final Object[] obj : this.data) {
-            classes.add(obj[column].toString());
-        }
+        this.columns[column].findClasses(this.rowCount, classes);
         // assign numeric values to each class
         final Map<String, Integer> result = new HashMap<String, Integer>();
         int index = 0;
@@ -355,11 +935,13 @@ public class DataSet {
      */
     public Map<String, Integer> encodeNumeric(final int column) {
         final Map<String, Integer> classes = enumerateClasses(column);
+        final int[] index = this.columns[column].classIndexes(this.rowCount, classes);
 
-        for (final Object[] obj : this.data) {
-            final int index = classes.get(obj[column].toString());
-            obj[column] = index;
+        final double[] values = new double[this.capacity];
+        for (int row = 0; row < this.rowCount; row++) {
+            values[row] = index[row];
         }
+        this.columns[column] = new Column(values, true);
 
         return classes;
     }
@@ -392,16 +974,17 @@ public class DataSet {
 
         // make space for it
         final Map<String, Integer> classes = enumerateClasses(column);
-        insertColumns(column + 1, classes.size() - 1);
+        final int[] index = this.columns[column].classIndexes(this.rowCount, classes);
+        final int classCount = classes.size();
+        insertColumns(column + 1, classCount - 1);
 
         // perform the 1 of n encode
-        for (final Object[] obj : this.data) {
-            final int index = classes.get(obj[column].toString());
-            final int classCount = classes.size();
-
-            for (int i = 0; i < classCount; i++) {
-                obj[column + i] = (i == index) ? onValue : offValue;
+        for (int i = 0; i < classCount; i++) {
+            final double[] values = new double[this.capacity];
+            for (int row = 0; row < this.rowCount; row++) {
+                values[row] = (i == index[row]) ? onValue : offValue;
             }
+            this.columns[column + i] = new Column(values, false);
         }
 
         // name the new columns
@@ -440,22 +1023,26 @@ public class DataSet {
 
         // make space for it
         final Map<String, Integer> classes = enumerateClasses(column);
+        final int[] index = this.columns[column].classIndexes(this.rowCount, classes);
         final int classCount = classes.size();
         insertColumns(column + 1, classCount - 1);
 
         // perform the equilateral
         final Equilateral eq = new Equilateral(classCount, offValue, onValue);
+        final double[][] values = new double[classCount - 1][this.capacity];
 
-        for (final Object[] obj : this.data) {
-            final int index = classes.get(obj[column].toString());
-
-            final double[] encoded = eq.encode(index);
+        for (int row = 0; row < this.rowCount; row++) {
+            final double[] encoded = eq.encode(index[row]);
 
             for (int i = 0; i < classCount - 1; i++) {
-                obj[column + i] = encoded[i];
+                values[i][row] = encoded[i];
             }
         }
 
+        for (int i = 0; i < classCount - 1; i++) {
+            this.columns[column + i] = new Column(values[i], false);
+        }
+
         // name the new columns
         for (int i = 0; i < classes.size(); i++) {
             this.headers[column + i] = name + "-" + i;
@@ -468,7 +1055,7 @@ public class DataSet {
      * @return The number of rows.
      */
     public int size() {
-        return data.size();
+        return this.rowCount;
     }
 
     /**
@@ -477,59 +1064,36 @@ public class DataSet {
      * @param count The number of new columns.
      */
     public void appendColumns(final int count) {
-
-        // add the headers
-        final String[] newHeaders = new String[getHeaderCount() + count];
-        System.arraycopy(this.headers, 0, newHeaders, 0, getHeaderCount());
-
-        for (int i = 0; i < count; i++) {
-            newHeaders[i + getHeaderCount()] = "new";
-        }
-
-        this.headers = newHeaders;
-
-        // add the data
-        for (int rowIndex = 0; rowIndex < size(); rowIndex++) {
-            final Object[] originalRow = this.data.get(rowIndex);
-            final Object[] newRow = new Object[getHeaderCount()];
-            System.arraycopy(originalRow, 0, newRow, 0, originalRow.length);
-            for (int i = 0; i < count; i++) {
-                newRow[getHeaderCount() - 1 - i] = (double) 0;
-            }
-            this.data.remove(rowIndex);
-            this.data.add(rowIndex, newRow);
-        }
+        insertColumns(getHeaderCount(), count);
     }
 
     /**
-     * Insert columns at a specific location.
+     * Insert columns at a specific location.  The new columns are filled with zero.
      *
      * @param column      The column to insert BEFORE.
      * @param columnCount The count of columns to insert.
      */
     public void insertColumns(final int column, final int columnCount) {
-        // create space for new columns
-        appendColumns(columnCount);
+        columnar();
 
         // insert headers
-        System.arraycopy(this.headers, column + 1 - columnCount, this.headers, column + 1, getHeaderCount() - 1 - column);
+        final String[] newHeaders = new String[getHeaderCount() + columnCount];
+        System.arraycopy(this.headers, 0, newHeaders, 0, column);
+        System.arraycopy(this.headers, column, newHeaders, column + columnCount, getHeaderCount() - column);
 
-        // mark new columns headers
-        for (int i = 0; i < columnCount; i++) {
-            this.headers[column + i] = "new";
-        }
-
-        for (final Object[] obj : this.data) {
-            // insert columns
-            System.arraycopy(obj, column + 1 - columnCount, obj, column + 1, getHeaderCount() - 1 - column);
+        // insert columns
+        final Column[] newColumns = new Column[newHeaders.length];
+        System.arraycopy(this.columns, 0, newColumns, 0, column);
+        System.arraycopy(this.columns, column, newColumns, column + columnCount, getHeaderCount() - column);
 
-            // mark new columns
-            for (int i = 0; i < columnCount; i++) {
-                obj[column + i] = (double) 0;
-            }
+        // mark new columns
+        for (int i = 0; i < columnCount; i++) {
+            newHeaders[column + i] = "new";
+            newColumns[column + i] = new Column(new double[this.capacity], false);
         }
 
-
+        this.headers = newHeaders;
+        this.columns = newColumns;
     }
 
     /**
@@ -542,6 +1106,8 @@ public class DataSet {
         }
 
         final DataSet otherSet = (DataSet) other;
+        columnar();
+        otherSet.columnar();
 
         // do the basic sizes match
 
@@ -561,12 +1127,12 @@ public class DataSet {
         }
 
         // does the data match?
-        for (int i = 0; i < size(); i++) {
-            final Object[] row1 = this.data.get(i);
-            final Object[] row2 = ((DataSet) other).getData().get(i);
+        for (int j = 0; j < getHeaderCount(); j++) {
+            final Column col1 = this.columns[j];
+            final Column col2 = otherSet.columns[j];
 
-            for (int j = 0; j < getHeaderCount(); j++) {
-                if (!row1[j].equals(row2[j])) {
+            for (int i = 0; i < size(); i++) {
+                if (!col1.get(i).equals(col2.get(i))) {
                     return false;
                 }
             }
@@ -583,18 +1149,24 @@ public class DataSet {
      * @return The training set.
      */
     public List<BasicData> extractUnsupervisedLabeled(final int labelIndex) {
+        columnar();
         final List<BasicData> result = new ArrayList<BasicData>();
 
         final int dimensions = getHeaderCount() - 1;
+        final double[][] values = new double[getHeaderCount()][];
+        for (int rawColIndex = 0; rawColIndex < getHeaderCount(); rawColIndex++) {
+            if (rawColIndex != labelIndex) {
+                values[rawColIndex] = convertNumeric(rawColIndex);
+            }
+        }
 
         for (int rowIndex = 0; rowIndex < size(); rowIndex++) {
-            final Object[] raw = this.data.get(rowIndex);
-            final BasicData row = new BasicData(dimensions, 0, raw[labelIndex].toString());
+            final BasicData row = new BasicData(dimensions, 0, this.columns[labelIndex].get(rowIndex).toString());
 
             int colIndex = 0;
             for (int rawColIndex = 0; rawColIndex < getHeaderCount(); rawColIndex++) {
                 if (rawColIndex != labelIndex) {
-                    row.getInput()[colIndex++] = convertNumeric(raw, rawColIndex);
+                    row.getInput()[colIndex++] = values[rawColIndex][rowIndex];
                 }
             }
 
@@ -616,16 +1188,25 @@ public class DataSet {
     public List<BasicData> extractSupervised(final int inputBegin, final int inputCount, final int idealBegin, final int idealCount) {
         final List<BasicData> result = new ArrayList<BasicData>();
 
+        final double[][] input = new double[inputCount][];
+        for (int i = 0; i < inputCount; i++) {
+            input[i] = convertNumeric(inputBegin + i);
+        }
+
+        final double[][] ideal = new double[idealCount][];
+        for (int i = 0; i < idealCount; i++) {
+            ideal[i] = convertNumeric(idealBegin + i);
+        }
+
         for (int rowIndex = 0; rowIndex < size(); rowIndex++) {
-            final Object[] raw = this.data.get(rowIndex);
             final BasicData row = new BasicData(inputCount, idealCount);
 
             for (int i = 0; i < inputCount; i++) {
-                row.getInput()[i] = convertNumeric(raw, inputBegin + i);
+                row.getInput()[i] = input[i][rowIndex];
             }
 
             for (int i = 0; i < idealCount; i++) {
-                row.getIdeal()[i] = convertNumeric(raw, idealBegin + i);
+                row.getIdeal()[i] = ideal[i][rowIndex];
             }
 
             result.add(row);
@@ -639,22 +1220,25 @@ public class DataSet {
      * Delete all rows that contain unknown data.  An unknown column has a "?" value.
      */
     public void deleteUnknowns() {
-        int rowIndex = 0;
-        while (rowIndex < this.data.size()) {
-            final Object[] row = data.get(rowIndex);
-            boolean remove = false;
-            for (final Object aRow : row) {
-                if (aRow.toString().equals("?")) {
-                    remove = true;
-                    break;
-                }
+        columnar();
+
+        final boolean[] remove = new boolean[this.rowCount];
+        for (final Column col : this.columns) {
+            col.find("?", this.rowCount, remove);
+        }
+
+        int removed = 0;
+        for (boolean r : remove) {
+            if (r) {
+                removed++;
             }
+        }
 
-            if (remove) {
-                data.remove(rowIndex);
-            } else {
-                rowIndex++;
+        if (removed > 0) {
+            for (final Column col : this.columns) {
+                col.remove(remove, this.rowCount);
             }
+            this.rowCount -= removed;
         }
     }
 
@@ -664,29 +1248,21 @@ public class DataSet {
      * @param col The column to delete.
      */
     public void deleteColumn(final int col) {
-        final String[] headers2 = new String[headers.length - 1];
+        columnar();
+
+        final String[] headers2 = new String[this.headers.length - 1];
+        final Column[] columns2 = new Column[this.headers.length - 1];
 
-        // first, remove the header
+        // remove the header and its data
         int h2Index = 0;
-        for (int i = 0; i < headers.length; i++) {
+        for (int i = 0; i < this.headers.length; i++) {
             if (i != col) {
-                headers2[h2Index++] = headers[i];
+                columns2[h2Index] = this.columns[i];
+                headers2[h2Index++] = this.headers[i];
             }
         }
         this.headers = headers2;
-
-        // now process the data
-        int rowIndex = 0;
-        for (final Object[] row : this.data) {
-            final Object[] row2 = new Object[headers.length];
-            int r2Index = 0;
-            for (int i = 0; i <= headers.length; i++) {
-                if (i != col) {
-                    row2[r2Index++] = row[i];
-                }
-            }
-            this.data.set(rowIndex++, row2);
-        }
+        this.columns = columns2;
     }
 
     /**
@@ -698,14 +1274,16 @@ public class DataSet {
      * @param others      What to fill in the others with that do not match.
      */
     public void replaceColumn(final int columnIndex, final double searchFor, final double replaceWith, final double others) {
-        for (final Object[] row : this.data) {
-            final double d = convertNumeric(row, columnIndex);
-            if (Math.abs(d - searchFor) < 0.0001) {
-                row[columnIndex] = replaceWith;
+        final double[] values = convertNumeric(columnIndex);
+
+        for (int row = 0; row < this.rowCount; row++) {
+            if (Math.abs(values[row] - searchFor) < 0.0001) {
+                values[row] = replaceWith;
             } else {
-                row[columnIndex] = others;
+                values[row] = others;
             }
 
         }
     }
+
 }
@@ -0,0 +1,795 @@
+/*
+ * Artificial Intelligence for Humans
+ * Volume 2: Nature Inspired Algorithms
+ * Java Version
+ * http://www.aifh.org
+ * http://www.jeffheaton.com
+ *
+ * Code repository:
+ * https://github.com/jeffheaton/aifh
+ *
+ * Copyright 2014 by Jeff Heaton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For more information on Heaton Research copyrights, licenses
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package com.heatonresearch.aifh.normalize;
+
+import au.com.bytecode.opencsv.CSVParser;
+import com.heatonresearch.aifh.AIFHError;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.text.NumberFormat;
+import java.text.ParsePosition;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Loads a CSV file into a DataSet using several threads.  The file is split into chunks of bytes that start and end
+ * at a line boundary, each chunk is parsed by its own thread, and the chunks are then added to the data set in file
+ * order.  Each record is parsed on its own, so the data set does not depend on how the file is split (or on the
+ * number of threads).
+ *
+ * Each chunk is parsed straight into columns: the fields of each column are dictionary encoded, and each distinct
+ * field that is a number is parsed to a double by the chunk's thread.  The data set still holds the fields as
+ * strings (they are what DataSet.save writes back), but when a column is converted to numeric the parsed values are
+ * used, so no numeric field is parsed on a single thread.
+ *
+ * A file is memory mapped, rather than read.  Lines are split on bytes, so the default character set must be ASCII
+ * compatible (i.e. UTF-8), as it is on all common platforms.  Lines that hold no quotes or backslashes are split on
+ * commas directly, the others are passed to a new opencsv CSVParser for each record.  This differs from reading the
+ * file with CSVReader, whose single parser carries the state of one record into the next, so that an empty quoted
+ * field ("") may parse differently depending on the lines before it.  Quoted fields may span lines: the quotes are
+ * counted to find where each chunk's first record starts.  Backslash escapes could hide a quote from this count, so
+ * a file that contains a backslash is parsed as a single chunk.
+ */
+public class ParallelCSVLoader {
+
+    /**
+     * The smallest chunk worth giving its own thread, 1MB.  Smaller files are parsed by the calling thread.
+     */
+    public static final int MIN_CHUNK_SIZE = 1024 * 1024;
+
+    /**
+     * The number of chunks per thread.  More than one, so that a thread that finishes early can take another.
+     */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    /**
+     * The initial number of rows a chunk has space for.
+     */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * Reads the records of one chunk, as CSVReader.readNext would, except that each record is parsed on its own.  A
+     * line that holds no quotes or backslashes is not turned into strings, its fields are left as ranges of the
+     * line's bytes.
+     */
+    private static class RecordReader {
+
+        /**
+         * The file, a view used only by this reader.
+         */
+        private final ByteBuffer buffer;
+
+        /**
+         * The position of the next line.
+         */
+        private int position;
+
+        /**
+         * The end of the chunk.
+         */
+        private final int end;
+
+        /**
+         * The character set of the file.
+         */
+        private final Charset charset;
+
+        /**
+         * Parses the lines of the current record that hold quotes or backslashes, or null if none has.  CSVParser
+         * keeps state from one line to the next, so a new parser is created for each record.
+         */
+        private CSVParser parser;
+
+        /**
+         * The bytes of the current line.
+         */
+        private byte[] line = new byte[256];
+
+        /**
+         * The fields of the current record, or null if the record is a simple line.
+         */
+        private String[] fields;
+
+        /**
+         * The number of fields of the current record.
+         */
+        private int fieldCount;
+
+        /**
+         * For a simple line, the start of each field within the line, plus the end of the last field.  Each field
+         * ends one byte before the next starts (at the comma).
+         */
+        private int[] fieldStarts = new int[16];
+
+        /**
+         * Construct the reader.
+         * @param theBuffer The file.
+         * @param theStart The start of the chunk, this must be the start of a record.
+         * @param theEnd The end of the chunk.
+         * @param theCharset The character set of the file.
+         */
+        RecordReader(final ByteBuffer theBuffer, final int theStart, final int theEnd, final Charset theCharset) {
+            this.buffer = theBuffer.duplicate();
+            this.position = theStart;
+            this.end = theEnd;
+            this.charset = theCharset;
+        }
+
+        /**
+         * Copy bytes of the file into the line.
+         * @param start The first byte.
+         * @param length The number of bytes.
+         */
+        private void copyLine(final int start, final int length) {
+            if (this.line.length < length) {
+                this.line = new byte[Math.max(length, this.line.length * 2)];
+            }
+            this.buffer.position(start);
+            this.buffer.get(this.line, 0, length);
+        }
+
+        /**
+         * Split a line that holds no quotes or backslashes, such a line is simply split on commas.
+         * @param start The start of the line.
+         * @param length The length of the line.
+         */
+        private void split(final int start, final int length) {
+            copyLine(start, length);
+            this.fields = null;
+            this.fieldCount = 0;
+            this.fieldStarts[0] = 0;
+            for (int i = 0; i < length; i++) {
+                if (this.line[i] == ',') {
+                    if (++this.fieldCount == this.fieldStarts.length - 1) {
+                        this.fieldStarts = Arrays.copyOf(this.fieldStarts, this.fieldStarts.length * 2);
+                    }
+                    this.fieldStarts[this.fieldCount] = i + 1;
+                }
+            }
+            this.fieldStarts[++this.fieldCount] = length + 1;
+        }
+
+        /**
+         * Parse a line with opencsv, it may continue a record from the previous line.
+         * @param start The start of the line.
+         * @param length The length of the line.
+         * @return The fields the line adds to the record.
+         */
+        private String[] parse(final int start, final int length) {
+            copyLine(start, length);
+            if (!isPending()) {
+                this.parser = new CSVParser();
+            }
+            try {
+                return this.parser.parseLineMulti(new String(this.line, 0, length, this.charset));
+            } catch (IOException ex) {
+                throw new AIFHError(ex);
+            }
+        }
+
+        /**
+         * @return True, if the current record continues on the next line.
+         */
+        private boolean isPending() {
+            return this.parser != null && this.parser.isPending();
+        }
+
+        /**
+         * Read the next record.
+         * @return False, at the end of the chunk.
+         */
+        boolean next() {
+            String[] result = null;
+            while (this.position < this.end) {
+                final int start = this.position;
+                int lineEnd = start;
+                boolean simple = true;
+                byte b = 0;
+                while (lineEnd < this.end) {
+                    b = this.buffer.get(lineEnd);
+                    if (b == '\n' || b == '\r') {
+                        break;
+                    } else if (b == '"' || b == '\\') {
+                        simple = false;
+                    }
+                    lineEnd++;
+                }
+
+                // a line ends with \n, \r or \r\n, as with BufferedReader.readLine
+                this.position = lineEnd;
+                if (this.position < this.end) {
+                    this.position++;
+                    if (b == '\r' && this.position < this.end && this.buffer.get(this.position) == '\n') {
+                        this.position++;
+                    }
+                }
+
+                if (simple && !isPending()) {
+                    split(start, lineEnd - start);
+                    return true;
+                }
+
+                final String[] parsed = parse(start, lineEnd - start);
+                if (result == null) {
+                    result = parsed;
+                } else if (parsed.length > 0) {
+                    final String[] joined = Arrays.copyOf(result, result.length + parsed.length);
+                    System.arraycopy(parsed, 0, joined, result.length, parsed.length);
+                    result = joined;
+                }
+                if (!isPending()) {
+                    break;
+                }
+            }
+
+            // an unterminated quote ends the chunk, CSVReader also returns the fields before it
+            this.fields = result;
+            this.fieldCount = result == null ? 0 : result.length;
+            return result != null;
+        }
+
+        /**
+         * @return The fields of the current record, as strings.
+         */
+        String[] getFields() {
+            if (this.fields == null) {
+                this.fields = new String[this.fieldCount];
+                for (int i = 0; i < this.fieldCount; i++) {
+                    this.fields[i] = new String(this.line, this.fieldStarts[i],
+                            this.fieldStarts[i + 1] - 1 - this.fieldStarts[i], this.charset);
+                }
+            }
+            return this.fields;
+        }
+
+        /**
+         * @return The position of the next line.
+         */
+        int getPosition() {
+            return this.position;
+        }
+    }
+
+    /**
+     * The distinct values of one column of a chunk.  Values can be looked up by their bytes, so that a String is
+     * only created for each distinct value, not for each field.
+     */
+    private static class Dictionary {
+
+        /**
+         * The distinct values.
+         */
+        private final List<String> strings = new ArrayList<String>();
+
+        /**
+         * An open addressing hash table, each slot holds a code plus one, or zero if it is empty.
+         */
+        private int[] table = new int[64];
+
+        /**
+         * The hash of each value's bytes.
+         */
+        private int[] hashes = new int[32];
+
+        /**
+         * The bytes of all the values, one after the other.
+         */
+        private byte[] bytes = new byte[256];
+
+        /**
+         * The start of each value's bytes, plus the end of the last value.
+         */
+        private int[] offsets = new int[33];
+
+        /**
+         * The character set of the file.
+         */
+        private final Charset charset;
+
+        /**
+         * Construct the dictionary.
+         * @param theCharset The character set of the file.
+         */
+        Dictionary(final Charset theCharset) {
+            this.charset = theCharset;
+        }
+
+        /**
+         * Find the code of a value, adding it if needed.
+         * @param data Holds the value's bytes.
+         * @param start The first byte of the value.
+         * @param end The end of the value.
+         * @return The code.
+         */
+        int encode(final byte[] data, final int start, final int end) {
+            int hash = 1;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + data[i];
+            }
+
+            final int mask = this.table.length - 1;
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            while (this.table[slot] != 0) {
+                final int code = this.table[slot] - 1;
+                if (this.hashes[code] == hash && matches(code, data, start, end)) {
+                    return code;
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            final int code = this.strings.size();
+            final int length = end - start;
+            if (code == this.hashes.length) {
+                this.hashes = Arrays.copyOf(this.hashes, code * 2);
+                this.offsets = Arrays.copyOf(this.offsets, code * 2 + 1);
+            }
+            final int offset = this.offsets[code];
+            if (offset + length > this.bytes.length) {
+                this.bytes = Arrays.copyOf(this.bytes, Math.max(offset + length, this.bytes.length * 2));
+            }
+            System.arraycopy(data, start, this.bytes, offset, length);
+            this.offsets[code + 1] = offset + length;
+            this.hashes[code] = hash;
+            this.strings.add(new String(data, start, length, this.charset));
+            this.table[slot] = code + 1;
+
+            if (this.strings.size() * 2 > this.table.length) {
+                rehash();
+            }
+            return code;
+        }
+
+        /**
+         * Find the code of a value, adding it if needed.
+         * @param str The value.
+         * @return The code.
+         */
+        int encode(final String str) {
+            final byte[] data = str.getBytes(this.charset);
+            return encode(data, 0, data.length);
+        }
+
+        /**
+         * Compare a value of the dictionary to a range of bytes.
+         * @param code The value's code.
+         * @param data Holds the bytes.
+         * @param start The first byte.
+         * @param end The end of the bytes.
+         * @return True, if they are equal.
+         */
+        private boolean matches(final int code, final byte[] data, final int start, final int end) {
+            final int offset = this.offsets[code];
+            if (this.offsets[code + 1] - offset != end - start) {
+                return false;
+            }
+            for (int i = start; i < end; i++) {
+                if (this.bytes[offset + i - start] != data[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Double the size of the hash table.
+         */
+        private void rehash() {
+            this.table = new int[this.table.length * 2];
+            final int mask = this.table.length - 1;
+            for (int code = 0; code < this.strings.size(); code++) {
+                final int hash = this.hashes[code];
+                int slot = (hash ^ (hash >>> 16)) & mask;
+                while (this.table[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                this.table[slot] = code + 1;
+            }
+        }
+
+        /**
+         * @return The distinct values, in the order they were added.
+         */
+        List<String> getStrings() {
+            return this.strings;
+        }
+    }
+
+    /**
+     * Counts the quotes and backslashes in part of the file.
+     */
+    private static class QuoteCounter implements Callable<Object> {
+
+        /**
+         * The file.
+         */
+        private final ByteBuffer buffer;
+
+        /**
+         * The first byte to count.
+         */
+        private final int start;
+
+        /**
+         * The end of the bytes to count.
+         */
+        private final int end;
+
+        /**
+         * The number of quotes.
+         */
+        private int quotes;
+
+        /**
+         * The number of backslashes.
+         */
+        private int backslashes;
+
+        /**
+         * Construct the counter.
+         * @param theBuffer The file.
+         * @param theStart The first byte to count.
+         * @param theEnd The end of the bytes to count.
+         */
+        QuoteCounter(final ByteBuffer theBuffer, final int theStart, final int theEnd) {
+            this.buffer = theBuffer;
+            this.start = theStart;
+            this.end = theEnd;
+        }
+
+        /**
+         * Count the quotes and backslashes.
+         * @return Nothing, null.
+         */
+        @Override
+        public Object call() {
+            for (int i = this.start; i < this.end; i++) {
+                final byte b = this.buffer.get(i);
+                if (b == '"') {
+                    this.quotes++;
+                } else if (b == '\\') {
+                    this.backslashes++;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Parses one chunk into dictionary encoded columns.
+     */
+    private static class Chunk implements Callable<Object> {
+
+        /**
+         * Reads the records of the chunk.
+         */
+        private final RecordReader reader;
+
+        /**
+         * The number of columns.
+         */
+        private final int columnCount;
+
+        /**
+         * The number of rows read.
+         */
+        private int rowCount;
+
+        /**
+         * For each column, the code of each row.
+         */
+        private final int[][] codes;
+
+        /**
+         * For each column, the distinct values of the chunk.
+         */
+        private final Dictionary[] dictionaries;
+
+        /**
+         * For each column, the distinct strings of the chunk.
+         */
+        private final List<List<String>> strings = new ArrayList<List<String>>();
+
+        /**
+         * For each column, the numeric value of each distinct string.
+         */
+        private final double[][] numbers;
+
+        /**
+         * For each column, true for each distinct string that is a number.
+         */
+        private final boolean[][] isNumber;
+
+        /**
+         * Construct the chunk.
+         * @param theReader Reads the records of the chunk.
+         * @param theColumnCount The number of columns.
+         * @param theCharset The character set of the file.
+         */
+        Chunk(final RecordReader theReader, final int theColumnCount, final Charset theCharset) {
+            this.reader = theReader;
+            this.columnCount = theColumnCount;
+            this.codes = new int[theColumnCount][INITIAL_CAPACITY];
+            this.dictionaries = new Dictionary[theColumnCount];
+            this.numbers = new double[theColumnCount][];
+            this.isNumber = new boolean[theColumnCount][];
+            for (int i = 0; i < theColumnCount; i++) {
+                this.dictionaries[i] = new Dictionary(theCharset);
+            }
+        }
+
+        /**
+         * Read and encode the chunk, then parse the strings that are numbers.
+         * @return Nothing, null.
+         */
+        @Override
+        public Object call() {
+            final RecordReader r = this.reader;
+            while (r.next()) {
+                if (r.fieldCount <= 1) {
+                    continue;
+                } else if (r.fieldCount != this.columnCount) {
+                    throw new AIFHError("Found a CSV line with "
+                            + r.fieldCount + " columns, when expecting " + this.columnCount);
+                }
+                if (this.rowCount == this.codes[0].length) {
+                    for (int i = 0; i < this.columnCount; i++) {
+                        this.codes[i] = Arrays.copyOf(this.codes[i], this.rowCount * 2);
+                    }
+                }
+                for (int i = 0; i < this.columnCount; i++) {
+                    this.codes[i][this.rowCount] = r.fields == null
+                            ? this.dictionaries[i].encode(r.line, r.fieldStarts[i], r.fieldStarts[i + 1] - 1)
+                            : this.dictionaries[i].encode(r.fields[i]);
+                }
+                this.rowCount++;
+            }
+
+            // the same parse as DataSet, ParsePosition reports a failure without the cost of an exception
+            final NumberFormat numberFormatter = NumberFormat.getInstance(Locale.US);
+            final ParsePosition position = new ParsePosition(0);
+            for (int i = 0; i < this.columnCount; i++) {
+                final List<String> dictionary = this.dictionaries[i].getStrings();
+                this.strings.add(dictionary);
+                this.numbers[i] = new double[dictionary.size()];
+                this.isNumber[i] = new boolean[dictionary.size()];
+                for (int code = 0; code < dictionary.size(); code++) {
+                    position.setIndex(0);
+                    final Number number = numberFormatter.parse(dictionary.get(code), position);
+                    if (position.getIndex() != 0) {
+                        this.numbers[i][code] = number.doubleValue();
+                        this.isNumber[i][code] = true;
+                    }
+                }
+                this.dictionaries[i] = null;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * The number of threads.
+     */
+    private final int threadCount;
+
+    /**
+     * The character set of the files.
+     */
+    private final Charset charset = Charset.defaultCharset();
+
+    /**
+     * Construct a loader that uses one thread per processor.
+     */
+    public ParallelCSVLoader() {
+        this(0);
+    }
+
+    /**
+     * Construct the loader.
+     * @param theThreadCount The number of threads, or zero to use one per processor.
+     */
+    public ParallelCSVLoader(final int theThreadCount) {
+        this.threadCount = theThreadCount == 0 ? Runtime.getRuntime().availableProcessors() : theThreadCount;
+    }
+
+    /**
+     * Load a CSV file, the file is memory mapped.
+     * @param filename The filename.
+     * @return The data set read.
+     */
+    public DataSet load(final File filename) {
+        try (RandomAccessFile raf = new RandomAccessFile(filename, "r");
+             FileChannel channel = raf.getChannel()) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new AIFHError("The file is too large to map: " + filename);
+            }
+            return load(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException ex) {
+            throw new AIFHError(ex);
+        }
+    }
+
+    /**
+     * Load a CSV from an input stream.  The stream is read into memory before it is parsed.
+     * @param is The input stream.
+     * @return The data set read.
+     */
+    public DataSet load(final InputStream is) {
+        try {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final byte[] block = new byte[64 * 1024];
+            int length;
+            while ((length = is.read(block)) != -1) {
+                bytes.write(block, 0, length);
+            }
+            return load(ByteBuffer.wrap(bytes.toByteArray()));
+        } catch (IOException ex) {
+            throw new AIFHError(ex);
+        }
+    }
+
+    /**
+     * Run tasks, on the pool if there is one and more than one task.
+     * @param pool The thread pool, or null to run the tasks on the calling thread.
+     * @param tasks The tasks.
+     */
+    private static void run(final ForkJoinPool pool, final List<? extends Callable<Object>> tasks) {
+        if (pool == null || tasks.size() == 1) {
+            for (final Callable<Object> task : tasks) {
+                try {
+                    task.call();
+                } catch (AIFHError ex) {
+                    throw ex;
+                } catch (Exception ex) {
+                    throw new AIFHError(ex);
+                }
+            }
+            return;
+        }
+
+        try {
+            for (final Future<Object> future : pool.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            throw new AIFHError(ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof AIFHError) {
+                throw (AIFHError) ex.getCause();
+            }
+            throw new AIFHError(ex);
+        }
+    }
+
+    /**
+     * Split the file into chunks.  Each chunk starts at the start of a record, found by counting the quotes before
+     * it.
+     * @param pool The thread pool, null for a single chunk.
+     * @param buffer The file.
+     * @param start The start of the first chunk.
+     * @param chunkCount The number of chunks to split into.
+     * @return The chunk boundaries, chunk i is from element i up to element i+1.  Some chunks may be empty.
+     */
+    private static int[] split(final ForkJoinPool pool, final ByteBuffer buffer, final int start,
+                               final int chunkCount) {
+        final int end = buffer.limit();
+        final int[] result = new int[chunkCount + 1];
+        for (int i = 0; i <= chunkCount; i++) {
+            result[i] = start + (int) ((long) (end - start) * i / chunkCount);
+        }
+        if (chunkCount == 1) {
+            return result;
+        }
+
+        final List<QuoteCounter> counters = new ArrayList<QuoteCounter>();
+        for (int i = 0; i < chunkCount; i++) {
+            counters.add(new QuoteCounter(buffer, result[i], result[i + 1]));
+        }
+        run(pool, counters);
+        for (final QuoteCounter counter : counters) {
+            if (counter.backslashes > 0) {
+                return new int[]{start, end};
+            }
+        }
+
+        boolean inQuotes = false;
+        for (int i = 1; i < chunkCount; i++) {
+            inQuotes ^= (counters.get(i - 1).quotes & 1) == 1;
+            // move forward to the first line break that is not within quotes
+            boolean quoted = inQuotes;
+            int position = result[i];
+            while (position < end) {
+                final byte b = buffer.get(position++);
+                if (b == '"') {
+                    quoted = !quoted;
+                } else if (b == '\n' && !quoted) {
+                    break;
+                }
+            }
+            result[i] = Math.max(position, result[i - 1]);
+        }
+        return result;
+    }
+
+    /**
+     * Load a CSV from a buffer.
+     * @param buffer The file, from position zero up to its limit.
+     * @return The data set read.
+     */
+    private DataSet load(final ByteBuffer buffer) {
+        final RecordReader headerReader = new RecordReader(buffer, 0, buffer.limit(), this.charset);
+        if (!headerReader.next()) {
+            throw new AIFHError("The CSV file is empty.");
+        }
+        final String[] headers = headerReader.getFields();
+        final DataSet result = new DataSet(headers);
+
+        final int start = headerReader.getPosition();
+        final int chunkCount = (int) Math.max(1, Math.min((long) this.threadCount * CHUNKS_PER_THREAD,
+                (buffer.limit() - start) / MIN_CHUNK_SIZE));
+        final ForkJoinPool pool = chunkCount > 1 && this.threadCount > 1 ? new ForkJoinPool(this.threadCount) : null;
+        try {
+            final int[] bounds = split(pool, buffer, start, chunkCount);
+            final List<Chunk> chunks = new ArrayList<Chunk>();
+            for (int i = 0; i < bounds.length - 1; i++) {
+                chunks.add(new Chunk(new RecordReader(buffer, bounds[i], bounds[i + 1], this.charset),
+                        headers.length, this.charset));
+            }
+            run(pool, chunks);
+
+            for (final Chunk chunk : chunks) {
+                result.addEncoded(chunk.rowCount, chunk.codes, chunk.strings, chunk.numbers, chunk.isNumber);
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return The number of threads.
+     */
+    public int getThreadCount() {
+        return this.threadCount;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Artificial Intelligence for Humans
+ * Volume 3: Deep Learning and Neural Networks
+ * Java Version
+ * http://www.aifh.org
+ * http://www.jeffheaton.com
+ *
+ * Code repository:
+ * https://github.com/jeffheaton/aifh
+ *
+ * Copyright 2014-2015 by Jeff Heaton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For more information on Heaton Research copyrights, licenses
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package com.heatonresearch.aifh.benchmark;
+
+import com.heatonresearch.aifh.ann.BasicNetwork;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The latency of BasicNetwork.compute, for a single row.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ComputeBenchmark {
+
+    /**
+     * The topology to benchmark.
+     */
+    @Param({"XOR", "IRIS", "MNIST", "OTTO"})
+    public Topology topology;
+
+    /**
+     * The network.
+     */
+    private BasicNetwork network;
+
+    /**
+     * The input row.
+     */
+    private double[] input;
+
+    /**
+     * The output row.
+     */
+    private double[] output;
+
+    /**
+     * Create the network and the row to compute.
+     */
+    @Setup
+    public void setup() {
+        this.network = this.topology.createNetwork();
+        this.input = this.topology.createData().get(0).getInput();
+        this.output = new double[this.network.getOutputCount()];
+    }
+
+    /**
+     * Compute one row.
+     * @return The output, returned so that the calculation is not optimized away.
+     */
+    @Benchmark
+    public double[] compute() {
+        this.network.compute(this.input, this.output);
+        return this.output;
+    }
+}
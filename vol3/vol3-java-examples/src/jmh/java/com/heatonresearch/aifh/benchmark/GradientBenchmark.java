@@ -0,0 +1,143 @@
+/*
+ * Artificial Intelligence for Humans
+ * Volume 3: Deep Learning and Neural Networks
+ * Java Version
+ * http://www.aifh.org
+ * http://www.jeffheaton.com
+ *
+ * Code repository:
+ * https://github.com/jeffheaton/aifh
+ *
+ * Copyright 2014-2015 by Jeff Heaton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For more information on Heaton Research copyrights, licenses
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package com.heatonresearch.aifh.benchmark;
+
+import com.heatonresearch.aifh.ann.BasicNetwork;
+import com.heatonresearch.aifh.ann.FloatNetwork;
+import com.heatonresearch.aifh.ann.train.FloatGradientCalc;
+import com.heatonresearch.aifh.ann.train.GradientCalc;
+import com.heatonresearch.aifh.ann.train.GradientCalcOwner;
+import com.heatonresearch.aifh.ann.train.error.CrossEntropyErrorFunction;
+import com.heatonresearch.aifh.error.ErrorCalculationMSE;
+import com.heatonresearch.aifh.general.data.BasicData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The throughput of GradientCalc.process, one operation is a pass over the whole (random) training set of the
+ * topology.  Divide by the topology's row count for rows per second.  processFloat is the same pass with
+ * FloatGradientCalc, for comparing the single and double precision paths.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GradientBenchmark implements GradientCalcOwner {
+
+    /**
+     * The topology to benchmark.
+     */
+    @Param({"XOR", "IRIS", "MNIST", "OTTO"})
+    public Topology topology;
+
+    /**
+     * The gradient calculation.
+     */
+    private GradientCalc calc;
+
+    /**
+     * The single precision gradient calculation, of a copy of the same network.
+     */
+    private FloatGradientCalc floatCalc;
+
+    /**
+     * The error calculation.
+     */
+    private final ErrorCalculationMSE errorCalc = new ErrorCalculationMSE();
+
+    /**
+     * The training data.
+     */
+    private List<BasicData> data;
+
+    /**
+     * Create the network and the training data.
+     */
+    @Setup
+    public void setup() {
+        final BasicNetwork network = this.topology.createNetwork();
+        this.calc = new GradientCalc(network, new CrossEntropyErrorFunction(), this);
+        this.floatCalc = new FloatGradientCalc(new FloatNetwork(network), new CrossEntropyErrorFunction(), this);
+        this.data = this.topology.createData();
+    }
+
+    /**
+     * Calculate the gradients of the training set.
+     * @return The gradients, returned so that the calculation is not optimized away.
+     */
+    @Benchmark
+    public double[] process() {
+        this.calc.reset();
+        this.errorCalc.clear();
+        this.calc.process(this.errorCalc, this.data);
+        return this.calc.getGradients();
+    }
+
+    /**
+     * Calculate the gradients of the training set, in single precision.
+     * @return The gradients, returned so that the calculation is not optimized away.
+     */
+    @Benchmark
+    public float[] processFloat() {
+        this.floatCalc.reset();
+        this.errorCalc.clear();
+        this.floatCalc.process(this.errorCalc, this.data);
+        return this.floatCalc.getGradients();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getL1() {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getL2() {
+        return 0;
+    }
+}
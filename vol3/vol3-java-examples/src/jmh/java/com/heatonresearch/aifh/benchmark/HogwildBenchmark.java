@@ -0,0 +1,114 @@
+/*
+ * Artificial Intelligence for Humans
+ * Volume 3: Deep Learning and Neural Networks
+ * Java Version
+ * http://www.aifh.org
+ * http://www.jeffheaton.com
+ *
+ * Code repository:
+ * https://github.com/jeffheaton/aifh
+ *
+ * Copyright 2014-2015 by Jeff Heaton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For more information on Heaton Research copyrights, licenses
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package com.heatonresearch.aifh.benchmark;
+
+import com.heatonresearch.aifh.ann.BasicNetwork;
+import com.heatonresearch.aifh.ann.train.HogwildPropagation;
+import com.heatonresearch.aifh.general.data.BasicData;
+import com.heatonresearch.aifh.general.data.SparseBasicData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The time of one Hogwild epoch over the training set, for several thread counts.  The training set is mostly
+ * zeros, and is converted to sparse rows, since that is where the lock-free updates rarely collide.  Compare the
+ * thread counts to see how the trainer scales on this machine.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HogwildBenchmark {
+
+    /**
+     * The probability that an input is not zero.
+     */
+    public static final double DENSITY = 0.05;
+
+    /**
+     * The topology to benchmark.
+     */
+    @Param({"MNIST", "OTTO"})
+    public Topology topology;
+
+    /**
+     * The number of threads.
+     */
+    @Param({"1", "2", "4"})
+    public int threads;
+
+    /**
+     * The trainer.
+     */
+    private HogwildPropagation train;
+
+    /**
+     * Create the network and trainer.
+     */
+    @Setup
+    public void setup() {
+        final List<BasicData> data = SparseBasicData.convert(this.topology.createData(DENSITY));
+        final BasicNetwork network = this.topology.createNetwork();
+        this.train = new HogwildPropagation(network, data, 1e-4);
+        this.train.setThreadCount(this.threads);
+    }
+
+    /**
+     * Release the trainer's threads.
+     */
+    @TearDown
+    public void tearDown() {
+        this.train.finishTraining();
+    }
+
+    /**
+     * One Hogwild epoch.
+     * @return The error, returned so that the calculation is not optimized away.
+     */
+    @Benchmark
+    public double hogwild() {
+        this.train.iteration();
+        return this.train.getLastError();
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Artificial Intelligence for Humans
+ * Volume 3: Deep Learning and Neural Networks
+ * Java Version
+ * http://www.aifh.org
+ * http://www.jeffheaton.com
+ *
+ * Code repository:
+ * https://github.com/jeffheaton/aifh
+ *
+ * Copyright 2014-2015 by Jeff Heaton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For more information on Heaton Research copyrights, licenses
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package com.heatonresearch.aifh.benchmark;
+
+import com.heatonresearch.aifh.ann.BasicLayer;
+import com.heatonresearch.aifh.ann.BasicNetwork;
+import com.heatonresearch.aifh.ann.activation.ActivationReLU;
+import com.heatonresearch.aifh.ann.activation.ActivationSigmoid;
+import com.heatonresearch.aifh.ann.activation.ActivationSoftMax;
+import com.heatonresearch.aifh.ann.randomize.XaiverRandomizeNetwork;
+import com.heatonresearch.aifh.general.data.BasicData;
+import com.heatonresearch.aifh.randomize.GenerateRandom;
+import com.heatonresearch.aifh.randomize.MersenneTwisterGenerateRandom;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The network topologies that are benchmarked.  Each matches the network of one of the examples, and is trained on
+ * random data of the same shape, so that the benchmarks do not need any data files.
+ */
+public enum Topology {
+    /**
+     * LearnXORBackprop, 2-5-1 sigmoid.
+     */
+    XOR(4, 2, new int[] {5}, 1),
+
+    /**
+     * LearnIrisBackprop, 4-20-3 ReLU/softmax.
+     */
+    IRIS(150, 4, new int[] {20}, 3),
+
+    /**
+     * LearnDigitsBackprop, 784-100-50-25-10 ReLU/softmax.
+     */
+    MNIST(1000, 784, new int[] {100, 50, 25}, 10),
+
+    /**
+     * KaggleOtto, 93-256-128-64-9 ReLU/softmax.
+     */
+    OTTO(1000, 93, new int[] {256, 128, 64}, 9);
+
+    /**
+     * The number of training rows.
+     */
+    private final int rowCount;
+
+    /**
+     * The number of inputs.
+     */
+    private final int inputCount;
+
+    /**
+     * The number of neurons in each hidden layer.
+     */
+    private final int[] hidden;
+
+    /**
+     * The number of outputs.
+     */
+    private final int outputCount;
+
+    /**
+     * Construct a topology.
+     * @param theRowCount The number of training rows.
+     * @param theInputCount The number of inputs.
+     * @param theHidden The number of neurons in each hidden layer.
+     * @param theOutputCount The number of outputs.
+     */
+    Topology(final int theRowCount, final int theInputCount, final int[] theHidden, final int theOutputCount) {
+        this.rowCount = theRowCount;
+        this.inputCount = theInputCount;
+        this.hidden = theHidden;
+        this.outputCount = theOutputCount;
+    }
+
+    /**
+     * Create the network, with random weights.  The same seed is used every time, so each run benchmarks the same
+     * network.
+     * @return The network.
+     */
+    public BasicNetwork createNetwork() {
+        final boolean xor = this == XOR;
+        final BasicNetwork network = new BasicNetwork();
+        network.addLayer(new BasicLayer(null, true, this.inputCount));
+        for (int count : this.hidden) {
+            network.addLayer(new BasicLayer(xor ? new ActivationSigmoid() : new ActivationReLU(), true, count));
+        }
+        network.addLayer(new BasicLayer(xor ? new ActivationSigmoid() : new ActivationSoftMax(), false,
+                this.outputCount));
+        network.finalizeStructure();
+
+        final XaiverRandomizeNetwork randomize = new XaiverRandomizeNetwork();
+        randomize.setRnd(new MersenneTwisterGenerateRandom(1));
+        randomize.randomize(network);
+        return network;
+    }
+
+    /**
+     * Create random training data for this topology, each row has one of the outputs set.
+     * @return The training data.
+     */
+    public List<BasicData> createData() {
+        return createData(1.0);
+    }
+
+    /**
+     * Create random training data for this topology, where most of the inputs may be zero (i.e. bag of words
+     * data).  Each row has one of the outputs set.
+     * @param density The probability that an input is not zero.
+     * @return The training data.
+     */
+    public List<BasicData> createData(final double density) {
+        final GenerateRandom rnd = new MersenneTwisterGenerateRandom(2);
+        final List<BasicData> result = new ArrayList<>(this.rowCount);
+        for (int i = 0; i < this.rowCount; i++) {
+            final BasicData item = new BasicData(this.inputCount, this.outputCount);
+            for (int j = 0; j < this.inputCount; j++) {
+                if (density >= 1.0 || rnd.nextDouble() < density) {
+                    item.getInput()[j] = rnd.nextDouble();
+                }
+            }
+            item.getIdeal()[rnd.nextInt(this.outputCount)] = 1.0;
+            result.add(item);
+        }
+        return result;
+    }
+}
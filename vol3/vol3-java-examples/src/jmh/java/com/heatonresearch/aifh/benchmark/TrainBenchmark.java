@@ -0,0 +1,123 @@
+/*
+ * Artificial Intelligence for Humans
+ * Volume 3: Deep Learning and Neural Networks
+ * Java Version
+ * http://www.aifh.org
+ * http://www.jeffheaton.com
+ *
+ * Code repository:
+ * https://github.com/jeffheaton/aifh
+ *
+ * Copyright 2014-2015 by Jeff Heaton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For more information on Heaton Research copyrights, licenses
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package com.heatonresearch.aifh.benchmark;
+
+import com.heatonresearch.aifh.ann.BasicNetwork;
+import com.heatonresearch.aifh.ann.train.BackPropagation;
+import com.heatonresearch.aifh.ann.train.ResilientPropagation;
+import com.heatonresearch.aifh.general.data.BasicData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The time of a full training iteration (gradients and weight update) over the whole training set, for
+ * backpropagation and resilient propagation.  Both trainers use a single thread, so that results are comparable
+ * between machines.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrainBenchmark {
+
+    /**
+     * The topology to benchmark.
+     */
+    @Param({"XOR", "IRIS", "MNIST", "OTTO"})
+    public Topology topology;
+
+    /**
+     * The backpropagation trainer.
+     */
+    private BackPropagation backProp;
+
+    /**
+     * The resilient propagation trainer, it trains its own copy of the network.
+     */
+    private ResilientPropagation rprop;
+
+    /**
+     * Create the networks and trainers.
+     */
+    @Setup
+    public void setup() {
+        final List<BasicData> data = this.topology.createData();
+
+        final BasicNetwork backPropNetwork = this.topology.createNetwork();
+        this.backProp = new BackPropagation(backPropNetwork, data, 1e-4, 0.9);
+        this.backProp.setBatchSize(0);
+
+        final BasicNetwork rpropNetwork = this.topology.createNetwork();
+        this.rprop = new ResilientPropagation(rpropNetwork, data);
+    }
+
+    /**
+     * Release the trainers.
+     */
+    @TearDown
+    public void tearDown() {
+        this.backProp.finishTraining();
+        this.rprop.finishTraining();
+    }
+
+    /**
+     * One backpropagation iteration.
+     * @return The error, returned so that the calculation is not optimized away.
+     */
+    @Benchmark
+    public double backPropagation() {
+        this.backProp.iteration();
+        return this.backProp.getLastError();
+    }
+
+    /**
+     * One resilient propagation iteration.
+     * @return The error, returned so that the calculation is not optimized away.
+     */
+    @Benchmark
+    public double resilientPropagation() {
+        this.rprop.iteration();
+        return this.rprop.getLastError();
+    }
+}
@@ -96,6 +96,14 @@ public class BasicLayer extends WeightedLayer {
         return product;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int[] getDimensionCounts() {
+        return this.count;
+    }
+
     /**
      * @return The total number of neurons on this layer, includes context, bias
      *         and regular.
@@ -117,7 +125,7 @@ public class BasicLayer extends WeightedLayer {
      */
     @Override
     public void computeLayer() {
-        Layer prev = getOwner().getPreviousLayer(this);
+        Layer prev = getPreviousLayer();
         computeLayer(0,0, prev.getTotalCount(), getCount());
     }
 
@@ -126,12 +134,30 @@ public class BasicLayer extends WeightedLayer {
      */
     @Override
     public void computeGradient(GradientCalc calc) {
-        final Layer prev = getOwner().getPreviousLayer(this);
+        final Layer prev = getPreviousLayer();
         final int fromLayerSize = prev.getTotalCount();
         final int toLayerSize = getCount();
         this.computeGradient(calc,0,0,fromLayerSize,toLayerSize);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void computeLayer(BatchBuffers batch) {
+        Layer prev = getPreviousLayer();
+        computeLayer(batch, prev.getTotalCount(), getCount());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void computeGradient(GradientCalc calc, BatchBuffers batch) {
+        final Layer prev = getPreviousLayer();
+        computeGradient(calc, batch, prev.getTotalCount(), getCount());
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -81,6 +81,11 @@ public class BasicNetwork implements RegressionAlgorithm, ClassificationAlgorith
      */
     private boolean networkTraining;
 
+    /**
+     * The precompiled plan used to compute a single row, built when the structure is finalized.
+     */
+    private ExecutionPlan plan;
+
     /**
      * Default constructor.
      */
@@ -89,7 +94,8 @@ public class BasicNetwork implements RegressionAlgorithm, ClassificationAlgorith
 
 
     /**
-     * Calculate the output for the given input.
+     * Calculate the output for the given input.  The layer outputs are kept in this network, so this method must
+     * not be called by several threads at once.  Use newSession to query a network from several threads.
      *
      * @param input
      *            The input.
@@ -97,20 +103,28 @@ public class BasicNetwork implements RegressionAlgorithm, ClassificationAlgorith
      *            Output will be placed here.
      */
     public void compute(final double[] input, final double[] output) {
-        clearOutput();
-
-        final int sourceIndex = getNeuronCount()
-                - this.layers.get(0).getTotalCount();
-
-        System.arraycopy(input, 0, this.layerOutput, sourceIndex,
-                this.inputCount);
+        this.plan.compute(input, output);
+    }
 
+    /**
+     * Calculate the output for every row of a mini-batch.  The input must already have been placed in the batch
+     * with BatchBuffers.setInput.  This method only reads the weights, the batch holds all other state.
+     *
+     * @param batch The mini-batch buffers, the output is placed here.
+     */
+    public void compute(final BatchBuffers batch) {
         for (int i = 1; i<this.layers.size(); i++) {
-            this.layers.get(i).computeLayer();
+            this.layers.get(i).computeLayer(batch);
         }
+    }
 
-
-        System.arraycopy(this.layerOutput, 0, output, 0, this.outputCount);
+    /**
+     * Create a new inference session.  A session only reads the weights of this network, so each thread can query
+     * this network through its own session.
+     * @return A new inference session.
+     */
+    public InferenceSession newSession() {
+        return new InferenceSession(this);
     }
 
     /**
@@ -257,6 +271,11 @@ public class BasicNetwork implements RegressionAlgorithm, ClassificationAlgorith
     public void finalizeStructure() {
         final int layerCount = this.layers.size();
 
+        // connect the layers first, the size of some layers (i.e. convolution) depends on the layer before
+        for (int i = 0; i < layerCount; i++) {
+            this.layers.get(i).setPreviousLayer(i > 0 ? this.layers.get(i - 1) : null);
+        }
+
         this.inputCount = this.layers.get(0).getCount();
         this.outputCount = this.layers.get(layerCount - 1).getCount();
 
@@ -275,6 +294,7 @@ public class BasicNetwork implements RegressionAlgorithm, ClassificationAlgorith
         this.layerSums = new double[counts.getNeuronCount()];
 
         clearOutput();
+        this.plan = new ExecutionPlan(this);
     }
 
     /**
@@ -334,6 +354,13 @@ public class BasicNetwork implements RegressionAlgorithm, ClassificationAlgorith
         random.randomize(this);
     }
 
+    /**
+     * @return The precompiled plan used to compute a single row.
+     */
+    public ExecutionPlan getExecutionPlan() {
+        return this.plan;
+    }
+
     /**
      * @return The layers of the neural network.
      */
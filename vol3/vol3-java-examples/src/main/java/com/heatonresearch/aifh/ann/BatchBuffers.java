@@ -0,0 +1,385 @@
+/*
+ * Artificial Intelligence for Humans
+ * Volume 3: Deep Learning and Neural Networks
+ * Java Version
+ * http://www.aifh.org
+ * http://www.jeffheaton.com
+ *
+ * Code repository:
+ * https://github.com/jeffheaton/aifh
+ *
+ * Copyright 2014-2015 by Jeff Heaton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For more information on Heaton Research copyrights, licenses
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package com.heatonresearch.aifh.ann;
+
+import com.heatonresearch.aifh.AIFHError;
+import com.heatonresearch.aifh.general.data.BasicData;
+import com.heatonresearch.aifh.general.data.DataSource;
+import com.heatonresearch.aifh.general.data.DataSourceList;
+import com.heatonresearch.aifh.general.data.SparseBasicData;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Holds the layer outputs, sums and deltas for a mini-batch of rows that are pushed through a BasicNetwork
+ * together.  Each row is laid out exactly like the network's own layerOutput/layerSums vectors, and the rows are
+ * stored one after the other in a single flat array.  The neurons of row r therefore start at r*getStride().
+ *
+ * Processing several rows at once allows each layer to stream its weights from memory once per batch, rather than
+ * once per row.  The network weights are only read, so the network itself is not modified by a batch calculation.
+ */
+public class BatchBuffers {
+
+    /**
+     * The default number of rows, this is small enough that the activations of a batch stay in cache.
+     */
+    public static final int DEFAULT_CAPACITY = 64;
+
+    /**
+     * The network that these buffers were sized for.
+     */
+    private final BasicNetwork network;
+
+    /**
+     * The maximum number of rows.
+     */
+    private final int capacity;
+
+    /**
+     * The distance between the start of two rows, this is the neuron count of the network.
+     */
+    private final int stride;
+
+    /**
+     * The index of the input neurons within a row.
+     */
+    private final int inputIndex;
+
+    /**
+     * The outputs from each of the neurons, for every row.
+     */
+    private final double[] layerOutput;
+
+    /**
+     * The sums from each of the neurons, before the activation function, for every row.
+     */
+    private final double[] layerSums;
+
+    /**
+     * The deltas from each of the neurons, for every row.  Only used for training.
+     */
+    private final double[] layerDelta;
+
+    /**
+     * The number of rows currently in use.
+     */
+    private int rowCount;
+
+    /**
+     * Scratch space for layers that lower their calculation to a matrix multiply (i.e. convolution), created on
+     * first use.
+     */
+    private double[] columns;
+
+    /**
+     * Scratch space for the deltas of the columns, created on first use.
+     */
+    private double[] columnDelta;
+
+    /**
+     * For each neuron of each row, the neuron (within the same row) its value was taken from.  Used by layers that
+     * select rather than sum their inputs (i.e. max pooling), created on first use.
+     */
+    private int[] layerSource;
+
+    /**
+     * For each row, the sparse input that was placed in it, or null if the row was given a dense input.
+     */
+    private final SparseBasicData[] sparseInput;
+
+    /**
+     * For each row, the ideal of the element that was placed in it by setRow.
+     */
+    private final double[][] ideal;
+
+    /**
+     * The ideals of rows that were read straight from a data source, created on first use.
+     */
+    private double[][] sourceIdeal;
+
+    /**
+     * Construct the batch buffers.
+     * @param theNetwork The network, must have been finalized.
+     * @param theCapacity The maximum number of rows.
+     */
+    public BatchBuffers(final BasicNetwork theNetwork, final int theCapacity) {
+        if (theCapacity < 1) {
+            throw new AIFHError("Batch capacity must be at least 1.");
+        }
+        this.network = theNetwork;
+        this.capacity = theCapacity;
+        this.stride = theNetwork.getNeuronCount();
+        this.inputIndex = this.stride - theNetwork.getLayers().get(0).getTotalCount();
+        this.layerOutput = new double[this.capacity * this.stride];
+        this.layerSums = new double[this.capacity * this.stride];
+        this.layerDelta = new double[this.capacity * this.stride];
+        this.sparseInput = new SparseBasicData[this.capacity];
+        this.ideal = new double[this.capacity][];
+
+        // Fill in the bias values, the layers never write to the bias neurons.
+        final int layerCount = theNetwork.getLayers().size();
+        for (int row = 0; row < this.capacity; row++) {
+            int index = row * this.stride;
+            for (int i = 0; i < layerCount; i++) {
+                Layer layer = theNetwork.getLayers().get(layerCount - 1 - i);
+                index += layer.getCount();
+                if (layer.hasBias()) {
+                    this.layerOutput[index++] = 1.0;
+                }
+            }
+        }
+    }
+
+    /**
+     * Copy an input vector into a row.
+     * @param row The row.
+     * @param input The input vector.
+     */
+    public void setInput(final int row, final double[] input) {
+        System.arraycopy(input, 0, this.layerOutput, row * this.stride + this.inputIndex,
+                this.network.getInputCount());
+        this.sparseInput[row] = null;
+    }
+
+    /**
+     * Place a training element's input into a row.  Sparse elements are placed with setSparseInput, so that their
+     * dense copy is never built.
+     * @param row The row.
+     * @param element The training element.
+     */
+    public void setInput(final int row, final BasicData element) {
+        if (element instanceof SparseBasicData) {
+            setSparseInput(row, (SparseBasicData) element);
+        } else {
+            setInput(row, element.getInput());
+        }
+    }
+
+    /**
+     * Place an element of a training set into a row, and remember its ideal (see getIdeal).  When the training set
+     * is a DataSourceList, the row is read straight from its source, and the element's BasicData is never built.
+     * @param row The row.
+     * @param elements The training set.
+     * @param index The index of the element.
+     */
+    public void setRow(final int row, final List<BasicData> elements, final int index) {
+        if (elements instanceof DataSourceList) {
+            final DataSourceList list = (DataSourceList) elements;
+            final DataSource source = list.getSource();
+            final int sourceIndex = list.getSourceIndex(index);
+            if (this.sourceIdeal == null || this.sourceIdeal[0].length != source.getIdealCount()) {
+                this.sourceIdeal = new double[this.capacity][source.getIdealCount()];
+            }
+            setInput(row, source, sourceIndex);
+            source.readIdeal(sourceIndex, this.sourceIdeal[row], 0);
+            this.ideal[row] = this.sourceIdeal[row];
+        } else {
+            final BasicData element = elements.get(index);
+            setInput(row, element);
+            this.ideal[row] = element.getIdeal();
+        }
+    }
+
+    /**
+     * @param row The row.
+     * @return The ideal of the element placed in the row by setRow.
+     */
+    public double[] getIdeal(final int row) {
+        return this.ideal[row];
+    }
+
+    /**
+     * Read the input of a data source's row straight into a row of the buffers, no BasicData (or other copy) of
+     * the row is built.
+     * @param row The row.
+     * @param source The data source.
+     * @param index The row of the data source.
+     */
+    public void setInput(final int row, final DataSource source, final int index) {
+        if (source.getInputCount() != this.network.getInputCount()) {
+            throw new AIFHError("Invalid input count(" + source.getInputCount()
+                    + "), this network is designed for: " + this.network.getInputCount());
+        }
+        source.readInput(index, this.layerOutput, row * this.stride + this.inputIndex);
+        this.sparseInput[row] = null;
+    }
+
+    /**
+     * Place a sparse input into a row.  Only the non-zero inputs are written, the previous input of the row is
+     * cleared first (again, only its non-zero inputs, if it was also sparse).  The row's input neurons hold the
+     * complete input afterwards, so layers without a sparse path still see the correct values.
+     * @param row The row.
+     * @param input The sparse input.
+     */
+    public void setSparseInput(final int row, final SparseBasicData input) {
+        if (input.getInputCount() != this.network.getInputCount()) {
+            throw new AIFHError("Invalid input count(" + input.getInputCount()
+                    + "), this network is designed for: " + this.network.getInputCount());
+        }
+
+        final int index = row * this.stride + this.inputIndex;
+        final SparseBasicData previous = this.sparseInput[row];
+        if (previous == null) {
+            Arrays.fill(this.layerOutput, index, index + this.network.getInputCount(), 0);
+        } else {
+            for (int i : previous.getIndexes()) {
+                this.layerOutput[index + i] = 0;
+            }
+        }
+
+        input.scatter(this.layerOutput, index);
+        this.sparseInput[row] = input;
+    }
+
+    /**
+     * @param row The row.
+     * @return The sparse input of the row, or null if the row was given a dense input.
+     */
+    public SparseBasicData getSparseInput(final int row) {
+        return this.sparseInput[row];
+    }
+
+    /**
+     * @return True, if any of the rows in use were given a sparse input.
+     */
+    public boolean hasSparseInput() {
+        for (int row = 0; row < this.rowCount; row++) {
+            if (this.sparseInput[row] != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Copy the output of a row into an output vector.
+     * @param row The row.
+     * @param output The output vector.
+     */
+    public void getOutput(final int row, final double[] output) {
+        System.arraycopy(this.layerOutput, row * this.stride, output, 0, this.network.getOutputCount());
+    }
+
+    /**
+     * @return The network that these buffers were sized for.
+     */
+    public BasicNetwork getNetwork() {
+        return this.network;
+    }
+
+    /**
+     * @return The maximum number of rows.
+     */
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * @return The distance between the start of two rows.
+     */
+    public int getStride() {
+        return this.stride;
+    }
+
+    /**
+     * @return The number of rows currently in use.
+     */
+    public int getRowCount() {
+        return this.rowCount;
+    }
+
+    /**
+     * Set the number of rows currently in use.
+     * @param theRowCount The number of rows, no more than the capacity.
+     */
+    public void setRowCount(final int theRowCount) {
+        if (theRowCount < 0 || theRowCount > this.capacity) {
+            throw new AIFHError("Invalid row count(" + theRowCount + "), capacity is: " + this.capacity);
+        }
+        this.rowCount = theRowCount;
+    }
+
+    /**
+     * @return The outputs from each of the neurons, for every row.
+     */
+    public double[] getLayerOutput() {
+        return this.layerOutput;
+    }
+
+    /**
+     * @return The sums from each of the neurons, for every row.
+     */
+    public double[] getLayerSums() {
+        return this.layerSums;
+    }
+
+    /**
+     * @return The deltas from each of the neurons, for every row.
+     */
+    public double[] getLayerDelta() {
+        return this.layerDelta;
+    }
+
+    /**
+     * Get the column scratch space, used by layers that lower their calculation to a matrix multiply.  The contents
+     * are not kept between layers.
+     * @param size The number of elements needed.
+     * @return The scratch space, at least size elements long.
+     */
+    public double[] getColumns(final int size) {
+        if (this.columns == null || this.columns.length < size) {
+            this.columns = new double[size];
+        }
+        return this.columns;
+    }
+
+    /**
+     * Get the column delta scratch space, the backward counterpart of getColumns.
+     * @param size The number of elements needed.
+     * @return The scratch space, at least size elements long.
+     */
+    public double[] getColumnDelta(final int size) {
+        if (this.columnDelta == null || this.columnDelta.length < size) {
+            this.columnDelta = new double[size];
+        }
+        return this.columnDelta;
+    }
+
+    /**
+     * @return For each neuron of each row, the neuron (within the same row) its value was taken from.  This is laid
+     * out the same as getLayerOutput.  Only the layers that select their inputs (i.e. max pooling) fill it in.
+     */
+    public int[] getLayerSource() {
+        if (this.layerSource == null) {
+            this.layerSource = new int[this.capacity * this.stride];
+        }
+        return this.layerSource;
+    }
+}
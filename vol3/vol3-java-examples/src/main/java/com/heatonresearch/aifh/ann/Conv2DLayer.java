@@ -0,0 +1,464 @@
+/*
+ * Artificial Intelligence for Humans
+ * Volume 3: Deep Learning and Neural Networks
+ * Java Version
+ * http://www.aifh.org
+ * http://www.jeffheaton.com
+ *
+ * Code repository:
+ * https://github.com/jeffheaton/aifh
+ *
+ * Copyright 2014-2015 by Jeff Heaton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For more information on Heaton Research copyrights, licenses
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package com.heatonresearch.aifh.ann;
+
+import com.heatonresearch.aifh.AIFHError;
+import com.heatonresearch.aifh.ann.activation.ActivationFunction;
+import com.heatonresearch.aifh.ann.train.GradientCalc;
+import com.heatonresearch.aifh.randomize.GenerateRandom;
+
+import java.util.Arrays;
+
+/**
+ * A 2D convolution layer, used for convolutional neural networks (CNN/LeNET).  The previous layer must be three
+ * dimensional: rows, columns and depth.  The neurons of a three dimensional layer are stored one depth plane after
+ * another, each plane row by row.  This is the same order that MNISTReader uses for its depth.
+ *
+ * Each filter covers filterRows x filterColumns neurons, across the full depth of the previous layer, and produces
+ * one depth plane of this layer.  The filters share their weights across every position, so each filter has only
+ * one row of weights (and one bias weight, if the previous layer has bias).
+ *
+ * The convolution is lowered to a matrix multiply (im2col).  For each row, the inputs covered by the filter at each
+ * output position are copied into one row of a column matrix.  This matrix is then multiplied by the filter
+ * weights using the same blocked kernel as the fully connected layers (WeightedLayer.multiply).
+ *
+ * LeCun, Y., Bottou, L., Bengio, Y., & Haffner, P. (1998). Gradient-based learning applied to document recognition.
+ * Proceedings of the IEEE, 86(11), 2278-2324.
+ */
+public class Conv2DLayer extends WeightedLayer {
+
+    /**
+     * The number of filters, this is the depth of this layer.
+     */
+    private final int numFilters;
+
+    /**
+     * The number of rows in each filter.
+     */
+    private final int filterRows;
+
+    /**
+     * The number of columns in each filter.
+     */
+    private final int filterColumns;
+
+    /**
+     * The number of zero neurons added around each edge of the input.
+     */
+    private int padding;
+
+    /**
+     * The distance the filter moves between output positions.
+     */
+    private int stride = 1;
+
+    /**
+     * The number of rows in the input.
+     */
+    private int inRows;
+
+    /**
+     * The number of columns in the input.
+     */
+    private int inColumns;
+
+    /**
+     * The depth of the input.
+     */
+    private int inDepth;
+
+    /**
+     * The number of output rows.
+     */
+    private int outRows;
+
+    /**
+     * The number of output columns.
+     */
+    private int outColumns;
+
+    /**
+     * The number of weights in each filter, including bias.
+     */
+    private int filterSize;
+
+    /**
+     * The column matrix for computeLayer/computeGradient without a batch, created on first use.
+     */
+    private double[] columns;
+
+    /**
+     * The column deltas for computeGradient without a batch, created on first use.
+     */
+    private double[] columnDelta;
+
+    /**
+     * Construct a 2D convolution layer.
+     * @param theActivation The activation function.
+     * @param theNumFilters The number of filters.
+     * @param theFilterRows The rows in each filter.
+     * @param theFilterColumns The columns in each filter.
+     */
+    public Conv2DLayer(final ActivationFunction theActivation, final int theNumFilters, final int theFilterRows,
+                       final int theFilterColumns) {
+        if (theNumFilters < 1 || theFilterRows < 1 || theFilterColumns < 1) {
+            throw new AIFHError("The filter count and filter size must be at least 1.");
+        }
+        setActivation(theActivation);
+        this.numFilters = theNumFilters;
+        this.filterRows = theFilterRows;
+        this.filterColumns = theFilterColumns;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setPreviousLayer(final Layer thePreviousLayer) {
+        super.setPreviousLayer(thePreviousLayer);
+        if (thePreviousLayer == null) {
+            throw new AIFHError("A convolution layer can not be the input layer.");
+        }
+        final int[] dim = thePreviousLayer.getDimensionCounts();
+        if (dim.length != 3) {
+            throw new AIFHError("The layer before a convolution layer must have 3 dimensions.");
+        }
+
+        this.inRows = dim[0];
+        this.inColumns = dim[1];
+        this.inDepth = dim[2];
+        this.outRows = (this.inRows - this.filterRows + 2 * this.padding) / this.stride + 1;
+        this.outColumns = (this.inColumns - this.filterColumns + 2 * this.padding) / this.stride + 1;
+        if (this.outRows < 1 || this.outColumns < 1) {
+            throw new AIFHError("The convolution filter is larger than its input.");
+        }
+        this.filterSize = this.inDepth * this.filterRows * this.filterColumns
+                + (thePreviousLayer.hasBias() ? 1 : 0);
+        this.columns = null;
+        this.columnDelta = null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getWeightCount() {
+        return this.numFilters * this.filterSize;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getCount() {
+        return this.outRows * this.outColumns * this.numFilters;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getTotalCount() {
+        return getCount() + 1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int[] getDimensionCounts() {
+        return new int[] {this.outRows, this.outColumns, this.numFilters};
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasBias() {
+        return true;
+    }
+
+    /**
+     * Copy the inputs covered by the filter at each output position into one row of the column matrix.  Positions
+     * that fall in the padding are zero.  The last column is the bias neuron, if the previous layer has one.
+     * @param input The previous layer's outputs.
+     * @param inputIndex The index of the previous layer's first neuron.
+     * @param cols The column matrix, one row of filterSize values for each output position.
+     */
+    private void im2col(final double[] input, final int inputIndex, final double[] cols) {
+        final boolean bias = getPreviousLayer().hasBias();
+        final int biasIndex = inputIndex + getPreviousLayer().getCount();
+        int c = 0;
+
+        for (int r = 0; r < this.outRows; r++) {
+            for (int col = 0; col < this.outColumns; col++) {
+                final int top = r * this.stride - this.padding;
+                final int left = col * this.stride - this.padding;
+                for (int d = 0; d < this.inDepth; d++) {
+                    for (int i = 0; i < this.filterRows; i++) {
+                        final int ir = top + i;
+                        final boolean rowInside = ir >= 0 && ir < this.inRows;
+                        final int base = inputIndex + (d * this.inRows + ir) * this.inColumns;
+                        for (int j = 0; j < this.filterColumns; j++) {
+                            final int ic = left + j;
+                            cols[c++] = (rowInside && ic >= 0 && ic < this.inColumns) ? input[base + ic] : 0;
+                        }
+                    }
+                }
+                if (bias) {
+                    cols[c++] = input[biasIndex];
+                }
+            }
+        }
+    }
+
+    /**
+     * The reverse of im2col, add the column deltas back into the deltas of the previous layer's neurons.
+     * @param cols The column deltas.
+     * @param delta The deltas.
+     * @param deltaIndex The index of the previous layer's first neuron.
+     */
+    private void col2im(final double[] cols, final double[] delta, final int deltaIndex) {
+        final boolean bias = getPreviousLayer().hasBias();
+        final int biasIndex = deltaIndex + getPreviousLayer().getCount();
+        int c = 0;
+
+        for (int r = 0; r < this.outRows; r++) {
+            for (int col = 0; col < this.outColumns; col++) {
+                final int top = r * this.stride - this.padding;
+                final int left = col * this.stride - this.padding;
+                for (int d = 0; d < this.inDepth; d++) {
+                    for (int i = 0; i < this.filterRows; i++) {
+                        final int ir = top + i;
+                        final boolean rowInside = ir >= 0 && ir < this.inRows;
+                        final int base = deltaIndex + (d * this.inRows + ir) * this.inColumns;
+                        for (int j = 0; j < this.filterColumns; j++, c++) {
+                            final int ic = left + j;
+                            if (rowInside && ic >= 0 && ic < this.inColumns) {
+                                delta[base + ic] += cols[c];
+                            }
+                        }
+                    }
+                }
+                if (bias) {
+                    delta[biasIndex] += cols[c++];
+                }
+            }
+        }
+    }
+
+    /**
+     * Compute this layer for one row.
+     * @param layerOutput The layer outputs.
+     * @param layerSums The layer sums.
+     * @param rowIndex The index of the row's first neuron.
+     * @param cols The column matrix scratch space.
+     */
+    private void computeRow(final double[] layerOutput, final double[] layerSums, final int rowIndex,
+                            final double[] cols) {
+        final int positions = this.outRows * this.outColumns;
+        final int toIndex = rowIndex + getNeuronIndex();
+
+        im2col(layerOutput, rowIndex + getPreviousLayer().getNeuronIndex(), cols);
+        // each output position is a row of the product, each filter writes one depth plane
+        multiply(getOwner().getWeights(), getWeightIndex(), cols, 0, this.filterSize,
+                layerSums, layerOutput, toIndex, 1, positions, positions, this.filterSize, this.numFilters);
+        getActivation().activationFunction(layerOutput, toIndex, getCount());
+    }
+
+    /**
+     * Compute the gradients for one row.
+     * @param gradients The gradients.
+     * @param layerOutput The layer outputs.
+     * @param layerSums The layer sums.
+     * @param layerDelta The layer deltas.
+     * @param rowIndex The index of the row's first neuron.
+     * @param cols The column matrix scratch space.
+     * @param colDelta The column delta scratch space.
+     */
+    private void computeGradientRow(final double[] gradients, final double[] layerOutput, final double[] layerSums,
+                                    final double[] layerDelta, final int rowIndex,
+                                    final double[] cols, final double[] colDelta) {
+        final Layer prev = getPreviousLayer();
+        final int positions = this.outRows * this.outColumns;
+        final int fromIndex = rowIndex + prev.getNeuronIndex();
+        final int fromLayerSize = prev.getTotalCount();
+        final ActivationFunction activation = getActivation();
+
+        im2col(layerOutput, fromIndex, cols);
+        Arrays.fill(colDelta, 0, positions * this.filterSize, 0);
+        multiplyGradient(getOwner().getWeights(), gradients, getWeightIndex(), cols, colDelta, 0, this.filterSize,
+                layerDelta, rowIndex + getNeuronIndex(), 1, positions, positions, this.filterSize, this.numFilters);
+
+        Arrays.fill(layerDelta, fromIndex, fromIndex + fromLayerSize, 0);
+        col2im(colDelta, layerDelta, fromIndex);
+
+        for (int y = fromIndex; y < fromIndex + fromLayerSize; y++) {
+            layerDelta[y] *= activation.derivativeFunction(layerSums[y], layerOutput[y]);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void computeLayer() {
+        if (this.columns == null) {
+            this.columns = new double[this.outRows * this.outColumns * this.filterSize];
+        }
+        computeRow(getOwner().getLayerOutput(), getOwner().getLayerSums(), 0, this.columns);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void computeGradient(final GradientCalc calc) {
+        final int size = this.outRows * this.outColumns * this.filterSize;
+        if (this.columns == null) {
+            this.columns = new double[size];
+        }
+        if (this.columnDelta == null) {
+            this.columnDelta = new double[size];
+        }
+        computeGradientRow(calc.getGradients(), getOwner().getLayerOutput(), getOwner().getLayerSums(),
+                calc.getLayerDelta(), 0, this.columns, this.columnDelta);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void computeLayer(final BatchBuffers batch) {
+        final double[] cols = batch.getColumns(this.outRows * this.outColumns * this.filterSize);
+        for (int row = 0; row < batch.getRowCount(); row++) {
+            computeRow(batch.getLayerOutput(), batch.getLayerSums(), row * batch.getStride(), cols);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void computeGradient(final GradientCalc calc, final BatchBuffers batch) {
+        final int size = this.outRows * this.outColumns * this.filterSize;
+        final double[] cols = batch.getColumns(size);
+        final double[] colDelta = batch.getColumnDelta(size);
+        for (int row = 0; row < batch.getRowCount(); row++) {
+            computeGradientRow(calc.getGradients(), batch.getLayerOutput(), batch.getLayerSums(),
+                    batch.getLayerDelta(), row * batch.getStride(), cols, colDelta);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void trainingBatch(final GenerateRandom rnd) {
+        // Nothing needs to be done!
+    }
+
+    /**
+     * @return The number of filters.
+     */
+    public int getNumFilters() {
+        return this.numFilters;
+    }
+
+    /**
+     * @return The number of rows in each filter.
+     */
+    public int getFilterRows() {
+        return this.filterRows;
+    }
+
+    /**
+     * @return The number of columns in each filter.
+     */
+    public int getFilterColumns() {
+        return this.filterColumns;
+    }
+
+    /**
+     * @return The number of weights in each filter, including bias.
+     */
+    public int getFilterSize() {
+        return this.filterSize;
+    }
+
+    /**
+     * @return The number of zero neurons added around each edge of the input.
+     */
+    public int getPadding() {
+        return this.padding;
+    }
+
+    /**
+     * Set the padding, must be called before the network is finalized.
+     * @param thePadding The number of zero neurons added around each edge of the input.
+     */
+    public void setPadding(final int thePadding) {
+        if (thePadding < 0) {
+            throw new AIFHError("The padding can not be negative.");
+        }
+        this.padding = thePadding;
+    }
+
+    /**
+     * @return The distance the filter moves between output positions.
+     */
+    public int getStride() {
+        return this.stride;
+    }
+
+    /**
+     * Set the stride, must be called before the network is finalized.
+     * @param theStride The distance the filter moves between output positions.
+     */
+    public void setStride(final int theStride) {
+        if (theStride < 1) {
+            throw new AIFHError("The stride must be at least 1.");
+        }
+        this.stride = theStride;
+    }
+
+    /**
+     * @return The number of output rows.
+     */
+    public int getOutRows() {
+        return this.outRows;
+    }
+
+    /**
+     * @return The number of output columns.
+     */
+    public int getOutColumns() {
+        return this.outColumns;
+    }
+}
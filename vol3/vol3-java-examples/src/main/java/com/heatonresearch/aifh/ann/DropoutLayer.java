@@ -0,0 +1,290 @@
+/*
+ * Artificial Intelligence for Humans
+ * Volume 3: Deep Learning and Neural Networks
+ * Java Version
+ * http://www.aifh.org
+ * http://www.jeffheaton.com
+ *
+ * Code repository:
+ * https://github.com/jeffheaton/aifh
+ *
+ * Copyright 2014-2015 by Jeff Heaton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For more information on Heaton Research copyrights, licenses
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package com.heatonresearch.aifh.ann;
+
+import com.heatonresearch.aifh.AIFHError;
+import com.heatonresearch.aifh.ann.activation.ActivationFunction;
+import com.heatonresearch.aifh.ann.train.GradientCalc;
+import com.heatonresearch.aifh.randomize.GenerateRandom;
+import com.heatonresearch.aifh.randomize.MersenneTwisterGenerateRandom;
+
+import java.util.Arrays;
+
+/**
+ * A fully connected layer that uses dropout while the network is training.  At the start of each training batch
+ * every neuron of this layer is dropped with the dropout probability.  Dropped neurons output zero and are skipped
+ * entirely: their weights are not multiplied in computeLayer and not visited in computeGradient.  The surviving
+ * neurons are scaled up by 1/(1-dropout) (inverted dropout), so that when the network is not training this layer is
+ * computed exactly like a BasicLayer, with no extra cost.
+ *
+ * The neurons are dropped with the trainer's random generator.  A trainer without one (i.e. BackPropagation with
+ * setStochastic(null)) passes null, and this layer then uses its own generator (see setRnd).
+ *
+ * The scaling does not change the derivative of ReLU, which is the usual activation for dropout layers.  The
+ * activation function only sees the active neurons, so a softmax is normalized over the neurons that survived.
+ *
+ * Srivastava, N., Hinton, G., Krizhevsky, A., Sutskever, I., & Salakhutdinov, R. (2014). Dropout: A simple way to
+ * prevent neural networks from overfitting. The Journal of Machine Learning Research, 15(1), 1929-1958.
+ */
+public class DropoutLayer extends BasicLayer {
+
+    /**
+     * The probability that a neuron is dropped.
+     */
+    private final double dropout;
+
+    /**
+     * The neurons of this layer, the first activeCount are active (in ascending order), the rest are dropped.
+     */
+    private final int[] order;
+
+    /**
+     * The number of active neurons.
+     */
+    private int activeCount;
+
+    /**
+     * The outputs of the active neurons of one row, packed together, so that the activation function only sees
+     * the active neurons.
+     */
+    private final double[] activeOutput;
+
+    /**
+     * Chooses the dropped neurons when the trainer does not give a random generator.
+     */
+    private GenerateRandom rnd = new MersenneTwisterGenerateRandom();
+
+    /**
+     * Construct a dropout layer.
+     * @param theActivation The activation function.
+     * @param theHasBias True, if this layer has a bias.
+     * @param theCount The neuron count.
+     * @param theDropout The probability that a neuron is dropped, while training.
+     */
+    public DropoutLayer(final ActivationFunction theActivation, final boolean theHasBias, final int theCount,
+                        final double theDropout) {
+        super(theActivation, theHasBias, theCount);
+        if (theDropout < 0 || theDropout >= 1) {
+            throw new AIFHError("The dropout probability must be at least 0 and less than 1.");
+        }
+        this.dropout = theDropout;
+        this.order = new int[theCount];
+        this.activeOutput = new double[theCount];
+        this.activeCount = theCount;
+        for (int i = 0; i < theCount; i++) {
+            this.order[i] = i;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void trainingBatch(final GenerateRandom theRnd) {
+        final GenerateRandom actualRnd = theRnd == null ? this.rnd : theRnd;
+        int front = 0;
+        int back = this.order.length;
+        for (int i = 0; i < this.order.length; i++) {
+            if (actualRnd.nextDouble() < this.dropout) {
+                this.order[--back] = i;
+            } else {
+                this.order[front++] = i;
+            }
+        }
+        this.activeCount = front;
+    }
+
+    /**
+     * @return True, if the neurons should be dropped.
+     */
+    private boolean isDropping() {
+        return getOwner().isNetworkTraining() && this.dropout > 0;
+    }
+
+    /**
+     * Compute the active neurons, for a group of rows.
+     * @param layerOutput The layer outputs.
+     * @param layerSums The layer sums.
+     * @param stride The distance between rows.
+     * @param rowCount The number of rows.
+     */
+    private void computeActive(final double[] layerOutput, final double[] layerSums, final int stride,
+                               final int rowCount) {
+        final double[] weights = getOwner().getWeights();
+        final int fromIndex = getPreviousLayer().getNeuronIndex();
+        final int fromCount = getPreviousLayer().getTotalCount();
+        final int toIndex = getNeuronIndex();
+        final int toCount = getCount();
+        final double scale = 1.0 / (1.0 - this.dropout);
+
+        for (int i = 0; i < this.activeCount; i++) {
+            final int ix = this.order[i];
+            multiply(weights, getWeightIndex() + ix * fromCount, layerOutput, fromIndex, stride,
+                    layerSums, layerOutput, toIndex + ix, stride, 1, rowCount, fromCount, 1);
+        }
+
+        for (int row = 0; row < rowCount; row++) {
+            final int x = row * stride + toIndex;
+            // the dropped neurons hold stale sums, and must not take part in i.e. the softmax normalization
+            for (int i = 0; i < this.activeCount; i++) {
+                this.activeOutput[i] = layerOutput[x + this.order[i]];
+            }
+            getActivation().activationFunction(this.activeOutput, 0, this.activeCount);
+            for (int i = 0; i < this.activeCount; i++) {
+                layerOutput[x + this.order[i]] = this.activeOutput[i] * scale;
+            }
+            for (int i = this.activeCount; i < toCount; i++) {
+                layerSums[x + this.order[i]] = layerOutput[x + this.order[i]] = 0;
+            }
+        }
+    }
+
+    /**
+     * Compute the gradients of the active neurons, for a group of rows.
+     * @param gradients The gradients.
+     * @param layerOutput The layer outputs.
+     * @param layerSums The layer sums.
+     * @param layerDelta The layer deltas.
+     * @param stride The distance between rows.
+     * @param rowCount The number of rows.
+     */
+    private void computeGradientActive(final double[] gradients, final double[] layerOutput,
+                                       final double[] layerSums, final double[] layerDelta,
+                                       final int stride, final int rowCount) {
+        final double[] weights = getOwner().getWeights();
+        final int fromIndex = getPreviousLayer().getNeuronIndex();
+        final int fromCount = getPreviousLayer().getTotalCount();
+        final int toIndex = getNeuronIndex();
+        final double scale = 1.0 / (1.0 - this.dropout);
+        final ActivationFunction activation = getActivation();
+
+        for (int row = 0; row < rowCount; row++) {
+            final int y = row * stride + fromIndex;
+            Arrays.fill(layerDelta, y, y + fromCount, 0);
+            // the active outputs were scaled
+            final int x = row * stride + toIndex;
+            for (int i = 0; i < this.activeCount; i++) {
+                layerDelta[x + this.order[i]] *= scale;
+            }
+        }
+
+        for (int i = 0; i < this.activeCount; i++) {
+            final int ix = this.order[i];
+            multiplyGradient(weights, gradients, getWeightIndex() + ix * fromCount,
+                    layerOutput, layerDelta, fromIndex, stride,
+                    layerDelta, toIndex + ix, stride, 1, rowCount, fromCount, 1);
+        }
+
+        for (int row = 0; row < rowCount; row++) {
+            int y = row * stride + fromIndex;
+            for (int yi = 0; yi < fromCount; yi++, y++) {
+                layerDelta[y] *= activation.derivativeFunction(layerSums[y], layerOutput[y]);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void computeLayer() {
+        if (isDropping()) {
+            computeActive(getOwner().getLayerOutput(), getOwner().getLayerSums(), 0, 1);
+        } else {
+            super.computeLayer();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void computeGradient(final GradientCalc calc) {
+        if (isDropping()) {
+            computeGradientActive(calc.getGradients(), getOwner().getLayerOutput(), getOwner().getLayerSums(),
+                    calc.getLayerDelta(), 0, 1);
+        } else {
+            super.computeGradient(calc);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void computeLayer(final BatchBuffers batch) {
+        if (isDropping()) {
+            computeActive(batch.getLayerOutput(), batch.getLayerSums(), batch.getStride(), batch.getRowCount());
+        } else {
+            super.computeLayer(batch);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void computeGradient(final GradientCalc calc, final BatchBuffers batch) {
+        if (isDropping()) {
+            computeGradientActive(calc.getGradients(), batch.getLayerOutput(), batch.getLayerSums(),
+                    batch.getLayerDelta(), batch.getStride(), batch.getRowCount());
+        } else {
+            super.computeGradient(calc, batch);
+        }
+    }
+
+    /**
+     * @return The probability that a neuron is dropped, while training.
+     */
+    public double getDropout() {
+        return this.dropout;
+    }
+
+    /**
+     * @return The number of neurons active in the current training batch.
+     */
+    public int getActiveCount() {
+        return this.activeCount;
+    }
+
+    /**
+     * @return The random generator used when the trainer does not give one.
+     */
+    public GenerateRandom getRnd() {
+        return this.rnd;
+    }
+
+    /**
+     * Set the random generator used when the trainer does not give one.
+     * @param theRnd The random generator.
+     */
+    public void setRnd(final GenerateRandom theRnd) {
+        this.rnd = theRnd;
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Artificial Intelligence for Humans
+ * Volume 3: Deep Learning and Neural Networks
+ * Java Version
+ * http://www.aifh.org
+ * http://www.jeffheaton.com
+ *
+ * Code repository:
+ * https://github.com/jeffheaton/aifh
+ *
+ * Copyright 2014-2015 by Jeff Heaton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For more information on Heaton Research copyrights, licenses
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package com.heatonresearch.aifh.ann;
+
+import com.heatonresearch.aifh.ann.activation.ActivationFunction;
+
+import java.util.Arrays;
+
+/**
+ * A precompiled plan for computing a BasicNetwork, one row at a time.  The plan is built by
+ * BasicNetwork.finalizeStructure, once the layer offsets are known.  Everything that compute would otherwise look
+ * up for every row (previous layers, neuron and weight offsets, counts, the network arrays) is stored in flat
+ * arrays.  Fully connected layers are then computed by straight-line loops, with no per-row lookups.
+ *
+ * Layers that are not plain BasicLayers are still computed by calling their computeLayer method.
+ */
+public class ExecutionPlan {
+
+    /**
+     * The weights of the network.
+     */
+    private final double[] weights;
+
+    /**
+     * The layer outputs of the network.
+     */
+    private final double[] layerOutput;
+
+    /**
+     * The layer sums of the network.
+     */
+    private final double[] layerSums;
+
+    /**
+     * The index of the input neurons.
+     */
+    private final int inputIndex;
+
+    /**
+     * The number of input neurons.
+     */
+    private final int inputCount;
+
+    /**
+     * The number of output neurons.
+     */
+    private final int outputCount;
+
+    /**
+     * The layers to compute, in order.  The input layer is not included.
+     */
+    private final Layer[] layers;
+
+    /**
+     * True, if the layer is a plain fully connected layer, that this plan computes directly.
+     */
+    private final boolean[] dense;
+
+    /**
+     * The index of each layer's weights.
+     */
+    private final int[] weightIndex;
+
+    /**
+     * The index of each previous layer's neurons.
+     */
+    private final int[] fromIndex;
+
+    /**
+     * The total neuron count of each previous layer.
+     */
+    private final int[] fromCount;
+
+    /**
+     * The index of each layer's neurons.
+     */
+    private final int[] toIndex;
+
+    /**
+     * The neuron count of each layer.
+     */
+    private final int[] toCount;
+
+    /**
+     * The activation function of each layer.
+     */
+    private final ActivationFunction[] activation;
+
+    /**
+     * Build the plan.
+     * @param network The network, its structure must be finalized.
+     */
+    public ExecutionPlan(final BasicNetwork network) {
+        this.weights = network.getWeights();
+        this.layerOutput = network.getLayerOutput();
+        this.layerSums = network.getLayerSums();
+        this.inputIndex = network.getNeuronCount() - network.getLayers().get(0).getTotalCount();
+        this.inputCount = network.getInputCount();
+        this.outputCount = network.getOutputCount();
+
+        final int count = network.getLayers().size() - 1;
+        this.layers = new Layer[count];
+        this.dense = new boolean[count];
+        this.weightIndex = new int[count];
+        this.fromIndex = new int[count];
+        this.fromCount = new int[count];
+        this.toIndex = new int[count];
+        this.toCount = new int[count];
+        this.activation = new ActivationFunction[count];
+
+        for (int i = 0; i < count; i++) {
+            final Layer prev = network.getLayers().get(i);
+            final Layer layer = network.getLayers().get(i + 1);
+            this.layers[i] = layer;
+            this.dense[i] = layer.getClass() == BasicLayer.class;
+            this.weightIndex[i] = layer.getWeightIndex();
+            this.fromIndex[i] = prev.getNeuronIndex();
+            this.fromCount[i] = prev.getTotalCount();
+            this.toIndex[i] = layer.getNeuronIndex();
+            this.toCount[i] = layer.getCount();
+            this.activation[i] = layer.getActivation();
+        }
+    }
+
+    /**
+     * Calculate the output for the given input.  The network's layerOutput and layerSums are updated, exactly as
+     * BasicNetwork.compute has always done.
+     * @param input The input.
+     * @param output Output will be placed here.
+     */
+    public void compute(final double[] input, final double[] output) {
+        System.arraycopy(input, 0, this.layerOutput, this.inputIndex, this.inputCount);
+
+        for (int i = 0; i < this.layers.length; i++) {
+            if (this.dense[i]) {
+                WeightedLayer.computeLayer(this.weights, this.layerOutput, this.layerSums,
+                        this.weightIndex[i], this.fromIndex[i], this.fromCount[i],
+                        this.toIndex[i], this.toCount[i], this.activation[i]);
+            } else {
+                // other layer types may accumulate into their outputs
+                final int end = this.toIndex[i] + this.toCount[i];
+                Arrays.fill(this.layerOutput, this.toIndex[i], end, 0);
+                Arrays.fill(this.layerSums, this.toIndex[i], end, 0);
+                this.layers[i].computeLayer();
+            }
+        }
+
+        System.arraycopy(this.layerOutput, 0, output, 0, this.outputCount);
+    }
+}
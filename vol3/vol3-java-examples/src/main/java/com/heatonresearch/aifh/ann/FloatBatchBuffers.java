@@ -0,0 +1,214 @@
+/*
+ * Artificial Intelligence for Humans
+ * Volume 3: Deep Learning and Neural Networks
+ * Java Version
+ * http://www.aifh.org
+ * http://www.jeffheaton.com
+ *
+ * Code repository:
+ * https://github.com/jeffheaton/aifh
+ *
+ * Copyright 2014-2015 by Jeff Heaton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For more information on Heaton Research copyrights, licenses
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package com.heatonresearch.aifh.ann;
+
+import com.heatonresearch.aifh.AIFHError;
+
+/**
+ * The single precision version of BatchBuffers, used with a FloatNetwork.  Holds the layer outputs, sums and
+ * deltas for a mini-batch of rows.  The neurons of row r start at r*getStride().
+ */
+public class FloatBatchBuffers {
+
+    /**
+     * The network that these buffers were sized for.
+     */
+    private final FloatNetwork network;
+
+    /**
+     * The maximum number of rows.
+     */
+    private final int capacity;
+
+    /**
+     * The distance between the start of two rows, this is the neuron count of the network.
+     */
+    private final int stride;
+
+    /**
+     * The index of the input neurons within a row.
+     */
+    private final int inputIndex;
+
+    /**
+     * The outputs from each of the neurons, for every row.
+     */
+    private final float[] layerOutput;
+
+    /**
+     * The sums from each of the neurons, before the activation function, for every row.
+     */
+    private final float[] layerSums;
+
+    /**
+     * The deltas from each of the neurons, for every row.  Only used for training.
+     */
+    private final float[] layerDelta;
+
+    /**
+     * Scratch space used to apply the activation functions, which work with doubles.
+     */
+    private final double[] activationScratch;
+
+    /**
+     * The number of rows currently in use.
+     */
+    private int rowCount;
+
+    /**
+     * Construct the batch buffers.
+     * @param theNetwork The network.
+     * @param theCapacity The maximum number of rows.
+     */
+    public FloatBatchBuffers(final FloatNetwork theNetwork, final int theCapacity) {
+        if (theCapacity < 1) {
+            throw new AIFHError("Batch capacity must be at least 1.");
+        }
+        final BasicNetwork structure = theNetwork.getNetwork();
+        this.network = theNetwork;
+        this.capacity = theCapacity;
+        this.stride = structure.getNeuronCount();
+        this.inputIndex = this.stride - structure.getLayers().get(0).getTotalCount();
+        this.layerOutput = new float[this.capacity * this.stride];
+        this.layerSums = new float[this.capacity * this.stride];
+        this.layerDelta = new float[this.capacity * this.stride];
+
+        int maxCount = 0;
+        for (Layer layer : structure.getLayers()) {
+            maxCount = Math.max(maxCount, layer.getCount());
+        }
+        this.activationScratch = new double[maxCount];
+
+        // Fill in the bias values, the layers never write to the bias neurons.
+        final int layerCount = structure.getLayers().size();
+        for (int row = 0; row < this.capacity; row++) {
+            int index = row * this.stride;
+            for (int i = 0; i < layerCount; i++) {
+                Layer layer = structure.getLayers().get(layerCount - 1 - i);
+                index += layer.getCount();
+                if (layer.hasBias()) {
+                    this.layerOutput[index++] = 1.0f;
+                }
+            }
+        }
+    }
+
+    /**
+     * Copy (and round) an input vector into a row.
+     * @param row The row.
+     * @param input The input vector.
+     */
+    public void setInput(final int row, final double[] input) {
+        final int base = row * this.stride + this.inputIndex;
+        final int count = this.network.getNetwork().getInputCount();
+        for (int i = 0; i < count; i++) {
+            this.layerOutput[base + i] = (float) input[i];
+        }
+    }
+
+    /**
+     * Copy the output of a row into an output vector.
+     * @param row The row.
+     * @param output The output vector.
+     */
+    public void getOutput(final int row, final double[] output) {
+        final int base = row * this.stride;
+        final int count = this.network.getNetwork().getOutputCount();
+        for (int i = 0; i < count; i++) {
+            output[i] = this.layerOutput[base + i];
+        }
+    }
+
+    /**
+     * @return The network that these buffers were sized for.
+     */
+    public FloatNetwork getNetwork() {
+        return this.network;
+    }
+
+    /**
+     * @return The maximum number of rows.
+     */
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * @return The distance between the start of two rows.
+     */
+    public int getStride() {
+        return this.stride;
+    }
+
+    /**
+     * @return The number of rows currently in use.
+     */
+    public int getRowCount() {
+        return this.rowCount;
+    }
+
+    /**
+     * Set the number of rows currently in use.
+     * @param theRowCount The number of rows, no more than the capacity.
+     */
+    public void setRowCount(final int theRowCount) {
+        if (theRowCount < 0 || theRowCount > this.capacity) {
+            throw new AIFHError("Invalid row count(" + theRowCount + "), capacity is: " + this.capacity);
+        }
+        this.rowCount = theRowCount;
+    }
+
+    /**
+     * @return The outputs from each of the neurons, for every row.
+     */
+    public float[] getLayerOutput() {
+        return this.layerOutput;
+    }
+
+    /**
+     * @return The sums from each of the neurons, for every row.
+     */
+    public float[] getLayerSums() {
+        return this.layerSums;
+    }
+
+    /**
+     * @return The deltas from each of the neurons, for every row.
+     */
+    public float[] getLayerDelta() {
+        return this.layerDelta;
+    }
+
+    /**
+     * @return Scratch space, large enough to hold the neurons of any one layer as doubles.
+     */
+    public double[] getActivationScratch() {
+        return this.activationScratch;
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Artificial Intelligence for Humans
+ * Volume 3: Deep Learning and Neural Networks
+ * Java Version
+ * http://www.aifh.org
+ * http://www.jeffheaton.com
+ *
+ * Code repository:
+ * https://github.com/jeffheaton/aifh
+ *
+ * Copyright 2014-2015 by Jeff Heaton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For more information on Heaton Research copyrights, licenses
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package com.heatonresearch.aifh.ann;
+
+import com.heatonresearch.aifh.AIFHError;
+import com.heatonresearch.aifh.ann.activation.ActivationFunction;
+
+/**
+ * A single precision (float32) copy of a BasicNetwork.  The layer structure is taken from the BasicNetwork that
+ * this network was created from, only the weights are held as floats.  The float weights are half the size of the
+ * doubles, which halves the memory bandwidth of every forward and backward pass.  The BasicNetwork is still
+ * referenced for its structure, and keeps its own double weights, so together the two networks use more memory than
+ * the BasicNetwork alone.  Use copyFrom and copyTo to convert the weights to and from the double precision network,
+ * so that existing code can keep using the BasicNetwork.
+ *
+ * Only fully connected networks, made of BasicLayer, are supported.  The layer outputs are held in a
+ * FloatBatchBuffers object, so this network can be queried by several threads if each uses its own buffers.
+ */
+public class FloatNetwork {
+
+    /**
+     * The double precision network that defines the structure.
+     */
+    private final BasicNetwork network;
+
+    /**
+     * The weights.
+     */
+    private final float[] weights;
+
+    /**
+     * Buffers for computing one row at a time.
+     */
+    private final FloatBatchBuffers single;
+
+    /**
+     * Create a single precision copy of a network.
+     * @param theNetwork The network to copy, its structure must be finalized.
+     */
+    public FloatNetwork(final BasicNetwork theNetwork) {
+        for (Layer layer : theNetwork.getLayers()) {
+            if (layer.getClass() != BasicLayer.class) {
+                throw new AIFHError("Single precision networks only support BasicLayer, not: "
+                        + layer.getClass().getSimpleName());
+            }
+        }
+        this.network = theNetwork;
+        this.weights = new float[theNetwork.getWeights().length];
+        copyFrom(theNetwork);
+        this.single = new FloatBatchBuffers(this, 1);
+    }
+
+    /**
+     * Copy (and round) the weights from a double precision network with the same structure.
+     * @param source The source network.
+     */
+    public void copyFrom(final BasicNetwork source) {
+        final double[] sourceWeights = source.getWeights();
+        if (sourceWeights.length != this.weights.length) {
+            throw new AIFHError("Weight count mismatch: " + sourceWeights.length + " != " + this.weights.length);
+        }
+        for (int i = 0; i < this.weights.length; i++) {
+            this.weights[i] = (float) sourceWeights[i];
+        }
+    }
+
+    /**
+     * Copy the weights to a double precision network with the same structure.
+     * @param target The target network.
+     */
+    public void copyTo(final BasicNetwork target) {
+        final double[] targetWeights = target.getWeights();
+        if (targetWeights.length != this.weights.length) {
+            throw new AIFHError("Weight count mismatch: " + targetWeights.length + " != " + this.weights.length);
+        }
+        for (int i = 0; i < this.weights.length; i++) {
+            targetWeights[i] = this.weights[i];
+        }
+    }
+
+    /**
+     * Calculate the output for every row of a mini-batch.  The input must already have been placed in the batch.
+     * This is a matrix-matrix product, blocked like the double precision batch, see WeightedLayer.multiply.
+     * @param batch The mini-batch buffers, the output is placed here.
+     */
+    public void compute(final FloatBatchBuffers batch) {
+        final float[] layerOutput = batch.getLayerOutput();
+        final float[] layerSums = batch.getLayerSums();
+        final int stride = batch.getStride();
+        final int rowCount = batch.getRowCount();
+
+        for (int i = 1; i < this.network.getLayers().size(); i++) {
+            final Layer layer = this.network.getLayers().get(i);
+            final Layer prev = this.network.getLayers().get(i - 1);
+            final int fromIndex = prev.getNeuronIndex();
+            final int fromCount = prev.getTotalCount();
+            final int toIndex = layer.getNeuronIndex();
+            final int toCount = layer.getCount();
+            final int weightIndex = layer.getWeightIndex();
+
+            WeightedLayer.multiply(this.weights, weightIndex, layerOutput, fromIndex, stride,
+                    layerSums, layerOutput, toIndex, stride, rowCount, fromCount, toCount);
+
+            for (int row = 0; row < rowCount; row++) {
+                activate(layer.getActivation(), batch.getActivationScratch(), layerOutput,
+                        row * stride + toIndex, toCount);
+            }
+        }
+    }
+
+    /**
+     * Apply an activation function to part of a float vector.  The activation functions work with doubles, so
+     * the values are widened into a scratch array, and rounded back.
+     * @param af The activation function.
+     * @param scratch The scratch space, at least size long.
+     * @param d The vector.
+     * @param start The starting index.
+     * @param size The number of values.
+     */
+    private static void activate(final ActivationFunction af, final double[] scratch, final float[] d,
+                                 final int start, final int size) {
+        for (int i = 0; i < size; i++) {
+            scratch[i] = d[start + i];
+        }
+        af.activationFunction(scratch, 0, size);
+        for (int i = 0; i < size; i++) {
+            d[start + i] = (float) scratch[i];
+        }
+    }
+
+    /**
+     * Calculate the output for the given input.  This uses buffers held by this network, so it must not be
+     * called by several threads at once.
+     * @param input The input.
+     * @param output Output will be placed here.
+     */
+    public void compute(final double[] input, final double[] output) {
+        this.single.setRowCount(1);
+        this.single.setInput(0, input);
+        compute(this.single);
+        this.single.getOutput(0, output);
+    }
+
+    /**
+     * @return The double precision network that defines the structure.
+     */
+    public BasicNetwork getNetwork() {
+        return this.network;
+    }
+
+    /**
+     * @return The weights.
+     */
+    public float[] getWeights() {
+        return this.weights;
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Artificial Intelligence for Humans
+ * Volume 3: Deep Learning and Neural Networks
+ * Java Version
+ * http://www.aifh.org
+ * http://www.jeffheaton.com
+ *
+ * Code repository:
+ * https://github.com/jeffheaton/aifh
+ *
+ * Copyright 2014-2015 by Jeff Heaton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For more information on Heaton Research copyrights, licenses
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package com.heatonresearch.aifh.ann;
+
+import com.heatonresearch.aifh.AIFHError;
+import com.heatonresearch.aifh.learning.ClassificationAlgorithm;
+import com.heatonresearch.aifh.learning.RegressionAlgorithm;
+import com.heatonresearch.aifh.util.ArrayUtil;
+
+/**
+ * A lightweight context used to query a BasicNetwork.  BasicNetwork.compute keeps its layer outputs in the network
+ * itself, so a network can only be used by one thread at a time.  A session keeps its own layer outputs and only
+ * reads the network weights.  Any number of threads can therefore query the same network, without locks or copies,
+ * as long as each thread uses its own session.  Sessions are cheap to create, create one per thread (or per call).
+ *
+ * The weights must not be changed (i.e. by training) while sessions are computing.
+ */
+public class InferenceSession implements RegressionAlgorithm, ClassificationAlgorithm {
+
+    /**
+     * The network being queried.
+     */
+    private final BasicNetwork network;
+
+    /**
+     * The layer outputs for this session.
+     */
+    private final BatchBuffers buffers;
+
+    /**
+     * Construct a session that computes one row at a time.
+     * @param theNetwork The network to query, must have been finalized.
+     */
+    public InferenceSession(final BasicNetwork theNetwork) {
+        this(theNetwork, 1);
+    }
+
+    /**
+     * Construct a session.
+     * @param theNetwork The network to query, must have been finalized.
+     * @param theBatchSize The number of rows to compute at once, when computing several rows.
+     */
+    public InferenceSession(final BasicNetwork theNetwork, final int theBatchSize) {
+        this.network = theNetwork;
+        this.buffers = new BatchBuffers(theNetwork, theBatchSize);
+    }
+
+    /**
+     * Calculate the output for the given input.
+     * @param input The input.
+     * @param output Output will be placed here.
+     */
+    public void compute(final double[] input, final double[] output) {
+        this.buffers.setRowCount(1);
+        this.buffers.setInput(0, input);
+        this.network.compute(this.buffers);
+        this.buffers.getOutput(0, output);
+    }
+
+    /**
+     * Calculate the output for several inputs.  The rows are computed in groups the size of this session's
+     * batch size, this is faster than computing them one at a time.
+     * @param input The inputs.
+     * @param output The outputs will be placed here.
+     */
+    public void compute(final double[][] input, final double[][] output) {
+        final int capacity = this.buffers.getCapacity();
+        for (int start = 0; start < input.length; start += capacity) {
+            final int rowCount = Math.min(capacity, input.length - start);
+            this.buffers.setRowCount(rowCount);
+            for (int row = 0; row < rowCount; row++) {
+                this.buffers.setInput(row, input[start + row]);
+            }
+            this.network.compute(this.buffers);
+            for (int row = 0; row < rowCount; row++) {
+                this.buffers.getOutput(row, output[start + row]);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double[] computeRegression(final double[] input) {
+        if (input.length != this.network.getInputCount()) {
+            throw new AIFHError("Invalid input count(" + input.length + "), this network is designed for: "
+                    + this.network.getInputCount());
+        }
+        final double[] output = new double[this.network.getOutputCount()];
+        compute(input, output);
+        return output;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int computeClassification(final double[] input) {
+        return ArrayUtil.indexOfLargest(computeRegression(input));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double[] getLongTermMemory() {
+        return this.network.getLongTermMemory();
+    }
+
+    /**
+     * @return The network being queried.
+     */
+    public BasicNetwork getNetwork() {
+        return this.network;
+    }
+}
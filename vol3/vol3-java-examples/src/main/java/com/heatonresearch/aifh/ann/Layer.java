@@ -47,6 +47,12 @@ public interface Layer {
      */
     int getTotalCount();
 
+    /**
+     * @return The number of neurons in each dimension, excluding bias neurons.  Convolution layers need the
+     * previous layer to be three dimensional (rows, columns and depth).
+     */
+    int[] getDimensionCounts();
+
     /**
      * @return The activation/transfer function for this neuron.
      */
@@ -61,6 +67,18 @@ public interface Layer {
     void finalizeStructure(BasicNetwork theOwner, int theLayerIndex,
                            TempStructureCounts counts);
 
+    /**
+     * Set the layer that feeds this layer.  This is called, in order from input to output, before any layer is
+     * finalized, so that a layer's size can depend on the layer before it.
+     * @param thePreviousLayer The previous layer, or null for the input layer.
+     */
+    void setPreviousLayer(Layer thePreviousLayer);
+
+    /**
+     * @return The previous layer, or null for the input layer.
+     */
+    Layer getPreviousLayer();
+
     /**
      * Compute this layer.
      */
@@ -72,6 +90,19 @@ public interface Layer {
      */
     void computeGradient(GradientCalc calc);
 
+    /**
+     * Compute this layer for every row of a mini-batch.
+     * @param batch The mini-batch buffers.
+     */
+    void computeLayer(BatchBuffers batch);
+
+    /**
+     * Compute the gradients for this layer, for every row of a mini-batch.
+     * @param calc The gradient calculation utility.
+     * @param batch The mini-batch buffers.
+     */
+    void computeGradient(GradientCalc calc, BatchBuffers batch);
+
     /**
      * @return The start of this layer's weights in the weight vector.
      */
@@ -84,7 +115,7 @@ public interface Layer {
 
     /**
      * Notification that a training batch is beginning.
-     * @param rnd A random number generator, from the trainer.
+     * @param rnd A random number generator, from the trainer, or null if the trainer has none.
      */
     void trainingBatch(GenerateRandom rnd);
 
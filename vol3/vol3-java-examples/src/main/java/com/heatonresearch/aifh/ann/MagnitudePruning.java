@@ -0,0 +1,166 @@
+/*
+ * Artificial Intelligence for Humans
+ * Volume 3: Deep Learning and Neural Networks
+ * Java Version
+ * http://www.aifh.org
+ * http://www.jeffheaton.com
+ *
+ * Code repository:
+ * https://github.com/jeffheaton/aifh
+ *
+ * Copyright 2014-2015 by Jeff Heaton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For more information on Heaton Research copyrights, licenses
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package com.heatonresearch.aifh.ann;
+
+import java.util.Arrays;
+
+/**
+ * Magnitude pruning for trained networks.  The weights with the smallest magnitude contribute the least to the
+ * output, so they can be set to zero with little loss of accuracy.  A pruned network can then be run with
+ * SparseNetwork, which only stores and multiplies the weights that remain.
+ *
+ * Only the weights of fully connected layers (BasicLayer itself, as in SparseNetwork and QuantizedNetwork) are
+ * pruned, a subclass such as DropoutLayer computes its layer differently.  Bias weights are never
+ * pruned, there are few of them and they are usually important.
+ */
+public final class MagnitudePruning {
+
+    /**
+     * Private constructor.
+     */
+    private MagnitudePruning() {
+
+    }
+
+    /**
+     * @param layer The layer.
+     * @return True, if the weights feeding this layer can be pruned.
+     */
+    static boolean isPrunable(final Layer layer) {
+        return layer.getClass() == BasicLayer.class && layer.getPreviousLayer() != null;
+    }
+
+    /**
+     * @param network The network.
+     * @return The number of weights that can be pruned, this excludes the bias weights.
+     */
+    public static int countPrunable(final BasicNetwork network) {
+        int result = 0;
+        for (Layer layer : network.getLayers()) {
+            if (isPrunable(layer)) {
+                result += layer.getCount() * layer.getPreviousLayer().getCount();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Find the magnitude threshold that prunes the specified fraction of the weights.  Weights with the same
+     * magnitude as the threshold are kept, so a network with many equal weights may end up less sparse than
+     * requested, calculateSparsity reports the actual value.
+     * @param network The network.
+     * @param sparsity The fraction of the weights to prune, between 0 and 1.
+     * @return The threshold to pass to prune, or to SparseNetwork.
+     */
+    public static double calculateThreshold(final BasicNetwork network, final double sparsity) {
+        final double[] magnitude = new double[countPrunable(network)];
+        if (magnitude.length == 0 || sparsity <= 0) {
+            return 0;
+        }
+
+        final double[] weights = network.getWeights();
+        int index = 0;
+        for (Layer layer : network.getLayers()) {
+            if (isPrunable(layer)) {
+                final int from = layer.getPreviousLayer().getCount();
+                final int stride = layer.getPreviousLayer().getTotalCount();
+                for (int x = 0; x < layer.getCount(); x++) {
+                    final int wi = layer.getWeightIndex() + x * stride;
+                    for (int y = 0; y < from; y++) {
+                        magnitude[index++] = Math.abs(weights[wi + y]);
+                    }
+                }
+            }
+        }
+        Arrays.sort(magnitude);
+
+        final int count = (int) Math.round(sparsity * magnitude.length);
+        if (count >= magnitude.length) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return magnitude[count];
+    }
+
+    /**
+     * Set every weight, whose magnitude is below the threshold, to zero.  This modifies the network, which can
+     * then be trained further to recover some of the lost accuracy (the pruned weights will not stay zero).
+     * @param network The network to prune.
+     * @param threshold The magnitude threshold.
+     * @return The number of weights that were set to zero.
+     */
+    public static int prune(final BasicNetwork network, final double threshold) {
+        final double[] weights = network.getWeights();
+        int result = 0;
+        for (Layer layer : network.getLayers()) {
+            if (isPrunable(layer)) {
+                final int from = layer.getPreviousLayer().getCount();
+                final int stride = layer.getPreviousLayer().getTotalCount();
+                for (int x = 0; x < layer.getCount(); x++) {
+                    final int wi = layer.getWeightIndex() + x * stride;
+                    for (int y = wi; y < wi + from; y++) {
+                        if (weights[y] != 0 && Math.abs(weights[y]) < threshold) {
+                            weights[y] = 0;
+                            result++;
+                        }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param network The network.
+     * @return The fraction of the prunable weights that are zero.
+     */
+    public static double calculateSparsity(final BasicNetwork network) {
+        final int total = countPrunable(network);
+        if (total == 0) {
+            return 0;
+        }
+
+        final double[] weights = network.getWeights();
+        int zero = 0;
+        for (Layer layer : network.getLayers()) {
+            if (isPrunable(layer)) {
+                final int from = layer.getPreviousLayer().getCount();
+                final int stride = layer.getPreviousLayer().getTotalCount();
+                for (int x = 0; x < layer.getCount(); x++) {
+                    final int wi = layer.getWeightIndex() + x * stride;
+                    for (int y = wi; y < wi + from; y++) {
+                        if (weights[y] == 0) {
+                            zero++;
+                        }
+                    }
+                }
+            }
+        }
+        return (double) zero / total;
+    }
+}
@@ -0,0 +1,378 @@
+/*
+ * Artificial Intelligence for Humans
+ * Volume 3: Deep Learning and Neural Networks
+ * Java Version
+ * http://www.aifh.org
+ * http://www.jeffheaton.com
+ *
+ * Code repository:
+ * https://github.com/jeffheaton/aifh
+ *
+ * Copyright 2014-2015 by Jeff Heaton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For more information on Heaton Research copyrights, licenses
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package com.heatonresearch.aifh.ann;
+
+import com.heatonresearch.aifh.AIFHError;
+import com.heatonresearch.aifh.ann.activation.ActivationFunction;
+import com.heatonresearch.aifh.ann.activation.ActivationLinear;
+import com.heatonresearch.aifh.ann.train.GradientCalc;
+import com.heatonresearch.aifh.randomize.GenerateRandom;
+
+import java.util.Arrays;
+
+/**
+ * A max pooling layer, used for convolutional neural networks (CNN/LeNET).  The previous layer must be three
+ * dimensional: rows, columns and depth.  Each depth plane is divided into non-overlapping poolRows x poolColumns
+ * windows, and each neuron of this layer is the largest value in one window.  Any rows or columns that do not fill
+ * a complete window are dropped.
+ *
+ * This layer has no weights.  The neuron that each output was taken from (the argmax) is recorded as the layer is
+ * computed, so the gradient calculation routes each delta straight back to that neuron without rescanning the
+ * windows.
+ */
+public class MaxPoolLayer implements Layer {
+
+    /**
+     * The activation function, pooling has none so this is linear.
+     */
+    private final ActivationFunction activation = new ActivationLinear();
+
+    /**
+     * The number of rows in each window.
+     */
+    private final int poolRows;
+
+    /**
+     * The number of columns in each window.
+     */
+    private final int poolColumns;
+
+    /**
+     * The network that owns this layer.
+     */
+    private BasicNetwork owner;
+
+    /**
+     * The previous layer.
+     */
+    private Layer previousLayer;
+
+    /**
+     * The index to this layer's neurons.
+     */
+    private int neuronIndex;
+
+    /**
+     * The index to this layer's weights, this layer has none.
+     */
+    private int weightIndex;
+
+    /**
+     * The number of columns in the input.
+     */
+    private int inColumns;
+
+    /**
+     * The number of rows in the input.
+     */
+    private int inRows;
+
+    /**
+     * The depth of the input and this layer.
+     */
+    private int depth;
+
+    /**
+     * The number of output rows.
+     */
+    private int outRows;
+
+    /**
+     * The number of output columns.
+     */
+    private int outColumns;
+
+    /**
+     * The neuron (of the previous layer) that each output was taken from, for computeLayer without a batch.
+     */
+    private int[] source;
+
+    /**
+     * Construct a max pooling layer.
+     * @param thePoolRows The number of rows in each window.
+     * @param thePoolColumns The number of columns in each window.
+     */
+    public MaxPoolLayer(final int thePoolRows, final int thePoolColumns) {
+        if (thePoolRows < 1 || thePoolColumns < 1) {
+            throw new AIFHError("The pool size must be at least 1.");
+        }
+        this.poolRows = thePoolRows;
+        this.poolColumns = thePoolColumns;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setPreviousLayer(final Layer thePreviousLayer) {
+        if (thePreviousLayer == null) {
+            throw new AIFHError("A pooling layer can not be the input layer.");
+        }
+        final int[] dim = thePreviousLayer.getDimensionCounts();
+        if (dim.length != 3) {
+            throw new AIFHError("The layer before a pooling layer must have 3 dimensions.");
+        }
+
+        this.previousLayer = thePreviousLayer;
+        this.inRows = dim[0];
+        this.inColumns = dim[1];
+        this.depth = dim[2];
+        this.outRows = this.inRows / this.poolRows;
+        this.outColumns = this.inColumns / this.poolColumns;
+        if (this.outRows < 1 || this.outColumns < 1) {
+            throw new AIFHError("The pool is larger than its input.");
+        }
+        this.source = new int[getCount()];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Layer getPreviousLayer() {
+        return this.previousLayer;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void finalizeStructure(final BasicNetwork theOwner, final int theLayerIndex,
+                                  final TempStructureCounts counts) {
+        this.owner = theOwner;
+        this.neuronIndex = counts.getNeuronCount();
+        this.weightIndex = counts.getWeightCount();
+        counts.addNeuronCount(getTotalCount());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getCount() {
+        return this.outRows * this.outColumns * this.depth;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getTotalCount() {
+        return getCount() + 1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int[] getDimensionCounts() {
+        return new int[] {this.outRows, this.outColumns, this.depth};
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ActivationFunction getActivation() {
+        return this.activation;
+    }
+
+    /**
+     * Compute this layer for one row.
+     * @param layerOutput The layer outputs.
+     * @param layerSums The layer sums.
+     * @param source Receives the neuron each output was taken from, relative to the start of the row.
+     * @param rowIndex The index of the row's first neuron.
+     * @param sourceIndex The index of this layer's first neuron in source.
+     */
+    private void computeRow(final double[] layerOutput, final double[] layerSums, final int[] source,
+                            final int rowIndex, final int sourceIndex) {
+        final int fromIndex = this.previousLayer.getNeuronIndex();
+        int x = rowIndex + this.neuronIndex;
+        int s = sourceIndex;
+
+        for (int d = 0; d < this.depth; d++) {
+            for (int r = 0; r < this.outRows; r++) {
+                for (int c = 0; c < this.outColumns; c++) {
+                    int best = fromIndex + (d * this.inRows + r * this.poolRows) * this.inColumns
+                            + c * this.poolColumns;
+                    double max = layerOutput[rowIndex + best];
+                    for (int i = 0; i < this.poolRows; i++) {
+                        int y = fromIndex + (d * this.inRows + r * this.poolRows + i) * this.inColumns
+                                + c * this.poolColumns;
+                        for (int j = 0; j < this.poolColumns; j++, y++) {
+                            if (layerOutput[rowIndex + y] > max) {
+                                max = layerOutput[rowIndex + y];
+                                best = y;
+                            }
+                        }
+                    }
+                    layerSums[x] = layerOutput[x] = max;
+                    source[s++] = best;
+                    x++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Compute the gradients for one row, each delta goes back to the neuron its output was taken from.
+     * @param layerOutput The layer outputs.
+     * @param layerSums The layer sums.
+     * @param layerDelta The layer deltas.
+     * @param source The neuron each output was taken from, relative to the start of the row.
+     * @param rowIndex The index of the row's first neuron.
+     * @param sourceIndex The index of this layer's first neuron in source.
+     */
+    private void computeGradientRow(final double[] layerOutput, final double[] layerSums, final double[] layerDelta,
+                                    final int[] source, final int rowIndex, final int sourceIndex) {
+        final int fromIndex = rowIndex + this.previousLayer.getNeuronIndex();
+        final int fromLayerSize = this.previousLayer.getTotalCount();
+        final int toIndex = rowIndex + this.neuronIndex;
+        final int count = getCount();
+
+        Arrays.fill(layerDelta, fromIndex, fromIndex + fromLayerSize, 0);
+        for (int x = 0; x < count; x++) {
+            final int y = rowIndex + source[sourceIndex + x];
+            layerDelta[y] += layerDelta[toIndex + x]
+                    * this.activation.derivativeFunction(layerSums[y], layerOutput[y]);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void computeLayer() {
+        computeRow(this.owner.getLayerOutput(), this.owner.getLayerSums(), this.source, 0, 0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void computeGradient(final GradientCalc calc) {
+        computeGradientRow(this.owner.getLayerOutput(), this.owner.getLayerSums(), calc.getLayerDelta(),
+                this.source, 0, 0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void computeLayer(final BatchBuffers batch) {
+        final int[] layerSource = batch.getLayerSource();
+        for (int row = 0; row < batch.getRowCount(); row++) {
+            final int rowIndex = row * batch.getStride();
+            computeRow(batch.getLayerOutput(), batch.getLayerSums(), layerSource, rowIndex,
+                    rowIndex + this.neuronIndex);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void computeGradient(final GradientCalc calc, final BatchBuffers batch) {
+        final int[] layerSource = batch.getLayerSource();
+        for (int row = 0; row < batch.getRowCount(); row++) {
+            final int rowIndex = row * batch.getStride();
+            computeGradientRow(batch.getLayerOutput(), batch.getLayerSums(), batch.getLayerDelta(), layerSource,
+                    rowIndex, rowIndex + this.neuronIndex);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getWeightIndex() {
+        return this.weightIndex;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getNeuronIndex() {
+        return this.neuronIndex;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void trainingBatch(final GenerateRandom rnd) {
+        // Nothing needs to be done!
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BasicNetwork getOwner() {
+        return this.owner;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasBias() {
+        return true;
+    }
+
+    /**
+     * @return The number of rows in each window.
+     */
+    public int getPoolRows() {
+        return this.poolRows;
+    }
+
+    /**
+     * @return The number of columns in each window.
+     */
+    public int getPoolColumns() {
+        return this.poolColumns;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        final StringBuilder result = new StringBuilder();
+        result.append("[");
+        result.append(this.getClass().getSimpleName());
+        result.append(",count=").append(getCount());
+        result.append(",neuronIndex=").append(getNeuronIndex());
+        result.append("]");
+        return result.toString();
+    }
+}
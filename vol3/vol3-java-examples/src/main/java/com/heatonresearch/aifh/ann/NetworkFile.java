@@ -0,0 +1,320 @@
+/*
+ * Artificial Intelligence for Humans
+ * Volume 3: Deep Learning and Neural Networks
+ * Java Version
+ * http://www.aifh.org
+ * http://www.jeffheaton.com
+ *
+ * Code repository:
+ * https://github.com/jeffheaton/aifh
+ *
+ * Copyright 2014-2015 by Jeff Heaton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For more information on Heaton Research copyrights, licenses
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package com.heatonresearch.aifh.ann;
+
+import com.heatonresearch.aifh.AIFHError;
+import com.heatonresearch.aifh.ann.activation.ActivationFunction;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Saves and loads a BasicNetwork in a compact, versioned binary format.  All values are little-endian.
+ *
+ * The file starts with a header: the magic number, the format version, the layer count, the offset and length of
+ * the weight block, and then a description of each layer (its type, activation function and size).  The weights
+ * follow as one contiguous block of doubles, aligned to 8 bytes, in the same order as BasicNetwork.getWeights.
+ *
+ * The file is memory mapped when it is loaded.  The header is small, and the weight block is copied into the
+ * network's weight array with a single bulk copy, rather than parsed one value at a time, so the load time is
+ * dominated by the size of the weights and not by the number of layers or values.  A single mapping is used, so
+ * the file must be smaller than 2GB.
+ */
+public final class NetworkFile {
+
+    /**
+     * The magic number that starts every file, "AIFH" in ASCII.
+     */
+    public static final int MAGIC = 0x48464941;
+
+    /**
+     * The current version of the format.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Layer type for BasicLayer.
+     */
+    private static final int TYPE_BASIC = 0;
+
+    /**
+     * Layer type for DropoutLayer.
+     */
+    private static final int TYPE_DROPOUT = 1;
+
+    /**
+     * Layer type for Conv2DLayer.
+     */
+    private static final int TYPE_CONV2D = 2;
+
+    /**
+     * Layer type for MaxPoolLayer.
+     */
+    private static final int TYPE_MAXPOOL = 3;
+
+    /**
+     * The largest header that is supported.
+     */
+    private static final int MAX_HEADER = 1 << 20;
+
+    /**
+     * Private constructor.
+     */
+    private NetworkFile() {
+
+    }
+
+    /**
+     * Save a network.  The structure of the network must have been finalized.
+     * @param network The network to save.
+     * @param file The file to save to, it is replaced if it exists.
+     */
+    public static void save(final BasicNetwork network, final File file) {
+        final ByteBuffer header = ByteBuffer.allocate(MAX_HEADER).order(ByteOrder.LITTLE_ENDIAN);
+        final List<Layer> layers = network.getLayers();
+        final double[] weights = network.getWeights();
+
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(layers.size());
+        final int offsetPosition = header.position();
+        header.putLong(0);
+        header.putInt(weights.length);
+        for (Layer layer : layers) {
+            writeLayer(header, layer);
+        }
+
+        // align the weight block, so that it can be read directly as doubles
+        while (header.position() % 8 != 0) {
+            header.put((byte) 0);
+        }
+        final long weightOffset = header.position();
+        header.putLong(offsetPosition, weightOffset);
+        header.flip();
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+             FileChannel channel = raf.getChannel()) {
+            final long length = weightOffset + 8L * weights.length;
+            raf.setLength(length);
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.put(header);
+            buffer.asDoubleBuffer().put(weights);
+            buffer.force();
+        } catch (IOException ex) {
+            throw new AIFHError(ex);
+        }
+    }
+
+    /**
+     * Load a network that was saved with save.  The structure is rebuilt and finalized, and the weights are copied
+     * in from the mapped file.
+     * @param file The file to load.
+     * @return The network.
+     */
+    public static BasicNetwork load(final File file) {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (buffer.remaining() < 24 || buffer.getInt() != MAGIC) {
+                throw new AIFHError("Not a network file: " + file);
+            }
+            final int version = buffer.getInt();
+            if (version < 1 || version > VERSION) {
+                throw new AIFHError("Unsupported network file version(" + version + "), the newest supported is: "
+                        + VERSION);
+            }
+
+            final int layerCount = buffer.getInt();
+            final long weightOffset = buffer.getLong();
+            final int weightCount = buffer.getInt();
+
+            final BasicNetwork network = new BasicNetwork();
+            for (int i = 0; i < layerCount; i++) {
+                network.addLayer(readLayer(buffer));
+            }
+            network.finalizeStructure();
+
+            final double[] weights = network.getWeights();
+            if (weights.length != weightCount || weightOffset + 8L * weightCount > channel.size()) {
+                throw new AIFHError("The network file is damaged, expected " + weights.length
+                        + " weights, the file has: " + weightCount);
+            }
+            buffer.position((int) weightOffset);
+            buffer.asDoubleBuffer().get(weights);
+            return network;
+        } catch (BufferUnderflowException ex) {
+            throw new AIFHError("The network file is truncated: " + file);
+        } catch (IOException ex) {
+            throw new AIFHError(ex);
+        }
+    }
+
+    /**
+     * Write the description of a layer.
+     * @param header The header being written.
+     * @param layer The layer.
+     */
+    private static void writeLayer(final ByteBuffer header, final Layer layer) {
+        if (layer instanceof DropoutLayer) {
+            header.putInt(TYPE_DROPOUT);
+            writeActivation(header, layer.getActivation());
+            header.put((byte) (layer.hasBias() ? 1 : 0));
+            header.putInt(layer.getCount());
+            header.putDouble(((DropoutLayer) layer).getDropout());
+        } else if (layer instanceof BasicLayer) {
+            header.putInt(TYPE_BASIC);
+            writeActivation(header, layer.getActivation());
+            header.put((byte) (layer.hasBias() ? 1 : 0));
+            final int[] dims = layer.getDimensionCounts();
+            header.putInt(dims.length);
+            for (int d : dims) {
+                header.putInt(d);
+            }
+        } else if (layer instanceof Conv2DLayer) {
+            final Conv2DLayer conv = (Conv2DLayer) layer;
+            header.putInt(TYPE_CONV2D);
+            writeActivation(header, layer.getActivation());
+            header.putInt(conv.getNumFilters());
+            header.putInt(conv.getFilterRows());
+            header.putInt(conv.getFilterColumns());
+            header.putInt(conv.getPadding());
+            header.putInt(conv.getStride());
+        } else if (layer instanceof MaxPoolLayer) {
+            final MaxPoolLayer pool = (MaxPoolLayer) layer;
+            header.putInt(TYPE_MAXPOOL);
+            header.putInt(pool.getPoolRows());
+            header.putInt(pool.getPoolColumns());
+        } else {
+            throw new AIFHError("Can't save layer type: " + layer.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * Read the description of a layer, and create it.
+     * @param buffer The file.
+     * @return The layer.
+     */
+    private static Layer readLayer(final ByteBuffer buffer) {
+        final int type = buffer.getInt();
+        switch (type) {
+            case TYPE_BASIC: {
+                final ActivationFunction activation = readActivation(buffer);
+                final boolean hasBias = buffer.get() != 0;
+                final int[] dims = new int[buffer.getInt()];
+                for (int i = 0; i < dims.length; i++) {
+                    dims[i] = buffer.getInt();
+                }
+                return new BasicLayer(activation, hasBias, dims);
+            }
+            case TYPE_DROPOUT: {
+                final ActivationFunction activation = readActivation(buffer);
+                final boolean hasBias = buffer.get() != 0;
+                final int count = buffer.getInt();
+                return new DropoutLayer(activation, hasBias, count, buffer.getDouble());
+            }
+            case TYPE_CONV2D: {
+                final ActivationFunction activation = readActivation(buffer);
+                final Conv2DLayer conv = new Conv2DLayer(activation, buffer.getInt(), buffer.getInt(),
+                        buffer.getInt());
+                conv.setPadding(buffer.getInt());
+                conv.setStride(buffer.getInt());
+                return conv;
+            }
+            case TYPE_MAXPOOL:
+                return new MaxPoolLayer(buffer.getInt(), buffer.getInt());
+            default:
+                throw new AIFHError("Unknown layer type in network file: " + type);
+        }
+    }
+
+    /**
+     * Write an activation function, as its class name and parameters.
+     * @param header The header being written.
+     * @param activation The activation function, may be null (input layers).
+     */
+    private static void writeActivation(final ByteBuffer header, final ActivationFunction activation) {
+        if (activation == null) {
+            header.putInt(-1);
+            return;
+        }
+        final byte[] name = activation.getClass().getName().getBytes(StandardCharsets.UTF_8);
+        header.putInt(name.length);
+        header.put(name);
+        final double[] params = activation.getParams();
+        header.putInt(params.length);
+        for (double d : params) {
+            header.putDouble(d);
+        }
+    }
+
+    /**
+     * Read an activation function, the class is created with its default constructor and the parameters are set.
+     * The class name comes from the file, so the class is checked to be an ActivationFunction before it is
+     * initialized or created; any other class is rejected.
+     * @param buffer The file.
+     * @return The activation function, or null.
+     */
+    private static ActivationFunction readActivation(final ByteBuffer buffer) {
+        final int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] name = new byte[length];
+        buffer.get(name);
+        final String className = new String(name, StandardCharsets.UTF_8);
+
+        final ActivationFunction result;
+        try {
+            final Class<?> c = Class.forName(className, false, NetworkFile.class.getClassLoader());
+            if (!ActivationFunction.class.isAssignableFrom(c)) {
+                throw new AIFHError("Not an activation function: " + className);
+            }
+            result = c.asSubclass(ActivationFunction.class).getConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError ex) {
+            throw new AIFHError("Can't create activation function: " + className);
+        }
+
+        final int paramCount = buffer.getInt();
+        for (int i = 0; i < paramCount; i++) {
+            result.setParam(i, buffer.getDouble());
+        }
+        return result;
+    }
+}
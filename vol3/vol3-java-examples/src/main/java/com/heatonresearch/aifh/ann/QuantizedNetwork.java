@@ -0,0 +1,378 @@
+/*
+ * Artificial Intelligence for Humans
+ * Volume 3: Deep Learning and Neural Networks
+ * Java Version
+ * http://www.aifh.org
+ * http://www.jeffheaton.com
+ *
+ * Code repository:
+ * https://github.com/jeffheaton/aifh
+ *
+ * Copyright 2014-2015 by Jeff Heaton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For more information on Heaton Research copyrights, licenses
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package com.heatonresearch.aifh.ann;
+
+import com.heatonresearch.aifh.AIFHError;
+import com.heatonresearch.aifh.ann.activation.ActivationFunction;
+import com.heatonresearch.aifh.general.data.BasicData;
+import com.heatonresearch.aifh.general.data.DataUtil;
+import com.heatonresearch.aifh.learning.ClassificationAlgorithm;
+import com.heatonresearch.aifh.learning.RegressionAlgorithm;
+import com.heatonresearch.aifh.util.ArrayUtil;
+
+import java.util.List;
+
+/**
+ * An immutable, int8 quantized copy of a trained BasicNetwork, used only for inference.  Each weight is stored as a
+ * signed byte, with one scale for each layer (the largest weight of the layer maps to 127).  The bias weights are
+ * kept as floats.  As each layer is computed, its inputs are quantized to bytes with their own scale, the dot
+ * products are done in integer arithmetic, and the result is scaled back and passed through the layer's activation
+ * function.  This makes the weights 8 times smaller than the double precision network.
+ *
+ * Only fully connected networks, made of BasicLayer, are supported.  The weights are never modified, but the compute
+ * methods of this object reuse one set of working arrays, so (like BasicNetwork) they must not be called by several
+ * threads at once.  Each thread can score with its own Session instead, which shares the weights.
+ */
+public class QuantizedNetwork implements RegressionAlgorithm, ClassificationAlgorithm {
+
+    /**
+     * The working arrays for one thread.  Sessions share the weights of the network, so they are cheap to create.
+     */
+    public class Session {
+
+        /**
+         * The values of the current layer.
+         */
+        private final double[] a = new double[QuantizedNetwork.this.maxCount];
+
+        /**
+         * The values of the next layer.
+         */
+        private final double[] b = new double[QuantizedNetwork.this.maxCount];
+
+        /**
+         * The quantized values of the current layer.
+         */
+        private final byte[] q = new byte[QuantizedNetwork.this.maxCount];
+
+        /**
+         * Calculate the output for the given input.
+         * @param input The input.
+         * @param output Output will be placed here.
+         */
+        public void compute(final double[] input, final double[] output) {
+            QuantizedNetwork.this.compute(input, output, this.a, this.b, this.q);
+        }
+    }
+
+    /**
+     * The largest quantized value.
+     */
+    public static final int QUANTIZED_MAX = 127;
+
+    /**
+     * The number of input neurons.
+     */
+    private final int inputCount;
+
+    /**
+     * The number of output neurons.
+     */
+    private final int outputCount;
+
+    /**
+     * The number of neurons feeding each layer, excluding bias.  Index 0 is the first layer after the input.
+     */
+    private final int[] fromCount;
+
+    /**
+     * The number of neurons in each layer.
+     */
+    private final int[] toCount;
+
+    /**
+     * The quantized weights of each layer, one row of fromCount weights for each neuron.
+     */
+    private final byte[][] weights;
+
+    /**
+     * The scale of each layer's quantized weights.
+     */
+    private final float[] weightScale;
+
+    /**
+     * The bias weight for each neuron of each layer, null if the previous layer has no bias.
+     */
+    private final float[][] bias;
+
+    /**
+     * The activation function of each layer.
+     */
+    private final ActivationFunction[] activation;
+
+    /**
+     * The largest layer, used to size the working arrays.
+     */
+    private final int maxCount;
+
+    /**
+     * The working arrays of the compute methods of this object.
+     */
+    private final Session session;
+
+    /**
+     * Quantize a trained network.  The network is not modified, and is not used after this call.
+     * @param network The network to quantize.
+     */
+    public QuantizedNetwork(final BasicNetwork network) {
+        for (Layer layer : network.getLayers()) {
+            if (layer.getClass() != BasicLayer.class) {
+                throw new AIFHError("Quantized networks only support BasicLayer, not: "
+                        + layer.getClass().getSimpleName());
+            }
+        }
+
+        final List<Layer> layers = network.getLayers();
+        final int count = layers.size() - 1;
+        final double[] source = network.getWeights();
+        this.inputCount = network.getInputCount();
+        this.outputCount = network.getOutputCount();
+        this.fromCount = new int[count];
+        this.toCount = new int[count];
+        this.weights = new byte[count][];
+        this.weightScale = new float[count];
+        this.bias = new float[count][];
+        this.activation = new ActivationFunction[count];
+
+        int max = this.inputCount;
+        for (int i = 0; i < count; i++) {
+            final Layer prev = layers.get(i);
+            final Layer layer = layers.get(i + 1);
+            final int from = prev.getCount();
+            final int to = layer.getCount();
+            final int stride = prev.getTotalCount();
+            final int weightIndex = layer.getWeightIndex();
+            max = Math.max(max, to);
+
+            double maxAbs = 0;
+            for (int x = 0; x < to; x++) {
+                for (int y = 0; y < from; y++) {
+                    maxAbs = Math.max(maxAbs, Math.abs(source[weightIndex + x * stride + y]));
+                }
+            }
+            final double scale = maxAbs > 0 ? maxAbs / QUANTIZED_MAX : 1;
+
+            this.fromCount[i] = from;
+            this.toCount[i] = to;
+            this.weightScale[i] = (float) scale;
+            this.activation[i] = layer.getActivation();
+            this.weights[i] = new byte[to * from];
+            for (int x = 0; x < to; x++) {
+                for (int y = 0; y < from; y++) {
+                    this.weights[i][x * from + y] = (byte) Math.round(source[weightIndex + x * stride + y] / scale);
+                }
+            }
+            if (prev.hasBias()) {
+                this.bias[i] = new float[to];
+                for (int x = 0; x < to; x++) {
+                    this.bias[i][x] = (float) source[weightIndex + x * stride + from];
+                }
+            }
+        }
+        this.maxCount = max;
+        this.session = new Session();
+    }
+
+    /**
+     * Quantize a vector to bytes.
+     * @param x The values.
+     * @param count The number of values.
+     * @param q Receives the quantized values.
+     * @return The scale of the quantized values.
+     */
+    private static double quantize(final double[] x, final int count, final byte[] q) {
+        double maxAbs = 0;
+        for (int i = 0; i < count; i++) {
+            maxAbs = Math.max(maxAbs, Math.abs(x[i]));
+        }
+        final double scale = maxAbs > 0 ? maxAbs / QUANTIZED_MAX : 1;
+        final double inverse = 1.0 / scale;
+        for (int i = 0; i < count; i++) {
+            q[i] = (byte) Math.round(x[i] * inverse);
+        }
+        return scale;
+    }
+
+    /**
+     * Calculate the output for the given input, using the given working arrays.
+     * @param input The input.
+     * @param output Output will be placed here.
+     * @param a A working array, at least maxCount long.
+     * @param b A working array, at least maxCount long.
+     * @param q A working array, at least maxCount long.
+     */
+    private void compute(final double[] input, final double[] output, final double[] a, final double[] b,
+                         final byte[] q) {
+        double[] current = a;
+        double[] next = b;
+        System.arraycopy(input, 0, current, 0, this.inputCount);
+
+        for (int i = 0; i < this.weights.length; i++) {
+            final int from = this.fromCount[i];
+            final int to = this.toCount[i];
+            final byte[] w = this.weights[i];
+            final float[] layerBias = this.bias[i];
+            final double scale = quantize(current, from, q) * this.weightScale[i];
+
+            for (int x = 0; x < to; x++) {
+                // integer dot product, 127*127 per term leaves room for over 100,000 inputs
+                int sum = 0;
+                int index = x * from;
+                for (int y = 0; y < from; y++) {
+                    sum += w[index++] * q[y];
+                }
+                next[x] = sum * scale + (layerBias != null ? layerBias[x] : 0);
+            }
+            this.activation[i].activationFunction(next, 0, to);
+
+            final double[] t = current;
+            current = next;
+            next = t;
+        }
+
+        System.arraycopy(current, 0, output, 0, this.outputCount);
+    }
+
+    /**
+     * Calculate the output for the given input.
+     * @param input The input.
+     * @param output Output will be placed here.
+     */
+    public void compute(final double[] input, final double[] output) {
+        this.session.compute(input, output);
+    }
+
+    /**
+     * Calculate the output for many rows.
+     * @param input The input rows.
+     * @param output The output rows, must be the same length as input.
+     */
+    public void compute(final double[][] input, final double[][] output) {
+        for (int i = 0; i < input.length; i++) {
+            this.session.compute(input[i], output[i]);
+        }
+    }
+
+    /**
+     * Create working arrays for another thread.
+     * @return A new session, to be used by one thread at a time.
+     */
+    public Session createSession() {
+        return new Session();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double[] computeRegression(final double[] input) {
+        if (input.length != this.inputCount) {
+            throw new AIFHError("Invalid input count(" + input.length + "), this network is designed for: "
+                    + this.inputCount);
+        }
+        final double[] output = new double[this.outputCount];
+        compute(input, output);
+        return output;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int computeClassification(final double[] input) {
+        return ArrayUtil.indexOfLargest(computeRegression(input));
+    }
+
+    /**
+     * The long term memory of a quantized network is read only, this returns a dequantized copy of the weights,
+     * one layer after another (from the input), each layer's bias weights after its other weights.
+     * @return A copy of the weights.
+     */
+    @Override
+    public double[] getLongTermMemory() {
+        int length = 0;
+        for (int i = 0; i < this.weights.length; i++) {
+            length += this.weights[i].length + (this.bias[i] != null ? this.bias[i].length : 0);
+        }
+        final double[] result = new double[length];
+        int index = 0;
+        for (int i = 0; i < this.weights.length; i++) {
+            for (byte w : this.weights[i]) {
+                result[index++] = w * this.weightScale[i];
+            }
+            if (this.bias[i] != null) {
+                for (float w : this.bias[i]) {
+                    result[index++] = w;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return The size of the weights, in bytes.  This includes the bias weights and the scales.
+     */
+    public long getModelSize() {
+        long result = 0;
+        for (int i = 0; i < this.weights.length; i++) {
+            result += this.weights[i].length + 4;
+            if (this.bias[i] != null) {
+                result += 4L * this.bias[i].length;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Compare the classification error of this network with the network it was quantized from.
+     * Both errors are calculated with DataUtil.calculateClassificationError.
+     * @param original The network that was quantized.
+     * @param data The data to evaluate.
+     * @return The error of this network minus the error of the original network.  Positive if quantization
+     * made the network less accurate.
+     */
+    public double calculateClassificationErrorDelta(final BasicNetwork original, final List<BasicData> data) {
+        return DataUtil.calculateClassificationError(data, this)
+                - DataUtil.calculateClassificationError(data, original);
+    }
+
+    /**
+     * @return The number of input neurons.
+     */
+    public int getInputCount() {
+        return this.inputCount;
+    }
+
+    /**
+     * @return The number of output neurons.
+     */
+    public int getOutputCount() {
+        return this.outputCount;
+    }
+}
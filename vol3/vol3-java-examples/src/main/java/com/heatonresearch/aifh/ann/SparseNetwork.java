@@ -0,0 +1,401 @@
+/*
+ * Artificial Intelligence for Humans
+ * Volume 3: Deep Learning and Neural Networks
+ * Java Version
+ * http://www.aifh.org
+ * http://www.jeffheaton.com
+ *
+ * Code repository:
+ * https://github.com/jeffheaton/aifh
+ *
+ * Copyright 2014-2015 by Jeff Heaton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For more information on Heaton Research copyrights, licenses
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package com.heatonresearch.aifh.ann;
+
+import com.heatonresearch.aifh.AIFHError;
+import com.heatonresearch.aifh.ann.activation.ActivationFunction;
+import com.heatonresearch.aifh.general.data.BasicData;
+import com.heatonresearch.aifh.general.data.DataUtil;
+import com.heatonresearch.aifh.learning.ClassificationAlgorithm;
+import com.heatonresearch.aifh.learning.RegressionAlgorithm;
+import com.heatonresearch.aifh.util.ArrayUtil;
+
+import java.util.List;
+
+/**
+ * An immutable, pruned copy of a trained BasicNetwork, used only for inference.  The weights of each layer are
+ * stored in compressed sparse row (CSR) form: for each neuron, only the non-zero weights and the index of the
+ * input they apply to are kept.  The time to compute a layer is therefore proportional to the number of weights
+ * that remain after pruning, see MagnitudePruning.
+ *
+ * The non-zero weights are summed in the same order as BasicNetwork, so a pruned BasicNetwork and the SparseNetwork
+ * built from it give the same output.  Only fully connected networks, made of BasicLayer, are supported.  The
+ * weights are never modified, but the compute methods of this object reuse one set of working arrays, so (like
+ * BasicNetwork) they must not be called by several threads at once.  Each thread can score with its own Session
+ * instead, which shares the weights.
+ */
+public class SparseNetwork implements RegressionAlgorithm, ClassificationAlgorithm {
+
+    /**
+     * The working arrays for one thread.  Sessions share the weights of the network, so they are cheap to create.
+     */
+    public class Session {
+
+        /**
+         * The values of the current layer.
+         */
+        private final double[] a = new double[SparseNetwork.this.maxCount];
+
+        /**
+         * The values of the next layer.
+         */
+        private final double[] b = new double[SparseNetwork.this.maxCount];
+
+        /**
+         * Calculate the output for the given input.
+         * @param input The input.
+         * @param output Output will be placed here.
+         */
+        public void compute(final double[] input, final double[] output) {
+            SparseNetwork.this.compute(input, output, this.a, this.b);
+        }
+    }
+
+    /**
+     * The number of input neurons.
+     */
+    private final int inputCount;
+
+    /**
+     * The number of output neurons.
+     */
+    private final int outputCount;
+
+    /**
+     * The number of neurons feeding each layer, excluding bias.  Index 0 is the first layer after the input.
+     */
+    private final int[] fromCount;
+
+    /**
+     * The number of neurons in each layer.
+     */
+    private final int[] toCount;
+
+    /**
+     * For each layer, where each neuron's weights start in columns/values.  Neuron x uses the entries from
+     * rowStart[x] up to (but not including) rowStart[x+1].
+     */
+    private final int[][] rowStart;
+
+    /**
+     * For each layer, the input that each non-zero weight applies to.
+     */
+    private final int[][] columns;
+
+    /**
+     * For each layer, the non-zero weights.
+     */
+    private final double[][] values;
+
+    /**
+     * The bias weight for each neuron of each layer, null if the previous layer has no bias.
+     */
+    private final double[][] bias;
+
+    /**
+     * The activation function of each layer.
+     */
+    private final ActivationFunction[] activation;
+
+    /**
+     * The largest layer, used to size the working arrays.
+     */
+    private final int maxCount;
+
+    /**
+     * The working arrays of the compute methods of this object.
+     */
+    private final Session session;
+
+    /**
+     * Create a sparse copy of a network, keeping only the weights whose magnitude is at least the threshold.  Bias
+     * weights are always kept.  The network is not modified, and is not used after this call.
+     * @param network The network to copy.
+     * @param threshold The magnitude threshold, 0 keeps every non-zero weight.
+     */
+    public SparseNetwork(final BasicNetwork network, final double threshold) {
+        for (Layer layer : network.getLayers()) {
+            if (layer.getClass() != BasicLayer.class) {
+                throw new AIFHError("Sparse networks only support BasicLayer, not: "
+                        + layer.getClass().getSimpleName());
+            }
+        }
+
+        final List<Layer> layers = network.getLayers();
+        final int count = layers.size() - 1;
+        final double[] source = network.getWeights();
+        this.inputCount = network.getInputCount();
+        this.outputCount = network.getOutputCount();
+        this.fromCount = new int[count];
+        this.toCount = new int[count];
+        this.rowStart = new int[count][];
+        this.columns = new int[count][];
+        this.values = new double[count][];
+        this.bias = new double[count][];
+        this.activation = new ActivationFunction[count];
+
+        int max = this.inputCount;
+        for (int i = 0; i < count; i++) {
+            final Layer prev = layers.get(i);
+            final Layer layer = layers.get(i + 1);
+            final int from = prev.getCount();
+            final int to = layer.getCount();
+            final int stride = prev.getTotalCount();
+            final int weightIndex = layer.getWeightIndex();
+            max = Math.max(max, to);
+
+            int nonZero = 0;
+            for (int x = 0; x < to; x++) {
+                for (int y = 0; y < from; y++) {
+                    if (keep(source[weightIndex + x * stride + y], threshold)) {
+                        nonZero++;
+                    }
+                }
+            }
+
+            this.fromCount[i] = from;
+            this.toCount[i] = to;
+            this.activation[i] = layer.getActivation();
+            this.rowStart[i] = new int[to + 1];
+            this.columns[i] = new int[nonZero];
+            this.values[i] = new double[nonZero];
+
+            int index = 0;
+            for (int x = 0; x < to; x++) {
+                this.rowStart[i][x] = index;
+                for (int y = 0; y < from; y++) {
+                    final double w = source[weightIndex + x * stride + y];
+                    if (keep(w, threshold)) {
+                        this.columns[i][index] = y;
+                        this.values[i][index++] = w;
+                    }
+                }
+            }
+            this.rowStart[i][to] = index;
+
+            if (prev.hasBias()) {
+                this.bias[i] = new double[to];
+                for (int x = 0; x < to; x++) {
+                    this.bias[i][x] = source[weightIndex + x * stride + from];
+                }
+            }
+        }
+        this.maxCount = max;
+        this.session = new Session();
+    }
+
+    /**
+     * @param w The weight.
+     * @param threshold The magnitude threshold.
+     * @return True, if the weight should be kept.
+     */
+    private static boolean keep(final double w, final double threshold) {
+        return w != 0 && Math.abs(w) >= threshold;
+    }
+
+    /**
+     * Calculate the output for the given input, using the given working arrays.
+     * @param input The input.
+     * @param output Output will be placed here.
+     * @param a A working array, at least maxCount long.
+     * @param b A working array, at least maxCount long.
+     */
+    private void compute(final double[] input, final double[] output, final double[] a, final double[] b) {
+        double[] current = a;
+        double[] next = b;
+        System.arraycopy(input, 0, current, 0, this.inputCount);
+
+        for (int i = 0; i < this.values.length; i++) {
+            final int to = this.toCount[i];
+            final int[] start = this.rowStart[i];
+            final int[] column = this.columns[i];
+            final double[] w = this.values[i];
+            final double[] layerBias = this.bias[i];
+
+            for (int x = 0; x < to; x++) {
+                double sum = 0;
+                for (int k = start[x]; k < start[x + 1]; k++) {
+                    sum += w[k] * current[column[k]];
+                }
+                if (layerBias != null) {
+                    sum += layerBias[x];
+                }
+                next[x] = sum;
+            }
+            this.activation[i].activationFunction(next, 0, to);
+
+            final double[] t = current;
+            current = next;
+            next = t;
+        }
+
+        System.arraycopy(current, 0, output, 0, this.outputCount);
+    }
+
+    /**
+     * Calculate the output for the given input.
+     * @param input The input.
+     * @param output Output will be placed here.
+     */
+    public void compute(final double[] input, final double[] output) {
+        this.session.compute(input, output);
+    }
+
+    /**
+     * Calculate the output for many rows.
+     * @param input The input rows.
+     * @param output The output rows, must be the same length as input.
+     */
+    public void compute(final double[][] input, final double[][] output) {
+        for (int i = 0; i < input.length; i++) {
+            this.session.compute(input[i], output[i]);
+        }
+    }
+
+    /**
+     * Create working arrays for another thread.
+     * @return A new session, to be used by one thread at a time.
+     */
+    public Session createSession() {
+        return new Session();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double[] computeRegression(final double[] input) {
+        if (input.length != this.inputCount) {
+            throw new AIFHError("Invalid input count(" + input.length + "), this network is designed for: "
+                    + this.inputCount);
+        }
+        final double[] output = new double[this.outputCount];
+        compute(input, output);
+        return output;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int computeClassification(final double[] input) {
+        return ArrayUtil.indexOfLargest(computeRegression(input));
+    }
+
+    /**
+     * The long term memory of a sparse network is read only, this returns a dense copy of the weights, one layer
+     * after another (from the input), each layer's bias weights after its other weights.  Pruned weights are zero.
+     * @return A copy of the weights.
+     */
+    @Override
+    public double[] getLongTermMemory() {
+        int length = 0;
+        for (int i = 0; i < this.values.length; i++) {
+            length += this.toCount[i] * this.fromCount[i] + (this.bias[i] != null ? this.bias[i].length : 0);
+        }
+        final double[] result = new double[length];
+        int index = 0;
+        for (int i = 0; i < this.values.length; i++) {
+            for (int x = 0; x < this.toCount[i]; x++) {
+                for (int k = this.rowStart[i][x]; k < this.rowStart[i][x + 1]; k++) {
+                    result[index + x * this.fromCount[i] + this.columns[i][k]] = this.values[i][k];
+                }
+            }
+            index += this.toCount[i] * this.fromCount[i];
+            if (this.bias[i] != null) {
+                System.arraycopy(this.bias[i], 0, result, index, this.bias[i].length);
+                index += this.bias[i].length;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return The number of weights that were kept, excluding bias weights.
+     */
+    public int getNonZeroCount() {
+        int result = 0;
+        for (double[] v : this.values) {
+            result += v.length;
+        }
+        return result;
+    }
+
+    /**
+     * @return The fraction of the weights (excluding bias weights) that were pruned.
+     */
+    public double getSparsity() {
+        long total = 0;
+        for (int i = 0; i < this.values.length; i++) {
+            total += (long) this.toCount[i] * this.fromCount[i];
+        }
+        return total == 0 ? 0 : 1.0 - (double) getNonZeroCount() / total;
+    }
+
+    /**
+     * @return The size of the weights, in bytes.  This includes the column indexes, row starts and bias weights.
+     */
+    public long getModelSize() {
+        long result = 0;
+        for (int i = 0; i < this.values.length; i++) {
+            result += 12L * this.values[i].length + 4L * this.rowStart[i].length;
+            if (this.bias[i] != null) {
+                result += 8L * this.bias[i].length;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Compare the classification error of this network with the network it was created from.
+     * Both errors are calculated with DataUtil.calculateClassificationError.
+     * @param original The network that was pruned.
+     * @param data The data to evaluate.
+     * @return The error of this network minus the error of the original network.  Positive if pruning
+     * made the network less accurate.
+     */
+    public double calculateClassificationErrorDelta(final BasicNetwork original, final List<BasicData> data) {
+        return DataUtil.calculateClassificationError(data, this)
+                - DataUtil.calculateClassificationError(data, original);
+    }
+
+    /**
+     * @return The number of input neurons.
+     */
+    public int getInputCount() {
+        return this.inputCount;
+    }
+
+    /**
+     * @return The number of output neurons.
+     */
+    public int getOutputCount() {
+        return this.outputCount;
+    }
+}
@@ -29,13 +29,23 @@
 package com.heatonresearch.aifh.ann;
 
 import com.heatonresearch.aifh.ann.activation.ActivationFunction;
+import com.heatonresearch.aifh.ann.kernel.Kernels;
+import com.heatonresearch.aifh.ann.kernel.VectorKernels;
 import com.heatonresearch.aifh.ann.train.GradientCalc;
+import com.heatonresearch.aifh.general.data.SparseBasicData;
+
+import java.util.Arrays;
 
 /**
  * Base class for all layers (used with BasicNetwork) that have weights.
  */
 public abstract class WeightedLayer implements Layer {
 
+    /**
+     * The number of weights in a block for the batch calculation, sized to fit comfortably in cache.
+     */
+    public static final int BLOCK_WEIGHTS = 8192;
+
     /**
      * The layer index.
      */
@@ -46,6 +56,11 @@ public abstract class WeightedLayer implements Layer {
      */
     private BasicNetwork owner;
 
+    /**
+     * The previous layer, or null for the input layer.  Set once, when the structure is finalized.
+     */
+    private Layer previousLayer;
+
     /**
      * The index to this layer's weights.
      */
@@ -69,31 +84,31 @@ public abstract class WeightedLayer implements Layer {
         this.owner = theOwner;
         this.layerIndex = theLayerIndex;
 
-        Layer prevLayer = (this.layerIndex>0) ? this.owner.getLayers().get(this.layerIndex-1) : null;
-        Layer nextLayer = (this.layerIndex<this.owner.getLayers().size()-1) ? this.owner.getLayers().get(this.layerIndex+1) : null;
+        // Layers are finalized from the output layer back to the input layer, so this layer's neurons and weights
+        // start right after those of the layers already counted.
+        this.neuronIndex = counts.getNeuronCount();
+        this.weightIndex = counts.getWeightCount();
 
-        int tc = getTotalCount();
-        counts.addNeuronCount(tc);
-
-        if (prevLayer != null) {
-            counts.addWeightCount(getCount() * prevLayer.getTotalCount());
+        counts.addNeuronCount(getTotalCount());
+        if (this.previousLayer != null) {
+            counts.addWeightCount(getWeightCount());
         }
+    }
 
-        int weightIndex, layerIndex;
-        if (theLayerIndex == this.owner.getLayers().size()-1 ) {
-            weightIndex = 0;
-            layerIndex = 0;
-        } else {
-            weightIndex = nextLayer.getWeightIndex()
-                    + (getTotalCount() * nextLayer.getCount());
-            layerIndex = nextLayer.getNeuronIndex() + nextLayer.getTotalCount();
-
-            //layerIndex = nextLayer.getLayerIndexReverse()
-            //        + nextLayer.getTotalCount();
-        }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setPreviousLayer(Layer thePreviousLayer) {
+        this.previousLayer = thePreviousLayer;
+    }
 
-        this.neuronIndex = layerIndex;
-        this.weightIndex = weightIndex;
+    /**
+     * @return The number of weights between the previous layer and this layer.  By default every neuron in this
+     * layer is connected to every neuron (including bias) of the previous layer.
+     */
+    public int getWeightCount() {
+        return getCount() * this.previousLayer.getTotalCount();
     }
 
     /**
@@ -104,26 +119,39 @@ public abstract class WeightedLayer implements Layer {
      * @param toCount The count of to neurons.
      */
     public void computeLayer(int inputOffset, int outputOffset, int fromCount, int toCount) {
-        Layer prev = getOwner().getPreviousLayer(this);
-        final double[] weights = getOwner().getWeights();
-
-        int index = getWeightIndex();
-
-        // weight values
-        for (int ix = 0; ix < toCount; ix++) {
-            int x = getNeuronIndex()+ix;
-            double sum = 0;
+        final BasicNetwork network = getOwner();
+        computeLayer(network.getWeights(), network.getLayerOutput(), network.getLayerSums(),
+                getWeightIndex(), this.previousLayer.getNeuronIndex(), fromCount,
+                getNeuronIndex(), toCount, getActivation());
+    }
 
-            for (int y = 0; y < fromCount; y++) {
-                sum += weights[index] * getOwner().getLayerOutput()[prev.getNeuronIndex()+y];
-                index++;
-            }
-            getOwner().getLayerSums()[x] += sum;
-            getOwner().getLayerOutput()[x] += sum;
+    /**
+     * Compute a fully connected layer for a single row.  All of the indexes are passed in, so that a caller that
+     * has precomputed them (see ExecutionPlan) does not need to look anything up.
+     * @param weights The weights.
+     * @param layerOutput The layer outputs.
+     * @param layerSums The layer sums.
+     * @param weightIndex The index of this layer's weights.
+     * @param fromIndex The index of the previous layer's neurons.
+     * @param fromCount The count of from neurons, including bias.
+     * @param toIndex The index of this layer's neurons.
+     * @param toCount The count of to neurons.
+     * @param activation The activation function.
+     */
+    public static void computeLayer(final double[] weights, final double[] layerOutput, final double[] layerSums,
+                                    final int weightIndex, final int fromIndex, final int fromCount,
+                                    final int toIndex, final int toCount, final ActivationFunction activation) {
+        final VectorKernels kernels = Kernels.get();
+        int index = weightIndex;
+
+        for (int x = toIndex; x < toIndex + toCount; x++) {
+            final double sum = kernels.dot(weights, index, layerOutput, fromIndex, fromCount);
+            index += fromCount;
+            layerSums[x] = sum;
+            layerOutput[x] = sum;
         }
 
-        getActivation().activationFunction(
-                getOwner().getLayerOutput(), getNeuronIndex(), toCount);
+        activation.activationFunction(layerOutput, toIndex, toCount);
     }
 
     /**
@@ -135,7 +163,7 @@ public abstract class WeightedLayer implements Layer {
      * @param toLayerSize The to layer size.
      */
     public void computeGradient(GradientCalc calc, int inputOffset, int outputOffset, int fromLayerSize, int toLayerSize) {
-        Layer prev = getOwner().getPreviousLayer(this);
+        Layer prev = this.previousLayer;
         final int fromLayerIndex = prev.getNeuronIndex();
         final int toLayerIndex = getNeuronIndex();
 
@@ -169,6 +197,399 @@ public abstract class WeightedLayer implements Layer {
         }
     }
 
+    /**
+     * Compute a layer for every row of a mini-batch.  This is a matrix-matrix product of the batch inputs and the
+     * weight matrix, see multiply.  The weight matrix is streamed from memory once per batch rather than once per
+     * row.
+     * @param batch The mini-batch buffers.
+     * @param fromCount The count of from neurons.
+     * @param toCount The count of to neurons.
+     */
+    public void computeLayer(BatchBuffers batch, int fromCount, int toCount) {
+        final double[] layerOutput = batch.getLayerOutput();
+        final int stride = batch.getStride();
+        final int rowCount = batch.getRowCount();
+        final int toIndex = getNeuronIndex();
+        final int fromIndex = this.previousLayer.getNeuronIndex();
+        final double[] weights = getOwner().getWeights();
+
+        if (isSparse(batch)) {
+            // one row at a time, only the non-zero inputs of sparse rows are visited
+            for (int row = 0; row < rowCount; row++) {
+                final SparseBasicData sparse = batch.getSparseInput(row);
+                if (sparse == null) {
+                    multiply(weights, getWeightIndex(), layerOutput, row * stride + fromIndex, stride,
+                            batch.getLayerSums(), layerOutput, row * stride + toIndex, stride, 1,
+                            1, fromCount, toCount);
+                } else {
+                    multiplySparse(weights, getWeightIndex(), sparse, this.previousLayer.hasBias(),
+                            batch.getLayerSums(), layerOutput, row * stride + toIndex, fromCount, toCount);
+                }
+            }
+        } else {
+            multiply(weights, getWeightIndex(), layerOutput, fromIndex, stride,
+                    batch.getLayerSums(), layerOutput, toIndex, stride, 1, rowCount, fromCount, toCount);
+        }
+
+        for (int row = 0; row < rowCount; row++) {
+            getActivation().activationFunction(layerOutput, row * stride + toIndex, toCount);
+        }
+    }
+
+    /**
+     * Multiply a group of input rows by a weight matrix, this is the blocked kernel behind the batch calculation.
+     * The weights are processed in blocks that fit in cache, and each weight is applied to four rows at once
+     * (VectorKernels.dot4), so all of the arithmetic goes through the kernels in use.
+     * The result for row r and neuron x is placed in both sums and output at
+     * outputIndex + r*outputStride + x*neuronStride.
+     * @param weights The weights.
+     * @param weightIndex The index of the weight matrix, one row of fromCount weights for each neuron.
+     * @param input The input rows.
+     * @param inputIndex The index of the first input row.
+     * @param inputStride The distance between input rows.
+     * @param sums The array that receives the sums.
+     * @param output The array that receives the sums, before activation.
+     * @param outputIndex The index of the first output.
+     * @param outputStride The distance between output rows.
+     * @param neuronStride The distance between neurons of an output row.
+     * @param rowCount The number of rows.
+     * @param fromCount The count of from neurons.
+     * @param toCount The count of to neurons.
+     */
+    public static void multiply(final double[] weights, final int weightIndex,
+                                final double[] input, final int inputIndex, final int inputStride,
+                                final double[] sums, final double[] output, final int outputIndex,
+                                final int outputStride, final int neuronStride,
+                                final int rowCount, final int fromCount, final int toCount) {
+        final VectorKernels kernels = Kernels.get();
+        final int blockSize = Math.max(1, BLOCK_WEIGHTS / fromCount);
+        final double[] sum = new double[4];
+
+        for (int blockStart = 0; blockStart < toCount; blockStart += blockSize) {
+            final int blockEnd = Math.min(toCount, blockStart + blockSize);
+            int row = 0;
+
+            // four rows at a time, each weight is loaded once for all four
+            for (; row + 4 <= rowCount; row += 4) {
+                final int in = inputIndex + row * inputStride;
+                for (int ix = blockStart; ix < blockEnd; ix++) {
+                    kernels.dot4(weights, weightIndex + ix * fromCount, input, in, inputStride, fromCount, sum);
+                    final int x = outputIndex + row * outputStride + ix * neuronStride;
+                    sums[x] = output[x] = sum[0];
+                    sums[x + outputStride] = output[x + outputStride] = sum[1];
+                    sums[x + 2 * outputStride] = output[x + 2 * outputStride] = sum[2];
+                    sums[x + 3 * outputStride] = output[x + 3 * outputStride] = sum[3];
+                }
+            }
+
+            // any remaining rows
+            for (; row < rowCount; row++) {
+                final int in = inputIndex + row * inputStride;
+                for (int ix = blockStart; ix < blockEnd; ix++) {
+                    final int x = outputIndex + row * outputStride + ix * neuronStride;
+                    sums[x] = output[x] = kernels.dot(weights, weightIndex + ix * fromCount, input, in, fromCount);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param batch The mini-batch buffers.
+     * @return True, if this layer is fed by the input layer and some of the batch rows have a sparse input.
+     */
+    private boolean isSparse(final BatchBuffers batch) {
+        return this.previousLayer.getPreviousLayer() == null && batch.hasSparseInput();
+    }
+
+    /**
+     * Multiply a sparse input row by a weight matrix.  Only the weights of the non-zero inputs (and the bias) are
+     * read.  The inputs are summed in the same order as multiply, so the result is the same as for the dense row.
+     * @param weights The weights.
+     * @param weightIndex The index of the weight matrix, one row of fromCount weights for each neuron.
+     * @param input The sparse input.
+     * @param hasBias True, if the input layer has a bias neuron, it follows the inputs.
+     * @param sums The array that receives the sums.
+     * @param output The array that receives the sums, before activation.
+     * @param outputIndex The index of the output.
+     * @param fromCount The count of from neurons, including bias.
+     * @param toCount The count of to neurons.
+     */
+    public static void multiplySparse(final double[] weights, final int weightIndex, final SparseBasicData input,
+                                      final boolean hasBias, final double[] sums, final double[] output,
+                                      final int outputIndex, final int fromCount, final int toCount) {
+        final int[] indexes = input.getIndexes();
+        final double[] values = input.getValues();
+        final int biasIndex = input.getInputCount();
+
+        for (int x = 0; x < toCount; x++) {
+            final int wi = weightIndex + x * fromCount;
+            double sum = 0;
+            for (int k = 0; k < indexes.length; k++) {
+                sum += weights[wi + indexes[k]] * values[k];
+            }
+            if (hasBias) {
+                sum += weights[wi + biasIndex];
+            }
+            sums[outputIndex + x] = output[outputIndex + x] = sum;
+        }
+    }
+
+    /**
+     * The backward counterpart of multiplySparse.  Only the gradients of the non-zero inputs (and the bias) are
+     * accumulated.  The deltas of the input layer are never used, so they are not calculated.
+     * @param gradients The gradients, same layout as the weights.
+     * @param weightIndex The index of the weight matrix, one row of fromCount weights for each neuron.
+     * @param input The sparse input.
+     * @param hasBias True, if the input layer has a bias neuron, it follows the inputs.
+     * @param delta The deltas of the output row.
+     * @param deltaIndex The index of the output delta.
+     * @param fromCount The count of from neurons, including bias.
+     * @param toCount The count of to neurons.
+     */
+    public static void multiplySparseGradient(final double[] gradients, final int weightIndex,
+                                              final SparseBasicData input, final boolean hasBias,
+                                              final double[] delta, final int deltaIndex,
+                                              final int fromCount, final int toCount) {
+        final int[] indexes = input.getIndexes();
+        final double[] values = input.getValues();
+        final int biasIndex = input.getInputCount();
+
+        for (int x = 0; x < toCount; x++) {
+            final int wi = weightIndex + x * fromCount;
+            final double d = delta[deltaIndex + x];
+            for (int k = 0; k < indexes.length; k++) {
+                gradients[wi + indexes[k]] -= values[k] * d;
+            }
+            if (hasBias) {
+                gradients[wi + biasIndex] -= d;
+            }
+        }
+    }
+
+    /**
+     * Compute gradients for this layer, for every row of a mini-batch, see multiplyGradient.
+     * @param calc The gradient calculator.
+     * @param batch The mini-batch buffers.
+     * @param fromLayerSize The from layer size.
+     * @param toLayerSize The to layer size.
+     */
+    public void computeGradient(GradientCalc calc, BatchBuffers batch, int fromLayerSize, int toLayerSize) {
+        final int fromLayerIndex = this.previousLayer.getNeuronIndex();
+        final ActivationFunction activation = getActivation();
+
+        final double[] layerOutput = batch.getLayerOutput();
+        final double[] layerSums = batch.getLayerSums();
+        final double[] layerDelta = batch.getLayerDelta();
+        final int stride = batch.getStride();
+        final int rowCount = batch.getRowCount();
+
+        if (isSparse(batch)) {
+            computeSparseGradient(calc, batch, fromLayerSize, toLayerSize);
+            return;
+        }
+
+        for (int row = 0; row < rowCount; row++) {
+            final int y = row * stride + fromLayerIndex;
+            Arrays.fill(layerDelta, y, y + fromLayerSize, 0);
+        }
+
+        multiplyGradient(getOwner().getWeights(), calc.getGradients(), getWeightIndex(),
+                layerOutput, layerDelta, fromLayerIndex, stride,
+                layerDelta, getNeuronIndex(), stride, 1, rowCount, fromLayerSize, toLayerSize);
+
+        for (int row = 0; row < rowCount; row++) {
+            int y = row * stride + fromLayerIndex;
+            for (int yi = 0; yi < fromLayerSize; yi++, y++) {
+                layerDelta[y] *= activation.derivativeFunction(layerSums[y], layerOutput[y]);
+            }
+        }
+    }
+
+    /**
+     * Compute gradients for the first layer, one row at a time, when some of the batch rows are sparse.  Dense rows
+     * are handled exactly as computeGradient does.
+     * @param calc The gradient calculator.
+     * @param batch The mini-batch buffers.
+     * @param fromLayerSize The from layer size.
+     * @param toLayerSize The to layer size.
+     */
+    private void computeSparseGradient(GradientCalc calc, BatchBuffers batch, int fromLayerSize, int toLayerSize) {
+        final int fromLayerIndex = this.previousLayer.getNeuronIndex();
+        final ActivationFunction activation = getActivation();
+        final double[] weights = getOwner().getWeights();
+        final double[] layerOutput = batch.getLayerOutput();
+        final double[] layerSums = batch.getLayerSums();
+        final double[] layerDelta = batch.getLayerDelta();
+        final int stride = batch.getStride();
+
+        for (int row = 0; row < batch.getRowCount(); row++) {
+            final SparseBasicData sparse = batch.getSparseInput(row);
+            final int deltaIndex = row * stride + getNeuronIndex();
+            if (sparse != null) {
+                multiplySparseGradient(calc.getGradients(), getWeightIndex(), sparse, this.previousLayer.hasBias(),
+                        layerDelta, deltaIndex, fromLayerSize, toLayerSize);
+            } else {
+                final int y = row * stride + fromLayerIndex;
+                Arrays.fill(layerDelta, y, y + fromLayerSize, 0);
+                multiplyGradient(weights, calc.getGradients(), getWeightIndex(),
+                        layerOutput, layerDelta, y, stride,
+                        layerDelta, deltaIndex, stride, 1, 1, fromLayerSize, toLayerSize);
+                for (int yi = y; yi < y + fromLayerSize; yi++) {
+                    layerDelta[yi] *= activation.derivativeFunction(layerSums[yi], layerOutput[yi]);
+                }
+            }
+        }
+    }
+
+    /**
+     * The backward counterpart of multiply.  Accumulates the weight gradients for a group of rows, and adds the
+     * deltas propagated back through the weights to inputDelta.  Each row of the weight and gradient matrix is
+     * visited once and applied to every row while it is still in cache.  The gradients are accumulated in the same
+     * order as processing the rows one at a time, so the results are identical.  The inner loops are
+     * VectorKernels.axpy.
+     * @param weights The weights.
+     * @param gradients The gradients, same layout as the weights.
+     * @param weightIndex The index of the weight matrix, one row of fromCount weights for each neuron.
+     * @param input The input rows that were multiplied.
+     * @param inputDelta Receives the deltas of the input rows, laid out the same as the input.
+     * @param inputIndex The index of the first input row.
+     * @param inputStride The distance between input rows.
+     * @param delta The deltas of the output rows.
+     * @param deltaIndex The index of the first output delta.
+     * @param deltaStride The distance between output delta rows.
+     * @param neuronStride The distance between neurons of an output delta row.
+     * @param rowCount The number of rows.
+     * @param fromCount The count of from neurons.
+     * @param toCount The count of to neurons.
+     */
+    public static void multiplyGradient(final double[] weights, final double[] gradients, final int weightIndex,
+                                        final double[] input, final double[] inputDelta,
+                                        final int inputIndex, final int inputStride,
+                                        final double[] delta, final int deltaIndex,
+                                        final int deltaStride, final int neuronStride,
+                                        final int rowCount, final int fromCount, final int toCount) {
+        final VectorKernels kernels = Kernels.get();
+        for (int xi = 0; xi < toCount; xi++) {
+            final int wi = weightIndex + xi * fromCount;
+            for (int row = 0; row < rowCount; row++) {
+                final int y = inputIndex + row * inputStride;
+                final double d = delta[deltaIndex + row * deltaStride + xi * neuronStride];
+                kernels.axpy(-d, input, y, gradients, wi, fromCount);
+                kernels.axpy(d, weights, wi, inputDelta, y, fromCount);
+            }
+        }
+    }
+
+    /**
+     * The single precision version of multiply, used by FloatNetwork.  The weights are processed in the same cache
+     * sized blocks, four rows at a time.  VectorKernels only works with doubles, so the inner loops are written out
+     * here, in float arithmetic.
+     * @param weights The weights.
+     * @param weightIndex The index of the weight matrix, one row of fromCount weights for each neuron.
+     * @param input The input rows.
+     * @param inputIndex The index of the first input row.
+     * @param inputStride The distance between input rows.
+     * @param sums The array that receives the sums.
+     * @param output The array that receives the sums, before activation.
+     * @param outputIndex The index of the first output.
+     * @param outputStride The distance between output rows.
+     * @param rowCount The number of rows.
+     * @param fromCount The count of from neurons.
+     * @param toCount The count of to neurons.
+     */
+    public static void multiply(final float[] weights, final int weightIndex,
+                                final float[] input, final int inputIndex, final int inputStride,
+                                final float[] sums, final float[] output, final int outputIndex,
+                                final int outputStride, final int rowCount, final int fromCount,
+                                final int toCount) {
+        final int blockSize = Math.max(1, BLOCK_WEIGHTS / fromCount);
+
+        for (int blockStart = 0; blockStart < toCount; blockStart += blockSize) {
+            final int blockEnd = Math.min(toCount, blockStart + blockSize);
+            int row = 0;
+
+            // four rows at a time, each weight is loaded once for all four
+            for (; row + 4 <= rowCount; row += 4) {
+                final int in0 = inputIndex + row * inputStride;
+                final int in1 = in0 + inputStride;
+                final int in2 = in1 + inputStride;
+                final int in3 = in2 + inputStride;
+                for (int ix = blockStart; ix < blockEnd; ix++) {
+                    int index = weightIndex + ix * fromCount;
+                    float sum0 = 0, sum1 = 0, sum2 = 0, sum3 = 0;
+                    for (int y = 0; y < fromCount; y++, index++) {
+                        final float w = weights[index];
+                        sum0 += w * input[in0 + y];
+                        sum1 += w * input[in1 + y];
+                        sum2 += w * input[in2 + y];
+                        sum3 += w * input[in3 + y];
+                    }
+                    final int x = outputIndex + row * outputStride + ix;
+                    sums[x] = output[x] = sum0;
+                    sums[x + outputStride] = output[x + outputStride] = sum1;
+                    sums[x + 2 * outputStride] = output[x + 2 * outputStride] = sum2;
+                    sums[x + 3 * outputStride] = output[x + 3 * outputStride] = sum3;
+                }
+            }
+
+            // any remaining rows
+            for (; row < rowCount; row++) {
+                final int in = inputIndex + row * inputStride;
+                for (int ix = blockStart; ix < blockEnd; ix++) {
+                    int index = weightIndex + ix * fromCount;
+                    float sum = 0;
+                    for (int y = 0; y < fromCount; y++, index++) {
+                        sum += weights[index] * input[in + y];
+                    }
+                    final int x = outputIndex + row * outputStride + ix;
+                    sums[x] = output[x] = sum;
+                }
+            }
+        }
+    }
+
+    /**
+     * The single precision version of multiplyGradient, used by FloatGradientCalc.  Each row of the weight and
+     * gradient matrix is visited once and applied to every row of the batch, as for doubles.
+     * @param weights The weights.
+     * @param gradients The gradients, same layout as the weights.
+     * @param weightIndex The index of the weight matrix, one row of fromCount weights for each neuron.
+     * @param input The input rows that were multiplied.
+     * @param inputDelta Receives the deltas of the input rows, laid out the same as the input.
+     * @param inputIndex The index of the first input row.
+     * @param inputStride The distance between input rows.
+     * @param delta The deltas of the output rows.
+     * @param deltaIndex The index of the first output delta.
+     * @param deltaStride The distance between output delta rows.
+     * @param rowCount The number of rows.
+     * @param fromCount The count of from neurons.
+     * @param toCount The count of to neurons.
+     */
+    public static void multiplyGradient(final float[] weights, final float[] gradients, final int weightIndex,
+                                        final float[] input, final float[] inputDelta,
+                                        final int inputIndex, final int inputStride,
+                                        final float[] delta, final int deltaIndex, final int deltaStride,
+                                        final int rowCount, final int fromCount, final int toCount) {
+        for (int xi = 0; xi < toCount; xi++) {
+            final int wi = weightIndex + xi * fromCount;
+            for (int row = 0; row < rowCount; row++) {
+                final int y = inputIndex + row * inputStride;
+                final float d = delta[deltaIndex + row * deltaStride + xi];
+                for (int yi = 0; yi < fromCount; yi++) {
+                    gradients[wi + yi] -= input[y + yi] * d;
+                    inputDelta[y + yi] += weights[wi + yi] * d;
+                }
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Layer getPreviousLayer() {
+        return this.previousLayer;
+    }
 
     /**
      * {@inheritDoc}
@@ -28,6 +28,8 @@
  */
 package com.heatonresearch.aifh.ann.activation;
 
+import com.heatonresearch.aifh.ann.kernel.Kernels;
+
 /**
  * A Rectified Linear Unit (ReLU activation function. This activation function is commonly
  * used for hidden layers of a neural network.  A ReLU activation function will usually
@@ -83,11 +85,8 @@ public class ActivationReLU implements ActivationFunction {
 	@Override
 	public final void activationFunction(final double[] x, final int start,
 			final int size) {
-		for (int i = start; i < start + size; i++) {
-			if (x[i] <= this.params[ActivationReLU.PARAM_RELU_LOW_THRESHOLD]) {
-				x[i] = this.params[ActivationReLU.PARAM_RELU_LOW];
-			}
-		}
+		Kernels.get().relu(x, start, size, this.params[ActivationReLU.PARAM_RELU_LOW_THRESHOLD],
+				this.params[ActivationReLU.PARAM_RELU_LOW]);
 
 	}
 
@@ -28,7 +28,7 @@
  */
 package com.heatonresearch.aifh.ann.activation;
 
-import org.encog.mathutil.BoundMath;
+import com.heatonresearch.aifh.ann.kernel.Kernels;
 
 /**
  * The sigmoid activation function takes on a sigmoidal shape. Only positive
@@ -55,9 +55,7 @@ public class ActivationSigmoid implements ActivationFunction {
 	@Override
 	public final void activationFunction(final double[] x, final int start,
 			final int size) {
-		for (int i = start; i < start + size; i++) {
-			x[i] = 1.0 / (1.0 + BoundMath.exp(-1 * x[i]));
-		}
+		Kernels.get().sigmoid(x, start, size);
 	}
 
 	/**
@@ -28,8 +28,7 @@
  */
 package com.heatonresearch.aifh.ann.activation;
 
-import org.encog.Encog;
-import org.encog.mathutil.BoundMath;
+import com.heatonresearch.aifh.ann.kernel.Kernels;
 
 /**
  * The softmax activation function. This activation function is usually used on the output layer of a
@@ -56,20 +55,7 @@ public class ActivationSoftMax implements ActivationFunction {
 	@Override
 	public final void activationFunction(final double[] x, final int start,
 			final int size) {
-		double sum = 0;
-		for (int i = start; i < start + size; i++) {
-			x[i] = BoundMath.exp(x[i]);
-			sum += x[i];
-		}
-		if(Double.isNaN(sum) || sum <Encog.DEFAULT_DOUBLE_EQUAL ) {
-			for (int i = start; i < start + size; i++) {
-				x[i] = 1.0/size;
-			}
-		} else {
-			for (int i = start; i < start + size; i++) {
-				x[i] = x[i] / sum;
-			}
-		}
+		Kernels.get().softmax(x, start, size);
 	}
 
 	/**
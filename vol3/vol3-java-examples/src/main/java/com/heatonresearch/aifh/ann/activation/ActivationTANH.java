@@ -28,6 +28,8 @@
  */
 package com.heatonresearch.aifh.ann.activation;
 
+import com.heatonresearch.aifh.ann.kernel.Kernels;
+
 /**
  * The hyperbolic tangent activation function takes the curved shape of the
  * hyperbolic tangent. This activation function produces both positive and
@@ -55,9 +57,7 @@ public class ActivationTANH implements ActivationFunction {
 	@Override
 	public final void activationFunction(final double[] x, final int start,
 			final int size) {
-		for (int i = start; i < start + size; i++) {
-			x[i] = Math.tanh(x[i]);
-		}
+		Kernels.get().tanh(x, start, size);
 	}
 
 	/**
@@ -0,0 +1,104 @@
+/*
+ * Artificial Intelligence for Humans
+ * Volume 3: Deep Learning and Neural Networks
+ * Java Version
+ * http://www.aifh.org
+ * http://www.jeffheaton.com
+ *
+ * Code repository:
+ * https://github.com/jeffheaton/aifh
+ *
+ * Copyright 2014-2015 by Jeff Heaton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For more information on Heaton Research copyrights, licenses
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package com.heatonresearch.aifh.ann.kernel;
+
+import com.heatonresearch.aifh.AIFHError;
+
+/**
+ * Selects the kernel implementation, once, at startup.  The system property aifh.kernels chooses it:
+ *
+ * scalar - ScalarKernels, the default.
+ * unrolled - UnrolledKernels.
+ * any other value - the fully qualified name of a class that implements VectorKernels and has a public no-argument
+ * constructor.  This allows a SIMD back end (i.e. one built on jdk.incubator.vector, which needs a newer JDK than
+ * this project targets) to be compiled separately and placed on the class path.  If the class can not be loaded on
+ * this JVM, the scalar kernels are used.  A class that is not a VectorKernels is rejected before it is initialized.
+ */
+public class Kernels {
+
+    /**
+     * The system property that selects the kernels.
+     */
+    public static final String PROPERTY = "aifh.kernels";
+
+    /**
+     * The kernels in use.
+     */
+    private static volatile VectorKernels instance = create(System.getProperty(PROPERTY));
+
+    /**
+     * @return The kernels in use.
+     */
+    public static VectorKernels get() {
+        return instance;
+    }
+
+    /**
+     * Replace the kernels in use, i.e. with a back end that is created in code rather than named by the system
+     * property.  This should be done at startup (or by a test), not while a network is being trained.
+     * @param theKernels The kernels to use.
+     */
+    public static void set(final VectorKernels theKernels) {
+        instance = theKernels;
+    }
+
+    /**
+     * Create the kernels with the specified name.
+     * @param name The name, see the class description.  Null for the default.
+     * @return The kernels, the scalar kernels if the name could not be loaded.
+     * @throws AIFHError If the class is not a VectorKernels, or could not be created.
+     */
+    public static VectorKernels create(final String name) {
+        if (name == null || name.isEmpty() || name.equalsIgnoreCase("scalar")) {
+            return new ScalarKernels();
+        } else if (name.equalsIgnoreCase("unrolled")) {
+            return new UnrolledKernels();
+        }
+
+        final Class<?> c;
+        try {
+            c = Class.forName(name, false, Kernels.class.getClassLoader());
+        } catch (ClassNotFoundException | LinkageError ex) {
+            // not available on this JVM, fall back
+            return new ScalarKernels();
+        }
+        if (!VectorKernels.class.isAssignableFrom(c)) {
+            throw new AIFHError("Not a VectorKernels implementation: " + name);
+        }
+
+        try {
+            return c.asSubclass(VectorKernels.class).getConstructor().newInstance();
+        } catch (LinkageError ex) {
+            // the class needs something that is missing on this JVM (i.e. the incubator module), fall back
+            return new ScalarKernels();
+        } catch (ReflectiveOperationException ex) {
+            throw new AIFHError("Can't create kernels: " + name);
+        }
+    }
+}
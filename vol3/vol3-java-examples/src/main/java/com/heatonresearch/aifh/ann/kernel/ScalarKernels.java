@@ -0,0 +1,139 @@
+/*
+ * Artificial Intelligence for Humans
+ * Volume 3: Deep Learning and Neural Networks
+ * Java Version
+ * http://www.aifh.org
+ * http://www.jeffheaton.com
+ *
+ * Code repository:
+ * https://github.com/jeffheaton/aifh
+ *
+ * Copyright 2014-2015 by Jeff Heaton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For more information on Heaton Research copyrights, licenses
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package com.heatonresearch.aifh.ann.kernel;
+
+import org.encog.Encog;
+import org.encog.mathutil.BoundMath;
+
+/**
+ * The reference implementation of the kernels, one element at a time.  This is the default, and the results are
+ * exactly those of the original activation functions and layer loops.
+ */
+public class ScalarKernels implements VectorKernels {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double dot(final double[] a, final int aIndex, final double[] b, final int bIndex, final int length) {
+        double sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += a[aIndex + i] * b[bIndex + i];
+        }
+        return sum;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void dot4(final double[] a, final int aIndex, final double[] b, final int bIndex, final int bStride,
+                     final int length, final double[] result) {
+        final int b1 = bIndex + bStride;
+        final int b2 = b1 + bStride;
+        final int b3 = b2 + bStride;
+        double sum0 = 0, sum1 = 0, sum2 = 0, sum3 = 0;
+        for (int i = 0; i < length; i++) {
+            final double w = a[aIndex + i];
+            sum0 += w * b[bIndex + i];
+            sum1 += w * b[b1 + i];
+            sum2 += w * b[b2 + i];
+            sum3 += w * b[b3 + i];
+        }
+        result[0] = sum0;
+        result[1] = sum1;
+        result[2] = sum2;
+        result[3] = sum3;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void axpy(final double alpha, final double[] x, final int xIndex, final double[] y, final int yIndex,
+                     final int length) {
+        for (int i = 0; i < length; i++) {
+            y[yIndex + i] += alpha * x[xIndex + i];
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void relu(final double[] x, final int start, final int size, final double thresholdLow,
+                     final double low) {
+        for (int i = start; i < start + size; i++) {
+            if (x[i] <= thresholdLow) {
+                x[i] = low;
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void sigmoid(final double[] x, final int start, final int size) {
+        for (int i = start; i < start + size; i++) {
+            x[i] = 1.0 / (1.0 + BoundMath.exp(-1 * x[i]));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void tanh(final double[] x, final int start, final int size) {
+        for (int i = start; i < start + size; i++) {
+            x[i] = Math.tanh(x[i]);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void softmax(final double[] x, final int start, final int size) {
+        double sum = 0;
+        for (int i = start; i < start + size; i++) {
+            x[i] = BoundMath.exp(x[i]);
+            sum += x[i];
+        }
+        if(Double.isNaN(sum) || sum <Encog.DEFAULT_DOUBLE_EQUAL ) {
+            for (int i = start; i < start + size; i++) {
+                x[i] = 1.0/size;
+            }
+        } else {
+            for (int i = start; i < start + size; i++) {
+                x[i] = x[i] / sum;
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Artificial Intelligence for Humans
+ * Volume 3: Deep Learning and Neural Networks
+ * Java Version
+ * http://www.aifh.org
+ * http://www.jeffheaton.com
+ *
+ * Code repository:
+ * https://github.com/jeffheaton/aifh
+ *
+ * Copyright 2014-2015 by Jeff Heaton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For more information on Heaton Research copyrights, licenses
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package com.heatonresearch.aifh.ann.kernel;
+
+/**
+ * Kernels written so that the JIT compiler can use several execution units (and, where it can, SIMD
+ * instructions) without the JDK Vector API.  The dot product keeps four independent sums, so consecutive
+ * additions do not wait on each other.  Because the additions are done in a different order, the results can
+ * differ from ScalarKernels in the last few bits.
+ */
+public class UnrolledKernels extends ScalarKernels {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double dot(final double[] a, final int aIndex, final double[] b, final int bIndex, final int length) {
+        double sum0 = 0, sum1 = 0, sum2 = 0, sum3 = 0;
+        int i = 0;
+        for (; i + 4 <= length; i += 4) {
+            sum0 += a[aIndex + i] * b[bIndex + i];
+            sum1 += a[aIndex + i + 1] * b[bIndex + i + 1];
+            sum2 += a[aIndex + i + 2] * b[bIndex + i + 2];
+            sum3 += a[aIndex + i + 3] * b[bIndex + i + 3];
+        }
+        for (; i < length; i++) {
+            sum0 += a[aIndex + i] * b[bIndex + i];
+        }
+        return (sum0 + sum1) + (sum2 + sum3);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void relu(final double[] x, final int start, final int size, final double thresholdLow,
+                     final double low) {
+        if (thresholdLow == 0 && low == 0) {
+            // the usual ReLU, branch free
+            for (int i = start; i < start + size; i++) {
+                x[i] = Math.max(x[i], 0.0);
+            }
+        } else {
+            super.relu(x, start, size, thresholdLow, low);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Artificial Intelligence for Humans
+ * Volume 3: Deep Learning and Neural Networks
+ * Java Version
+ * http://www.aifh.org
+ * http://www.jeffheaton.com
+ *
+ * Code repository:
+ * https://github.com/jeffheaton/aifh
+ *
+ * Copyright 2014-2015 by Jeff Heaton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For more information on Heaton Research copyrights, licenses
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package com.heatonresearch.aifh.ann.kernel;
+
+/**
+ * The inner loops used by the neural network layers and activation functions.  All of the array loops that are
+ * run for every neuron of every row are gathered here, so that they can be replaced by a faster (i.e. SIMD)
+ * implementation.  The implementation is chosen once, at startup, see Kernels.
+ */
+public interface VectorKernels {
+
+    /**
+     * Calculate the dot product of two vectors.
+     * @param a The first array.
+     * @param aIndex The index of the first vector in a.
+     * @param b The second array.
+     * @param bIndex The index of the second vector in b.
+     * @param length The length of the vectors.
+     * @return The dot product.
+     */
+    double dot(double[] a, int aIndex, double[] b, int bIndex, int length);
+
+    /**
+     * Calculate the dot product of one vector with four others, i.e. one row of a weight matrix with four input
+     * rows of a mini-batch.  Each element of the first vector is loaded once for all four products.
+     * @param a The first array.
+     * @param aIndex The index of the first vector in a.
+     * @param b The second array.
+     * @param bIndex The index of the first of the four vectors in b.
+     * @param bStride The distance between the four vectors in b.
+     * @param length The length of the vectors.
+     * @param result Receives the four dot products, at indexes 0 to 3.
+     */
+    void dot4(double[] a, int aIndex, double[] b, int bIndex, int bStride, int length, double[] result);
+
+    /**
+     * Add a multiple of one vector to another, y += alpha * x.
+     * @param alpha The multiplier.
+     * @param x The array of the vector to add.
+     * @param xIndex The index of the vector in x.
+     * @param y The array of the vector that is added to.
+     * @param yIndex The index of the vector in y.
+     * @param length The length of the vectors.
+     */
+    void axpy(double alpha, double[] x, int xIndex, double[] y, int yIndex, int length);
+
+    /**
+     * Apply the ReLU activation function, see ActivationReLU.
+     * @param x The values to activate, in place.
+     * @param start The index of the first value.
+     * @param size The number of values.
+     * @param thresholdLow Values at or below this threshold are replaced by low.
+     * @param low The value for inputs at or below the threshold.
+     */
+    void relu(double[] x, int start, int size, double thresholdLow, double low);
+
+    /**
+     * Apply the sigmoid activation function, see ActivationSigmoid.
+     * @param x The values to activate, in place.
+     * @param start The index of the first value.
+     * @param size The number of values.
+     */
+    void sigmoid(double[] x, int start, int size);
+
+    /**
+     * Apply the hyperbolic tangent activation function, see ActivationTANH.
+     * @param x The values to activate, in place.
+     * @param start The index of the first value.
+     * @param size The number of values.
+     */
+    void tanh(double[] x, int start, int size);
+
+    /**
+     * Apply the softmax activation function, see ActivationSoftMax.
+     * @param x The values to activate, in place.
+     * @param start The index of the first value.
+     * @param size The number of values.
+     */
+    void softmax(double[] x, int start, int size);
+}
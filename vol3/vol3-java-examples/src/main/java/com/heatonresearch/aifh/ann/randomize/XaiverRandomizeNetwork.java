@@ -29,6 +29,9 @@
 package com.heatonresearch.aifh.ann.randomize;
 
 import com.heatonresearch.aifh.ann.BasicNetwork;
+import com.heatonresearch.aifh.ann.Conv2DLayer;
+import com.heatonresearch.aifh.ann.Layer;
+import com.heatonresearch.aifh.ann.WeightedLayer;
 
 /**
  * The Xaiver initialization (aka Glorot) weight initialization.  A very good weight initialization method that provides very
@@ -45,6 +48,16 @@ public class XaiverRandomizeNetwork extends AbstractRandomizeNetwork {
      * @param fromLayer The source layer.
      */
     private void randomizeLayer(BasicNetwork network, int fromLayer) {
+        final Layer toLayer = network.getLayers().get(fromLayer + 1);
+        if (!(toLayer instanceof WeightedLayer)) {
+            // no weights (i.e. pooling)
+            return;
+        }
+        if (toLayer instanceof Conv2DLayer) {
+            randomizeConv2D(network, (Conv2DLayer) toLayer);
+            return;
+        }
+
         final int fromCount = network.getLayerTotalNeuronCount(fromLayer);
         final int toCount = network.getLayers().get(fromLayer + 1).getCount();
 
@@ -57,6 +70,23 @@ public class XaiverRandomizeNetwork extends AbstractRandomizeNetwork {
         }
     }
 
+    /**
+     * A convolution layer shares each filter across every position, so the fan in is the filter size and the fan
+     * out is the number of filters times the filter area.
+     * @param network The network.
+     * @param layer The convolution layer.
+     */
+    private void randomizeConv2D(BasicNetwork network, Conv2DLayer layer) {
+        final int fanIn = layer.getFilterSize();
+        final int fanOut = layer.getNumFilters() * layer.getFilterRows() * layer.getFilterColumns();
+        final double sigma = Math.sqrt(2.0/(fanIn+fanOut));
+        final int start = layer.getWeightIndex();
+
+        for (int i = start; i < start + layer.getWeightCount(); i++) {
+            network.getWeights()[i] = this.getRnd().nextGaussian() * sigma;
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -34,16 +34,23 @@ import com.heatonresearch.aifh.ann.train.error.CrossEntropyErrorFunction;
 import com.heatonresearch.aifh.error.ErrorCalculation;
 import com.heatonresearch.aifh.error.ErrorCalculationMSE;
 import com.heatonresearch.aifh.general.data.BasicData;
-import com.heatonresearch.aifh.learning.LearningMethod;
+import com.heatonresearch.aifh.general.data.DataSourceList;
+import com.heatonresearch.aifh.learning.MeasuredLearningMethod;
+import com.heatonresearch.aifh.learning.TrainingMetrics;
 import com.heatonresearch.aifh.randomize.GenerateRandom;
 import com.heatonresearch.aifh.randomize.MersenneTwisterGenerateRandom;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
  * This class supports several variants of the backpropagation training algorithm for neural networks.  By default,
  * this class will perform a stochastic gradient descent (SGD) train with a mini-batch of 500.  The cross-entropy
- * error function is used, along with Nesterov momentum. L1 & L2 regularization can also be used.
+ * error function is used, along with Nesterov momentum. L1 & L2 regularization can also be used.  The stochastic
+ * mini-batches are sampled in epochs, every row of the training set is used once per epoch (see EpochSampler).
+ * When the training set is a DataSourceList, each mini-batch is a DataSourceList of the chosen rows, so the rows are
+ * read straight from the source and no BasicData is built (the BatchPrefetcher still reads whole rows, on its own
+ * thread).
  *
  * With backpropagation is it important to choose a good learning rate and momentum.  If the learning rate is too high
  * your network will not converge, and may become unstable with weights going to NaN.  Too small a learning rate will
@@ -54,7 +61,7 @@ import java.util.List;
  * Sutskever, Ilya, et al. "On the importance of initialization and momentum in deep learning." Proceedings of the
  * 30th international conference on machine learning (ICML-13). 2013.
  */
-public class BackPropagation implements GradientCalcOwner, LearningMethod {
+public class BackPropagation implements GradientCalcOwner, MeasuredLearningMethod {
 
     /**
      * The network to train.
@@ -87,6 +94,16 @@ public class BackPropagation implements GradientCalcOwner, LearningMethod {
      */
     private int currentIndex;
 
+    /**
+     * Chooses the rows of each stochastic batch, every row once per epoch.  Created on first use.
+     */
+    private EpochSampler sampler;
+
+    /**
+     * The row indexes of the current online batch.  Rows of the source, when training a DataSourceList.
+     */
+    private int[] batchIndexes;
+
     /**
      * Should we use stochastic gradient descent (SGD)?  If so, this holds the random number
      * generator.  If we do not desire SGD, set this value to null.
@@ -128,6 +145,37 @@ public class BackPropagation implements GradientCalcOwner, LearningMethod {
      */
     private boolean nesterovUpdate = true;
 
+    /**
+     * The elements of the current batch, reused between iterations.
+     */
+    private final List<BasicData> batchElements = new ArrayList<>();
+
+    /**
+     * The number of threads to use, zero for one per processor.  The default is one, a single thread.
+     */
+    private int threadCount = 1;
+
+    /**
+     * The parallel gradient calculation, only used with more than one thread.
+     */
+    private ParallelGradientCalc parallel;
+
+    /**
+     * The number of stochastic batches to prepare ahead on a background thread, zero (the default) to choose each
+     * batch when it is needed.
+     */
+    private int prefetchDepth;
+
+    /**
+     * Prepares the stochastic batches, only used when prefetchDepth is more than zero.
+     */
+    private BatchPrefetcher prefetcher;
+
+    /**
+     * The training metrics.
+     */
+    private final TrainingMetrics metrics = new TrainingMetrics();
+
     /**
      * Construct the backpropagation trainer.
      * @param theNetwork The network to train.
@@ -142,6 +190,7 @@ public class BackPropagation implements GradientCalcOwner, LearningMethod {
         this.learningRate = theLearningRate;
         this.momentum = theMomentum;
         this.gradients = new GradientCalc(this.network, new CrossEntropyErrorFunction(), this);
+        this.gradients.setMetrics(this.metrics);
         this.lastDelta = new double[theNetwork.getWeights().length];
     }
 
@@ -150,6 +199,7 @@ public class BackPropagation implements GradientCalcOwner, LearningMethod {
      */
     @Override
     public void iteration() {
+        final long iterationStart = System.nanoTime();
         this.network.setNetworkTraining(true);
 
         // alert the layers that a new batch is starting.
@@ -165,28 +215,63 @@ public class BackPropagation implements GradientCalcOwner, LearningMethod {
                 : Math.min(this.batchSize,this.training.size());
 
 
-        for(int i=0;i<iterationSize;i++) {
-            BasicData element;
+        final List<BasicData> batch;
+        if (this.prefetchDepth > 0 && isOnlineTraining() && this.stochastic != null) {
+            if (this.prefetcher == null) {
+                // the prefetcher gets its own generator, the layers still use stochastic on this thread
+                this.prefetcher = new BatchPrefetcher(this.training, iterationSize,
+                        new MersenneTwisterGenerateRandom(this.stochastic.nextLong()), this.prefetchDepth);
+            }
+            batch = this.prefetcher.next();
+        } else if (isOnlineTraining()) {
+            if (this.batchIndexes == null || this.batchIndexes.length < iterationSize) {
+                this.batchIndexes = new int[iterationSize];
+            }
+            if (this.stochastic != null) {
+                if (this.sampler == null) {
+                    this.sampler = new EpochSampler(this.training.size(), this.stochastic);
+                }
+                this.sampler.next(this.batchIndexes, iterationSize);
+            } else {
+                for (int i = 0; i < iterationSize; i++) {
+                    this.batchIndexes[i] = this.currentIndex;
+                    this.currentIndex = (this.currentIndex + 1) % this.training.size();
+                }
+            }
 
-            if( isOnlineTraining() ) {
-                if( this.stochastic!=null ) {
-                    int stochasticIndex = this.stochastic.nextInt(0,this.training.size());
-                    element = this.training.get(stochasticIndex);
-                } else {
-                    element = this.training.get(this.currentIndex++);
+            if (this.training instanceof DataSourceList) {
+                // the batch is a view of the source's rows, GradientCalc reads them straight into its buffers
+                final DataSourceList list = (DataSourceList) this.training;
+                for (int i = 0; i < iterationSize; i++) {
+                    this.batchIndexes[i] = list.getSourceIndex(this.batchIndexes[i]);
                 }
+                batch = new DataSourceList(list.getSource(), this.batchIndexes, iterationSize);
             } else {
-                element = this.training.get(i);
+                batch = this.batchElements;
+                this.batchElements.clear();
+                for (int i = 0; i < iterationSize; i++) {
+                    this.batchElements.add(this.training.get(this.batchIndexes[i]));
+                }
             }
-            this.gradients.process(this.errorCalc, element.getInput(), element.getIdeal());
+        } else {
+            batch = this.training;
         }
 
-        if(this.currentIndex>this.training.size() || this.batchSize == 0) {
-            this.currentIndex = 0;
+        if (this.threadCount == 1) {
+            this.gradients.process(this.errorCalc, batch);
+        } else {
+            if (this.parallel == null) {
+                this.parallel = new ParallelGradientCalc(this.network, new CrossEntropyErrorFunction(), this,
+                        this.errorCalc, this.threadCount);
+                this.parallel.setMetrics(this.metrics);
+            }
+            this.parallel.process(this.gradients, this.errorCalc, batch);
         }
+        this.gradients.applyRegularization();
 
         this.currentError = this.errorCalc.calculate();
 
+        final long updateStart = System.nanoTime();
         for(int i=0;i<this.network.getWeights().length;i++) {
             double delta;
 
@@ -204,6 +289,18 @@ public class BackPropagation implements GradientCalcOwner, LearningMethod {
             this.network.getWeights()[i] += delta;
         }
         this.network.setNetworkTraining(false);
+
+        final long end = System.nanoTime();
+        this.metrics.addUpdateTime(end - updateStart);
+        this.metrics.iterationComplete(this, end - iterationStart, iterationSize);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public TrainingMetrics getMetrics() {
+        return this.metrics;
     }
 
     public boolean isOnlineTraining() {
@@ -239,7 +336,14 @@ public class BackPropagation implements GradientCalcOwner, LearningMethod {
      */
     @Override
     public void finishTraining() {
-
+        if (this.parallel != null) {
+            this.parallel.shutdown();
+            this.parallel = null;
+        }
+        if (this.prefetcher != null) {
+            this.prefetcher.shutdown();
+            this.prefetcher = null;
+        }
     }
 
     /**
@@ -316,7 +420,9 @@ public class BackPropagation implements GradientCalcOwner, LearningMethod {
      * @param stochastic Random number generator, or null.
      */
     public void setStochastic(GenerateRandom stochastic) {
+        finishTraining();
         this.stochastic = stochastic;
+        this.sampler = null;
     }
 
     /**
@@ -324,6 +430,43 @@ public class BackPropagation implements GradientCalcOwner, LearningMethod {
      * @param batchSize The batch size.
      */
     public void setBatchSize(int batchSize) {
+        finishTraining();
         this.batchSize = batchSize;
+        this.currentIndex = 0;
+    }
+
+    /**
+     * @return The number of threads to use, zero for one per processor.
+     */
+    public int getThreadCount() {
+        return this.threadCount;
+    }
+
+    /**
+     * Set the number of threads to use for the gradient calculation.  The training set (or batch) is split
+     * evenly between the threads.  Call finishTraining to release the threads.
+     * @param theThreadCount The number of threads, zero for one per processor.
+     */
+    public void setThreadCount(int theThreadCount) {
+        finishTraining();
+        this.threadCount = theThreadCount;
+    }
+
+    /**
+     * @return The number of stochastic batches prepared ahead on a background thread, zero for none.
+     */
+    public int getPrefetchDepth() {
+        return this.prefetchDepth;
+    }
+
+    /**
+     * Set the number of stochastic batches to prepare ahead on a background thread, see BatchPrefetcher.  This
+     * only applies to stochastic online training (a stochastic generator, and a batch size smaller than the
+     * training set).  Call finishTraining to stop the background thread.
+     * @param thePrefetchDepth The number of batches to prepare ahead, zero (the default) for none.
+     */
+    public void setPrefetchDepth(int thePrefetchDepth) {
+        finishTraining();
+        this.prefetchDepth = thePrefetchDepth;
     }
 }
@@ -0,0 +1,211 @@
+/*
+ * Artificial Intelligence for Humans
+ * Volume 3: Deep Learning and Neural Networks
+ * Java Version
+ * http://www.aifh.org
+ * http://www.jeffheaton.com
+ *
+ * Code repository:
+ * https://github.com/jeffheaton/aifh
+ *
+ * Copyright 2014-2015 by Jeff Heaton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For more information on Heaton Research copyrights, licenses
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package com.heatonresearch.aifh.ann.train;
+
+import com.heatonresearch.aifh.AIFHError;
+import com.heatonresearch.aifh.general.data.BasicData;
+import com.heatonresearch.aifh.randomize.GenerateRandom;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Assembles random mini-batches (sampled in epochs, see EpochSampler) on a background thread, so that the next
+ * batches are ready while the current one trains.  Up to depth batches are prepared ahead of the trainer.  The batch
+ * lists are reused: depth+1 lists are allocated once and cycle between the producer and the trainer, so no garbage
+ * is created per batch.
+ *
+ * Each element of a batch passes through prepare on the background thread.  The default returns the element as it
+ * is, override it to decode or augment elements (i.e. build the dense input of a SparseBasicData) off the critical
+ * path.
+ *
+ * The random generator is only used by the background thread.  Call shutdown to stop the thread.
+ */
+public class BatchPrefetcher {
+
+    /**
+     * The training data.
+     */
+    private final List<BasicData> training;
+
+    /**
+     * The number of elements in each batch.
+     */
+    private final int batchSize;
+
+    /**
+     * Chooses the rows of each batch, only used by the producer thread.
+     */
+    private final EpochSampler sampler;
+
+    /**
+     * The row indexes of the batch being filled, only used by the producer thread.
+     */
+    private final int[] indexes;
+
+    /**
+     * The batches that are ready to train.
+     */
+    private final BlockingQueue<List<BasicData>> ready;
+
+    /**
+     * The batch lists that can be filled.
+     */
+    private final BlockingQueue<List<BasicData>> free;
+
+    /**
+     * The producer thread.
+     */
+    private final Thread producer;
+
+    /**
+     * The batch currently held by the trainer, returned to the free queue by the next call to next.
+     */
+    private List<BasicData> current;
+
+    /**
+     * The error that stopped the producer, if any.
+     */
+    private volatile RuntimeException error;
+
+    /**
+     * True, once shutdown has been called.
+     */
+    private boolean shutdown;
+
+    /**
+     * Construct the prefetcher, and start the producer thread.
+     * @param theTraining The training data, must not be changed while the prefetcher runs.
+     * @param theBatchSize The number of elements in each batch.
+     * @param theRnd The random generator used to choose elements (see EpochSampler), it must not be used by any
+     *               other thread.
+     * @param depth The number of batches to prepare ahead, at least 1.
+     */
+    public BatchPrefetcher(final List<BasicData> theTraining, final int theBatchSize, final GenerateRandom theRnd,
+                           final int depth) {
+        if (depth < 1) {
+            throw new AIFHError("Prefetch depth must be at least 1.");
+        }
+        this.training = theTraining;
+        this.batchSize = theBatchSize;
+        this.sampler = new EpochSampler(theTraining.size(), theRnd);
+        this.indexes = new int[theBatchSize];
+        this.ready = new ArrayBlockingQueue<>(depth);
+        this.free = new ArrayBlockingQueue<>(depth + 1);
+        for (int i = 0; i <= depth; i++) {
+            this.free.add(new ArrayList<BasicData>(theBatchSize));
+        }
+
+        this.producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                produce();
+            }
+        }, "BatchPrefetcher");
+        this.producer.setDaemon(true);
+        this.producer.start();
+    }
+
+    /**
+     * The producer loop, fill free batch lists until shut down.
+     */
+    private void produce() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                final List<BasicData> batch = this.free.take();
+                batch.clear();
+                this.sampler.next(this.indexes, this.batchSize);
+                for (int i = 0; i < this.batchSize; i++) {
+                    batch.add(prepare(this.training.get(this.indexes[i])));
+                }
+                this.ready.put(batch);
+            }
+        } catch (InterruptedException ex) {
+            // shutdown
+        } catch (RuntimeException ex) {
+            this.error = ex;
+        }
+    }
+
+    /**
+     * Prepare an element for training, called on the producer thread.
+     * @param element The element chosen for the batch.
+     * @return The element to train with.
+     */
+    protected BasicData prepare(final BasicData element) {
+        return element;
+    }
+
+    /**
+     * Get the next batch.  The batch returned by the previous call is reused, so the trainer must be done with it.
+     * Blocks until the producer has a batch ready.
+     * @return The next batch.
+     */
+    public List<BasicData> next() {
+        if (this.shutdown) {
+            throw new AIFHError("The batch prefetcher has been shut down.");
+        }
+        if (this.current != null) {
+            this.free.add(this.current);
+            this.current = null;
+        }
+
+        try {
+            while (this.current == null) {
+                if (this.error != null) {
+                    throw new AIFHError(this.error);
+                }
+                if (!this.producer.isAlive() && this.ready.isEmpty()) {
+                    throw new AIFHError("The batch prefetcher has been shut down.");
+                }
+                this.current = this.ready.poll(100, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new AIFHError(ex);
+        }
+        return this.current;
+    }
+
+    /**
+     * Stop the producer thread, and wait for it to finish.  This object can not be used after this call.
+     */
+    public void shutdown() {
+        this.shutdown = true;
+        this.producer.interrupt();
+        try {
+            this.producer.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
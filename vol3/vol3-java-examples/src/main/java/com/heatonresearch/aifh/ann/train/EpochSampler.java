@@ -0,0 +1,135 @@
+/*
+ * Artificial Intelligence for Humans
+ * Volume 3: Deep Learning and Neural Networks
+ * Java Version
+ * http://www.aifh.org
+ * http://www.jeffheaton.com
+ *
+ * Code repository:
+ * https://github.com/jeffheaton/aifh
+ *
+ * Copyright 2014-2015 by Jeff Heaton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For more information on Heaton Research copyrights, licenses
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package com.heatonresearch.aifh.ann.train;
+
+import com.heatonresearch.aifh.AIFHError;
+import com.heatonresearch.aifh.randomize.GenerateRandom;
+
+import java.util.Arrays;
+
+/**
+ * Chooses training set rows in epochs, every row is chosen exactly once per epoch, in a random order.  The order is
+ * a permutation of the row indexes, shuffled in place (Fisher-Yates) at the start of each epoch, so nothing is
+ * allocated after construction.  The same generator seed always gives the same sequence of rows.
+ *
+ * The rows of each mini-batch are returned in ascending order.  The batch is still a random sample of the training
+ * set, but its rows are read in the order they are stored, which is kinder to the cache than a random walk.
+ */
+public class EpochSampler {
+
+    /**
+     * The permutation of the row indexes for the current epoch.
+     */
+    private final int[] permutation;
+
+    /**
+     * The random generator used to shuffle.
+     */
+    private final GenerateRandom rnd;
+
+    /**
+     * The position of the next row in the permutation.
+     */
+    private int position;
+
+    /**
+     * The number of completed epochs.
+     */
+    private int epoch;
+
+    /**
+     * Construct the sampler, the first epoch is shuffled immediately.
+     * @param theSize The number of rows in the training set.
+     * @param theRnd The random generator used to shuffle.
+     */
+    public EpochSampler(final int theSize, final GenerateRandom theRnd) {
+        if (theSize < 1) {
+            throw new AIFHError("The training set must have at least one row.");
+        }
+        this.permutation = new int[theSize];
+        this.rnd = theRnd;
+        for (int i = 0; i < theSize; i++) {
+            this.permutation[i] = i;
+        }
+        shuffle();
+    }
+
+    /**
+     * Shuffle the permutation in place (Fisher-Yates), and start a new epoch.
+     */
+    private void shuffle() {
+        for (int i = this.permutation.length - 1; i > 0; i--) {
+            final int j = this.rnd.nextInt(0, i + 1);
+            final int t = this.permutation[i];
+            this.permutation[i] = this.permutation[j];
+            this.permutation[j] = t;
+        }
+        this.position = 0;
+    }
+
+    /**
+     * Choose the rows of the next mini-batch.  A batch that crosses the end of an epoch takes the remaining rows of
+     * that epoch, and the rest from the next (newly shuffled) epoch.
+     * @param indexes Receives the row indexes, in ascending order.
+     * @param count The number of rows, no more than the training set size.
+     */
+    public void next(final int[] indexes, final int count) {
+        if (count > this.permutation.length) {
+            throw new AIFHError("The batch size(" + count + ") can't be larger than the training set: "
+                    + this.permutation.length);
+        }
+
+        int filled = 0;
+        while (filled < count) {
+            if (this.position == this.permutation.length) {
+                this.epoch++;
+                shuffle();
+            }
+            final int n = Math.min(count - filled, this.permutation.length - this.position);
+            System.arraycopy(this.permutation, this.position, indexes, filled, n);
+            this.position += n;
+            filled += n;
+        }
+        Arrays.sort(indexes, 0, count);
+    }
+
+    /**
+     * @return The number of completed epochs.
+     */
+    public int getEpoch() {
+        return this.epoch;
+    }
+
+    /**
+     * @return The number of rows in the training set.
+     */
+    public int getSize() {
+        return this.permutation.length;
+    }
+}
@@ -0,0 +1,367 @@
+/*
+ * Artificial Intelligence for Humans
+ * Volume 3: Deep Learning and Neural Networks
+ * Java Version
+ * http://www.aifh.org
+ * http://www.jeffheaton.com
+ *
+ * Code repository:
+ * https://github.com/jeffheaton/aifh
+ *
+ * Copyright 2014-2015 by Jeff Heaton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For more information on Heaton Research copyrights, licenses
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package com.heatonresearch.aifh.ann.train;
+
+import com.heatonresearch.aifh.ann.BasicNetwork;
+import com.heatonresearch.aifh.ann.FloatNetwork;
+import com.heatonresearch.aifh.ann.train.error.CrossEntropyErrorFunction;
+import com.heatonresearch.aifh.error.ErrorCalculation;
+import com.heatonresearch.aifh.error.ErrorCalculationMSE;
+import com.heatonresearch.aifh.general.data.BasicData;
+import com.heatonresearch.aifh.learning.LearningMethod;
+import com.heatonresearch.aifh.randomize.GenerateRandom;
+import com.heatonresearch.aifh.randomize.MersenneTwisterGenerateRandom;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The single precision version of BackPropagation.  The network is trained as a FloatNetwork, which halves the
+ * memory bandwidth of each forward and backward pass, as the weights, activations and gradients read by each pass
+ * are floats.  It does not reduce the total memory: the BasicNetwork keeps its double weights next to the float
+ * copy.  As with FloatResilientPropagation, the weights are copied back into the BasicNetwork after each iteration
+ * (one pass over the weights), so the BasicNetwork can be scored and saved between iterations, i.e. by early stopping.
+ *
+ * As with BackPropagation, the stochastic mini-batches are sampled in epochs (see EpochSampler).
+ *
+ * Only fully connected (BasicLayer) networks are supported.
+ */
+public class FloatBackPropagation implements GradientCalcOwner, LearningMethod {
+
+    /**
+     * The network to train.
+     */
+    private final BasicNetwork network;
+
+    /**
+     * The single precision copy of the network, this is what is actually trained.
+     */
+    private final FloatNetwork floatNetwork;
+
+    /**
+     * The training set.
+     */
+    private final List<BasicData> training;
+
+    /**
+     * The learning rate.
+     */
+    private final float learningRate;
+
+    /**
+     * The momentum.
+     */
+    private final float momentum;
+
+    /**
+     * The batch size, set to zero for full batch training.
+     */
+    private int batchSize = 500;
+
+    /**
+     * If we are doing non-stochastic batches, this keeps track of where we were in the
+     * training set elements.
+     */
+    private int currentIndex;
+
+    /**
+     * Chooses the rows of each stochastic batch, every row once per epoch.  Created on first use.
+     */
+    private EpochSampler sampler;
+
+    /**
+     * The row indexes of the current stochastic batch.
+     */
+    private int[] batchIndexes;
+
+    /**
+     * Should we use stochastic gradient descent (SGD)?  If so, this holds the random number
+     * generator.  If we do not desire SGD, set this value to null.
+     */
+    private GenerateRandom stochastic = new MersenneTwisterGenerateRandom();
+
+    /**
+     * Gradient calculation utility.
+     */
+    private final FloatGradientCalc gradients;
+
+    /**
+     * The weight deltas from the last iteration.
+     */
+    private final float[] lastDelta;
+
+    /**
+     * The last error calculation.
+     */
+    private final ErrorCalculation errorCalc = new ErrorCalculationMSE();
+
+    /**
+     * The current error.
+     */
+    private double currentError = 1.0;
+
+    /**
+     * L1 regularization weighting, 0.0 for none.
+     */
+    private double l1;
+
+    /**
+     * L2 regularization weighting, 0.0 for none.
+     */
+    private double l2;
+
+    /**
+     * Should nesterov update be used?
+     */
+    private boolean nesterovUpdate = true;
+
+    /**
+     * The elements of the current batch, reused between iterations.
+     */
+    private final List<BasicData> batchElements = new ArrayList<>();
+
+    /**
+     * Construct the backpropagation trainer.
+     * @param theNetwork The network to train.
+     * @param theTraining The training data to use.
+     * @param theLearningRate The learning rate.
+     * @param theMomentum The momentum.
+     */
+    public FloatBackPropagation(BasicNetwork theNetwork, List<BasicData> theTraining, double theLearningRate,
+                                double theMomentum) {
+        this.network = theNetwork;
+        this.floatNetwork = new FloatNetwork(theNetwork);
+        this.training = theTraining;
+        this.learningRate = (float) theLearningRate;
+        this.momentum = (float) theMomentum;
+        this.gradients = new FloatGradientCalc(this.floatNetwork, new CrossEntropyErrorFunction(), this);
+        this.lastDelta = new float[theNetwork.getWeights().length];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void iteration() {
+        this.gradients.reset();
+        this.errorCalc.clear();
+
+        int iterationSize = this.batchSize==0 ? this.training.size()
+                : Math.min(this.batchSize,this.training.size());
+
+        final List<BasicData> batch;
+        if (isOnlineTraining()) {
+            batch = this.batchElements;
+            this.batchElements.clear();
+            if (this.stochastic != null) {
+                if (this.sampler == null) {
+                    this.sampler = new EpochSampler(this.training.size(), this.stochastic);
+                }
+                if (this.batchIndexes == null || this.batchIndexes.length < iterationSize) {
+                    this.batchIndexes = new int[iterationSize];
+                }
+                this.sampler.next(this.batchIndexes, iterationSize);
+                for (int i = 0; i < iterationSize; i++) {
+                    this.batchElements.add(this.training.get(this.batchIndexes[i]));
+                }
+            } else {
+                for (int i = 0; i < iterationSize; i++) {
+                    this.batchElements.add(this.training.get(this.currentIndex));
+                    this.currentIndex = (this.currentIndex + 1) % this.training.size();
+                }
+            }
+        } else {
+            batch = this.training;
+        }
+        this.gradients.process(this.errorCalc, batch);
+        this.gradients.applyRegularization();
+
+        this.currentError = this.errorCalc.calculate();
+
+        final float[] weights = this.floatNetwork.getWeights();
+        final float[] gradient = this.gradients.getGradients();
+        for(int i=0;i<weights.length;i++) {
+            float delta;
+
+            if(this.nesterovUpdate) {
+                float prevNesterov = this.lastDelta[i];
+
+                this.lastDelta[i] = (this.momentum * prevNesterov)
+                        + (gradient[i] * this.learningRate);
+                delta = (this.momentum * prevNesterov) - ((1+this.momentum)*this.lastDelta[i]);
+            } else {
+                delta = (gradient[i] * -this.learningRate) + (this.lastDelta[i] * this.momentum);
+                this.lastDelta[i] = delta;
+            }
+
+            weights[i] += delta;
+        }
+
+        this.floatNetwork.copyTo(this.network);
+    }
+
+    /**
+     * @return True, if each iteration only uses part of the training set.
+     */
+    public boolean isOnlineTraining() {
+        return this.batchSize!=0 && (this.batchSize<this.training.size());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getLastError() {
+        return this.currentError;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean done() {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getStatus() {
+        return "";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void finishTraining() {
+
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getL1() {
+        return this.l1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getL2() {
+        return this.l2;
+    }
+
+    /**
+     * Set the L1 regularization multiplier.
+     * @param theL1 The L1 regularization multiplier.
+     */
+    public void setL1(double theL1) {
+        this.l1 = theL1;
+    }
+
+    /**
+     * Set the L2 regularization multiplier.
+     * @param theL2 The L2 regularization multiplier.
+     */
+    public void setL2(double theL2) {
+        this.l2 = theL2;
+    }
+
+    /**
+     * @return True, if the Nesterov update is used.
+     */
+    public boolean isNesterovUpdate() {
+        return this.nesterovUpdate;
+    }
+
+    /**
+     * @param nesterovUpdate True, if the Nesterov update should be used.
+     */
+    public void setNesterovUpdate(boolean nesterovUpdate) {
+        this.nesterovUpdate = nesterovUpdate;
+    }
+
+    /**
+     * @return The batch size.
+     */
+    public int getBatchSize() {
+        return this.batchSize;
+    }
+
+    /**
+     * Set the batch size.
+     * @param batchSize The batch size.
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+        this.currentIndex = 0;
+    }
+
+    /**
+     * @return The learning rate.
+     */
+    public double getLearningRate() {
+        return this.learningRate;
+    }
+
+    /**
+     * @return The momentum.
+     */
+    public double getMomentum() {
+        return this.momentum;
+    }
+
+    /**
+     * The random number generator used for stochastic gradient descent (SGD), or null if none.
+     * @return A random number generator, or null if not using SGD.
+     */
+    public GenerateRandom getStochastic() {
+        return this.stochastic;
+    }
+
+    /**
+     * The random number generator to use for stochastic gradient descent (CGD), or null for none.
+     * @param stochastic Random number generator, or null.
+     */
+    public void setStochastic(GenerateRandom stochastic) {
+        this.stochastic = stochastic;
+        this.sampler = null;
+    }
+
+    /**
+     * @return The single precision network being trained.
+     */
+    public FloatNetwork getFloatNetwork() {
+        return this.floatNetwork;
+    }
+}
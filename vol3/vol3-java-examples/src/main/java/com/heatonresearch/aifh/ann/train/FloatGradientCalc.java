@@ -0,0 +1,234 @@
+/*
+ * Artificial Intelligence for Humans
+ * Volume 3: Deep Learning and Neural Networks
+ * Java Version
+ * http://www.aifh.org
+ * http://www.jeffheaton.com
+ *
+ * Code repository:
+ * https://github.com/jeffheaton/aifh
+ *
+ * Copyright 2014-2015 by Jeff Heaton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For more information on Heaton Research copyrights, licenses
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package com.heatonresearch.aifh.ann.train;
+
+import com.heatonresearch.aifh.AIFH;
+import com.heatonresearch.aifh.ann.BasicNetwork;
+import com.heatonresearch.aifh.ann.BatchBuffers;
+import com.heatonresearch.aifh.ann.FloatBatchBuffers;
+import com.heatonresearch.aifh.ann.FloatNetwork;
+import com.heatonresearch.aifh.ann.Layer;
+import com.heatonresearch.aifh.ann.WeightedLayer;
+import com.heatonresearch.aifh.ann.activation.ActivationFunction;
+import com.heatonresearch.aifh.ann.train.error.ErrorFunction;
+import com.heatonresearch.aifh.error.ErrorCalculation;
+import com.heatonresearch.aifh.general.data.BasicData;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The single precision version of GradientCalc, used to train a FloatNetwork.  The weights, activations, deltas
+ * and gradients are all floats.  Training elements are processed a mini-batch at a time, with the same blocked
+ * loops as GradientCalc (see the float versions of WeightedLayer.multiply and multiplyGradient).
+ */
+public class FloatGradientCalc {
+
+    /**
+     * The network to train.
+     */
+    private final FloatNetwork network;
+
+    /**
+     * The gradients.
+     */
+    private final float[] gradients;
+
+    /**
+     * The actual values from the neural network, for one row.
+     */
+    private final double[] actual;
+
+    /**
+     * The output sums of a single batch row, used to calculate the output error.
+     */
+    private final double[] outputSums;
+
+    /**
+     * The output deltas of a single batch row, used to calculate the output error.
+     */
+    private final double[] outputDelta;
+
+    /**
+     * The buffers for mini-batch processing.
+     */
+    private final FloatBatchBuffers batch;
+
+    /**
+     * The owner of the gradient calculation.
+     */
+    private final GradientCalcOwner owner;
+
+    /**
+     * The error function to use.
+     */
+    private final ErrorFunction errorFunction;
+
+    /**
+     * Construct the gradient calculation class.
+     * @param theNetwork The network to use.
+     * @param ef The error function to use.
+     * @param theOwner The owner (usually a trainer).
+     */
+    public FloatGradientCalc(final FloatNetwork theNetwork, final ErrorFunction ef,
+                             final GradientCalcOwner theOwner) {
+        this.network = theNetwork;
+        this.errorFunction = ef;
+        this.owner = theOwner;
+
+        final int outputCount = theNetwork.getNetwork().getOutputCount();
+        this.gradients = new float[theNetwork.getWeights().length];
+        this.actual = new double[outputCount];
+        this.outputSums = new double[outputCount];
+        this.outputDelta = new double[outputCount];
+        this.batch = new FloatBatchBuffers(theNetwork, BatchBuffers.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Process a mini-batch of training set elements.
+     * @param errorCalc The error calculation.
+     * @param elements The training set elements.
+     */
+    public void process(final ErrorCalculation errorCalc, final List<BasicData> elements) {
+        final BasicNetwork structure = this.network.getNetwork();
+        final int outputLayerIndex = structure.getLayers().size() - 1;
+        final ActivationFunction outputActivation = structure.getLayers().get(outputLayerIndex).getActivation();
+        final float[] layerOutput = this.batch.getLayerOutput();
+        final float[] layerSums = this.batch.getLayerSums();
+        final float[] layerDelta = this.batch.getLayerDelta();
+        final int stride = this.batch.getStride();
+        final int outputCount = this.actual.length;
+
+        for (int start = 0; start < elements.size(); start += this.batch.getCapacity()) {
+            final int rowCount = Math.min(this.batch.getCapacity(), elements.size() - start);
+            this.batch.setRowCount(rowCount);
+
+            for (int row = 0; row < rowCount; row++) {
+                this.batch.setInput(row, elements.get(start + row).getInput());
+            }
+            this.network.compute(this.batch);
+
+            // Calculate error for the output layer, the output layer is always at the start of a row.
+            for (int row = 0; row < rowCount; row++) {
+                final double[] ideal = elements.get(start + row).getIdeal();
+                for (int i = 0; i < outputCount; i++) {
+                    this.actual[i] = layerOutput[row * stride + i];
+                    this.outputSums[i] = layerSums[row * stride + i];
+                }
+                errorCalc.updateError(this.actual, ideal, 1.0);
+                this.errorFunction.calculateError(
+                        outputActivation, this.outputSums, this.actual,
+                        ideal, this.actual, this.outputDelta, 0, 1.0);
+                for (int i = 0; i < outputCount; i++) {
+                    layerDelta[row * stride + i] = (float) this.outputDelta[i];
+                }
+            }
+
+            // Propagate backwards (chain rule from calculus).
+            for (int i = outputLayerIndex; i > 0; i--) {
+                computeGradient(structure.getLayers().get(i), structure.getLayers().get(i - 1));
+            }
+        }
+    }
+
+    /**
+     * Compute the gradients for one fully connected layer, for every row of the current batch.
+     * @param layer The layer.
+     * @param prev The previous layer.
+     */
+    private void computeGradient(final Layer layer, final Layer prev) {
+        final int fromLayerIndex = prev.getNeuronIndex();
+        final int fromLayerSize = prev.getTotalCount();
+        final int toLayerIndex = layer.getNeuronIndex();
+        final int toLayerSize = layer.getCount();
+        final int index = layer.getWeightIndex();
+        final ActivationFunction activation = layer.getActivation();
+
+        final float[] weights = this.network.getWeights();
+        final float[] layerOutput = this.batch.getLayerOutput();
+        final float[] layerSums = this.batch.getLayerSums();
+        final float[] layerDelta = this.batch.getLayerDelta();
+        final int stride = this.batch.getStride();
+        final int rowCount = this.batch.getRowCount();
+
+        for (int row = 0; row < rowCount; row++) {
+            final int y = row * stride + fromLayerIndex;
+            Arrays.fill(layerDelta, y, y + fromLayerSize, 0);
+        }
+
+        WeightedLayer.multiplyGradient(weights, this.gradients, index, layerOutput, layerDelta,
+                fromLayerIndex, stride, layerDelta, toLayerIndex, stride, rowCount, fromLayerSize, toLayerSize);
+
+        for (int row = 0; row < rowCount; row++) {
+            int y = row * stride + fromLayerIndex;
+            for (int yi = 0; yi < fromLayerSize; yi++, y++) {
+                layerDelta[y] *= (float) activation.derivativeFunction(layerSums[y], layerOutput[y]);
+            }
+        }
+    }
+
+    /**
+     * Add the L1/L2 regularization term to the gradients, see GradientCalc.applyRegularization.
+     */
+    public void applyRegularization() {
+        final double l1 = this.owner.getL1();
+        final double l2 = this.owner.getL2();
+
+        if (l1 > AIFH.DEFAULT_PRECISION || l2 > AIFH.DEFAULT_PRECISION) {
+            final float[] weights = this.network.getWeights();
+            final float fl1 = (float) l1;
+            final float l2x2 = (float) (2.0 * l2);
+            for (int i = 0; i < weights.length; i++) {
+                final float w = weights[i];
+                this.gradients[i] += (fl1 * Math.signum(w)) + (l2x2 * w);
+            }
+        }
+    }
+
+    /**
+     * Reset all gradients to zero.
+     */
+    public void reset() {
+        Arrays.fill(this.gradients, 0);
+    }
+
+    /**
+     * @return The network being trained.
+     */
+    public FloatNetwork getNetwork() {
+        return this.network;
+    }
+
+    /**
+     * @return the gradients
+     */
+    public float[] getGradients() {
+        return this.gradients;
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Artificial Intelligence for Humans
+ * Volume 3: Deep Learning and Neural Networks
+ * Java Version
+ * http://www.aifh.org
+ * http://www.jeffheaton.com
+ *
+ * Code repository:
+ * https://github.com/jeffheaton/aifh
+ *
+ * Copyright 2014-2015 by Jeff Heaton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For more information on Heaton Research copyrights, licenses
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package com.heatonresearch.aifh.ann.train;
+
+import com.heatonresearch.aifh.ann.BasicNetwork;
+import com.heatonresearch.aifh.ann.FloatNetwork;
+import com.heatonresearch.aifh.ann.train.error.CrossEntropyErrorFunction;
+import com.heatonresearch.aifh.error.ErrorCalculation;
+import com.heatonresearch.aifh.error.ErrorCalculationMSE;
+import com.heatonresearch.aifh.general.data.BasicData;
+import com.heatonresearch.aifh.learning.LearningMethod;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The single precision version of ResilientPropagation.  The network is trained as a FloatNetwork, the update
+ * values, gradients and deltas are all floats.  After each iteration the weights are copied back into the
+ * BasicNetwork.  See ResilientPropagation for a description of the algorithm.
+ *
+ * Only fully connected (BasicLayer) networks are supported.
+ */
+public class FloatResilientPropagation implements GradientCalcOwner, LearningMethod {
+
+    /**
+     * The network to train.
+     */
+    private final BasicNetwork network;
+
+    /**
+     * The single precision copy of the network, this is what is actually trained.
+     */
+    private final FloatNetwork floatNetwork;
+
+    /**
+     * The training data.
+     */
+    private final List<BasicData> training;
+
+    /**
+     * Utility to calculate the gradients.
+     */
+    private final FloatGradientCalc gradients;
+
+    /**
+     * The weight deltas from the last iteration.
+     */
+    private final float[] lastDelta;
+
+    /**
+     * The gradients from the last iteration.
+     */
+    private final float[] lastGradients;
+
+    /**
+     * The update values, for each weight.
+     */
+    private final float[] updateValues;
+
+    /**
+     * The error calculation method to use.
+     */
+    private final ErrorCalculation errorCalc = new ErrorCalculationMSE();
+
+    /**
+     * The error from the last iteration.
+     */
+    private double currentError = 1.0;
+
+    /**
+     * L1 regularization.
+     */
+    private double l1;
+
+    /**
+     * L2 regularization.
+     */
+    private double l2;
+
+    /**
+     * Construct the RPROP trainer.
+     * @param theNetwork The network to train.
+     * @param theTraining The training set.
+     */
+    public FloatResilientPropagation(BasicNetwork theNetwork, List<BasicData> theTraining) {
+        this.network = theNetwork;
+        this.floatNetwork = new FloatNetwork(theNetwork);
+        this.training = theTraining;
+        this.gradients = new FloatGradientCalc(this.floatNetwork, new CrossEntropyErrorFunction(), this);
+        this.lastDelta = new float[theNetwork.getWeights().length];
+        this.updateValues = new float[theNetwork.getWeights().length];
+        this.lastGradients = new float[theNetwork.getWeights().length];
+        Arrays.fill(this.updateValues, (float) ResilientPropagation.DEFAULT_INITIAL_UPDATE);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void iteration() {
+        this.gradients.reset();
+        this.errorCalc.clear();
+
+        // Calculate gradients for entire training set, RPROP does not do online.
+        this.gradients.process(this.errorCalc, this.training);
+        this.gradients.applyRegularization();
+        this.currentError = this.errorCalc.calculate();
+
+        // Apply the gradients according to the RPROP algorithm.
+        final float[] weights = this.floatNetwork.getWeights();
+        final float[] gradient = this.gradients.getGradients();
+        for(int i=0;i<gradient.length;i++) {
+            float delta = calculateWeightDelta(gradient, this.lastGradients, i);
+            this.lastGradients[i] = gradient[i];
+            this.lastDelta[i] = delta;
+            weights[i]+=delta;
+        }
+
+        this.floatNetwork.copyTo(this.network);
+    }
+
+    /**
+     * Calculate the change in weights.
+     * @param gradients The gradients.
+     * @param lastGradient The last graidents.
+     * @param index The weight currently being updated.
+     * @return The weight change.
+     */
+    public float calculateWeightDelta(final float[] gradients,
+                                      final float[] lastGradient, final int index) {
+        // multiply the current and previous gradient, and take the
+        // sign. We want to see if the gradient has changed its sign.
+        final int change = (int)Math.signum(gradients[index] * lastGradient[index]);
+        float weightChange = 0;
+
+        if (change > 0) {
+            float delta = this.updateValues[index]
+                    * (float) ResilientPropagation.POSITIVE_ETA;
+            delta = Math.min(delta, (float) ResilientPropagation.DEFAULT_MAX_STEP);
+            weightChange = -Math.signum(gradients[index]) * delta;
+            this.updateValues[index] = delta;
+            lastGradient[index] = gradients[index];
+        } else if (change < 0) {
+            float delta = this.updateValues[index]
+                    * (float) ResilientPropagation.NEGATIVE_ETA;
+            delta = Math.max(delta, (float) ResilientPropagation.DELTA_MIN);
+            this.updateValues[index] = delta;
+            weightChange = -this.lastDelta[index];
+            lastGradient[index] = 0;
+        } else {
+            final float delta = this.updateValues[index];
+            weightChange = -Math.signum(gradients[index]) * delta;
+            lastGradient[index] = gradients[index];
+        }
+
+        return weightChange;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getLastError() {
+        return this.currentError;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean done() {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getStatus() {
+        return "";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void finishTraining() {
+
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getL1() {
+        return this.l1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getL2() {
+        return this.l2;
+    }
+
+    /**
+     * Set the L1 regularization multiplier.
+     * @param theL1 The L1 regularization multiplier.
+     */
+    public void setL1(double theL1) {
+        this.l1 = theL1;
+    }
+
+    /**
+     * Set the L2 regularization multiplier.
+     * @param theL2 The L2 regularization multiplier.
+     */
+    public void setL2(double theL2) {
+        this.l2 = theL2;
+    }
+
+    /**
+     * @return The single precision network being trained.
+     */
+    public FloatNetwork getFloatNetwork() {
+        return this.floatNetwork;
+    }
+}
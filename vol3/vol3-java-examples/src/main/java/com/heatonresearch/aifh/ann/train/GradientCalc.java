@@ -30,10 +30,15 @@ package com.heatonresearch.aifh.ann.train;
 
 import com.heatonresearch.aifh.AIFH;
 import com.heatonresearch.aifh.ann.BasicNetwork;
+import com.heatonresearch.aifh.ann.BatchBuffers;
 import com.heatonresearch.aifh.ann.Layer;
 import com.heatonresearch.aifh.ann.activation.ActivationFunction;
 import com.heatonresearch.aifh.ann.train.error.ErrorFunction;
 import com.heatonresearch.aifh.error.ErrorCalculation;
+import com.heatonresearch.aifh.general.data.BasicData;
+import com.heatonresearch.aifh.learning.TrainingMetrics;
+
+import java.util.List;
 
 /**
  * A utility class used to help calculate the gradient of the error function for neural networks.
@@ -84,6 +89,26 @@ public class GradientCalc {
      */
     private final ErrorFunction errorFunction;
 
+    /**
+     * The output sums of a single batch row, used to calculate the output error.
+     */
+    private final double[] outputSums;
+
+    /**
+     * The output deltas of a single batch row, used to calculate the output error.
+     */
+    private final double[] outputDelta;
+
+    /**
+     * The buffers for mini-batch processing, created on first use.
+     */
+    private BatchBuffers batch;
+
+    /**
+     * Receives the forward and backward times of the mini-batch calculation, or null.
+     */
+    private TrainingMetrics metrics;
+
     /**
      * Construct the gradient calculation class.
      * @param theNetwork The network to use.
@@ -98,6 +123,8 @@ public class GradientCalc {
         this.layerDelta = new double[this.network.getLayerOutput().length];
         this.gradients = new double[this.network.getWeights().length];
         this.actual = new double[this.network.getOutputCount()];
+        this.outputSums = new double[this.network.getOutputCount()];
+        this.outputDelta = new double[this.network.getOutputCount()];
 
         this.weights = this.network.getWeights();
         this.layerOutput = this.network.getLayerOutput();
@@ -137,17 +164,6 @@ public class GradientCalc {
                 outputActivation, this.layerSums, this.layerOutput,
                 ideal, this.actual, this.layerDelta, 0, 1.0);
 
-        // Apply regularization, if requested.
-        if (this.owner.getL1() > AIFH.DEFAULT_PRECISION
-                || this.owner.getL1() > AIFH.DEFAULT_PRECISION) {
-            double[] lp = new double[2];
-            calculateRegularizationPenalty(lp);
-            for (int i = 0; i < this.actual.length; i++) {
-                double p = (lp[0] * this.owner.getL1()) + (lp[1] * this.owner.getL2());
-                this.layerDelta[i] += p;
-            }
-        }
-
         // Propagate backwards (chain rule from calculus).
         for (int i = this.network.getLayers().size() - 1; i > 0; i--) {
             Layer layer = this.network.getLayers().get(i);
@@ -156,6 +172,64 @@ public class GradientCalc {
     }
 
 
+    /**
+     * Process a mini-batch of training set elements.  The elements are pushed through the network in groups of
+     * rows, so that each layer streams its weights once per group rather than once per element.  The gradients
+     * are the same as calling process for each element.  The network's own layerOutput/layerSums are not used.
+     * Sparse elements (SparseBasicData) only visit their non-zero inputs in the first layer.  The rows of a
+     * DataSourceList are read straight from its source into the batch buffers.
+     * @param errorCalc The error calculation.
+     * @param elements The training set elements.
+     */
+    public void process(ErrorCalculation errorCalc, List<BasicData> elements) {
+        if (this.batch == null) {
+            this.batch = new BatchBuffers(this.network, BatchBuffers.DEFAULT_CAPACITY);
+        }
+
+        final int outputLayerIndex = this.network.getLayers().size() - 1;
+        final ActivationFunction outputActivation = this.network.getLayers().get(outputLayerIndex).getActivation();
+        final double[] layerOutput = this.batch.getLayerOutput();
+        final double[] layerSums = this.batch.getLayerSums();
+        final double[] layerDelta = this.batch.getLayerDelta();
+        final int stride = this.batch.getStride();
+        final int outputCount = this.actual.length;
+
+        for (int start = 0; start < elements.size(); start += this.batch.getCapacity()) {
+            final int rowCount = Math.min(this.batch.getCapacity(), elements.size() - start);
+            this.batch.setRowCount(rowCount);
+
+            final long forwardStart = this.metrics != null ? System.nanoTime() : 0;
+            for (int row = 0; row < rowCount; row++) {
+                this.batch.setRow(row, elements, start + row);
+            }
+            this.network.compute(this.batch);
+
+            // Calculate error for the output layer, the output layer is always at the start of a row.
+            for (int row = 0; row < rowCount; row++) {
+                final double[] ideal = this.batch.getIdeal(row);
+                System.arraycopy(layerOutput, row * stride, this.actual, 0, outputCount);
+                System.arraycopy(layerSums, row * stride, this.outputSums, 0, outputCount);
+                errorCalc.updateError(this.actual, ideal, 1.0);
+                this.errorFunction.calculateError(
+                        outputActivation, this.outputSums, this.actual,
+                        ideal, this.actual, this.outputDelta, 0, 1.0);
+                System.arraycopy(this.outputDelta, 0, layerDelta, row * stride, outputCount);
+            }
+
+            final long backwardStart = this.metrics != null ? System.nanoTime() : 0;
+
+            // Propagate backwards (chain rule from calculus).
+            for (int i = outputLayerIndex; i > 0; i--) {
+                this.network.getLayers().get(i).computeGradient(this, this.batch);
+            }
+
+            if (this.metrics != null) {
+                this.metrics.addForwardTime(backwardStart - forwardStart);
+                this.metrics.addBackwardTime(System.nanoTime() - backwardStart);
+            }
+        }
+    }
+
     /**
      * Reset all gradients to zero.
      */
@@ -174,33 +248,45 @@ public class GradientCalc {
     }
 
     /**
-     * Apply a regularization penalty, such as that from L1/L2 regularization.
-     * @param l The penalty.
+     * Add the L1/L2 regularization term to the gradients.  The penalty added to the error is
+     * l1*sum(|w|) + l2*sum(w^2), so the gradient term for each weight is l1*sign(w) + 2*l2*w.  The penalty only
+     * depends on the weights, so this should be called once per batch, after the batch has been processed.  The
+     * weights are visited in a single pass over the flat weight array.
      */
-    public void calculateRegularizationPenalty(double[] l) {
-        for (int i = 0; i < this.network.getLayers().size() - 1; i++) {
-            layerRegularizationPenalty(i, l);
+    public void applyRegularization() {
+        final double l1 = this.owner.getL1();
+        final double l2 = this.owner.getL2();
+
+        if (l1 > AIFH.DEFAULT_PRECISION || l2 > AIFH.DEFAULT_PRECISION) {
+            final double l2x2 = 2.0 * l2;
+            for (int i = 0; i < this.weights.length; i++) {
+                final double w = this.weights[i];
+                this.gradients[i] += (l1 * Math.signum(w)) + (l2x2 * w);
+            }
         }
     }
 
     /**
-     * Apply a regularization penalty, such as that from L1/L2 regularization.
-     * @param fromLayer The from layer.
-     * @param l The penalty.
+     * Calculate the L1 and L2 regularization penalties for the current weights.
+     * @param l The penalty, l[0] receives the sum of the absolute weights (L1) and l[1] receives the sum of the
+     *          squared weights (L2).
      */
-    public void layerRegularizationPenalty(final int fromLayer, final double[] l) {
-        final int fromCount = this.network.getLayerTotalNeuronCount(fromLayer);
-        final int toCount = this.network.getLayers().get(fromLayer + 1).getCount();
-
-        for (int fromNeuron = 0; fromNeuron < fromCount; fromNeuron++) {
-            for (int toNeuron = 0; toNeuron < toCount; toNeuron++) {
-                double w = this.network.getWeight(fromLayer, fromNeuron, toNeuron);
-                l[0] += Math.abs(w);
-                l[1] += w * w;
-            }
+    public void calculateRegularizationPenalty(double[] l) {
+        for (int i = 0; i < this.weights.length; i++) {
+            final double w = this.weights[i];
+            l[0] += Math.abs(w);
+            l[1] += w * w;
         }
     }
 
+    /**
+     * Set the metrics that receive the forward and backward times of each mini-batch.
+     * @param theMetrics The metrics, or null to not record times.
+     */
+    public void setMetrics(final TrainingMetrics theMetrics) {
+        this.metrics = theMetrics;
+    }
+
     /**
      * @return The layer deltas used to calculate the gradient.
      */
@@ -30,7 +30,8 @@ package com.heatonresearch.aifh.ann.train;
 
 /**
  * A class that owns a gradient calculation utility, usually a trainer.  This class provides the L1 and L2
- * regularizaiton multipliers.
+ * regularizaiton multipliers.  The penalty is l1*sum(|w|) + l2*sum(w^2), over all weights.  Its gradient is added
+ * once per batch, see GradientCalc.applyRegularization.
  */
 public interface GradientCalcOwner {
 
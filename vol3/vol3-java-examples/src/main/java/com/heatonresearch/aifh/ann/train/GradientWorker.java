@@ -0,0 +1,102 @@
+/*
+ * Artificial Intelligence for Humans
+ * Volume 3: Deep Learning and Neural Networks
+ * Java Version
+ * http://www.aifh.org
+ * http://www.jeffheaton.com
+ *
+ * Code repository:
+ * https://github.com/jeffheaton/aifh
+ *
+ * Copyright 2014-2015 by Jeff Heaton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For more information on Heaton Research copyrights, licenses
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package com.heatonresearch.aifh.ann.train;
+
+import com.heatonresearch.aifh.error.ErrorCalculation;
+import com.heatonresearch.aifh.general.data.BasicData;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * A worker used by ParallelGradientCalc.  Each worker has its own gradient calculation, and therefore its own
+ * activation buffers, delta buffers and gradient accumulator.  A worker only reads the network weights, so several
+ * workers can run against the same network at once.
+ */
+public class GradientWorker implements Callable<Object> {
+
+    /**
+     * The gradient calculation for this worker.
+     */
+    private final GradientCalc calc;
+
+    /**
+     * The error calculation for this worker.
+     */
+    private final ErrorCalculation errorCalc;
+
+    /**
+     * The elements that this worker should process next.
+     */
+    private List<BasicData> elements;
+
+    /**
+     * Construct the worker.
+     * @param theCalc The gradient calculation to use, this must not be shared with other workers.
+     * @param theErrorCalc The error calculation to use, this must not be shared with other workers.
+     */
+    public GradientWorker(final GradientCalc theCalc, final ErrorCalculation theErrorCalc) {
+        this.calc = theCalc;
+        this.errorCalc = theErrorCalc;
+    }
+
+    /**
+     * Calculate the gradients and error for this worker's elements.  The previous gradients and error are cleared.
+     * @return Nothing, null.
+     */
+    @Override
+    public Object call() {
+        this.calc.reset();
+        this.errorCalc.clear();
+        this.calc.process(this.errorCalc, this.elements);
+        return null;
+    }
+
+    /**
+     * Set the elements that this worker should process next.
+     * @param theElements The elements.
+     */
+    public void setElements(final List<BasicData> theElements) {
+        this.elements = theElements;
+    }
+
+    /**
+     * @return The gradient calculation for this worker.
+     */
+    public GradientCalc getCalc() {
+        return this.calc;
+    }
+
+    /**
+     * @return The error calculation for this worker.
+     */
+    public ErrorCalculation getErrorCalc() {
+        return this.errorCalc;
+    }
+}
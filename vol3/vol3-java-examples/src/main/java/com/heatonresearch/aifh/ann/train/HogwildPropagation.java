@@ -0,0 +1,604 @@
+/*
+ * Artificial Intelligence for Humans
+ * Volume 3: Deep Learning and Neural Networks
+ * Java Version
+ * http://www.aifh.org
+ * http://www.jeffheaton.com
+ *
+ * Code repository:
+ * https://github.com/jeffheaton/aifh
+ *
+ * Copyright 2014-2015 by Jeff Heaton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For more information on Heaton Research copyrights, licenses
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package com.heatonresearch.aifh.ann.train;
+
+import com.heatonresearch.aifh.AIFH;
+import com.heatonresearch.aifh.AIFHError;
+import com.heatonresearch.aifh.ann.BasicLayer;
+import com.heatonresearch.aifh.ann.BasicNetwork;
+import com.heatonresearch.aifh.ann.DropoutLayer;
+import com.heatonresearch.aifh.ann.Layer;
+import com.heatonresearch.aifh.ann.train.error.CrossEntropyErrorFunction;
+import com.heatonresearch.aifh.error.ErrorCalculation;
+import com.heatonresearch.aifh.error.ErrorCalculationMSE;
+import com.heatonresearch.aifh.general.data.BasicData;
+import com.heatonresearch.aifh.general.data.SparseBasicData;
+import com.heatonresearch.aifh.learning.MeasuredLearningMethod;
+import com.heatonresearch.aifh.learning.TrainingMetrics;
+import com.heatonresearch.aifh.randomize.GenerateRandom;
+import com.heatonresearch.aifh.randomize.MersenneTwisterGenerateRandom;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Asynchronous stochastic gradient descent (SGD), without locks (Hogwild).  Each iteration is one epoch: the
+ * training set is shuffled and split into one contiguous shard per thread.  Every thread walks its shard in small
+ * mini-batches, and after each mini-batch it subtracts learningRate*gradient straight from the network's shared
+ * weight array.  The threads never wait for each other, so a thread may compute a gradient from weights that
+ * another thread is updating at the same time.  Plain SGD tolerates this, particularly on sparse problems where two
+ * mini-batches seldom touch the same weights.
+ *
+ * Each thread has its own GradientCalc, and therefore its own activation, delta and gradient buffers.  Only the
+ * non-zero gradients are written back, so a sparse input (SparseBasicData) only writes the first layer weights of
+ * its non-zero inputs.  When every row of a mini-batch is sparse, the update only visits those first layer weights,
+ * rather than scanning the whole first layer.  L1/L2 regularization touches every weight, and makes every update
+ * dense.  Each thread also sums its own times, which are added to the metrics once per epoch.
+ *
+ * Because the threads race, training with more than one thread is not repeatable.  There is no momentum, since the
+ * momentum of a weight would be shared state too.  Dropout layers choose their dropped neurons once per batch for
+ * the whole network, so they can not be trained by several threads at once and are not supported.
+ *
+ * Recht, B., Re, C., Wright, S., & Niu, F. (2011). Hogwild: A lock-free approach to parallelizing stochastic
+ * gradient descent. In Advances in Neural Information Processing Systems (pp. 693-701).
+ */
+public class HogwildPropagation implements GradientCalcOwner, MeasuredLearningMethod {
+
+    /**
+     * The times of one worker, summed over an epoch.  These are plain fields, only the worker's thread writes them,
+     * and they are added to the shared metrics once per epoch, after the workers have finished.
+     */
+    private static class WorkerMetrics extends TrainingMetrics {
+
+        /**
+         * The time spent in the forward pass this epoch.
+         */
+        private long forwardTime;
+
+        /**
+         * The time spent in the backward pass this epoch.
+         */
+        private long backwardTime;
+
+        /**
+         * The time spent updating the weights this epoch.
+         */
+        private long updateTime;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void addForwardTime(final long time) {
+            this.forwardTime += time;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void addBackwardTime(final long time) {
+            this.backwardTime += time;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void addUpdateTime(final long time) {
+            this.updateTime += time;
+        }
+
+        /**
+         * Add this epoch's times to other metrics, and start again from zero.
+         * @param target The metrics to add to.
+         */
+        public void mergeInto(final TrainingMetrics target) {
+            target.addForwardTime(this.forwardTime);
+            target.addBackwardTime(this.backwardTime);
+            target.addUpdateTime(this.updateTime);
+            this.forwardTime = 0;
+            this.backwardTime = 0;
+            this.updateTime = 0;
+        }
+    }
+
+    /**
+     * Trains one shard of the training set.
+     */
+    private class Worker implements Callable<Object> {
+
+        /**
+         * The gradient calculation of this worker.
+         */
+        private final GradientCalc calc;
+
+        /**
+         * The error of this worker's last shard.
+         */
+        private final ErrorCalculation workerError;
+
+        /**
+         * The times of this worker's last shard.
+         */
+        private final WorkerMetrics workerMetrics = new WorkerMetrics();
+
+        /**
+         * The rows of the current mini-batch.
+         */
+        private final List<BasicData> batch = new ArrayList<>();
+
+        /**
+         * The first position in the permutation of this worker's shard.
+         */
+        private int start;
+
+        /**
+         * The position after the end of this worker's shard.
+         */
+        private int end;
+
+        /**
+         * Construct the worker.
+         */
+        Worker() {
+            this.calc = new GradientCalc(HogwildPropagation.this.network, new CrossEntropyErrorFunction(),
+                    HogwildPropagation.this);
+            this.calc.setMetrics(this.workerMetrics);
+            this.workerError = HogwildPropagation.this.errorCalc.create();
+        }
+
+        /**
+         * Train this worker's shard.
+         * @return Nothing, null.
+         */
+        @Override
+        public Object call() {
+            final double[] weights = HogwildPropagation.this.network.getWeights();
+            final double[] gradients = this.calc.getGradients();
+            final double rate = HogwildPropagation.this.learningRate;
+            final int firstStart = HogwildPropagation.this.firstWeightStart;
+            final int firstEnd = HogwildPropagation.this.firstWeightEnd;
+
+            this.workerError.clear();
+            this.calc.reset();
+            for (int i = this.start; i < this.end; i += HogwildPropagation.this.batchSize) {
+                final int batchEnd = Math.min(this.end, i + HogwildPropagation.this.batchSize);
+                this.batch.clear();
+                boolean sparse = firstEnd > firstStart && !isRegularized();
+                for (int j = i; j < batchEnd; j++) {
+                    final BasicData element = HogwildPropagation.this.training.get(HogwildPropagation.this.order[j]);
+                    sparse &= element instanceof SparseBasicData;
+                    this.batch.add(element);
+                }
+
+                this.calc.process(this.workerError, this.batch);
+                this.calc.applyRegularization();
+
+                final long updateStart = System.nanoTime();
+                if (sparse) {
+                    // the other layers are dense, the first layer only has gradients for the non-zero inputs
+                    update(weights, gradients, rate, 0, firstStart);
+                    update(weights, gradients, rate, firstEnd, weights.length);
+                    for (BasicData element : this.batch) {
+                        updateSparse(weights, gradients, rate, (SparseBasicData) element);
+                    }
+                } else {
+                    update(weights, gradients, rate, 0, weights.length);
+                }
+                this.workerMetrics.addUpdateTime(System.nanoTime() - updateStart);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * The network to train.
+     */
+    private final BasicNetwork network;
+
+    /**
+     * The training set.
+     */
+    private final List<BasicData> training;
+
+    /**
+     * The learning rate.
+     */
+    private final double learningRate;
+
+    /**
+     * The number of rows each thread processes between weight updates.
+     */
+    private int batchSize = 1;
+
+    /**
+     * The number of threads to use, zero for one per processor.
+     */
+    private int threadCount;
+
+    /**
+     * Shuffles the training set at the start of each epoch.
+     */
+    private GenerateRandom rnd = new MersenneTwisterGenerateRandom();
+
+    /**
+     * The order the rows are visited in during the current epoch.
+     */
+    private final int[] order;
+
+    /**
+     * The error of the last epoch.
+     */
+    private final ErrorCalculation errorCalc = new ErrorCalculationMSE();
+
+    /**
+     * The current error.
+     */
+    private double currentError = 1.0;
+
+    /**
+     * L1 regularization weighting, 0.0 for none.
+     */
+    private double l1;
+
+    /**
+     * L2 regularization weighting, 0.0 for none.
+     */
+    private double l2;
+
+    /**
+     * The workers, one per thread.  Created on first use.
+     */
+    private Worker[] workers;
+
+    /**
+     * The thread pool, created on first use.
+     */
+    private ForkJoinPool pool;
+
+    /**
+     * Holds the workers used each epoch.
+     */
+    private final List<Callable<Object>> threadList = new ArrayList<>();
+
+    /**
+     * The training metrics.
+     */
+    private final TrainingMetrics metrics = new TrainingMetrics();
+
+    /**
+     * The first weight of the layer fed by the input layer, if it can take the sparse path.
+     */
+    private final int firstWeightStart;
+
+    /**
+     * The weight after the last weight of the layer fed by the input layer, the same as firstWeightStart if that
+     * layer can not take the sparse path.
+     */
+    private final int firstWeightEnd;
+
+    /**
+     * The count of neurons of the layer fed by the input layer.
+     */
+    private final int firstCount;
+
+    /**
+     * The count of input neurons, including the bias.
+     */
+    private final int inputTotalCount;
+
+    /**
+     * True, if the input layer has a bias neuron.
+     */
+    private final boolean inputHasBias;
+
+    /**
+     * Construct the Hogwild trainer.
+     * @param theNetwork The network to train.
+     * @param theTraining The training data to use.
+     * @param theLearningRate The learning rate.
+     */
+    public HogwildPropagation(final BasicNetwork theNetwork, final List<BasicData> theTraining,
+                              final double theLearningRate) {
+        for (Layer layer : theNetwork.getLayers()) {
+            if (layer instanceof DropoutLayer) {
+                throw new AIFHError("Hogwild training does not support dropout layers.");
+            }
+        }
+        if (theTraining.isEmpty()) {
+            throw new AIFHError("The training set must have at least one row.");
+        }
+        this.network = theNetwork;
+        this.training = theTraining;
+        this.learningRate = theLearningRate;
+        this.order = new int[theTraining.size()];
+        for (int i = 0; i < this.order.length; i++) {
+            this.order[i] = i;
+        }
+
+        final Layer input = theNetwork.getLayers().get(0);
+        final Layer first = theNetwork.getLayers().get(1);
+        this.firstCount = first.getCount();
+        this.inputTotalCount = input.getTotalCount();
+        this.inputHasBias = input.hasBias();
+        this.firstWeightStart = first.getWeightIndex();
+        this.firstWeightEnd = first instanceof BasicLayer
+                ? this.firstWeightStart + this.firstCount * this.inputTotalCount : this.firstWeightStart;
+    }
+
+    /**
+     * Apply and clear the gradients of a range of weights.  Only the non-zero gradients are written.
+     * @param weights The weights.
+     * @param gradients The gradients.
+     * @param rate The learning rate.
+     * @param from The first weight.
+     * @param to The weight after the last weight.
+     */
+    private static void update(final double[] weights, final double[] gradients, final double rate,
+                               final int from, final int to) {
+        for (int j = from; j < to; j++) {
+            if (gradients[j] != 0) {
+                weights[j] -= rate * gradients[j];
+                gradients[j] = 0;
+            }
+        }
+    }
+
+    /**
+     * Apply and clear the gradients of the first layer weights that a sparse input touched: for each neuron, the
+     * weights of the non-zero inputs and the bias.  A weight touched by several rows of the batch is applied once,
+     * since its gradient is zero after the first time.
+     * @param weights The weights.
+     * @param gradients The gradients.
+     * @param rate The learning rate.
+     * @param input The sparse input.
+     */
+    private void updateSparse(final double[] weights, final double[] gradients, final double rate,
+                              final SparseBasicData input) {
+        final int[] indexes = input.getIndexes();
+        final int biasIndex = input.getInputCount();
+
+        for (int x = 0; x < this.firstCount; x++) {
+            final int wi = this.firstWeightStart + x * this.inputTotalCount;
+            for (int k = 0; k < indexes.length; k++) {
+                final int j = wi + indexes[k];
+                if (gradients[j] != 0) {
+                    weights[j] -= rate * gradients[j];
+                    gradients[j] = 0;
+                }
+            }
+            if (this.inputHasBias && gradients[wi + biasIndex] != 0) {
+                weights[wi + biasIndex] -= rate * gradients[wi + biasIndex];
+                gradients[wi + biasIndex] = 0;
+            }
+        }
+    }
+
+    /**
+     * @return True, if L1 or L2 regularization is used, which gives every weight a gradient.
+     */
+    private boolean isRegularized() {
+        return this.l1 > AIFH.DEFAULT_PRECISION || this.l2 > AIFH.DEFAULT_PRECISION;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void iteration() {
+        final long iterationStart = System.nanoTime();
+
+        if (this.workers == null) {
+            final int actualThreadCount = this.threadCount == 0 ? Runtime.getRuntime().availableProcessors()
+                    : this.threadCount;
+            this.workers = new Worker[Math.min(actualThreadCount, this.training.size())];
+            for (int i = 0; i < this.workers.length; i++) {
+                this.workers[i] = new Worker();
+            }
+            if (this.workers.length > 1) {
+                this.pool = new ForkJoinPool(this.workers.length);
+            }
+        }
+
+        // shuffle the epoch (Fisher-Yates)
+        for (int i = this.order.length - 1; i > 0; i--) {
+            final int j = this.rnd.nextInt(i + 1);
+            final int temp = this.order[i];
+            this.order[i] = this.order[j];
+            this.order[j] = temp;
+        }
+
+        this.threadList.clear();
+        for (int i = 0; i < this.workers.length; i++) {
+            this.workers[i].start = (int) ((long) i * this.order.length / this.workers.length);
+            this.workers[i].end = (int) ((long) (i + 1) * this.order.length / this.workers.length);
+            this.threadList.add(this.workers[i]);
+        }
+
+        this.network.setNetworkTraining(true);
+        if (this.pool == null) {
+            this.workers[0].call();
+        } else {
+            try {
+                for (Future<Object> future : this.pool.invokeAll(this.threadList)) {
+                    future.get();
+                }
+            } catch (InterruptedException | ExecutionException ex) {
+                throw new AIFHError(ex);
+            }
+        }
+        this.network.setNetworkTraining(false);
+
+        this.errorCalc.clear();
+        for (Worker worker : this.workers) {
+            this.errorCalc.add(worker.workerError);
+            worker.workerMetrics.mergeInto(this.metrics);
+        }
+        this.currentError = this.errorCalc.calculate();
+
+        this.metrics.iterationComplete(this, System.nanoTime() - iterationStart, this.training.size());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public TrainingMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getLastError() {
+        return this.currentError;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean done() {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getStatus() {
+        return "";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void finishTraining() {
+        if (this.pool != null) {
+            this.pool.shutdown();
+            this.pool = null;
+        }
+        this.workers = null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getL1() {
+        return this.l1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getL2() {
+        return this.l2;
+    }
+
+    /**
+     * Set the L1 regularization multiplier.
+     * @param theL1 The L1 regularization multiplier.
+     */
+    public void setL1(final double theL1) {
+        this.l1 = theL1;
+    }
+
+    /**
+     * Set the L2 regularization multiplier.
+     * @param theL2 The L2 regularization multiplier.
+     */
+    public void setL2(final double theL2) {
+        this.l2 = theL2;
+    }
+
+    /**
+     * @return The learning rate.
+     */
+    public double getLearningRate() {
+        return this.learningRate;
+    }
+
+    /**
+     * @return The number of rows each thread processes between weight updates.
+     */
+    public int getBatchSize() {
+        return this.batchSize;
+    }
+
+    /**
+     * Set the number of rows each thread processes between weight updates.  The default is one, plain SGD.
+     * @param theBatchSize The batch size.
+     */
+    public void setBatchSize(final int theBatchSize) {
+        if (theBatchSize < 1) {
+            throw new AIFHError("The batch size must be at least 1.");
+        }
+        this.batchSize = theBatchSize;
+    }
+
+    /**
+     * @return The number of threads to use, zero for one per processor.
+     */
+    public int getThreadCount() {
+        return this.threadCount;
+    }
+
+    /**
+     * Set the number of threads.  Call finishTraining to release the threads.
+     * @param theThreadCount The number of threads, zero (the default) for one per processor.
+     */
+    public void setThreadCount(final int theThreadCount) {
+        finishTraining();
+        this.threadCount = theThreadCount;
+    }
+
+    /**
+     * @return The random number generator used to shuffle each epoch.
+     */
+    public GenerateRandom getRnd() {
+        return this.rnd;
+    }
+
+    /**
+     * Set the random number generator used to shuffle each epoch.
+     * @param theRnd The random number generator.
+     */
+    public void setRnd(final GenerateRandom theRnd) {
+        this.rnd = theRnd;
+    }
+}
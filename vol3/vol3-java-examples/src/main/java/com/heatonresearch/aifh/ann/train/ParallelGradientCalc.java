@@ -0,0 +1,148 @@
+/*
+ * Artificial Intelligence for Humans
+ * Volume 3: Deep Learning and Neural Networks
+ * Java Version
+ * http://www.aifh.org
+ * http://www.jeffheaton.com
+ *
+ * Code repository:
+ * https://github.com/jeffheaton/aifh
+ *
+ * Copyright 2014-2015 by Jeff Heaton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For more information on Heaton Research copyrights, licenses
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package com.heatonresearch.aifh.ann.train;
+
+import com.heatonresearch.aifh.AIFHError;
+import com.heatonresearch.aifh.ann.BasicNetwork;
+import com.heatonresearch.aifh.ann.train.error.ErrorFunction;
+import com.heatonresearch.aifh.error.ErrorCalculation;
+import com.heatonresearch.aifh.general.data.BasicData;
+import com.heatonresearch.aifh.learning.TrainingMetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Calculates the gradients for a batch using several threads.  The batch is split into one contiguous shard per
+ * worker, and the shards are processed on a ForkJoin pool.  Once all workers are done, their gradients and errors
+ * are summed in shard order.  The result therefore only depends on the batch and the thread count, never on how
+ * the threads happened to be scheduled.
+ */
+public class ParallelGradientCalc {
+
+    /**
+     * The workers, one per thread.
+     */
+    private final GradientWorker[] workers;
+
+    /**
+     * The thread pool.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Holds the workers used each batch.
+     */
+    private final List<Callable<Object>> threadList = new ArrayList<>();
+
+    /**
+     * Construct the parallel gradient calculation.
+     * @param theNetwork The network to use.
+     * @param ef The error function to use.
+     * @param theOwner The owner (usually a trainer).
+     * @param errorCalc The error calculation, each worker is given a new instance of this type.
+     * @param threadCount The number of threads, or zero to use one per processor.
+     */
+    public ParallelGradientCalc(final BasicNetwork theNetwork, final ErrorFunction ef,
+                                final GradientCalcOwner theOwner, final ErrorCalculation errorCalc,
+                                final int threadCount) {
+        final int actualThreadCount = threadCount == 0 ? Runtime.getRuntime().availableProcessors() : threadCount;
+        this.workers = new GradientWorker[actualThreadCount];
+        for (int i = 0; i < this.workers.length; i++) {
+            this.workers[i] = new GradientWorker(new GradientCalc(theNetwork, ef, theOwner), errorCalc.create());
+        }
+        this.pool = new ForkJoinPool(actualThreadCount);
+    }
+
+    /**
+     * Process a batch of training set elements.  The gradients are added to the target's gradients, and the error
+     * is added to the error calculation.
+     * @param target The gradient calculation that receives the summed gradients.
+     * @param errorCalc The error calculation.
+     * @param elements The training set elements.
+     */
+    public void process(final GradientCalc target, final ErrorCalculation errorCalc,
+                        final List<BasicData> elements) {
+        final int shardCount = Math.min(this.workers.length, elements.size());
+
+        this.threadList.clear();
+        for (int i = 0; i < shardCount; i++) {
+            final int start = (int) ((long) i * elements.size() / shardCount);
+            final int end = (int) ((long) (i + 1) * elements.size() / shardCount);
+            this.workers[i].setElements(elements.subList(start, end));
+            this.threadList.add(this.workers[i]);
+        }
+
+        try {
+            for (Future<Object> future : this.pool.invokeAll(this.threadList)) {
+                future.get();
+            }
+        } catch (InterruptedException | ExecutionException ex) {
+            throw new AIFHError(ex);
+        }
+
+        // reduce, always in shard order
+        final double[] gradients = target.getGradients();
+        for (int i = 0; i < shardCount; i++) {
+            final double[] workerGradients = this.workers[i].getCalc().getGradients();
+            for (int j = 0; j < gradients.length; j++) {
+                gradients[j] += workerGradients[j];
+            }
+            errorCalc.add(this.workers[i].getErrorCalc());
+        }
+    }
+
+    /**
+     * Set the metrics that receive the forward and backward times of every worker.
+     * @param theMetrics The metrics, or null to not record times.
+     */
+    public void setMetrics(final TrainingMetrics theMetrics) {
+        for (GradientWorker worker : this.workers) {
+            worker.getCalc().setMetrics(theMetrics);
+        }
+    }
+
+    /**
+     * @return The number of threads.
+     */
+    public int getThreadCount() {
+        return this.workers.length;
+    }
+
+    /**
+     * Shut down the thread pool.  This object can not be used after this call.
+     */
+    public void shutdown() {
+        this.pool.shutdown();
+    }
+}
@@ -33,7 +33,8 @@ import com.heatonresearch.aifh.ann.train.error.CrossEntropyErrorFunction;
 import com.heatonresearch.aifh.error.ErrorCalculation;
 import com.heatonresearch.aifh.error.ErrorCalculationMSE;
 import com.heatonresearch.aifh.general.data.BasicData;
-import com.heatonresearch.aifh.learning.LearningMethod;
+import com.heatonresearch.aifh.learning.MeasuredLearningMethod;
+import com.heatonresearch.aifh.learning.TrainingMetrics;
 
 import java.util.List;
 
@@ -68,7 +69,7 @@ import java.util.List;
  * default is 50.xw
  *
  */
-public class ResilientPropagation implements GradientCalcOwner, LearningMethod {
+public class ResilientPropagation implements GradientCalcOwner, MeasuredLearningMethod {
 
     /**
      * The network to train.
@@ -115,6 +116,21 @@ public class ResilientPropagation implements GradientCalcOwner, LearningMethod {
      */
     private double l2;
 
+    /**
+     * The number of threads to use, zero for one per processor.  The default is one, a single thread.
+     */
+    private int threadCount = 1;
+
+    /**
+     * The parallel gradient calculation, only used with more than one thread.
+     */
+    private ParallelGradientCalc parallel;
+
+    /**
+     * The training metrics.
+     */
+    private final TrainingMetrics metrics = new TrainingMetrics();
+
     /**
      * The current update values.
      */
@@ -153,6 +169,7 @@ public class ResilientPropagation implements GradientCalcOwner, LearningMethod {
         this.network = theNetwork;
         this.training = theTraining;
         this.gradients = new GradientCalc(this.network, new CrossEntropyErrorFunction(), this);
+        this.gradients.setMetrics(this.metrics);
         this.lastDelta = new double[theNetwork.getWeights().length];
         this.updateValues = new double[theNetwork.getWeights().length];
         this.lastGradients = new double[theNetwork.getWeights().length];
@@ -167,16 +184,26 @@ public class ResilientPropagation implements GradientCalcOwner, LearningMethod {
      */
     @Override
     public void iteration() {
+        final long iterationStart = System.nanoTime();
         this.gradients.reset();
         this.errorCalc.clear();
 
         // Calculate gradients for entire training set, RPROP does not do online.
-        for (BasicData element : this.training) {
-            this.gradients.process(this.errorCalc, element.getInput(), element.getIdeal());
+        if (this.threadCount == 1) {
+            this.gradients.process(this.errorCalc, this.training);
+        } else {
+            if (this.parallel == null) {
+                this.parallel = new ParallelGradientCalc(this.network, new CrossEntropyErrorFunction(), this,
+                        this.errorCalc, this.threadCount);
+                this.parallel.setMetrics(this.metrics);
+            }
+            this.parallel.process(this.gradients, this.errorCalc, this.training);
         }
+        this.gradients.applyRegularization();
         this.currentError = this.errorCalc.calculate();
 
         // Apply the gradients according to the RPROP algorithm.
+        final long updateStart = System.nanoTime();
         for(int i=0;i<this.gradients.getGradients().length;i++) {
             double delta = calculateWeightDelta(this.gradients.getGradients(), this.lastGradients, i);
             this.lastGradients[i] = this.gradients.getGradients()[i];
@@ -184,7 +211,17 @@ public class ResilientPropagation implements GradientCalcOwner, LearningMethod {
             this.network.getWeights()[i]+=delta;
         }
 
+        final long end = System.nanoTime();
+        this.metrics.addUpdateTime(end - updateStart);
+        this.metrics.iterationComplete(this, end - iterationStart, this.training.size());
+    }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public TrainingMetrics getMetrics() {
+        return this.metrics;
     }
 
     /**
@@ -262,7 +299,10 @@ public class ResilientPropagation implements GradientCalcOwner, LearningMethod {
      */
     @Override
     public void finishTraining() {
-
+        if (this.parallel != null) {
+            this.parallel.shutdown();
+            this.parallel = null;
+        }
     }
 
     /**
@@ -297,4 +337,20 @@ public class ResilientPropagation implements GradientCalcOwner, LearningMethod {
         this.l2 = theL2;
     }
 
+    /**
+     * @return The number of threads to use, zero for one per processor.
+     */
+    public int getThreadCount() {
+        return this.threadCount;
+    }
+
+    /**
+     * Set the number of threads to use for the gradient calculation.  The training set (or batch) is split
+     * evenly between the threads.  Call finishTraining to release the threads.
+     * @param theThreadCount The number of threads, zero for one per processor.
+     */
+    public void setThreadCount(int theThreadCount) {
+        finishTraining();
+        this.threadCount = theThreadCount;
+    }
 }
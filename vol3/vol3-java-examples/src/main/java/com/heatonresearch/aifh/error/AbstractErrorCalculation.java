@@ -28,6 +28,8 @@
  */
 package com.heatonresearch.aifh.error;
 
+import com.heatonresearch.aifh.AIFHError;
+
 /**
  * An abstract error calculation class that provides some basic functionality.
  */
@@ -71,6 +73,19 @@ public abstract class AbstractErrorCalculation implements ErrorCalculation {
 
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void add(final ErrorCalculation other) {
+        if (!(other instanceof AbstractErrorCalculation)) {
+            throw new AIFHError("Can't add an error calculation of type: " + other.getClass().getSimpleName());
+        }
+        final AbstractErrorCalculation o = (AbstractErrorCalculation) other;
+        this.globalError += o.globalError;
+        this.setSize += o.setSize;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -59,6 +59,14 @@ public interface ErrorCalculation {
      */
     void updateError(final double actual, final double ideal);
 
+    /**
+     * Add the error accumulated by another error calculation to this one.  This allows the error for a set to be
+     * calculated in parts, for example by several threads.
+     *
+     * @param other The other error calculation.
+     */
+    void add(final ErrorCalculation other);
+
     /**
      * Calculate the error with MSE.
      *
@@ -32,11 +32,15 @@ import com.heatonresearch.aifh.AIFH;
 import com.heatonresearch.aifh.AIFHError;
 import com.heatonresearch.aifh.ann.BasicLayer;
 import com.heatonresearch.aifh.ann.BasicNetwork;
+import com.heatonresearch.aifh.ann.MagnitudePruning;
+import com.heatonresearch.aifh.ann.SparseNetwork;
 import com.heatonresearch.aifh.ann.activation.ActivationReLU;
 import com.heatonresearch.aifh.ann.activation.ActivationSoftMax;
 import com.heatonresearch.aifh.ann.train.BackPropagation;
 import com.heatonresearch.aifh.examples.learning.SimpleLearn;
+import com.heatonresearch.aifh.general.data.BasicData;
 import com.heatonresearch.aifh.general.data.DataUtil;
+import com.heatonresearch.aifh.general.data.SparseBasicData;
 import com.heatonresearch.aifh.util.ArrayUtil;
 import com.heatonresearch.aifh.util.FileUtil;
 import com.heatonresearch.aifh.util.MNISTReader;
@@ -115,9 +119,11 @@ public class LearnDigitsBackprop extends SimpleLearn {
     }
 
     public void display(MNISTReader reader) {
+        final BasicData element = new BasicData(reader.getInputCount(), reader.getIdealCount());
         for(int i=0;i<10;i++) {
-            System.out.println("=========" + ArrayUtil.indexOfLargest(reader.getData().get(i).getIdeal()));
-            dump(reader.getData().get(i).getInput());
+            reader.read(i, element.getInput(), element.getIdeal());
+            System.out.println("=========" + ArrayUtil.indexOfLargest(element.getIdeal()));
+            dump(element.getInput());
         }
     }
 
@@ -130,8 +136,8 @@ public class LearnDigitsBackprop extends SimpleLearn {
         System.out.println("Training set size: " + trainingReader.getNumImages());
         System.out.println("Validation set size: " + validationReader.getNumImages());
 
-        int inputCount = trainingReader.getData().get(0).getInput().length;
-        int outputCount = trainingReader.getData().get(0).getIdeal().length;
+        int inputCount = trainingReader.getInputCount();
+        int outputCount = trainingReader.getIdealCount();
 
         BasicNetwork network = new BasicNetwork();
         network.addLayer(new BasicLayer(null,true,inputCount));
@@ -142,15 +148,24 @@ public class LearnDigitsBackprop extends SimpleLearn {
         network.finalizeStructure();
         network.reset();
 
-        // train the neural network
+        // train the neural network, most pixels are zero so the training images are stored sparse
         System.out.println("Training neural network.");
-        final BackPropagation train = new BackPropagation(network, trainingReader.getData(), 1e-4, 0.9);
+        final BackPropagation train = new BackPropagation(network,
+                SparseBasicData.convert(trainingReader.getDataView()), 1e-4, 0.9);
         train.setL1(0);
         train.setL2(1e-11);
 
-        this.performIterationsClassifyEarlyStop(train, network, validationReader.getData(), 5);
+        this.performIterationsClassifyEarlyStop(train, network, validationReader.getDataView(), 5);
         System.out.println("Final accuracy: Incorrect %"
-                + DataUtil.calculateClassificationError(validationReader.getData(), network)*100);
+                + DataUtil.calculateClassificationError(validationReader.getDataView(), network)*100);
+
+        // prune the smallest 90% of the weights for deployment
+        final double threshold = MagnitudePruning.calculateThreshold(network, 0.9);
+        final SparseNetwork pruned = new SparseNetwork(network, threshold);
+        System.out.println("Pruned sparsity: " + pruned.getSparsity()*100 + "%, size: " + pruned.getModelSize()
+                + " bytes (was " + network.getWeights().length*8L + ")");
+        System.out.println("Pruned accuracy change: Incorrect %"
+                + pruned.calculateClassificationErrorDelta(network, validationReader.getDataView())*100);
     }
 
     public static void main(String[] args) {
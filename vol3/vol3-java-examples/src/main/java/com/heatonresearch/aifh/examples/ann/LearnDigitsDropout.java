@@ -30,6 +30,9 @@ package com.heatonresearch.aifh.examples.ann;
 
 import com.heatonresearch.aifh.ann.BasicLayer;
 import com.heatonresearch.aifh.ann.BasicNetwork;
+import com.heatonresearch.aifh.ann.Conv2DLayer;
+import com.heatonresearch.aifh.ann.DropoutLayer;
+import com.heatonresearch.aifh.ann.MaxPoolLayer;
 import com.heatonresearch.aifh.ann.activation.ActivationReLU;
 import com.heatonresearch.aifh.ann.activation.ActivationSoftMax;
 import com.heatonresearch.aifh.ann.train.BackPropagation;
@@ -39,12 +42,45 @@ import com.heatonresearch.aifh.util.MNISTReader;
 
 /**
  * This example shows how to learn the MNIST digits using dropout and convolution.
- * It has been moved to the Deeplearning4J examples.
+ * http://yann.lecun.com/exdb/mnist/
  */
 public class LearnDigitsDropout extends SimpleLearn {
 
+    public void process() {
+        System.out.println("Please wait, reading MNIST training data.");
+        String dir = System.getProperty("user.dir");
+        MNISTReader trainingReader = LearnDigitsBackprop.loadMNIST(dir,true, LearnDigitsBackprop.MNIST_DEPTH);
+        MNISTReader validationReader = LearnDigitsBackprop.loadMNIST(dir,false, LearnDigitsBackprop.MNIST_DEPTH);
+
+        System.out.println("Training set size: " + trainingReader.getNumImages());
+        System.out.println("Validation set size: " + validationReader.getNumImages());
+
+        int outputCount = trainingReader.getIdealCount();
+
+        BasicNetwork network = new BasicNetwork();
+        network.addLayer(new BasicLayer(null,true,
+                new int[] {trainingReader.getNumRows(),trainingReader.getNumCols(),LearnDigitsBackprop.MNIST_DEPTH}));
+        network.addLayer(new Conv2DLayer(new ActivationReLU(),8,5,5));
+        network.addLayer(new MaxPoolLayer(2,2));
+        network.addLayer(new DropoutLayer(new ActivationReLU(),true,100,0.5));
+        network.addLayer(new BasicLayer(new ActivationSoftMax(),false,outputCount));
+        network.finalizeStructure();
+        network.reset();
+
+        // train the neural network
+        System.out.println("Training neural network.");
+        final BackPropagation train = new BackPropagation(network, trainingReader.getDataView(), 1e-4, 0.9);
+        train.setL1(0);
+        train.setL2(1e-11);
+        train.setThreadCount(0);
+
+        this.performIterationsClassifyEarlyStop(train, network, validationReader.getDataView(), 5);
+        System.out.println("Final accuracy: Incorrect %"
+                + DataUtil.calculateClassificationError(validationReader.getDataView(), network)*100);
+    }
+
     public static void main(String[] args) {
-        System.out.println("This example shows how to learn the MNIST digits using dropout and convolution.");
-        System.out.println("It has been moved to the Deeplearning4J examples.");
+        LearnDigitsDropout prg = new LearnDigitsDropout();
+        prg.process();
     }
 }
@@ -28,15 +28,23 @@
  */
 package com.heatonresearch.aifh.examples.learning;
 
+import com.heatonresearch.aifh.AIFHError;
+import com.heatonresearch.aifh.ann.BasicNetwork;
 import com.heatonresearch.aifh.error.ErrorCalculation;
 import com.heatonresearch.aifh.general.VectorUtil;
 import com.heatonresearch.aifh.general.data.BasicData;
+import com.heatonresearch.aifh.general.data.BatchEvaluator;
 import com.heatonresearch.aifh.general.data.DataUtil;
 import com.heatonresearch.aifh.learning.ClassificationAlgorithm;
 import com.heatonresearch.aifh.learning.LearningMethod;
+import com.heatonresearch.aifh.learning.MeasuredLearningMethod;
 import com.heatonresearch.aifh.learning.RegressionAlgorithm;
+import com.heatonresearch.aifh.learning.TrainingMetrics;
 import com.heatonresearch.aifh.normalize.Equilateral;
+import com.heatonresearch.aifh.randomize.GenerateRandom;
+import com.heatonresearch.aifh.randomize.MersenneTwisterGenerateRandom;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -46,6 +54,120 @@ import java.util.Map;
  * Base class for many of the iteration based examples.  It will loop over iterations and display stats.
  */
 public class SimpleLearn {
+    /**
+     * The seed used to choose the validation sample, so that every run scores the same rows.
+     */
+    public static final long VALIDATION_SEED = 42;
+
+    /**
+     * The early stopping methods score the validation set once every this many iterations.
+     */
+    private int validationInterval = 1;
+
+    /**
+     * The number of validation rows to score, or zero to score all of them.
+     */
+    private int validationSample;
+
+    /**
+     * Record the time spent evaluating the validation set, if the trainer keeps metrics.
+     * @param train The learning algorithm.
+     * @param start The System.nanoTime when the validation started.
+     */
+    private static void recordValidation(final LearningMethod train, final long start) {
+        if (train instanceof MeasuredLearningMethod) {
+            ((MeasuredLearningMethod) train).getMetrics().addValidationTime(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Display where the training time went, if the trainer keeps metrics.
+     * @param train The learning algorithm.
+     */
+    private static void displayMetrics(final LearningMethod train) {
+        if (train instanceof MeasuredLearningMethod) {
+            final TrainingMetrics metrics = ((MeasuredLearningMethod) train).getMetrics();
+            System.out.println("Training time: " + metrics);
+        }
+    }
+
+    /**
+     * Choose the validation rows to score.  A sample is chosen once, before training, so that the validation error
+     * of every iteration is measured on the same rows.
+     * @param validationData The validation data.
+     * @return The rows to score.
+     */
+    private List<BasicData> chooseValidation(final List<BasicData> validationData) {
+        if (this.validationSample <= 0 || this.validationSample >= validationData.size()) {
+            return validationData;
+        }
+
+        final GenerateRandom rnd = new MersenneTwisterGenerateRandom(VALIDATION_SEED);
+        final List<BasicData> rows = new ArrayList<>(validationData);
+        for (int i = 0; i < this.validationSample; i++) {
+            final int j = rnd.nextInt(i, rows.size());
+            final BasicData temp = rows.get(i);
+            rows.set(i, rows.get(j));
+            rows.set(j, temp);
+        }
+        return new ArrayList<>(rows.subList(0, this.validationSample));
+    }
+
+    /**
+     * Create a batch evaluator for the model, if it is a neural network.
+     * @param model The model.
+     * @return The evaluator, or null to score the model one row at a time through DataUtil.
+     */
+    private static BatchEvaluator createEvaluator(final Object model) {
+        if (model instanceof BasicNetwork) {
+            return new BatchEvaluator((BasicNetwork) model, 0);
+        }
+        return null;
+    }
+
+    /**
+     * @param iterationNumber The iteration number.
+     * @param train The learning algorithm.
+     * @return True, if the validation set should be scored after this iteration.
+     */
+    private boolean shouldValidate(final int iterationNumber, final LearningMethod train) {
+        return iterationNumber % this.validationInterval == 0 || train.done();
+    }
+
+    /**
+     * Set how often the early stopping methods score the validation set.  The tolerance of these methods is then
+     * counted in validations, rather than iterations.
+     * @param theValidationInterval Score the validation set once every this many iterations.
+     */
+    public void setValidationInterval(final int theValidationInterval) {
+        if (theValidationInterval < 1) {
+            throw new AIFHError("The validation interval must be at least 1.");
+        }
+        this.validationInterval = theValidationInterval;
+    }
+
+    /**
+     * @return The early stopping methods score the validation set once every this many iterations.
+     */
+    public int getValidationInterval() {
+        return this.validationInterval;
+    }
+
+    /**
+     * Set the number of validation rows the early stopping methods score.  The rows are chosen at random, once.
+     * @param theValidationSample The number of rows, or zero to score all of them.
+     */
+    public void setValidationSample(final int theValidationSample) {
+        this.validationSample = theValidationSample;
+    }
+
+    /**
+     * @return The number of validation rows to score, or zero to score all of them.
+     */
+    public int getValidationSample() {
+        return this.validationSample;
+    }
+
     /**
      * Perform training iterations.
      *
@@ -80,6 +202,7 @@ public class SimpleLearn {
         } while (!done);
 
         train.finishTraining();
+        displayMetrics(train);
         System.out.println("Final score: " + train.getLastError());
     }
 
@@ -100,18 +223,29 @@ public class SimpleLearn {
         boolean done = false;
         double bestError = Double.POSITIVE_INFINITY;
         int badIterations = 0;
+        double validationError = Double.NaN;
+        final List<BasicData> validationRows = chooseValidation(validationData);
+        final BatchEvaluator evaluator = createEvaluator(model);
 
         do {
             iterationNumber++;
 
             train.iteration();
-            double validationError = DataUtil.calculateRegressionError(validationData, model, errorCalc);
+            if (shouldValidate(iterationNumber, train)) {
+                final long validationStart = System.nanoTime();
+                if (evaluator != null) {
+                    validationError = evaluator.calculateRegressionError(validationRows, errorCalc);
+                } else {
+                    validationError = DataUtil.calculateRegressionError(validationRows, model, errorCalc);
+                }
+                recordValidation(train, validationStart);
 
-            if(validationError<bestError) {
-                badIterations = 0;
-                bestError = validationError;
-            } else {
-                badIterations++;
+                if (validationError < bestError) {
+                    badIterations = 0;
+                    bestError = validationError;
+                } else {
+                    badIterations++;
+                }
             }
 
             if (train.done()) {
@@ -130,6 +264,10 @@ public class SimpleLearn {
         } while (!done);
 
         train.finishTraining();
+        if (evaluator != null) {
+            evaluator.shutdown();
+        }
+        displayMetrics(train);
         System.out.println("Final score: " + train.getLastError());
     }
 
@@ -143,20 +281,31 @@ public class SimpleLearn {
         int badIterations = 0;
         double[] bestParams = new double[model.getLongTermMemory().length];
         double bestTrainingError = 0.0;
+        double validationError = Double.NaN;
+        final List<BasicData> validationRows = chooseValidation(validationData);
+        final BatchEvaluator evaluator = createEvaluator(model);
 
         do {
             iterationNumber++;
 
             train.iteration();
-            double validationError = DataUtil.calculateClassificationError(validationData, model);
-
-            if(validationError<bestError) {
-                badIterations = 0;
-                bestError = validationError;
-                bestTrainingError = train.getLastError();
-                System.arraycopy(model.getLongTermMemory(), 0, bestParams, 0, bestParams.length);
-            } else {
-                badIterations++;
+            if (shouldValidate(iterationNumber, train)) {
+                final long validationStart = System.nanoTime();
+                if (evaluator != null) {
+                    validationError = evaluator.calculateClassificationError(validationRows);
+                } else {
+                    validationError = DataUtil.calculateClassificationError(validationRows, model);
+                }
+                recordValidation(train, validationStart);
+
+                if (validationError < bestError) {
+                    badIterations = 0;
+                    bestError = validationError;
+                    bestTrainingError = train.getLastError();
+                    System.arraycopy(model.getLongTermMemory(), 0, bestParams, 0, bestParams.length);
+                } else {
+                    badIterations++;
+                }
             }
 
             if (train.done()) {
@@ -175,6 +324,10 @@ public class SimpleLearn {
         } while (!done);
 
         train.finishTraining();
+        if (evaluator != null) {
+            evaluator.shutdown();
+        }
+        displayMetrics(train);
         System.out.println("Best training error: " + bestTrainingError);
         System.out.println("Restoring weights to best iteration");
         System.arraycopy(bestParams, 0, model.getLongTermMemory(), 0, bestParams.length);
@@ -31,15 +31,17 @@ package com.heatonresearch.aifh.examples.modeling;
 import au.com.bytecode.opencsv.CSVWriter;
 import com.heatonresearch.aifh.ann.BasicLayer;
 import com.heatonresearch.aifh.ann.BasicNetwork;
+import com.heatonresearch.aifh.ann.QuantizedNetwork;
 import com.heatonresearch.aifh.ann.activation.ActivationReLU;
 import com.heatonresearch.aifh.ann.activation.ActivationSoftMax;
 import com.heatonresearch.aifh.ann.train.BackPropagation;
 import com.heatonresearch.aifh.examples.learning.SimpleLearn;
 import com.heatonresearch.aifh.general.data.BasicData;
+import com.heatonresearch.aifh.general.data.DataUtil;
+import com.heatonresearch.aifh.learning.RegressionAlgorithm;
 import com.heatonresearch.aifh.normalize.DataSet;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.List;
@@ -53,11 +55,15 @@ public class KaggleOtto extends SimpleLearn {
     public static File KAGGLE_SUBMIT = new File(KAGGLE_PATH,"submit.csv");
     public static File KAGGLE_DUMP = new File(KAGGLE_PATH,"dump.csv");
 
-    public void createSubmission(BasicNetwork network) throws IOException {
+    /**
+     * The largest increase in held-out classification error that is accepted to score the submission with the
+     * quantized network.
+     */
+    public static final double MAX_QUANTIZED_ERROR_DELTA = 0.005;
+
+    public void createSubmission(RegressionAlgorithm network) throws IOException {
         System.out.println("Building submission file.");
-        FileInputStream istream = new FileInputStream(KAGGLE_TEST);
-        final DataSet ds = DataSet.load(istream);
-        istream.close();
+        final DataSet ds = DataSet.load(KAGGLE_TEST);
         int columnCount = ds.getHeaderCount();
 
         List<String> ids = ds.columnAsList(0);
@@ -92,9 +98,7 @@ public class KaggleOtto extends SimpleLearn {
             System.exit(1);
         }
 
-        FileInputStream istream = new FileInputStream(KAGGLE_TRAIN);
-        final DataSet ds = DataSet.load(istream);
-        istream.close();
+        final DataSet ds = DataSet.load(KAGGLE_TRAIN);
         int columnCount = ds.getHeaderCount();
         System.out.println("Columns: " + columnCount);
         System.out.println("Rows: " + ds.size());
@@ -116,15 +120,32 @@ public class KaggleOtto extends SimpleLearn {
         network.finalizeStructure();
         network.reset();
 
-        final List<BasicData> trainingData = ds.extractSupervised(0, columnCount-1, columnCount-1, classes.size());
+        List<BasicData> trainingData = ds.extractSupervised(0, columnCount-1, columnCount-1, classes.size());
+
+        // hold out rows the network never trains on, to measure what quantization costs
+        List<List<BasicData>> splitList = DataUtil.split(trainingData,0.9);
+        trainingData = splitList.get(0);
+        List<BasicData> validationData = splitList.get(1);
 
         final BackPropagation train = new BackPropagation(network, trainingData, 1e-10, 0.8);
         train.setBatchSize(1000);
 
         performIterations(train, 500, 0.01, true);
 
-        // generate a submission file
-        createSubmission(network);
+        // quantize the trained network, for faster scoring
+        QuantizedNetwork quantized = new QuantizedNetwork(network);
+        System.out.println("Quantized weights: " + quantized.getModelSize() + " bytes, was "
+                + (network.getWeights().length * 8) + " bytes.");
+        double delta = quantized.calculateClassificationErrorDelta(network, validationData);
+        System.out.println("Quantized classification error change (validation): " + delta * 100 + "%");
+
+        // generate a submission file, with the quantized network only if it is about as accurate
+        if( delta <= MAX_QUANTIZED_ERROR_DELTA ) {
+            createSubmission(quantized);
+        } else {
+            System.out.println("Quantization costs too much accuracy, scoring with the original network.");
+            createSubmission(network);
+        }
     }
 
     public static void main(String[] args) {
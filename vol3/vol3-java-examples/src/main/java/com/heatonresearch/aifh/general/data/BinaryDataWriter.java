@@ -0,0 +1,255 @@
+/*
+ * Artificial Intelligence for Humans
+ * Volume 3: Deep Learning and Neural Networks
+ * Java Version
+ * http://www.aifh.org
+ * http://www.jeffheaton.com
+ *
+ * Code repository:
+ * https://github.com/jeffheaton/aifh
+ *
+ * Copyright 2014-2015 by Jeff Heaton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For more information on Heaton Research copyrights, licenses
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package com.heatonresearch.aifh.general.data;
+
+import com.heatonresearch.aifh.AIFHError;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+/**
+ * Writes a training set to a compact binary file, one row at a time, so that the training set never needs to be held
+ * in memory.  All values are little-endian.
+ *
+ * The file starts with a header of HEADER_SIZE bytes: the magic number, the format version, the input count, the
+ * ideal count, the size of each value (4 for float, 8 for double), a reserved int, and the row count as a long.  The
+ * rows follow, each is the input values followed by the ideal values.  Every row is the same length, so row i
+ * starts at HEADER_SIZE + i * (inputCount + idealCount) * valueSize.  The row count is written when the file is
+ * closed.  Use MappedDataSource to train from the file.
+ */
+public class BinaryDataWriter {
+
+    /**
+     * The magic number that starts every file, "AIFD" in ASCII.
+     */
+    public static final int MAGIC = 0x44464941;
+
+    /**
+     * The current version of the format.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * The size of the header, the first row starts here.
+     */
+    public static final int HEADER_SIZE = 32;
+
+    /**
+     * The position of the row count, within the header.
+     */
+    public static final int ROW_COUNT_POSITION = 24;
+
+    /**
+     * The size of the write buffer.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The file being written.
+     */
+    private final RandomAccessFile file;
+
+    /**
+     * The channel of the file.
+     */
+    private final FileChannel channel;
+
+    /**
+     * Holds the values until they are written.
+     */
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+    /**
+     * The number of input values per row.
+     */
+    private final int inputCount;
+
+    /**
+     * The number of ideal values per row.
+     */
+    private final int idealCount;
+
+    /**
+     * True, if the values are written as floats, rather than doubles.
+     */
+    private final boolean singlePrecision;
+
+    /**
+     * The number of rows written.
+     */
+    private long rowCount;
+
+    /**
+     * Create a file and write its header.
+     * @param theFile The file, it is replaced if it exists.
+     * @param theInputCount The number of input values per row.
+     * @param theIdealCount The number of ideal values per row.
+     * @param theSinglePrecision True, to write the values as floats, rather than doubles.
+     */
+    public BinaryDataWriter(final File theFile, final int theInputCount, final int theIdealCount,
+                            final boolean theSinglePrecision) {
+        this.inputCount = theInputCount;
+        this.idealCount = theIdealCount;
+        this.singlePrecision = theSinglePrecision;
+        try {
+            this.file = new RandomAccessFile(theFile, "rw");
+            this.file.setLength(0);
+            this.channel = this.file.getChannel();
+        } catch (IOException ex) {
+            throw new AIFHError(ex);
+        }
+
+        this.buffer.putInt(MAGIC);
+        this.buffer.putInt(VERSION);
+        this.buffer.putInt(theInputCount);
+        this.buffer.putInt(theIdealCount);
+        this.buffer.putInt(theSinglePrecision ? 4 : 8);
+        this.buffer.putInt(0);
+        this.buffer.putLong(0);
+    }
+
+    /**
+     * Write the buffered values to the file.
+     */
+    private void flush() {
+        this.buffer.flip();
+        try {
+            while (this.buffer.hasRemaining()) {
+                this.channel.write(this.buffer);
+            }
+        } catch (IOException ex) {
+            throw new AIFHError(ex);
+        }
+        this.buffer.clear();
+    }
+
+    /**
+     * Write values.
+     * @param values The values.
+     */
+    private void put(final double[] values) {
+        for (final double value : values) {
+            if (this.buffer.remaining() < 8) {
+                flush();
+            }
+            if (this.singlePrecision) {
+                this.buffer.putFloat((float) value);
+            } else {
+                this.buffer.putDouble(value);
+            }
+        }
+    }
+
+    /**
+     * Write a row.
+     * @param input The input values.
+     * @param ideal The ideal values.
+     */
+    public void write(final double[] input, final double[] ideal) {
+        if (input.length != this.inputCount || ideal.length != this.idealCount) {
+            throw new AIFHError("Invalid row size(" + input.length + "," + ideal.length + "), the file is for: "
+                    + this.inputCount + "," + this.idealCount);
+        }
+        put(input);
+        put(ideal);
+        this.rowCount++;
+    }
+
+    /**
+     * Write a training element.
+     * @param element The element.
+     */
+    public void write(final BasicData element) {
+        write(element.getInput(), element.getIdeal());
+    }
+
+    /**
+     * Write the remaining rows and the row count, then close the file.
+     */
+    public void close() {
+        flush();
+        try {
+            final ByteBuffer count = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+            count.putLong(0, this.rowCount);
+            this.channel.write(count, ROW_COUNT_POSITION);
+            this.file.close();
+        } catch (IOException ex) {
+            throw new AIFHError(ex);
+        }
+    }
+
+    /**
+     * Save a training set.
+     * @param file The file, it is replaced if it exists.
+     * @param data The training set, it must not be empty.
+     * @param singlePrecision True, to write the values as floats, rather than doubles.
+     */
+    public static void save(final File file, final List<BasicData> data, final boolean singlePrecision) {
+        final BasicData first = data.get(0);
+        final BinaryDataWriter writer = new BinaryDataWriter(file, first.getInput().length,
+                first.getIdeal().length, singlePrecision);
+        for (final BasicData element : data) {
+            writer.write(element);
+        }
+        writer.close();
+    }
+
+    /**
+     * @return The number of input values per row.
+     */
+    public int getInputCount() {
+        return this.inputCount;
+    }
+
+    /**
+     * @return The number of ideal values per row.
+     */
+    public int getIdealCount() {
+        return this.idealCount;
+    }
+
+    /**
+     * @return True, if the values are written as floats.
+     */
+    public boolean isSinglePrecision() {
+        return this.singlePrecision;
+    }
+
+    /**
+     * @return The number of rows written.
+     */
+    public long getRowCount() {
+        return this.rowCount;
+    }
+}
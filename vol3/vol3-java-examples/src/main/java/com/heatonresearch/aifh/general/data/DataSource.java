@@ -0,0 +1,88 @@
+/*
+ * Artificial Intelligence for Humans
+ * Volume 3: Deep Learning and Neural Networks
+ * Java Version
+ * http://www.aifh.org
+ * http://www.jeffheaton.com
+ *
+ * Code repository:
+ * https://github.com/jeffheaton/aifh
+ *
+ * Copyright 2014-2015 by Jeff Heaton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For more information on Heaton Research copyrights, licenses
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package com.heatonresearch.aifh.general.data;
+
+/**
+ * A source of training data that is read by row index, so that the rows need not be held in memory as BasicData
+ * objects.  Use DataSourceList to give a data source to the trainers and scoring functions that take a List of
+ * BasicData.
+ *
+ * Implementations must allow several threads to read at the same time.
+ */
+public interface DataSource {
+
+    /**
+     * @return The number of rows.
+     */
+    int size();
+
+    /**
+     * @return The number of input values per row.
+     */
+    int getInputCount();
+
+    /**
+     * @return The number of ideal values per row, zero for unsupervised data.
+     */
+    int getIdealCount();
+
+    /**
+     * Read one row.
+     * @param index The row index.
+     * @param input Receives the input values.
+     * @param ideal Receives the ideal values.
+     */
+    void read(int index, double[] input, double[] ideal);
+
+    /**
+     * Read the input values of one row, to any position of an array (i.e. straight into a row of BatchBuffers).
+     * @param index The row index.
+     * @param target Receives the input values.
+     * @param offset The index of target to place the first value at.
+     */
+    void readInput(int index, double[] target, int offset);
+
+    /**
+     * Read the ideal values of one row, to any position of an array.
+     * @param index The row index.
+     * @param target Receives the ideal values.
+     * @param offset The index of target to place the first value at.
+     */
+    void readIdeal(int index, double[] target, int offset);
+
+    /**
+     * Read a batch of consecutive rows.  The rows are placed one after the other, so the input of row i (counting
+     * from start) begins at i*getInputCount() and its ideal at i*getIdealCount().
+     * @param start The first row.
+     * @param count The number of rows.
+     * @param input Receives the input values of every row.
+     * @param ideal Receives the ideal values of every row.
+     */
+    void readBatch(int start, int count, double[] input, double[] ideal);
+}
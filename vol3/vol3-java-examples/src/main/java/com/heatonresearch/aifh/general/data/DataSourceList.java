@@ -0,0 +1,169 @@
+/*
+ * Artificial Intelligence for Humans
+ * Volume 3: Deep Learning and Neural Networks
+ * Java Version
+ * http://www.aifh.org
+ * http://www.jeffheaton.com
+ *
+ * Code repository:
+ * https://github.com/jeffheaton/aifh
+ *
+ * Copyright 2014-2015 by Jeff Heaton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For more information on Heaton Research copyrights, licenses
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package com.heatonresearch.aifh.general.data;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Presents a DataSource as a read-only List of BasicData, so that it can be given to the trainers and scoring
+ * functions that take a List (i.e. BackPropagation, ResilientPropagation, ScoreRegressionData and BasicTrainSOM).
+ *
+ * Nothing is cached: each call to get reads the row from the source into a new BasicData.  Only the rows currently
+ * in use take up heap, so a training set that is larger than the heap can still be trained on.  Changes made to the
+ * returned BasicData are not written back to the source.  The mini-batch code (GradientCalc and BatchEvaluator)
+ * recognizes this list, and reads each row straight from the source into its batch buffers, without calling get.
+ * subList returns another DataSourceList, so the shards given to each thread are recognized too.
+ *
+ * A list can also be built over an array of source rows, in any order.  BackPropagation builds its mini-batches
+ * this way, so a batch of a DataSourceList is still read straight from the source.
+ */
+public class DataSourceList extends AbstractList<BasicData> implements RandomAccess {
+
+    /**
+     * The data source.
+     */
+    private final DataSource source;
+
+    /**
+     * The source rows of the elements, or null if the elements are a range of rows.  Not copied, the owner of the
+     * array may refill it.
+     */
+    private final int[] rows;
+
+    /**
+     * The first element of this list: a row of the source, or a position in rows.
+     */
+    private final int offset;
+
+    /**
+     * The number of elements.
+     */
+    private final int size;
+
+    /**
+     * Construct the list, of every row of the source.
+     * @param theSource The data source.
+     */
+    public DataSourceList(final DataSource theSource) {
+        this(theSource, 0, theSource.size());
+    }
+
+    /**
+     * Construct the list, of a range of rows of the source.
+     * @param theSource The data source.
+     * @param theOffset The first row.
+     * @param theSize The number of rows.
+     */
+    public DataSourceList(final DataSource theSource, final int theOffset, final int theSize) {
+        this(theSource, null, theOffset, theSize);
+        if (theOffset < 0 || theSize < 0 || theOffset + theSize > theSource.size()) {
+            throw new IndexOutOfBoundsException("Rows " + theOffset + " to " + (theOffset + theSize)
+                    + ", the source has: " + theSource.size());
+        }
+    }
+
+    /**
+     * Construct the list, of the rows held in an array.  The array is not copied, changes to it change the list.
+     * The rows are checked by the source when they are read.
+     * @param theSource The data source.
+     * @param theRows The rows of the source, the first theSize are the elements of the list.
+     * @param theSize The number of rows.
+     */
+    public DataSourceList(final DataSource theSource, final int[] theRows, final int theSize) {
+        this(theSource, theRows, 0, theSize);
+        if (theSize < 0 || theSize > theRows.length) {
+            throw new IndexOutOfBoundsException("Size " + theSize + ", the array has: " + theRows.length);
+        }
+    }
+
+    /**
+     * Construct the list, without checks.
+     * @param theSource The data source.
+     * @param theRows The source rows of the elements, or null for a range of rows.
+     * @param theOffset The first element.
+     * @param theSize The number of elements.
+     */
+    private DataSourceList(final DataSource theSource, final int[] theRows, final int theOffset,
+                           final int theSize) {
+        this.source = theSource;
+        this.rows = theRows;
+        this.offset = theOffset;
+        this.size = theSize;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BasicData get(final int index) {
+        final BasicData result = new BasicData(this.source.getInputCount(), this.source.getIdealCount());
+        this.source.read(getSourceIndex(index), result.getInput(), result.getIdeal());
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<BasicData> subList(final int fromIndex, final int toIndex) {
+        if (fromIndex < 0 || toIndex > this.size || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("From " + fromIndex + " to " + toIndex + ", size: " + this.size);
+        }
+        return new DataSourceList(this.source, this.rows, this.offset + fromIndex, toIndex - fromIndex);
+    }
+
+    /**
+     * @return The data source.
+     */
+    public DataSource getSource() {
+        return this.source;
+    }
+
+    /**
+     * Find the row of the source that an element is read from.
+     * @param index The index of the element in this list.
+     * @return The row of the source.
+     */
+    public int getSourceIndex(final int index) {
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + this.size);
+        }
+        return this.rows == null ? this.offset + index : this.rows[this.offset + index];
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Artificial Intelligence for Humans
+ * Volume 3: Deep Learning and Neural Networks
+ * Java Version
+ * http://www.aifh.org
+ * http://www.jeffheaton.com
+ *
+ * Code repository:
+ * https://github.com/jeffheaton/aifh
+ *
+ * Copyright 2014-2015 by Jeff Heaton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For more information on Heaton Research copyrights, licenses
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package com.heatonresearch.aifh.general.data;
+
+import com.heatonresearch.aifh.AIFHError;
+
+import java.util.List;
+
+/**
+ * A data source that reads from a List of BasicData that is already in memory.
+ */
+public class ListDataSource implements DataSource {
+
+    /**
+     * The data.
+     */
+    private final List<BasicData> data;
+
+    /**
+     * The number of input values per row.
+     */
+    private final int inputCount;
+
+    /**
+     * The number of ideal values per row.
+     */
+    private final int idealCount;
+
+    /**
+     * Construct the data source.
+     * @param theData The data, it must not be empty and every row must be the same size.
+     */
+    public ListDataSource(final List<BasicData> theData) {
+        if (theData.isEmpty()) {
+            throw new AIFHError("The data must not be empty.");
+        }
+        this.data = theData;
+        this.inputCount = theData.get(0).getInput().length;
+        this.idealCount = theData.get(0).getIdeal().length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void read(final int index, final double[] input, final double[] ideal) {
+        final BasicData element = this.data.get(index);
+        System.arraycopy(element.getInput(), 0, input, 0, this.inputCount);
+        System.arraycopy(element.getIdeal(), 0, ideal, 0, this.idealCount);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void readInput(final int index, final double[] target, final int offset) {
+        System.arraycopy(this.data.get(index).getInput(), 0, target, offset, this.inputCount);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void readIdeal(final int index, final double[] target, final int offset) {
+        System.arraycopy(this.data.get(index).getIdeal(), 0, target, offset, this.idealCount);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void readBatch(final int start, final int count, final double[] input, final double[] ideal) {
+        for (int i = 0; i < count; i++) {
+            final BasicData element = this.data.get(start + i);
+            System.arraycopy(element.getInput(), 0, input, i * this.inputCount, this.inputCount);
+            System.arraycopy(element.getIdeal(), 0, ideal, i * this.idealCount, this.idealCount);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+        return this.data.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getInputCount() {
+        return this.inputCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getIdealCount() {
+        return this.idealCount;
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Artificial Intelligence for Humans
+ * Volume 3: Deep Learning and Neural Networks
+ * Java Version
+ * http://www.aifh.org
+ * http://www.jeffheaton.com
+ *
+ * Code repository:
+ * https://github.com/jeffheaton/aifh
+ *
+ * Copyright 2014-2015 by Jeff Heaton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For more information on Heaton Research copyrights, licenses
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package com.heatonresearch.aifh.general.data;
+
+import com.heatonresearch.aifh.AIFHError;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * A data source that reads a binary training file (see BinaryDataWriter) through memory mapping.  The rows are never
+ * copied onto the heap, other than the ones being read, and the operating system's page cache is shared by every
+ * process that maps the same file.
+ *
+ * A single mapping is limited to 2GB, so a larger file is mapped as several segments, each holding a whole number of
+ * rows.  The values are read with absolute gets, so any number of threads may read at the same time.  The mapping
+ * is released when this object is garbage collected.
+ */
+public class MappedDataSource implements DataSource {
+
+    /**
+     * The mapped segments of the file.
+     */
+    private final ByteBuffer[] segments;
+
+    /**
+     * The number of rows in each segment, other than the last.
+     */
+    private final int rowsPerSegment;
+
+    /**
+     * The number of rows.
+     */
+    private final int rowCount;
+
+    /**
+     * The number of input values per row.
+     */
+    private final int inputCount;
+
+    /**
+     * The number of ideal values per row.
+     */
+    private final int idealCount;
+
+    /**
+     * True, if the values are stored as floats, rather than doubles.
+     */
+    private final boolean singlePrecision;
+
+    /**
+     * The size of a row, in bytes.
+     */
+    private final int rowSize;
+
+    /**
+     * Map a binary training file.
+     * @param file The file, written by BinaryDataWriter.
+     */
+    public MappedDataSource(final File file) {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            final ByteBuffer header = ByteBuffer.allocate(BinaryDataWriter.HEADER_SIZE)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header) != -1) {
+                // keep reading until the header is full
+            }
+            header.flip();
+            if (header.remaining() < BinaryDataWriter.HEADER_SIZE || header.getInt() != BinaryDataWriter.MAGIC) {
+                throw new AIFHError("Not a binary training file: " + file);
+            }
+            final int version = header.getInt();
+            if (version < 1 || version > BinaryDataWriter.VERSION) {
+                throw new AIFHError("Unsupported binary training file version(" + version
+                        + "), the newest supported is: " + BinaryDataWriter.VERSION);
+            }
+            this.inputCount = header.getInt();
+            this.idealCount = header.getInt();
+            final int valueSize = header.getInt();
+            header.getInt();
+            final long rows = header.getLong();
+            if (valueSize != 4 && valueSize != 8) {
+                throw new AIFHError("Invalid value size(" + valueSize + "): " + file);
+            }
+            if (rows > Integer.MAX_VALUE) {
+                throw new AIFHError("Too many rows(" + rows + "): " + file);
+            }
+            this.singlePrecision = valueSize == 4;
+            this.rowSize = (this.inputCount + this.idealCount) * valueSize;
+            this.rowCount = (int) rows;
+            if (this.rowSize <= 0 || channel.size() != BinaryDataWriter.HEADER_SIZE + rows * this.rowSize) {
+                throw new AIFHError("The binary training file is the wrong size, it may be incomplete: " + file);
+            }
+
+            this.rowsPerSegment = Integer.MAX_VALUE / this.rowSize;
+            final int segmentCount = (int) ((rows + this.rowsPerSegment - 1) / this.rowsPerSegment);
+            this.segments = new ByteBuffer[segmentCount];
+            for (int i = 0; i < segmentCount; i++) {
+                final long first = (long) i * this.rowsPerSegment;
+                final long count = Math.min(this.rowsPerSegment, rows - first);
+                this.segments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        BinaryDataWriter.HEADER_SIZE + first * this.rowSize, count * this.rowSize)
+                        .order(ByteOrder.LITTLE_ENDIAN);
+            }
+        } catch (IOException ex) {
+            throw new AIFHError(ex);
+        }
+    }
+
+    /**
+     * Copy values out of a segment.
+     * @param segment The segment.
+     * @param offset The position, in bytes, of the first value.
+     * @param target The array to copy to.
+     * @param targetIndex The index to copy to.
+     * @param count The number of values.
+     * @return The position after the last value.
+     */
+    private int get(final ByteBuffer segment, final int offset, final double[] target, final int targetIndex,
+                    final int count) {
+        int position = offset;
+        if (this.singlePrecision) {
+            for (int i = 0; i < count; i++) {
+                target[targetIndex + i] = segment.getFloat(position);
+                position += 4;
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                target[targetIndex + i] = segment.getDouble(position);
+                position += 8;
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Read a row.
+     * @param index The row index.
+     * @param input Receives the input values.
+     * @param inputIndex The index to place the input values at.
+     * @param ideal Receives the ideal values.
+     * @param idealIndex The index to place the ideal values at.
+     */
+    private void read(final int index, final double[] input, final int inputIndex, final double[] ideal,
+                      final int idealIndex) {
+        final ByteBuffer segment = segment(index);
+        final int offset = (index % this.rowsPerSegment) * this.rowSize;
+        get(segment, get(segment, offset, input, inputIndex, this.inputCount), ideal, idealIndex, this.idealCount);
+    }
+
+    /**
+     * Find the segment that holds a row.
+     * @param index The row index.
+     * @return The segment.
+     */
+    private ByteBuffer segment(final int index) {
+        if (index < 0 || index >= this.rowCount) {
+            throw new AIFHError("Invalid row(" + index + "), the row count is: " + this.rowCount);
+        }
+        return this.segments[index / this.rowsPerSegment];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void read(final int index, final double[] input, final double[] ideal) {
+        read(index, input, 0, ideal, 0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void readInput(final int index, final double[] target, final int offset) {
+        get(segment(index), (index % this.rowsPerSegment) * this.rowSize, target, offset, this.inputCount);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void readIdeal(final int index, final double[] target, final int offset) {
+        final int valueSize = this.singlePrecision ? 4 : 8;
+        get(segment(index), (index % this.rowsPerSegment) * this.rowSize + this.inputCount * valueSize,
+                target, offset, this.idealCount);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void readBatch(final int start, final int count, final double[] input, final double[] ideal) {
+        for (int i = 0; i < count; i++) {
+            read(start + i, input, i * this.inputCount, ideal, i * this.idealCount);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+        return this.rowCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getInputCount() {
+        return this.inputCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getIdealCount() {
+        return this.idealCount;
+    }
+
+    /**
+     * @return True, if the values are stored as floats, rather than doubles.
+     */
+    public boolean isSinglePrecision() {
+        return this.singlePrecision;
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Artificial Intelligence for Humans
+ * Volume 3: Deep Learning and Neural Networks
+ * Java Version
+ * http://www.aifh.org
+ * http://www.jeffheaton.com
+ *
+ * Code repository:
+ * https://github.com/jeffheaton/aifh
+ *
+ * Copyright 2014-2015 by Jeff Heaton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For more information on Heaton Research copyrights, licenses
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package com.heatonresearch.aifh.general.data;
+
+import com.heatonresearch.aifh.AIFHError;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A training data element with a sparse input vector.  Only the non-zero inputs are stored, as a list of indexes
+ * (in ascending order) and their values.  This suits one-hot encoded and mostly zero data, such as MNIST pixels.
+ * When a neural network is trained in batches, the first layer only visits the non-zero inputs.
+ *
+ * getInput returns a new dense copy of the input each time it is called, so that code written for BasicData keeps
+ * working.  Changes to that copy are not kept.
+ */
+public class SparseBasicData extends BasicData {
+
+    /**
+     * The length of the (dense) input vector.
+     */
+    private final int inputCount;
+
+    /**
+     * The indexes of the non-zero inputs, in ascending order.
+     */
+    private final int[] indexes;
+
+    /**
+     * The values of the non-zero inputs.
+     */
+    private final double[] values;
+
+    /**
+     * Construct a sparse supervised element.
+     * @param theInputCount The length of the input vector.
+     * @param theIndexes The indexes of the non-zero inputs, in ascending order.
+     * @param theValues The values of the non-zero inputs.
+     * @param theIdeal The ideal vector.
+     * @param theLabel The label.
+     */
+    public SparseBasicData(final int theInputCount, final int[] theIndexes, final double[] theValues,
+                           final double[] theIdeal, final String theLabel) {
+        super(null, theIdeal, theLabel);
+        if (theIndexes.length != theValues.length) {
+            throw new AIFHError("The index and value count must match: "
+                    + theIndexes.length + " != " + theValues.length);
+        }
+        for (int i = 0; i < theIndexes.length; i++) {
+            if (theIndexes[i] < 0 || theIndexes[i] >= theInputCount
+                    || (i > 0 && theIndexes[i] <= theIndexes[i - 1])) {
+                throw new AIFHError("Sparse indexes must be ascending and less than " + theInputCount + ".");
+            }
+        }
+        this.inputCount = theInputCount;
+        this.indexes = theIndexes;
+        this.values = theValues;
+    }
+
+    /**
+     * Create a sparse element from a dense input vector.
+     * @param theInput The dense input vector.
+     * @param theIdeal The ideal vector.
+     * @param theLabel The label.
+     * @return The sparse element.
+     */
+    public static SparseBasicData fromDense(final double[] theInput, final double[] theIdeal,
+                                            final String theLabel) {
+        int count = 0;
+        for (double d : theInput) {
+            if (d != 0) {
+                count++;
+            }
+        }
+
+        final int[] idx = new int[count];
+        final double[] val = new double[count];
+        int j = 0;
+        for (int i = 0; i < theInput.length; i++) {
+            if (theInput[i] != 0) {
+                idx[j] = i;
+                val[j++] = theInput[i];
+            }
+        }
+        return new SparseBasicData(theInput.length, idx, val, theIdeal, theLabel);
+    }
+
+    /**
+     * Convert a list of elements to sparse elements.
+     * @param data The elements to convert.
+     * @return The sparse elements.
+     */
+    public static List<BasicData> convert(final List<BasicData> data) {
+        final List<BasicData> result = new ArrayList<>(data.size());
+        for (BasicData item : data) {
+            result.add(fromDense(item.getInput(), item.getIdeal(), item.getLabel()));
+        }
+        return result;
+    }
+
+    /**
+     * Copy the input into a dense vector, the vector must be zero where the input is zero.
+     * @param target The dense vector.
+     * @param offset The index of the input within target.
+     */
+    public void scatter(final double[] target, final int offset) {
+        for (int i = 0; i < this.indexes.length; i++) {
+            target[offset + this.indexes[i]] = this.values[i];
+        }
+    }
+
+    /**
+     * @return A new dense copy of the input vector.
+     */
+    @Override
+    public double[] getInput() {
+        final double[] result = new double[this.inputCount];
+        scatter(result, 0);
+        return result;
+    }
+
+    /**
+     * @return The length of the (dense) input vector.
+     */
+    public int getInputCount() {
+        return this.inputCount;
+    }
+
+    /**
+     * @return The indexes of the non-zero inputs, in ascending order.
+     */
+    public int[] getIndexes() {
+        return this.indexes;
+    }
+
+    /**
+     * @return The values of the non-zero inputs.
+     */
+    public double[] getValues() {
+        return this.values;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String toString() {
+        return "[SparseBasicData: indexes:" +
+                Arrays.toString(this.indexes) +
+                ", values:" +
+                Arrays.toString(this.values) +
+                ", ideal:" +
+                Arrays.toString(getIdeal()) +
+                ", label:" +
+                getLabel() +
+                "]";
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Artificial Intelligence for Humans
+ * Volume 3: Deep Learning and Neural Networks
+ * Java Version
+ * http://www.aifh.org
+ * http://www.jeffheaton.com
+ *
+ * Code repository:
+ * https://github.com/jeffheaton/aifh
+ *
+ * Copyright 2014-2015 by Jeff Heaton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For more information on Heaton Research copyrights, licenses
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package com.heatonresearch.aifh.learning;
+
+/**
+ * Receives a notification at the end of each training iteration, see TrainingMetrics.addListener.  Listeners are
+ * called on the training thread, so they should return quickly.
+ */
+public interface TrainingListener {
+
+    /**
+     * Called after each training iteration.
+     * @param train The learning method.
+     * @param metrics The metrics of the learning method, already updated for this iteration.
+     */
+    void iterationComplete(LearningMethod train, TrainingMetrics metrics);
+}
@@ -0,0 +1,255 @@
+/*
+ * Artificial Intelligence for Humans
+ * Volume 3: Deep Learning and Neural Networks
+ * Java Version
+ * http://www.aifh.org
+ * http://www.jeffheaton.com
+ *
+ * Code repository:
+ * https://github.com/jeffheaton/aifh
+ *
+ * Copyright 2014-2015 by Jeff Heaton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For more information on Heaton Research copyrights, licenses
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package com.heatonresearch.aifh.learning;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters that show where the time of a learning method goes.  All times are in nanoseconds, and are summed over
+ * every iteration since the metrics were created (or reset).  The counters can be read from any thread while
+ * training runs.
+ *
+ * The forward, backward and update phases are recorded by the learning method.  When the gradients are calculated
+ * by several threads, the forward and backward times are summed over the threads, so they can be larger than the
+ * iteration time.  Validation is not part of an iteration, it is recorded by whoever evaluates the validation set
+ * (i.e. SimpleLearn).
+ *
+ * Timing costs two calls to System.nanoTime for each phase of each batch, so the overhead is negligible.
+ */
+public class TrainingMetrics {
+
+    /**
+     * The number of nanoseconds in a second.
+     */
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    /**
+     * The number of completed iterations.
+     */
+    private final AtomicLong iterationCount = new AtomicLong();
+
+    /**
+     * The number of training samples processed.
+     */
+    private final AtomicLong sampleCount = new AtomicLong();
+
+    /**
+     * The wall time of all iterations.
+     */
+    private final AtomicLong iterationTime = new AtomicLong();
+
+    /**
+     * The wall time of the last iteration.
+     */
+    private final AtomicLong lastIterationTime = new AtomicLong();
+
+    /**
+     * The time spent in the forward pass.
+     */
+    private final AtomicLong forwardTime = new AtomicLong();
+
+    /**
+     * The time spent in the backward pass.
+     */
+    private final AtomicLong backwardTime = new AtomicLong();
+
+    /**
+     * The time spent updating the weights.
+     */
+    private final AtomicLong updateTime = new AtomicLong();
+
+    /**
+     * The time spent evaluating the validation set.
+     */
+    private final AtomicLong validationTime = new AtomicLong();
+
+    /**
+     * The listeners to notify after each iteration.
+     */
+    private final List<TrainingListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Add a listener, to be notified after each iteration.
+     * @param listener The listener.
+     */
+    public void addListener(final TrainingListener listener) {
+        this.listeners.add(listener);
+    }
+
+    /**
+     * Remove a listener.
+     * @param listener The listener.
+     */
+    public void removeListener(final TrainingListener listener) {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * Record a completed iteration, and notify the listeners.  Called by the learning method.
+     * @param train The learning method.
+     * @param time The wall time of the iteration.
+     * @param samples The number of training samples in the iteration.
+     */
+    public void iterationComplete(final LearningMethod train, final long time, final int samples) {
+        this.iterationCount.incrementAndGet();
+        this.sampleCount.addAndGet(samples);
+        this.iterationTime.addAndGet(time);
+        this.lastIterationTime.set(time);
+        for (TrainingListener listener : this.listeners) {
+            listener.iterationComplete(train, this);
+        }
+    }
+
+    /**
+     * Add time to the forward pass.
+     * @param time The time, in nanoseconds.
+     */
+    public void addForwardTime(final long time) {
+        this.forwardTime.addAndGet(time);
+    }
+
+    /**
+     * Add time to the backward pass.
+     * @param time The time, in nanoseconds.
+     */
+    public void addBackwardTime(final long time) {
+        this.backwardTime.addAndGet(time);
+    }
+
+    /**
+     * Add time to the weight update.
+     * @param time The time, in nanoseconds.
+     */
+    public void addUpdateTime(final long time) {
+        this.updateTime.addAndGet(time);
+    }
+
+    /**
+     * Add time to the validation.
+     * @param time The time, in nanoseconds.
+     */
+    public void addValidationTime(final long time) {
+        this.validationTime.addAndGet(time);
+    }
+
+    /**
+     * Set all counters to zero.  The listeners are kept.
+     */
+    public void reset() {
+        this.iterationCount.set(0);
+        this.sampleCount.set(0);
+        this.iterationTime.set(0);
+        this.lastIterationTime.set(0);
+        this.forwardTime.set(0);
+        this.backwardTime.set(0);
+        this.updateTime.set(0);
+        this.validationTime.set(0);
+    }
+
+    /**
+     * @return The number of completed iterations.
+     */
+    public long getIterationCount() {
+        return this.iterationCount.get();
+    }
+
+    /**
+     * @return The number of training samples processed.
+     */
+    public long getSampleCount() {
+        return this.sampleCount.get();
+    }
+
+    /**
+     * @return The wall time of all iterations, in nanoseconds.
+     */
+    public long getIterationTime() {
+        return this.iterationTime.get();
+    }
+
+    /**
+     * @return The wall time of the last iteration, in nanoseconds.
+     */
+    public long getLastIterationTime() {
+        return this.lastIterationTime.get();
+    }
+
+    /**
+     * @return The time spent in the forward pass, in nanoseconds.
+     */
+    public long getForwardTime() {
+        return this.forwardTime.get();
+    }
+
+    /**
+     * @return The time spent in the backward pass, in nanoseconds.
+     */
+    public long getBackwardTime() {
+        return this.backwardTime.get();
+    }
+
+    /**
+     * @return The time spent updating the weights, in nanoseconds.
+     */
+    public long getUpdateTime() {
+        return this.updateTime.get();
+    }
+
+    /**
+     * @return The time spent evaluating the validation set, in nanoseconds.
+     */
+    public long getValidationTime() {
+        return this.validationTime.get();
+    }
+
+    /**
+     * @return The number of training samples processed per second of iteration time.
+     */
+    public double getSamplesPerSecond() {
+        final long time = getIterationTime();
+        return time == 0 ? 0 : getSampleCount() * NANOS_PER_SECOND / time;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "[TrainingMetrics: iterations=" + getIterationCount()
+                + ", samples/sec=" + (long) getSamplesPerSecond()
+                + ", iteration ms=" + getIterationTime() / 1000000
+                + ", forward ms=" + getForwardTime() / 1000000
+                + ", backward ms=" + getBackwardTime() / 1000000
+                + ", update ms=" + getUpdateTime() / 1000000
+                + ", validation ms=" + getValidationTime() / 1000000
+                + "]";
+    }
+}
@@ -0,0 +1,585 @@
+/*
+ * Artificial Intelligence for Humans
+ * Volume 3: Deep Learning and Neural Networks
+ * Java Version
+ * http://www.aifh.org
+ * http://www.jeffheaton.com
+ *
+ * Code repository:
+ * https://github.com/jeffheaton/aifh
+ *
+ * Copyright 2014-2015 by Jeff Heaton
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For more information on Heaton Research copyrights, licenses
+ * and trademarks visit:
+ * http://www.heatonresearch.com/copyright
+ */
+package com.heatonresearch.aifh.normalize;
+
+import au.com.bytecode.opencsv.CSVReader;
+import com.heatonresearch.aifh.AIFHError;
+import com.heatonresearch.aifh.general.data.BinaryDataWriter;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.text.NumberFormat;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Normalizes a CSV file that is too large to load into a DataSet.  The file is read twice, one row at a time: the
+ * first pass (analyze) gathers the statistics of each column, and the second pass (normalize) encodes each row and
+ * writes it to a binary training file (see BinaryDataWriter, and MappedDataSource to train from it).  Only the
+ * statistics are held in memory, so the memory used does not depend on the number of rows, only on the number of
+ * distinct classes.
+ *
+ * The encodings give the same values as the DataSet methods of the same name.  Each column to use is added with one
+ * of these methods, and is either an input or an ideal.  The inputs are written in column order, followed by the
+ * ideals in column order.  Columns that are not added are skipped.  Like DataSet.load, the first line holds the
+ * headers.
+ */
+public class StreamingNormalizer {
+
+    /**
+     * The ways a column can be encoded.
+     */
+    private enum Encoding {
+        /**
+         * Range normalization.
+         */
+        RANGE,
+        /**
+         * Z-Score normalization, missing values are encoded as the mean.
+         */
+        ZSCORE,
+        /**
+         * One-of-n encoding.
+         */
+        ONE_OF_N,
+        /**
+         * Equilateral encoding.
+         */
+        EQUILATERAL
+    }
+
+    /**
+     * A column to encode, and its statistics.
+     */
+    private static class Field {
+
+        /**
+         * The column index.
+         */
+        private final int column;
+
+        /**
+         * How the column is encoded.
+         */
+        private final Encoding encoding;
+
+        /**
+         * True, if the column is an ideal, rather than an input.
+         */
+        private final boolean ideal;
+
+        /**
+         * The normalized low value, or the off value of a class encoding.
+         */
+        private final double low;
+
+        /**
+         * The normalized high value, or the on value of a class encoding.
+         */
+        private final double high;
+
+        /**
+         * The minimum value.
+         */
+        private double min = Double.POSITIVE_INFINITY;
+
+        /**
+         * The maximum value.
+         */
+        private double max = Double.NEGATIVE_INFINITY;
+
+        /**
+         * The number of values that are not missing.
+         */
+        private long count;
+
+        /**
+         * The mean of the values that are not missing.
+         */
+        private double mean;
+
+        /**
+         * The sum of the squared differences from the mean, see Welford's method.
+         */
+        private double sumSquares;
+
+        /**
+         * The distinct classes seen so far.  This is a HashSet, so the classes are numbered in its iteration (hash)
+         * order rather than the order they first occur, the same as DataSet.enumerateClasses.
+         */
+        private Set<String> classSet = new HashSet<>();
+
+        /**
+         * Maps each class to its index, once the file is analyzed.
+         */
+        private Map<String, Integer> classes;
+
+        /**
+         * The equilateral encoding, once the file is analyzed.
+         */
+        private Equilateral equilateral;
+
+        /**
+         * Construct a field.
+         * @param theColumn The column index.
+         * @param theEncoding How the column is encoded.
+         * @param theIdeal True, if the column is an ideal.
+         * @param theLow The normalized low value, or the off value.
+         * @param theHigh The normalized high value, or the on value.
+         */
+        Field(final int theColumn, final Encoding theEncoding, final boolean theIdeal, final double theLow,
+              final double theHigh) {
+            this.column = theColumn;
+            this.encoding = theEncoding;
+            this.ideal = theIdeal;
+            this.low = theLow;
+            this.high = theHigh;
+        }
+
+        /**
+         * @return The number of values this column is encoded to.
+         */
+        int getWidth() {
+            switch (this.encoding) {
+                case ONE_OF_N:
+                    return this.classes.size();
+                case EQUILATERAL:
+                    return this.classes.size() - 1;
+                default:
+                    return 1;
+            }
+        }
+    }
+
+    /**
+     * The columns to encode.
+     */
+    private final List<Field> fields = new ArrayList<>();
+
+    /**
+     * The number formatter to use, the same as DataSet.
+     */
+    private final NumberFormat numberFormatter = NumberFormat.getInstance(Locale.US);
+
+    /**
+     * The column headers, once the file is analyzed.
+     */
+    private String[] headers;
+
+    /**
+     * The number of rows, once the file is analyzed.
+     */
+    private long rowCount;
+
+    /**
+     * The number of input values per row, once the file is analyzed.
+     */
+    private int inputCount;
+
+    /**
+     * The number of ideal values per row, once the file is analyzed.
+     */
+    private int idealCount;
+
+    /**
+     * Add a column to encode.
+     * @param field The column.
+     */
+    private void add(final Field field) {
+        if (this.headers != null) {
+            throw new AIFHError("Columns must be added before the file is analyzed.");
+        }
+        for (final Field other : this.fields) {
+            if (other.column == field.column) {
+                throw new AIFHError("Column " + field.column + " was already added.");
+            }
+        }
+        this.fields.add(field);
+    }
+
+    /**
+     * Normalize a column using range normalization, as DataSet.normalizeRange.
+     * @param column The column.
+     * @param ideal True, if the column is an ideal, rather than an input.
+     * @param normalizedLow The desired low normalized value.
+     * @param normalizedHigh The desired high normalized value.
+     */
+    public void normalizeRange(final int column, final boolean ideal, final double normalizedLow,
+                               final double normalizedHigh) {
+        add(new Field(column, Encoding.RANGE, ideal, normalizedLow, normalizedHigh));
+    }
+
+    /**
+     * Normalize a column using z-score normalization, as DataSet.normalizeZScore.  Missing values are encoded as
+     * zero, the mean.
+     * @param column The column.
+     * @param ideal True, if the column is an ideal, rather than an input.
+     */
+    public void normalizeZScore(final int column, final boolean ideal) {
+        add(new Field(column, Encoding.ZSCORE, ideal, 0, 0));
+    }
+
+    /**
+     * Encode a column using "one of n" encoding, as DataSet.encodeOneOfN.
+     * @param column The column.
+     * @param ideal True, if the column is an ideal, rather than an input.
+     * @param offValue The off value to use.
+     * @param onValue The on value to use.
+     */
+    public void encodeOneOfN(final int column, final boolean ideal, final double offValue, final double onValue) {
+        add(new Field(column, Encoding.ONE_OF_N, ideal, offValue, onValue));
+    }
+
+    /**
+     * Encode a column using equilateral encoding, as DataSet.encodeEquilateral.
+     * @param column The column.
+     * @param ideal True, if the column is an ideal, rather than an input.
+     * @param offValue The off value to use.
+     * @param onValue The on value to use.
+     */
+    public void encodeEquilateral(final int column, final boolean ideal, final double offValue,
+                                  final double onValue) {
+        add(new Field(column, Encoding.EQUILATERAL, ideal, offValue, onValue));
+    }
+
+    /**
+     * Parse a value to a number.
+     * @param str The value.
+     * @return The number.
+     */
+    private double parse(final String str) {
+        try {
+            return this.numberFormatter.parse(str).doubleValue();
+        } catch (ParseException ex) {
+            throw new AIFHError(ex);
+        }
+    }
+
+    /**
+     * Open a CSV file.
+     * @param file The file.
+     * @return The reader.
+     */
+    private static CSVReader open(final File file) {
+        try {
+            return new CSVReader(new InputStreamReader(new FileInputStream(file)));
+        } catch (IOException ex) {
+            throw new AIFHError(ex);
+        }
+    }
+
+    /**
+     * Close a CSV file.
+     * @param csv The reader.
+     */
+    private static void close(final CSVReader csv) {
+        try {
+            csv.close();
+        } catch (IOException ex) {
+            throw new AIFHError(ex);
+        }
+    }
+
+    /**
+     * Read the next row of a CSV file, skipping blank lines, as DataSet.load does.
+     * @param csv The reader.
+     * @return The row, or null at the end of the file.
+     */
+    private String[] readRow(final CSVReader csv) {
+        try {
+            String[] result;
+            do {
+                result = csv.readNext();
+            } while (result != null && result.length <= 1);
+            if (result != null && result.length != this.headers.length) {
+                throw new AIFHError("Found a CSV line with "
+                        + result.length + " columns, when expecting " + this.headers.length);
+            }
+            return result;
+        } catch (IOException ex) {
+            throw new AIFHError(ex);
+        }
+    }
+
+    /**
+     * The first pass, read the file and gather the statistics of each column.
+     * @param file The CSV file.
+     */
+    public void analyze(final File file) {
+        if (this.headers != null) {
+            throw new AIFHError("The file has already been analyzed.");
+        }
+        final CSVReader csv = open(file);
+        try {
+            this.headers = csv.readNext();
+            if (this.headers == null) {
+                throw new AIFHError("The CSV file is empty.");
+            }
+            for (final Field field : this.fields) {
+                if (field.column >= this.headers.length) {
+                    throw new AIFHError("Column " + field.column + " does not exist, the file has "
+                            + this.headers.length + " columns.");
+                }
+            }
+
+            String[] row;
+            while ((row = readRow(csv)) != null) {
+                for (final Field field : this.fields) {
+                    final String str = row[field.column];
+                    if (field.encoding == Encoding.RANGE) {
+                        final double x = parse(str);
+                        field.min = Math.min(field.min, x);
+                        field.max = Math.max(field.max, x);
+                    } else if (field.encoding == Encoding.ZSCORE) {
+                        if (!DataSet.isMissing(str)) {
+                            final double x = parse(str);
+                            field.count++;
+                            final double delta = x - field.mean;
+                            field.mean += delta / field.count;
+                            field.sumSquares += delta * (x - field.mean);
+                        }
+                    } else {
+                        field.classSet.add(str);
+                    }
+                }
+                this.rowCount++;
+            }
+        } catch (IOException ex) {
+            throw new AIFHError(ex);
+        } finally {
+            close(csv);
+        }
+
+        // number the classes as DataSet.enumerateClasses does
+        this.inputCount = 0;
+        this.idealCount = 0;
+        Collections.sort(this.fields, new Comparator<Field>() {
+            @Override
+            public int compare(final Field a, final Field b) {
+                return Integer.compare(a.column, b.column);
+            }
+        });
+        for (final Field field : this.fields) {
+            if (field.encoding == Encoding.ONE_OF_N || field.encoding == Encoding.EQUILATERAL) {
+                field.classes = new HashMap<>();
+                int index = 0;
+                for (final String className : field.classSet) {
+                    field.classes.put(className, index++);
+                }
+                field.classSet = null;
+                if (field.encoding == Encoding.EQUILATERAL) {
+                    field.equilateral = new Equilateral(field.classes.size(), field.low, field.high);
+                }
+            }
+            if (field.ideal) {
+                this.idealCount += field.getWidth();
+            } else {
+                this.inputCount += field.getWidth();
+            }
+        }
+    }
+
+    /**
+     * Encode one column of a row.
+     * @param field The column.
+     * @param str The value.
+     * @param target The array to encode to.
+     * @param index The index to encode to.
+     */
+    private void encode(final Field field, final String str, final double[] target, final int index) {
+        switch (field.encoding) {
+            case RANGE:
+                target[index] = ((parse(str) - field.min) / (field.max - field.min))
+                        * (field.high - field.low) + field.low;
+                break;
+            case ZSCORE:
+                target[index] = DataSet.isMissing(str) ? 0 : (parse(str) - field.mean) / getStandardDeviation(field);
+                break;
+            default:
+                final Integer classIndex = field.classes.get(str);
+                if (classIndex == null) {
+                    throw new AIFHError("Unknown class: " + str);
+                }
+                if (field.encoding == Encoding.ONE_OF_N) {
+                    for (int i = 0; i < field.classes.size(); i++) {
+                        target[index + i] = i == classIndex ? field.high : field.low;
+                    }
+                } else {
+                    final double[] encoded = field.equilateral.encode(classIndex);
+                    System.arraycopy(encoded, 0, target, index, encoded.length);
+                }
+                break;
+        }
+    }
+
+    /**
+     * The second pass, read the file again and write each row, encoded, to a binary training file.  The file is
+     * analyzed first, if that has not been done.
+     * @param file The CSV file.
+     * @param output The binary training file, see BinaryDataWriter.
+     * @param singlePrecision True, to write the values as floats, rather than doubles.
+     */
+    public void normalize(final File file, final File output, final boolean singlePrecision) {
+        if (this.headers == null) {
+            analyze(file);
+        }
+
+        final double[] input = new double[this.inputCount];
+        final double[] ideal = new double[this.idealCount];
+        final BinaryDataWriter writer = new BinaryDataWriter(output, this.inputCount, this.idealCount,
+                singlePrecision);
+        final CSVReader csv = open(file);
+        try {
+            csv.readNext();
+            String[] row;
+            while ((row = readRow(csv)) != null) {
+                int inputIndex = 0;
+                int idealIndex = 0;
+                for (final Field field : this.fields) {
+                    if (field.ideal) {
+                        encode(field, row[field.column], ideal, idealIndex);
+                        idealIndex += field.getWidth();
+                    } else {
+                        encode(field, row[field.column], input, inputIndex);
+                        inputIndex += field.getWidth();
+                    }
+                }
+                writer.write(input, ideal);
+            }
+        } catch (IOException ex) {
+            throw new AIFHError(ex);
+        } finally {
+            close(csv);
+            writer.close();
+        }
+    }
+
+    /**
+     * Find an added column.
+     * @param column The column index.
+     * @return The column.
+     */
+    private Field findField(final int column) {
+        if (this.headers == null) {
+            throw new AIFHError("The file has not been analyzed.");
+        }
+        for (final Field field : this.fields) {
+            if (field.column == column) {
+                return field;
+            }
+        }
+        throw new AIFHError("Column " + column + " was not added.");
+    }
+
+    /**
+     * @param field A z-score column.
+     * @return The standard deviation of the column.
+     */
+    private static double getStandardDeviation(final Field field) {
+        return Math.sqrt(field.sumSquares / field.count);
+    }
+
+    /**
+     * @param column A range normalized column.
+     * @return The minimum value of the column.
+     */
+    public double getMin(final int column) {
+        return findField(column).min;
+    }
+
+    /**
+     * @param column A range normalized column.
+     * @return The maximum value of the column.
+     */
+    public double getMax(final int column) {
+        return findField(column).max;
+    }
+
+    /**
+     * @param column A z-score normalized column.
+     * @return The mean of the column, missing values are not included.
+     */
+    public double getMean(final int column) {
+        return findField(column).mean;
+    }
+
+    /**
+     * @param column A z-score normalized column.
+     * @return The standard deviation of the column, missing values are not included.
+     */
+    public double getStandardDeviation(final int column) {
+        return getStandardDeviation(findField(column));
+    }
+
+    /**
+     * @param column A one-of-n or equilateral encoded column.
+     * @return The class to index mapping, the same as DataSet.enumerateClasses.
+     */
+    public Map<String, Integer> getClasses(final int column) {
+        return findField(column).classes;
+    }
+
+    /**
+     * @return The column headers, once the file is analyzed.
+     */
+    public String[] getHeaders() {
+        return this.headers;
+    }
+
+    /**
+     * @return The number of rows, once the file is analyzed.
+     */
+    public long getRowCount() {
+        return this.rowCount;
+    }
+
+    /**
+     * @return The number of input values per row, once the file is analyzed.
+     */
+    public int getInputCount() {
+        return this.inputCount;
+    }
+
+    /**
+     * @return The number of ideal values per row, once the file is analyzed.
+     */
+    public int getIdealCount() {
+        return this.idealCount;
+    }
+}
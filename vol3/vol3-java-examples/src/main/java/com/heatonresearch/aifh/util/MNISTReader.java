@@ -31,11 +31,18 @@ package com.heatonresearch.aifh.util;
 
 import com.heatonresearch.aifh.AIFHError;
 import com.heatonresearch.aifh.general.data.BasicData;
+import com.heatonresearch.aifh.general.data.DataSource;
+import com.heatonresearch.aifh.general.data.DataSourceList;
 
+import java.io.DataInput;
 import java.io.DataInputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.zip.GZIPInputStream;
 
@@ -43,62 +50,112 @@ import java.util.zip.GZIPInputStream;
  * This reads the MNIST dataset of handwritten digits into a data set.
  * The MNIST dataset is found at http://yann.lecun.com/exdb/mnist/.
  *
+ * The images are kept as their raw bytes, one byte per pixel: an uncompressed image file is memory mapped, and a
+ * compressed one is read into a single byte[].  Each image is scaled to [0,1] only when it is read, either into a
+ * new BasicData, or straight into a caller's arrays (this class is a DataSource).  The trainers are given
+ * getDataView, and scale each image straight into their mini-batch buffers.  This takes roughly an eighth of the
+ * memory of BasicData rows, and loading does not decode any images.  getData still builds (once) a List holding
+ * every image as a BasicData, for code that needs that.
+ *
  * Very loosely adapted from a class by Gabe Johnson <johnsogg@cmu.edu>.
  * https://code.google.com
  * /p/pen-ui/source/browse/trunk/skrui/src/org/six11/skrui
  * /charrec/MNISTReader.java?r=185
  */
-public class MNISTReader {
+public class MNISTReader implements DataSource {
+
+    /**
+     * The size of the image file's header, the pixels start here.
+     */
+    private static final int IMAGE_HEADER_SIZE = 16;
+
+    /**
+     * The number of classes (digits).
+     */
+    private static final int CLASS_COUNT = 10;
+
+    /**
+     * The scaled value of each pixel byte, the same as (double) b / 255.0.
+     */
+    private static final double[] SCALE = new double[256];
+
+    static {
+        for (int i = 0; i < SCALE.length; i++) {
+            SCALE[i] = ((double) i) / 255.0;
+        }
+    }
 
     private final int numLabels;
     private final int numImages;
     private final int numRows;
     private final int numCols;
-    private final List<BasicData> data;
 
-    public MNISTReader(String labelFilename, String imageFilename, int depth) {
-        try {
-            if( depth!=1 && depth!=3 ) {
-                throw new AIFHError("MNIST depth must be 1 or 3.");
-            }
+    /**
+     * The number of times each image is repeated in the input, 1 or 3.
+     */
+    private final int depth;
+
+    /**
+     * The number of pixels in an image.
+     */
+    private final int imageSize;
+
+    /**
+     * The label of each image.
+     */
+    private final byte[] labels;
 
+    /**
+     * The pixels of every image, image i starts at i*imageSize.
+     */
+    private final ByteBuffer images;
+
+    /**
+     * The data as BasicData rows, built by the first call to getData.
+     */
+    private List<BasicData> data;
 
-            DataInputStream labels;
-            DataInputStream images;
+    public MNISTReader(String labelFilename, String imageFilename, int depth) {
+        if( depth!=1 && depth!=3 ) {
+            throw new AIFHError("MNIST depth must be 1 or 3.");
+        }
+        this.depth = depth;
 
+        try {
             // Read label file, decompress (as read in) if needed.
-            if( labelFilename.toLowerCase().endsWith(".gz")) {
-                labels = new DataInputStream(new GZIPInputStream(new FileInputStream(
-                        labelFilename)));
-            } else {
-                labels = new DataInputStream(new FileInputStream(
-                        labelFilename));
+            try (DataInputStream labelStream = open(labelFilename)) {
+                int magicNumber = labelStream.readInt();
+                if (magicNumber != 2049) {
+                    throw new AIFHError("Label file has wrong magic number: "
+                            + magicNumber + " (should be 2049)");
+                }
+                this.numLabels = labelStream.readInt();
+                this.labels = new byte[this.numLabels];
+                labelStream.readFully(this.labels);
             }
 
-            // Read images file, decompress (as read in) if needed.
+            // Read images file, decompress (as read in) if needed, otherwise map it.
+            final int[] header;
             if( imageFilename.toLowerCase().endsWith(".gz")) {
-                images = new DataInputStream(new GZIPInputStream(new FileInputStream(
-                        imageFilename)));
+                try (DataInputStream imageStream = open(imageFilename)) {
+                    header = readImageHeader(imageStream);
+                    final byte[] imagesData = new byte[header[0] * header[1] * header[2]];
+                    imageStream.readFully(imagesData);
+                    this.images = ByteBuffer.wrap(imagesData);
+                }
             } else {
-                images = new DataInputStream(new FileInputStream(
-                        imageFilename));
+                try (RandomAccessFile raf = new RandomAccessFile(imageFilename, "r");
+                     FileChannel channel = raf.getChannel()) {
+                    header = readImageHeader(raf);
+                    this.images = channel.map(FileChannel.MapMode.READ_ONLY, IMAGE_HEADER_SIZE,
+                            (long) header[0] * header[1] * header[2]);
+                }
             }
+            this.numImages = header[0];
+            this.numRows = header[1];
+            this.numCols = header[2];
+            this.imageSize = this.numRows * this.numCols;
 
-
-            int magicNumber = labels.readInt();
-            if (magicNumber != 2049) {
-                throw new AIFHError("Label file has wrong magic number: "
-                        + magicNumber + " (should be 2049)");
-            }
-            magicNumber = images.readInt();
-            if (magicNumber != 2051) {
-                throw new AIFHError("Image file has wrong magic number: "
-                        + magicNumber + " (should be 2051)");
-            }
-            this.numLabels = labels.readInt();
-            this.numImages = images.readInt();
-            this.numRows = images.readInt();
-            this.numCols = images.readInt();
             if (this.numLabels != this.numImages) {
                 StringBuilder str = new StringBuilder();
                 str.append("Image file and label file do not contain the same number of entries.\n");
@@ -106,39 +163,119 @@ public class MNISTReader {
                 str.append("  Image file contains: " + this.numImages + "\n");
                 throw new AIFHError(str.toString());
             }
+        } catch (IOException ex) {
+            throw new AIFHError(ex);
+        }
+    }
 
-            byte[] labelsData = new byte[this.numLabels];
-            labels.readFully(labelsData);
-            int imageVectorSize = this.numCols * this.numRows;
-            byte[] imagesData = new byte[this.numLabels * imageVectorSize];
-            images.readFully(imagesData);
-
-            this.data = new ArrayList<>();
-            int imageIndex = 0;
-            for(int i=0;i<this.numLabels;i++) {
-                int label = labelsData[i];
-                double[] inputData = new double[imageVectorSize*depth];
-                int outputIndex = 0;
-                int t = imageIndex;
-                for(int k=0;k<depth;k++) {
-                    imageIndex = t;
-                    for (int j = 0; j < imageVectorSize; j++) {
-                        inputData[outputIndex++] = ((double) (imagesData[imageIndex++] & 0xff)) / 255.0;
-                    }
-                }
-                double[] idealData = new double[10];
-                idealData[label] = 1.0;
-                this.data.add(new BasicData(inputData,idealData,null));
+    /**
+     * Open a file, decompressing it if its name ends with .gz.
+     * @param filename The filename.
+     * @return The stream.
+     * @throws IOException If the file can not be opened.
+     */
+    private static DataInputStream open(final String filename) throws IOException {
+        if( filename.toLowerCase().endsWith(".gz")) {
+            return new DataInputStream(new GZIPInputStream(new FileInputStream(filename)));
+        } else {
+            return new DataInputStream(new FileInputStream(filename));
+        }
+    }
+
+    /**
+     * Read the header of an image file.
+     * @param in The file, positioned at its start.
+     * @return The number of images, rows and columns.
+     * @throws IOException If the header can not be read.
+     */
+    private static int[] readImageHeader(final DataInput in) throws IOException {
+        final int magicNumber = in.readInt();
+        if (magicNumber != 2051) {
+            throw new AIFHError("Image file has wrong magic number: "
+                    + magicNumber + " (should be 2051)");
+        }
+        return new int[] {in.readInt(), in.readInt(), in.readInt()};
+    }
+
+    /**
+     * Read the input of an image, scaled to [0,1].  The image is repeated depth times.
+     * @param index The image index.
+     * @param target The array to read into.
+     * @param offset The index of target to start at.
+     */
+    @Override
+    public void readInput(final int index, final double[] target, final int offset) {
+        if (index < 0 || index >= this.numImages) {
+            throw new AIFHError("Invalid image(" + index + "), the image count is: " + this.numImages);
+        }
+        final int start = index * this.imageSize;
+        int t = offset;
+        for (int k = 0; k < this.depth; k++) {
+            for (int j = 0; j < this.imageSize; j++) {
+                target[t++] = SCALE[this.images.get(start + j) & 0xff];
             }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void read(final int index, final double[] input, final double[] ideal) {
+        readInput(index, input, 0);
+        Arrays.fill(ideal, 0, CLASS_COUNT, 0);
+        ideal[this.labels[index]] = 1.0;
+    }
 
-            images.close();
-            labels.close();
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void readIdeal(final int index, final double[] target, final int offset) {
+        if (index < 0 || index >= this.numImages) {
+            throw new AIFHError("Invalid image(" + index + "), the image count is: " + this.numImages);
+        }
+        Arrays.fill(target, offset, offset + CLASS_COUNT, 0);
+        target[offset + this.labels[index]] = 1.0;
+    }
 
-        } catch (IOException ex) {
-            throw new AIFHError(ex);
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void readBatch(final int start, final int count, final double[] input, final double[] ideal) {
+        final int inputCount = getInputCount();
+        Arrays.fill(ideal, 0, count * CLASS_COUNT, 0);
+        for (int i = 0; i < count; i++) {
+            readInput(start + i, input, i * inputCount);
+            ideal[i * CLASS_COUNT + this.labels[start + i]] = 1.0;
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+        return this.numImages;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getInputCount() {
+        return this.imageSize * this.depth;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getIdealCount() {
+        return CLASS_COUNT;
+    }
+
     /**
      * @return the numLabels
      */
@@ -168,12 +305,33 @@ public class MNISTReader {
     }
 
     /**
-     * @return the data
+     * @return The label of an image.
+     * @param index The image index.
+     */
+    public int getLabel(final int index) {
+        return this.labels[index];
+    }
+
+    /**
+     * @return The data, every image as a BasicData.  The list is built on the first call.
      */
     public List<BasicData> getData() {
+        if (this.data == null) {
+            final List<BasicData> result = new ArrayList<>(this.numImages);
+            for (int i = 0; i < this.numImages; i++) {
+                final BasicData element = new BasicData(getInputCount(), CLASS_COUNT);
+                read(i, element.getInput(), element.getIdeal());
+                result.add(element);
+            }
+            this.data = result;
+        }
         return this.data;
     }
 
-
-
+    /**
+     * @return The data as a read-only view, each image is scaled into a new BasicData when it is accessed.
+     */
+    public List<BasicData> getDataView() {
+        return new DataSourceList(this);
+    }
 }
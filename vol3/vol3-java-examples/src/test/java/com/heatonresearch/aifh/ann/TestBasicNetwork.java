@@ -86,6 +86,47 @@ public class TestBasicNetwork {
         Assert.assertEquals(1,out2.length);
     }
 
+    @Test
+    public void testSession() throws InterruptedException {
+        final BasicNetwork network = TestBasicNetwork.buildSimpleXOR();
+        final double[][] input = { { 0.0, 0.0 }, { 1.0, 0.0 }, { 0.0, 1.0 }, { 1.0, 1.0 } };
+        final double[][] expected = new double[input.length][];
+        for(int i=0;i<input.length;i++) {
+            expected[i] = network.computeRegression(input[i]);
+        }
+
+        // several threads, each with their own session, share one network
+        final boolean[] failed = new boolean[1];
+        Thread[] threads = new Thread[4];
+        for(int t=0;t<threads.length;t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    InferenceSession session = network.newSession();
+                    for(int i=0;i<1000;i++) {
+                        double[] out = session.computeRegression(input[i%input.length]);
+                        if( Math.abs(out[0]-expected[i%input.length][0]) > AIFH.DEFAULT_PRECISION ) {
+                            failed[0] = true;
+                        }
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for(Thread thread: threads) {
+            thread.join();
+        }
+        Assert.assertFalse(failed[0]);
+
+        // compute several rows at once
+        InferenceSession session = new InferenceSession(network, 3);
+        double[][] output = new double[input.length][1];
+        session.compute(input, output);
+        for(int i=0;i<input.length;i++) {
+            Assert.assertEquals(expected[i][0], output[i][0], AIFH.DEFAULT_PRECISION);
+        }
+    }
+
     @Test
     public void testNeuronStructure() {
         Layer inputLayer,hidden1Layer,hidden2Layer,hidden3Layer,outputLayer;
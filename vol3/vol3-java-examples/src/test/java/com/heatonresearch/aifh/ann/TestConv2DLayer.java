@@ -0,0 +1,157 @@
+package com.heatonresearch.aifh.ann;
+
+import com.heatonresearch.aifh.ann.activation.ActivationSigmoid;
+import com.heatonresearch.aifh.ann.randomize.RangeRandomizeNetwork;
+import com.heatonresearch.aifh.ann.train.GradientCalc;
+import com.heatonresearch.aifh.ann.train.GradientCalcOwner;
+import com.heatonresearch.aifh.ann.train.error.CrossEntropyErrorFunction;
+import com.heatonresearch.aifh.error.ErrorCalculationMSE;
+import com.heatonresearch.aifh.general.data.BasicData;
+import com.heatonresearch.aifh.randomize.GenerateRandom;
+import com.heatonresearch.aifh.randomize.LinearCongruentialRandom;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class TestConv2DLayer implements GradientCalcOwner {
+
+    private static final int ROWS = 4;
+    private static final int COLUMNS = 5;
+    private static final int DEPTH = 2;
+
+    public static BasicNetwork buildNetwork() {
+        Conv2DLayer conv = new Conv2DLayer(new ActivationSigmoid(), 3, 3, 3);
+        conv.setPadding(1);
+        conv.setStride(2);
+
+        BasicNetwork network = new BasicNetwork();
+        network.addLayer(new BasicLayer(null, true, new int[] {ROWS, COLUMNS, DEPTH}));
+        network.addLayer(conv);
+        network.addLayer(new BasicLayer(new ActivationSigmoid(), false, 2));
+        network.finalizeStructure();
+
+        RangeRandomizeNetwork randomize = new RangeRandomizeNetwork();
+        randomize.setRnd(new LinearCongruentialRandom(10));
+        randomize.randomize(network);
+        return network;
+    }
+
+    public static List<BasicData> buildData(int count) {
+        GenerateRandom rnd = new LinearCongruentialRandom(42);
+        List<BasicData> result = new ArrayList<>();
+        for(int i=0;i<count;i++) {
+            BasicData item = new BasicData(ROWS * COLUMNS * DEPTH, 2);
+            for(int j=0;j<item.getInput().length;j++) {
+                item.getInput()[j] = rnd.nextDouble(-1,1);
+            }
+            item.getIdeal()[rnd.nextInt(2)] = 1.0;
+            result.add(item);
+        }
+        return result;
+    }
+
+    @Test
+    public void testStructure() {
+        BasicNetwork network = buildNetwork();
+        Conv2DLayer conv = (Conv2DLayer)network.getLayers().get(1);
+        Assert.assertEquals(2, conv.getOutRows());
+        Assert.assertEquals(3, conv.getOutColumns());
+        Assert.assertEquals(18, conv.getCount());
+        Assert.assertEquals(DEPTH * 9 + 1, conv.getFilterSize());
+        Assert.assertEquals(3 * (DEPTH * 9 + 1) + 2 * 19, network.getWeights().length);
+    }
+
+    @Test
+    public void testCompute() {
+        BasicNetwork network = buildNetwork();
+        Conv2DLayer conv = (Conv2DLayer)network.getLayers().get(1);
+        double[] input = buildData(1).get(0).getInput();
+        double[] w = network.getWeights();
+
+        network.compute(input, new double[2]);
+
+        // direct convolution
+        for(int f=0;f<3;f++) {
+            for(int r=0;r<2;r++) {
+                for(int c=0;c<3;c++) {
+                    int wi = conv.getWeightIndex() + f * conv.getFilterSize();
+                    double sum = 0;
+                    for(int d=0;d<DEPTH;d++) {
+                        for(int i=0;i<3;i++) {
+                            for(int j=0;j<3;j++, wi++) {
+                                int ir = r*2 - 1 + i;
+                                int ic = c*2 - 1 + j;
+                                if( ir>=0 && ir<ROWS && ic>=0 && ic<COLUMNS ) {
+                                    sum += w[wi] * input[(d*ROWS+ir)*COLUMNS+ic];
+                                }
+                            }
+                        }
+                    }
+                    sum += w[wi];
+                    int neuron = conv.getNeuronIndex() + (f*2+r)*3+c;
+                    Assert.assertEquals(sum, network.getLayerSums()[neuron], 1e-12);
+                }
+            }
+        }
+
+        // the batch path gives the same result
+        BatchBuffers batch = new BatchBuffers(network, 1);
+        batch.setRowCount(1);
+        batch.setInput(0, input);
+        network.compute(batch);
+        double[] expected = network.computeRegression(input);
+        double[] actual = new double[2];
+        batch.getOutput(0, actual);
+        Assert.assertArrayEquals(expected, actual, 1e-12);
+    }
+
+    private double crossEntropy(BasicNetwork network, List<BasicData> data) {
+        double result = 0;
+        for(BasicData item: data) {
+            double[] output = network.computeRegression(item.getInput());
+            for(int i=0;i<output.length;i++) {
+                double y = item.getIdeal()[i];
+                result -= y*Math.log(output[i]) + (1-y)*Math.log(1-output[i]);
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void testGradient() {
+        BasicNetwork network = buildNetwork();
+        List<BasicData> data = buildData(5);
+
+        GradientCalc single = new GradientCalc(network, new CrossEntropyErrorFunction(), this);
+        for(BasicData item: data) {
+            single.process(new ErrorCalculationMSE(), item.getInput(), item.getIdeal());
+        }
+        GradientCalc batch = new GradientCalc(network, new CrossEntropyErrorFunction(), this);
+        batch.process(new ErrorCalculationMSE(), data);
+        Assert.assertArrayEquals(single.getGradients(), batch.getGradients(), 1e-12);
+
+        // compare against a numeric gradient
+        double[] w = network.getWeights();
+        for(int i=0;i<w.length;i++) {
+            double saved = w[i];
+            w[i] = saved + 1e-6;
+            double high = crossEntropy(network, data);
+            w[i] = saved - 1e-6;
+            double low = crossEntropy(network, data);
+            w[i] = saved;
+            Assert.assertEquals((high-low)/2e-6, single.getGradients()[i], 1e-5);
+        }
+    }
+
+    @Override
+    public double getL1() {
+        return 0;
+    }
+
+    @Override
+    public double getL2() {
+        return 0;
+    }
+}
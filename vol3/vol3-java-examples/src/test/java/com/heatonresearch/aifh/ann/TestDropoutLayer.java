@@ -0,0 +1,159 @@
+package com.heatonresearch.aifh.ann;
+
+import com.heatonresearch.aifh.ann.activation.ActivationLinear;
+import com.heatonresearch.aifh.ann.activation.ActivationReLU;
+import com.heatonresearch.aifh.ann.activation.ActivationSoftMax;
+import com.heatonresearch.aifh.ann.randomize.RangeRandomizeNetwork;
+import com.heatonresearch.aifh.ann.train.BackPropagation;
+import com.heatonresearch.aifh.ann.train.GradientCalc;
+import com.heatonresearch.aifh.ann.train.GradientCalcOwner;
+import com.heatonresearch.aifh.ann.train.error.CrossEntropyErrorFunction;
+import com.heatonresearch.aifh.error.ErrorCalculationMSE;
+import com.heatonresearch.aifh.general.data.BasicData;
+import com.heatonresearch.aifh.randomize.LinearCongruentialRandom;
+import com.heatonresearch.aifh.ann.train.TestGradientCalc;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+public class TestDropoutLayer implements GradientCalcOwner {
+
+    private static BasicNetwork buildNetwork(Layer hidden) {
+        BasicNetwork network = new BasicNetwork();
+        network.addLayer(new BasicLayer(null, true, 5));
+        network.addLayer(hidden);
+        network.addLayer(new BasicLayer(new ActivationLinear(), false, 3));
+        network.finalizeStructure();
+
+        RangeRandomizeNetwork randomize = new RangeRandomizeNetwork();
+        randomize.setRnd(new LinearCongruentialRandom(10));
+        randomize.randomize(network);
+        return network;
+    }
+
+    @Test
+    public void testInference() {
+        BasicNetwork network = buildNetwork(new DropoutLayer(new ActivationReLU(), true, 20, 0.5));
+        BasicNetwork plain = buildNetwork(new BasicLayer(new ActivationReLU(), true, 20));
+
+        for(BasicData item: TestGradientCalc.buildData(10)) {
+            Assert.assertArrayEquals(plain.computeRegression(item.getInput()),
+                    network.computeRegression(item.getInput()), 1e-12);
+        }
+    }
+
+    @Test
+    public void testMask() {
+        DropoutLayer dropout = new DropoutLayer(new ActivationReLU(), true, 20, 0.5);
+        BasicNetwork network = buildNetwork(dropout);
+        BasicNetwork plain = buildNetwork(new BasicLayer(new ActivationReLU(), true, 20));
+        double[] input = TestGradientCalc.buildData(1).get(0).getInput();
+
+        dropout.trainingBatch(new LinearCongruentialRandom(1));
+        Assert.assertTrue(dropout.getActiveCount() > 0 && dropout.getActiveCount() < 20);
+
+        plain.computeRegression(input);
+        network.setNetworkTraining(true);
+        network.computeRegression(input);
+
+        // every neuron is either dropped, or scaled by 1/(1-0.5)
+        int active = 0;
+        for(int i=0;i<20;i++) {
+            double expected = plain.getLayerOutput()[dropout.getNeuronIndex() + i];
+            double actual = network.getLayerOutput()[dropout.getNeuronIndex() + i];
+            if( actual!=0 ) {
+                Assert.assertEquals(expected * 2, actual, 1e-12);
+                active++;
+            }
+        }
+        Assert.assertTrue(active <= dropout.getActiveCount());
+    }
+
+    @Test
+    public void testSoftMax() {
+        DropoutLayer dropout = new DropoutLayer(new ActivationSoftMax(), true, 20, 0.5);
+        BasicNetwork network = buildNetwork(dropout);
+        double[] input = TestGradientCalc.buildData(1).get(0).getInput();
+
+        dropout.trainingBatch(new LinearCongruentialRandom(1));
+        network.setNetworkTraining(true);
+        network.computeRegression(input);
+
+        // the dropped neurons are left out of the normalization, so the active ones sum to one before scaling
+        double sum = 0;
+        for(int i=0;i<20;i++) {
+            sum += network.getLayerOutput()[dropout.getNeuronIndex() + i] * 0.5;
+        }
+        Assert.assertEquals(1.0, sum, 1e-12);
+    }
+
+    private double squaredError(BasicNetwork network, List<BasicData> data) {
+        double result = 0;
+        for(BasicData item: data) {
+            double[] output = network.computeRegression(item.getInput());
+            for(int i=0;i<output.length;i++) {
+                double diff = output[i] - item.getIdeal()[i];
+                result += 0.5 * diff * diff;
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void testGradient() {
+        DropoutLayer dropout = new DropoutLayer(new ActivationLinear(), true, 6, 0.5);
+        BasicNetwork network = buildNetwork(dropout);
+        List<BasicData> data = TestGradientCalc.buildData(5);
+
+        dropout.trainingBatch(new LinearCongruentialRandom(1));
+        network.setNetworkTraining(true);
+
+        GradientCalc single = new GradientCalc(network, new CrossEntropyErrorFunction(), this);
+        for(BasicData item: data) {
+            single.process(new ErrorCalculationMSE(), item.getInput(), item.getIdeal());
+        }
+        GradientCalc batch = new GradientCalc(network, new CrossEntropyErrorFunction(), this);
+        batch.process(new ErrorCalculationMSE(), data);
+        Assert.assertArrayEquals(single.getGradients(), batch.getGradients(), 1e-12);
+
+        // with a linear network and squared error, the gradients can be checked numerically
+        double[] w = network.getWeights();
+        for(int i=0;i<w.length;i++) {
+            double saved = w[i];
+            w[i] = saved + 1e-6;
+            double high = squaredError(network, data);
+            w[i] = saved - 1e-6;
+            double low = squaredError(network, data);
+            w[i] = saved;
+            Assert.assertEquals((high-low)/2e-6, single.getGradients()[i], 1e-5);
+        }
+    }
+
+    @Test
+    public void testNoStochastic() {
+        DropoutLayer dropout = new DropoutLayer(new ActivationReLU(), true, 20, 0.5);
+        dropout.setRnd(new LinearCongruentialRandom(1));
+        BasicNetwork network = buildNetwork(dropout);
+        List<BasicData> data = TestGradientCalc.buildData(10);
+
+        // sequential batches, the trainer gives the layers no generator
+        BackPropagation train = new BackPropagation(network, data, 0.01, 0.9);
+        train.setStochastic(null);
+        train.setBatchSize(5);
+        train.iteration();
+        Assert.assertTrue(dropout.getActiveCount() > 0 && dropout.getActiveCount() < 20);
+        train.iteration();
+        Assert.assertFalse(Double.isNaN(train.getLastError()));
+    }
+
+    @Override
+    public double getL1() {
+        return 0;
+    }
+
+    @Override
+    public double getL2() {
+        return 0;
+    }
+}
@@ -0,0 +1,87 @@
+package com.heatonresearch.aifh.ann;
+
+import com.heatonresearch.aifh.ann.activation.ActivationReLU;
+import com.heatonresearch.aifh.ann.activation.ActivationSigmoid;
+import com.heatonresearch.aifh.ann.activation.ActivationSoftMax;
+import com.heatonresearch.aifh.ann.randomize.RangeRandomizeNetwork;
+import com.heatonresearch.aifh.randomize.GenerateRandom;
+import com.heatonresearch.aifh.randomize.LinearCongruentialRandom;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestExecutionPlan {
+
+    private static BasicNetwork buildNetwork(DropoutLayer dropout) {
+        BasicNetwork network = new BasicNetwork();
+        network.addLayer(new BasicLayer(null, true, new int[] {6, 6, 1}));
+        Conv2DLayer conv = new Conv2DLayer(new ActivationReLU(), 2, 3, 3);
+        conv.setPadding(1);
+        network.addLayer(conv);
+        network.addLayer(new MaxPoolLayer(2, 2));
+        network.addLayer(dropout);
+        // a subclass is not computed by the plan's own loops, it goes through computeLayer
+        network.addLayer(new BasicLayer(new ActivationSigmoid(), true, 6) {
+        });
+        network.addLayer(new BasicLayer(new ActivationReLU(), true, 5));
+        network.addLayer(new BasicLayer(new ActivationSoftMax(), false, 3));
+        network.finalizeStructure();
+
+        RangeRandomizeNetwork randomize = new RangeRandomizeNetwork();
+        randomize.setRnd(new LinearCongruentialRandom(10));
+        randomize.randomize(network);
+        return network;
+    }
+
+    /**
+     * Compute the network the way BasicNetwork.compute did before the plan: clear every neuron, then call
+     * computeLayer for each layer.
+     */
+    private static double[] computeBaseline(BasicNetwork network, double[] input) {
+        network.clearOutput();
+        int inputIndex = network.getNeuronCount() - network.getLayers().get(0).getTotalCount();
+        System.arraycopy(input, 0, network.getLayerOutput(), inputIndex, input.length);
+        for(int i=1;i<network.getLayers().size();i++) {
+            network.getLayers().get(i).computeLayer();
+        }
+        double[] result = new double[network.getOutputCount()];
+        System.arraycopy(network.getLayerOutput(), 0, result, 0, result.length);
+        return result;
+    }
+
+    private static void checkPlan(BasicNetwork network, GenerateRandom rnd) {
+        double[] input = new double[network.getInputCount()];
+        double[] output = new double[network.getOutputCount()];
+        for(int row=0;row<10;row++) {
+            for(int i=0;i<input.length;i++) {
+                input[i] = rnd.nextDouble(-1, 1);
+            }
+            double[] expected = computeBaseline(network, input);
+            double[] expectedOutput = network.getLayerOutput().clone();
+            double[] expectedSums = network.getLayerSums().clone();
+
+            // leave stale values behind, the plan does not clear the neurons first
+            computeBaseline(network, new double[input.length]);
+            network.getExecutionPlan().compute(input, output);
+
+            Assert.assertArrayEquals(expected, output, 0);
+            Assert.assertArrayEquals(expectedOutput, network.getLayerOutput(), 0);
+            Assert.assertArrayEquals(expectedSums, network.getLayerSums(), 0);
+        }
+    }
+
+    @Test
+    public void testMixedLayers() {
+        BasicNetwork network = buildNetwork(new DropoutLayer(new ActivationReLU(), true, 8, 0.25));
+        checkPlan(network, new LinearCongruentialRandom(1));
+    }
+
+    @Test
+    public void testMixedLayersTraining() {
+        DropoutLayer dropout = new DropoutLayer(new ActivationReLU(), true, 8, 0.5);
+        BasicNetwork network = buildNetwork(dropout);
+        dropout.trainingBatch(new LinearCongruentialRandom(1));
+        Assert.assertTrue(dropout.getActiveCount() > 0 && dropout.getActiveCount() < 8);
+        network.setNetworkTraining(true);
+        checkPlan(network, new LinearCongruentialRandom(1));
+    }
+}
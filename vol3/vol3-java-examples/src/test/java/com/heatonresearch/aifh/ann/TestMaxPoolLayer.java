@@ -0,0 +1,108 @@
+package com.heatonresearch.aifh.ann;
+
+import com.heatonresearch.aifh.ann.activation.ActivationSigmoid;
+import com.heatonresearch.aifh.ann.randomize.RangeRandomizeNetwork;
+import com.heatonresearch.aifh.ann.train.GradientCalc;
+import com.heatonresearch.aifh.ann.train.GradientCalcOwner;
+import com.heatonresearch.aifh.ann.train.error.CrossEntropyErrorFunction;
+import com.heatonresearch.aifh.error.ErrorCalculationMSE;
+import com.heatonresearch.aifh.general.data.BasicData;
+import com.heatonresearch.aifh.randomize.LinearCongruentialRandom;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+public class TestMaxPoolLayer implements GradientCalcOwner {
+
+    public static BasicNetwork buildNetwork() {
+        Conv2DLayer conv = new Conv2DLayer(new ActivationSigmoid(), 2, 3, 3);
+        conv.setPadding(1);
+
+        BasicNetwork network = new BasicNetwork();
+        network.addLayer(new BasicLayer(null, true, new int[] {4, 5, 2}));
+        network.addLayer(conv);
+        network.addLayer(new MaxPoolLayer(2, 2));
+        network.addLayer(new BasicLayer(new ActivationSigmoid(), false, 2));
+        network.finalizeStructure();
+
+        RangeRandomizeNetwork randomize = new RangeRandomizeNetwork();
+        randomize.setRnd(new LinearCongruentialRandom(10));
+        randomize.randomize(network);
+        return network;
+    }
+
+    @Test
+    public void testCompute() {
+        BasicNetwork network = buildNetwork();
+        Layer conv = network.getLayers().get(1);
+        Layer pool = network.getLayers().get(2);
+        Assert.assertEquals(8, pool.getCount());
+        Assert.assertEquals(2 * 19 + 2 * 9, network.getWeights().length);
+
+        network.compute(TestConv2DLayer.buildData(1).get(0).getInput(), new double[2]);
+        double[] output = network.getLayerOutput();
+
+        // the last column of the convolution output does not fill a window, and is dropped
+        for(int d=0;d<2;d++) {
+            for(int r=0;r<2;r++) {
+                for(int c=0;c<2;c++) {
+                    double max = Double.NEGATIVE_INFINITY;
+                    for(int i=0;i<2;i++) {
+                        for(int j=0;j<2;j++) {
+                            max = Math.max(max, output[conv.getNeuronIndex() + (d*4 + r*2 + i)*5 + c*2 + j]);
+                        }
+                    }
+                    Assert.assertEquals(max, output[pool.getNeuronIndex() + (d*2 + r)*2 + c], 1e-12);
+                }
+            }
+        }
+    }
+
+    private double crossEntropy(BasicNetwork network, List<BasicData> data) {
+        double result = 0;
+        for(BasicData item: data) {
+            double[] output = network.computeRegression(item.getInput());
+            for(int i=0;i<output.length;i++) {
+                double y = item.getIdeal()[i];
+                result -= y*Math.log(output[i]) + (1-y)*Math.log(1-output[i]);
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void testGradient() {
+        BasicNetwork network = buildNetwork();
+        List<BasicData> data = TestConv2DLayer.buildData(5);
+
+        GradientCalc single = new GradientCalc(network, new CrossEntropyErrorFunction(), this);
+        for(BasicData item: data) {
+            single.process(new ErrorCalculationMSE(), item.getInput(), item.getIdeal());
+        }
+        GradientCalc batch = new GradientCalc(network, new CrossEntropyErrorFunction(), this);
+        batch.process(new ErrorCalculationMSE(), data);
+        Assert.assertArrayEquals(single.getGradients(), batch.getGradients(), 1e-12);
+
+        double[] w = network.getWeights();
+        for(int i=0;i<w.length;i++) {
+            double saved = w[i];
+            w[i] = saved + 1e-6;
+            double high = crossEntropy(network, data);
+            w[i] = saved - 1e-6;
+            double low = crossEntropy(network, data);
+            w[i] = saved;
+            Assert.assertEquals((high-low)/2e-6, single.getGradients()[i], 1e-5);
+        }
+    }
+
+    @Override
+    public double getL1() {
+        return 0;
+    }
+
+    @Override
+    public double getL2() {
+        return 0;
+    }
+}
@@ -0,0 +1,122 @@
+package com.heatonresearch.aifh.ann;
+
+import com.heatonresearch.aifh.AIFHError;
+import com.heatonresearch.aifh.ann.activation.ActivationReLU;
+import com.heatonresearch.aifh.ann.activation.ActivationSoftMax;
+import com.heatonresearch.aifh.ann.train.TestGradientCalc;
+import com.heatonresearch.aifh.general.data.BasicData;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+public class TestNetworkFile {
+
+    /**
+     * Not an activation function.  Its name is as long as ActivationReLU's, so it can be patched into a file.
+     */
+    public static class Untrusted {
+        static {
+            untrustedInitialized = true;
+        }
+    }
+
+    /**
+     * Set when Untrusted is initialized.  Kept outside Untrusted, since reading it there would initialize it.
+     */
+    private static boolean untrustedInitialized;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private BasicNetwork roundTrip(BasicNetwork network) throws IOException {
+        File file = folder.newFile("network.bin");
+        NetworkFile.save(network, file);
+        BasicNetwork result = NetworkFile.load(file);
+        Assert.assertArrayEquals(network.getWeights(), result.getWeights(), 0);
+        Assert.assertEquals(network.getLayers().size(), result.getLayers().size());
+        for(int i=0;i<network.getLayers().size();i++) {
+            Assert.assertEquals(network.getLayers().get(i).getClass(), result.getLayers().get(i).getClass());
+        }
+        return result;
+    }
+
+    @Test
+    public void testBasic() throws IOException {
+        BasicNetwork network = TestGradientCalc.buildNetwork();
+        BasicNetwork loaded = roundTrip(network);
+        for(BasicData item: TestGradientCalc.buildData(10)) {
+            Assert.assertArrayEquals(network.computeRegression(item.getInput()),
+                    loaded.computeRegression(item.getInput()), 0);
+        }
+    }
+
+    @Test
+    public void testConv() throws IOException {
+        BasicNetwork network = new BasicNetwork();
+        network.addLayer(new BasicLayer(null, true, new int[] {6, 6, 1}));
+        Conv2DLayer conv = new Conv2DLayer(new ActivationReLU(0.1, 0.1), 2, 3, 3);
+        conv.setPadding(1);
+        network.addLayer(conv);
+        network.addLayer(new MaxPoolLayer(2, 2));
+        network.addLayer(new DropoutLayer(new ActivationReLU(), true, 5, 0.25));
+        network.addLayer(new BasicLayer(new ActivationSoftMax(), false, 2));
+        network.finalizeStructure();
+        network.reset();
+
+        BasicNetwork loaded = roundTrip(network);
+        Conv2DLayer loadedConv = (Conv2DLayer) loaded.getLayers().get(1);
+        Assert.assertEquals(1, loadedConv.getPadding());
+        Assert.assertArrayEquals(conv.getActivation().getParams(), loadedConv.getActivation().getParams(), 0);
+        Assert.assertEquals(0.25, ((DropoutLayer) loaded.getLayers().get(3)).getDropout(), 0);
+
+        double[] input = new double[36];
+        for(int i=0;i<input.length;i++) {
+            input[i] = i/36.0;
+        }
+        Assert.assertArrayEquals(network.computeRegression(input), loaded.computeRegression(input), 0);
+    }
+
+    @Test
+    public void testNotActivation() throws IOException {
+        File file = folder.newFile("patched.bin");
+        NetworkFile.save(TestGradientCalc.buildNetwork(), file);
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        byte[] from = ActivationReLU.class.getName().getBytes(StandardCharsets.UTF_8);
+        byte[] to = Untrusted.class.getName().getBytes(StandardCharsets.UTF_8);
+        Assert.assertEquals(from.length, to.length);
+        int patched = 0;
+        for(int i=0;i+from.length<=bytes.length;i++) {
+            if( Arrays.equals(from, Arrays.copyOfRange(bytes, i, i+from.length)) ) {
+                System.arraycopy(to, 0, bytes, i, to.length);
+                patched++;
+            }
+        }
+        Assert.assertTrue(patched > 0);
+        Files.write(file.toPath(), bytes);
+
+        try {
+            NetworkFile.load(file);
+            Assert.fail("Loaded a class that is not an activation function.");
+        } catch(AIFHError ex) {
+            // the class was rejected before it was initialized
+            Assert.assertFalse(untrustedInitialized);
+        }
+    }
+
+    @Test(expected = AIFHError.class)
+    public void testNotNetwork() throws IOException {
+        File file = folder.newFile("other.bin");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[64]);
+        }
+        NetworkFile.load(file);
+    }
+}
@@ -0,0 +1,63 @@
+package com.heatonresearch.aifh.ann;
+
+import com.heatonresearch.aifh.AIFHError;
+import com.heatonresearch.aifh.ann.activation.ActivationReLU;
+import com.heatonresearch.aifh.ann.activation.ActivationSoftMax;
+import com.heatonresearch.aifh.ann.train.TestGradientCalc;
+import com.heatonresearch.aifh.general.data.BasicData;
+import com.heatonresearch.aifh.general.data.DataUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+public class TestQuantizedNetwork {
+
+    @Test
+    public void testCompute() {
+        BasicNetwork network = TestGradientCalc.buildNetwork();
+        QuantizedNetwork quantized = new QuantizedNetwork(network);
+        List<BasicData> data = TestGradientCalc.buildData(50);
+
+        double[][] input = new double[data.size()][];
+        double[][] output = new double[data.size()][3];
+        for(int i=0;i<data.size();i++) {
+            input[i] = data.get(i).getInput();
+        }
+        quantized.compute(input, output);
+
+        QuantizedNetwork.Session session = quantized.createSession();
+        double[] sessionOutput = new double[3];
+        for(int i=0;i<data.size();i++) {
+            double[] expected = network.computeRegression(input[i]);
+            Assert.assertArrayEquals(expected, output[i], 0.02);
+            Assert.assertArrayEquals(output[i], quantized.computeRegression(input[i]), 0);
+            session.compute(input[i], sessionOutput);
+            Assert.assertArrayEquals(output[i], sessionOutput, 0);
+        }
+
+        Assert.assertEquals(DataUtil.calculateClassificationError(data, quantized)
+                - DataUtil.calculateClassificationError(data, network),
+                quantized.calculateClassificationErrorDelta(network, data), 0);
+    }
+
+    @Test
+    public void testSize() {
+        BasicNetwork network = new BasicNetwork();
+        network.addLayer(new BasicLayer(null, true, 93));
+        network.addLayer(new BasicLayer(new ActivationReLU(), true, 256));
+        network.addLayer(new BasicLayer(new ActivationSoftMax(), false, 9));
+        network.finalizeStructure();
+        network.reset();
+
+        QuantizedNetwork quantized = new QuantizedNetwork(network);
+        Assert.assertEquals(network.getWeights().length, quantized.getLongTermMemory().length);
+        // bias weights stay as floats, so slightly less than 8 times smaller
+        Assert.assertTrue(quantized.getModelSize() * 7 < network.getWeights().length * 8);
+    }
+
+    @Test(expected = AIFHError.class)
+    public void testUnsupported() {
+        new QuantizedNetwork(TestConv2DLayer.buildNetwork());
+    }
+}
@@ -0,0 +1,90 @@
+package com.heatonresearch.aifh.ann;
+
+import com.heatonresearch.aifh.AIFHError;
+import com.heatonresearch.aifh.ann.activation.ActivationLinear;
+import com.heatonresearch.aifh.ann.activation.ActivationReLU;
+import com.heatonresearch.aifh.ann.train.TestGradientCalc;
+import com.heatonresearch.aifh.general.data.BasicData;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+public class TestSparseNetwork {
+
+    @Test
+    public void testUnpruned() {
+        BasicNetwork network = TestGradientCalc.buildNetwork();
+        SparseNetwork sparse = new SparseNetwork(network, 0);
+        Assert.assertEquals(0, sparse.getSparsity(), 0);
+        Assert.assertEquals(network.getWeights().length, sparse.getLongTermMemory().length);
+
+        for(BasicData item: TestGradientCalc.buildData(20)) {
+            Assert.assertArrayEquals(network.computeRegression(item.getInput()),
+                    sparse.computeRegression(item.getInput()), 1e-12);
+        }
+    }
+
+    @Test
+    public void testPrune() {
+        BasicNetwork network = TestGradientCalc.buildNetwork();
+        List<BasicData> data = TestGradientCalc.buildData(50);
+        double threshold = MagnitudePruning.calculateThreshold(network, 0.5);
+        SparseNetwork sparse = new SparseNetwork(network, threshold);
+
+        // the sparse copy does not modify the network
+        Assert.assertEquals(0, MagnitudePruning.calculateSparsity(network), 0);
+
+        double[] bias = network.getWeights().clone();
+        int pruned = MagnitudePruning.prune(network, threshold);
+        Assert.assertEquals(Math.round(MagnitudePruning.countPrunable(network) * 0.5), pruned);
+        Assert.assertEquals(0.5, MagnitudePruning.calculateSparsity(network), 0.01);
+        Assert.assertEquals(MagnitudePruning.calculateSparsity(network), sparse.getSparsity(), 0);
+        Assert.assertEquals(pruned + sparse.getNonZeroCount(), MagnitudePruning.countPrunable(network));
+
+        // bias weights of the output layer are never pruned
+        Layer output = network.getLayers().get(3);
+        for(int x=0;x<output.getCount();x++) {
+            int wi = output.getWeightIndex() + x*7 + 6;
+            Assert.assertEquals(bias[wi], network.getWeights()[wi], 0);
+        }
+
+        SparseNetwork.Session session = sparse.createSession();
+        double[][] input = new double[data.size()][];
+        double[][] batchOutput = new double[data.size()][3];
+        double[] sessionOutput = new double[3];
+        for(int i=0;i<data.size();i++) {
+            input[i] = data.get(i).getInput();
+        }
+        sparse.compute(input, batchOutput);
+        for(int i=0;i<data.size();i++) {
+            Assert.assertArrayEquals(network.computeRegression(input[i]), sparse.computeRegression(input[i]), 1e-12);
+            Assert.assertArrayEquals(batchOutput[i], sparse.computeRegression(input[i]), 0);
+            session.compute(input[i], sessionOutput);
+            Assert.assertArrayEquals(batchOutput[i], sessionOutput, 0);
+        }
+    }
+
+    @Test(expected = AIFHError.class)
+    public void testUnsupported() {
+        new SparseNetwork(TestConv2DLayer.buildNetwork(), 0);
+    }
+
+    @Test
+    public void testSubclass() {
+        BasicNetwork network = new BasicNetwork();
+        network.addLayer(new BasicLayer(null, true, 5));
+        network.addLayer(new DropoutLayer(new ActivationReLU(), true, 6, 0.5));
+        network.addLayer(new BasicLayer(new ActivationLinear(), false, 3));
+        network.finalizeStructure();
+
+        // the same layers are pruned as SparseNetwork and QuantizedNetwork support, only the output layer here
+        Assert.assertEquals(3 * 6, MagnitudePruning.countPrunable(network));
+        try {
+            new SparseNetwork(network, 0);
+            Assert.fail("A subclass of BasicLayer is not supported");
+        } catch(AIFHError ex) {
+            // expected
+        }
+    }
+}
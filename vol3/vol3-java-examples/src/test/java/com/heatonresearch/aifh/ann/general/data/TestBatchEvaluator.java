@@ -0,0 +1,46 @@
+package com.heatonresearch.aifh.ann.general.data;
+
+import com.heatonresearch.aifh.ann.BasicNetwork;
+import com.heatonresearch.aifh.ann.train.TestGradientCalc;
+import com.heatonresearch.aifh.error.ErrorCalculationMSE;
+import com.heatonresearch.aifh.error.ErrorCalculationSSE;
+import com.heatonresearch.aifh.general.data.BasicData;
+import com.heatonresearch.aifh.general.data.BatchEvaluator;
+import com.heatonresearch.aifh.general.data.DataSourceList;
+import com.heatonresearch.aifh.general.data.DataUtil;
+import com.heatonresearch.aifh.general.data.ListDataSource;
+import com.heatonresearch.aifh.general.data.SparseBasicData;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+public class TestBatchEvaluator {
+
+    @Test
+    public void testMatchesDataUtil() {
+        BasicNetwork network = TestGradientCalc.buildNetwork();
+        // more rows than a batch holds, split over several threads
+        List<BasicData> data = TestGradientCalc.buildData(301);
+
+        for(int threads = 1; threads <= 4; threads+=3) {
+            BatchEvaluator evaluator = new BatchEvaluator(network, threads);
+            Assert.assertEquals(DataUtil.calculateClassificationError(data, network),
+                    evaluator.calculateClassificationError(data), 0);
+            Assert.assertEquals(DataUtil.calculateRegressionError(data, network, new ErrorCalculationMSE()),
+                    evaluator.calculateRegressionError(data, new ErrorCalculationMSE()), 1e-12);
+            Assert.assertEquals(DataUtil.calculateRegressionError(data, network, new ErrorCalculationSSE()),
+                    evaluator.calculateRegressionError(data, new ErrorCalculationSSE()), 1e-9);
+            // sparse rows score the same as dense
+            Assert.assertEquals(DataUtil.calculateClassificationError(data, network),
+                    evaluator.calculateClassificationError(SparseBasicData.convert(data)), 0);
+            // rows of a data source are read straight into the batch
+            List<BasicData> view = new DataSourceList(new ListDataSource(data));
+            Assert.assertEquals(DataUtil.calculateClassificationError(data, network),
+                    evaluator.calculateClassificationError(view), 0);
+            Assert.assertEquals(DataUtil.calculateRegressionError(data, network, new ErrorCalculationMSE()),
+                    evaluator.calculateRegressionError(view, new ErrorCalculationMSE()), 1e-12);
+            evaluator.shutdown();
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.heatonresearch.aifh.ann.general.data;
+
+import com.heatonresearch.aifh.AIFHError;
+import com.heatonresearch.aifh.ann.BasicNetwork;
+import com.heatonresearch.aifh.ann.train.BackPropagation;
+import com.heatonresearch.aifh.ann.train.ResilientPropagation;
+import com.heatonresearch.aifh.ann.train.TestGradientCalc;
+import com.heatonresearch.aifh.general.data.BasicData;
+import com.heatonresearch.aifh.general.data.BatchEvaluator;
+import com.heatonresearch.aifh.general.data.BinaryDataWriter;
+import com.heatonresearch.aifh.general.data.DataSource;
+import com.heatonresearch.aifh.general.data.DataSourceList;
+import com.heatonresearch.aifh.general.data.DataUtil;
+import com.heatonresearch.aifh.general.data.ListDataSource;
+import com.heatonresearch.aifh.general.data.MappedDataSource;
+import com.heatonresearch.aifh.randomize.MersenneTwisterGenerateRandom;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestMappedDataSource {
+
+    /**
+     * Counts the rows read whole, which is how DataSourceList.get reads them.
+     */
+    public static class CountingSource implements DataSource {
+        private final DataSource source;
+        private final AtomicInteger readCount = new AtomicInteger();
+
+        public CountingSource(DataSource theSource) {
+            this.source = theSource;
+        }
+
+        public int getReadCount() {
+            return this.readCount.get();
+        }
+
+        @Override
+        public int size() {
+            return this.source.size();
+        }
+
+        @Override
+        public int getInputCount() {
+            return this.source.getInputCount();
+        }
+
+        @Override
+        public int getIdealCount() {
+            return this.source.getIdealCount();
+        }
+
+        @Override
+        public void read(int index, double[] input, double[] ideal) {
+            this.readCount.incrementAndGet();
+            this.source.read(index, input, ideal);
+        }
+
+        @Override
+        public void readInput(int index, double[] target, int offset) {
+            this.source.readInput(index, target, offset);
+        }
+
+        @Override
+        public void readIdeal(int index, double[] target, int offset) {
+            this.source.readIdeal(index, target, offset);
+        }
+
+        @Override
+        public void readBatch(int start, int count, double[] input, double[] ideal) {
+            this.source.readBatch(start, count, input, ideal);
+        }
+    }
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRead() throws IOException {
+        List<BasicData> data = TestGradientCalc.buildData(100);
+        File file = folder.newFile("data.bin");
+        BinaryDataWriter.save(file, data, false);
+
+        MappedDataSource source = new MappedDataSource(file);
+        Assert.assertEquals(100, source.size());
+        Assert.assertEquals(data.get(0).getInput().length, source.getInputCount());
+        Assert.assertEquals(data.get(0).getIdeal().length, source.getIdealCount());
+
+        List<BasicData> list = new DataSourceList(source);
+        for (int i = 0; i < data.size(); i++) {
+            Assert.assertArrayEquals(data.get(i).getInput(), list.get(i).getInput(), 0);
+            Assert.assertArrayEquals(data.get(i).getIdeal(), list.get(i).getIdeal(), 0);
+        }
+
+        // a batch holds the rows one after the other, the same from any source
+        double[] input = new double[10 * source.getInputCount()];
+        double[] ideal = new double[10 * source.getIdealCount()];
+        double[] expectedInput = new double[input.length];
+        double[] expectedIdeal = new double[ideal.length];
+        source.readBatch(45, 10, input, ideal);
+        new ListDataSource(data).readBatch(45, 10, expectedInput, expectedIdeal);
+        Assert.assertArrayEquals(expectedInput, input, 0);
+        Assert.assertArrayEquals(expectedIdeal, ideal, 0);
+
+        // a single row can be read to any position
+        double[] target = new double[source.getInputCount() + 3];
+        source.readInput(7, target, 3);
+        for (int i = 0; i < source.getInputCount(); i++) {
+            Assert.assertEquals(data.get(7).getInput()[i], target[i + 3], 0);
+        }
+        target = new double[source.getIdealCount() + 2];
+        source.readIdeal(7, target, 2);
+        for (int i = 0; i < source.getIdealCount(); i++) {
+            Assert.assertEquals(data.get(7).getIdeal()[i], target[i + 2], 0);
+        }
+    }
+
+    @Test
+    public void testSinglePrecision() throws IOException {
+        List<BasicData> data = TestGradientCalc.buildData(20);
+        File file = folder.newFile("data.bin");
+        BinaryDataWriter.save(file, data, true);
+        // the header plus four bytes per value
+        int rowSize = data.get(0).getInput().length + data.get(0).getIdeal().length;
+        Assert.assertEquals(BinaryDataWriter.HEADER_SIZE + 20 * rowSize * 4, file.length());
+
+        MappedDataSource source = new MappedDataSource(file);
+        Assert.assertTrue(source.isSinglePrecision());
+        List<BasicData> list = new DataSourceList(source);
+        for (int i = 0; i < data.size(); i++) {
+            Assert.assertArrayEquals(data.get(i).getInput(), list.get(i).getInput(), 1e-6);
+        }
+    }
+
+    @Test
+    public void testTrain() throws IOException {
+        List<BasicData> data = TestGradientCalc.buildData(100);
+        File file = folder.newFile("data.bin");
+        BinaryDataWriter.save(file, data, false);
+
+        BasicNetwork expected = TestGradientCalc.buildNetwork();
+        BasicNetwork network = TestGradientCalc.buildNetwork();
+        ResilientPropagation train1 = new ResilientPropagation(expected, data);
+        CountingSource source = new CountingSource(new MappedDataSource(file));
+        ResilientPropagation train2 = new ResilientPropagation(network, new DataSourceList(source));
+        for (int i = 0; i < 5; i++) {
+            train1.iteration();
+            train2.iteration();
+        }
+        Assert.assertArrayEquals(expected.getWeights(), network.getWeights(), 0);
+        // the rows were read straight into the batch buffers, no BasicData was built
+        Assert.assertEquals(0, source.getReadCount());
+
+        BatchEvaluator evaluator = new BatchEvaluator(network, 2);
+        Assert.assertEquals(DataUtil.calculateClassificationError(data, network),
+                evaluator.calculateClassificationError(new DataSourceList(source)), 0);
+        evaluator.shutdown();
+        Assert.assertEquals(0, source.getReadCount());
+    }
+
+    @Test
+    public void testOnlineBatches() throws IOException {
+        List<BasicData> data = TestGradientCalc.buildData(100);
+        File file = folder.newFile("data.bin");
+        BinaryDataWriter.save(file, data, false);
+        CountingSource source = new CountingSource(new MappedDataSource(file));
+
+        // a list over an array of rows
+        List<BasicData> rows = new DataSourceList(source, new int[] {5, 2, 9}, 2);
+        Assert.assertEquals(2, rows.size());
+        Assert.assertArrayEquals(data.get(2).getInput(), rows.get(1).getInput(), 0);
+        Assert.assertArrayEquals(data.get(5).getIdeal(), rows.subList(0, 1).get(0).getIdeal(), 0);
+
+        for (int stochastic = 0; stochastic < 2; stochastic++) {
+            BasicNetwork expected = TestGradientCalc.buildNetwork();
+            BasicNetwork network = TestGradientCalc.buildNetwork();
+            // a range of the source, so the batch rows are mapped twice
+            BackPropagation train1 = new BackPropagation(expected, data.subList(10, 90), 0.1, 0.9);
+            BackPropagation train2 = new BackPropagation(network, new DataSourceList(source).subList(10, 90),
+                    0.1, 0.9);
+            train1.setBatchSize(15);
+            train2.setBatchSize(15);
+            train1.setStochastic(stochastic == 0 ? null : new MersenneTwisterGenerateRandom(3));
+            train2.setStochastic(stochastic == 0 ? null : new MersenneTwisterGenerateRandom(3));
+            source.readCount.set(0);
+            for (int i = 0; i < 12; i++) {
+                train1.iteration();
+                train2.iteration();
+            }
+            Assert.assertArrayEquals(expected.getWeights(), network.getWeights(), 0);
+            Assert.assertEquals(0, source.getReadCount());
+        }
+    }
+
+    @Test(expected = AIFHError.class)
+    public void testTruncated() throws IOException {
+        File file = folder.newFile("data.bin");
+        BinaryDataWriter.save(file, TestGradientCalc.buildData(10), false);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(file.length() - 8);
+        }
+        new MappedDataSource(file);
+    }
+}
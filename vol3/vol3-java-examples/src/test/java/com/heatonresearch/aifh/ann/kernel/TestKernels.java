@@ -0,0 +1,186 @@
+package com.heatonresearch.aifh.ann.kernel;
+
+import com.heatonresearch.aifh.AIFHError;
+import com.heatonresearch.aifh.ann.BasicNetwork;
+import com.heatonresearch.aifh.ann.train.GradientCalc;
+import com.heatonresearch.aifh.ann.train.GradientCalcOwner;
+import com.heatonresearch.aifh.ann.train.TestGradientCalc;
+import com.heatonresearch.aifh.ann.train.error.CrossEntropyErrorFunction;
+import com.heatonresearch.aifh.error.ErrorCalculationMSE;
+import com.heatonresearch.aifh.general.data.BasicData;
+import com.heatonresearch.aifh.randomize.GenerateRandom;
+import com.heatonresearch.aifh.randomize.LinearCongruentialRandom;
+import org.encog.mathutil.BoundMath;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+public class TestKernels implements GradientCalcOwner {
+
+    /**
+     * Counts the calls that the batch calculation makes.
+     */
+    private static class CountingKernels extends UnrolledKernels {
+        private int dot4Count;
+        private int axpyCount;
+
+        @Override
+        public void dot4(double[] a, int aIndex, double[] b, int bIndex, int bStride, int length, double[] result) {
+            this.dot4Count++;
+            super.dot4(a, aIndex, b, bIndex, bStride, length, result);
+        }
+
+        @Override
+        public void axpy(double alpha, double[] x, int xIndex, double[] y, int yIndex, int length) {
+            this.axpyCount++;
+            super.axpy(alpha, x, xIndex, y, yIndex, length);
+        }
+    }
+
+    private static final int LENGTH = 103;
+
+    private static double[] buildVector(long seed) {
+        GenerateRandom rnd = new LinearCongruentialRandom(seed);
+        double[] result = new double[LENGTH];
+        for(int i=0;i<result.length;i++) {
+            result[i] = rnd.nextDouble(-5,5);
+        }
+        return result;
+    }
+
+    private void checkKernels(VectorKernels kernels, double tolerance) {
+        double[] a = buildVector(1);
+        double[] b = buildVector(2);
+
+        // dot, at an offset and with a length that is not a multiple of four
+        double expected = 0;
+        for(int i=0;i<97;i++) {
+            expected += a[i+3] * b[i+5];
+        }
+        Assert.assertEquals(expected, kernels.dot(a, 3, b, 5, 97), tolerance);
+
+        // dot4, four vectors of b that are 5 apart
+        double[] result = new double[4];
+        kernels.dot4(a, 1, b, 2, 5, 81, result);
+        for(int r=0;r<4;r++) {
+            expected = 0;
+            for(int i=0;i<81;i++) {
+                expected += a[i+1] * b[i+2+r*5];
+            }
+            Assert.assertEquals(expected, result[r], tolerance);
+        }
+
+        // axpy
+        double[] y = buildVector(7);
+        double[] yRef = y.clone();
+        for(int i=0;i<90;i++) {
+            yRef[i+10] += -0.75 * a[i+4];
+        }
+        kernels.axpy(-0.75, a, 4, y, 10, 90);
+        Assert.assertArrayEquals(yRef, y, tolerance);
+
+        // relu, default and custom thresholds
+        for(double[] param: new double[][] {{0,0},{0.5,-1}}) {
+            double[] x = buildVector(3);
+            double[] ref = x.clone();
+            for(int i=2;i<LENGTH-1;i++) {
+                if( ref[i]<=param[0] ) {
+                    ref[i] = param[1];
+                }
+            }
+            kernels.relu(x, 2, LENGTH-3, param[0], param[1]);
+            Assert.assertArrayEquals(ref, x, 0);
+        }
+
+        // sigmoid
+        double[] x = buildVector(4);
+        double[] ref = x.clone();
+        for(int i=1;i<LENGTH;i++) {
+            ref[i] = 1.0 / (1.0 + BoundMath.exp(-1 * ref[i]));
+        }
+        kernels.sigmoid(x, 1, LENGTH-1);
+        Assert.assertArrayEquals(ref, x, tolerance);
+
+        // tanh
+        x = buildVector(5);
+        ref = x.clone();
+        for(int i=0;i<LENGTH;i++) {
+            ref[i] = Math.tanh(ref[i]);
+        }
+        kernels.tanh(x, 0, LENGTH);
+        Assert.assertArrayEquals(ref, x, tolerance);
+
+        // softmax
+        x = buildVector(6);
+        ref = x.clone();
+        double sum = 0;
+        for(int i=4;i<14;i++) {
+            ref[i] = BoundMath.exp(ref[i]);
+            sum+=ref[i];
+        }
+        for(int i=4;i<14;i++) {
+            ref[i]/=sum;
+        }
+        kernels.softmax(x, 4, 10);
+        Assert.assertArrayEquals(ref, x, tolerance);
+    }
+
+    @Test
+    public void testScalar() {
+        checkKernels(new ScalarKernels(), 0);
+    }
+
+    @Test
+    public void testUnrolled() {
+        checkKernels(new UnrolledKernels(), 1e-12);
+    }
+
+    @Test
+    public void testGradientCalcUsesKernels() {
+        BasicNetwork network = TestGradientCalc.buildNetwork();
+        List<BasicData> data = TestGradientCalc.buildData(70);
+
+        GradientCalc scalar = new GradientCalc(network, new CrossEntropyErrorFunction(), this);
+        CountingKernels counting = new CountingKernels();
+        VectorKernels previous = Kernels.get();
+        Kernels.set(new ScalarKernels());
+        try {
+            scalar.process(new ErrorCalculationMSE(), data);
+            Kernels.set(counting);
+            GradientCalc calc = new GradientCalc(network, new CrossEntropyErrorFunction(), this);
+            calc.process(new ErrorCalculationMSE(), data);
+            Assert.assertArrayEquals(scalar.getGradients(), calc.getGradients(), 1e-10);
+        } finally {
+            Kernels.set(previous);
+        }
+
+        // both the forward (blocked) and backward passes went through the kernels
+        Assert.assertTrue(counting.dot4Count > 0);
+        Assert.assertTrue(counting.axpyCount > 0);
+    }
+
+    @Test
+    public void testSelection() {
+        Assert.assertEquals(ScalarKernels.class, Kernels.create(null).getClass());
+        Assert.assertEquals(UnrolledKernels.class, Kernels.create("unrolled").getClass());
+        Assert.assertEquals(UnrolledKernels.class, Kernels.create(UnrolledKernels.class.getName()).getClass());
+        // a back end that is not available falls back to the scalar kernels
+        Assert.assertEquals(ScalarKernels.class, Kernels.create("com.example.MissingKernels").getClass());
+    }
+
+    @Test(expected = AIFHError.class)
+    public void testSelectionNotKernels() {
+        Kernels.create(String.class.getName());
+    }
+
+    @Override
+    public double getL1() {
+        return 0;
+    }
+
+    @Override
+    public double getL2() {
+        return 0;
+    }
+}
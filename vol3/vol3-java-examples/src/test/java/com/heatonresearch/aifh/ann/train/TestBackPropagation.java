@@ -3,6 +3,9 @@ package com.heatonresearch.aifh.ann.train;
 import com.heatonresearch.aifh.ann.BasicNetwork;
 import com.heatonresearch.aifh.ann.TestBasicNetwork;
 import com.heatonresearch.aifh.general.data.BasicData;
+import com.heatonresearch.aifh.learning.LearningMethod;
+import com.heatonresearch.aifh.learning.TrainingListener;
+import com.heatonresearch.aifh.learning.TrainingMetrics;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -46,4 +49,31 @@ public class TestBackPropagation {
 
 
     }
+
+    @Test
+    public void testMetrics() {
+        BasicNetwork network = TestBasicNetwork.buildSimpleXOR();
+        List<BasicData> trainingData = BasicData.combineXY(XOR_INPUT, XOR_IDEAL);
+        final BackPropagation train = new BackPropagation(network, trainingData, 0.7, 0.9);
+        final int[] calls = new int[1];
+        train.getMetrics().addListener(new TrainingListener() {
+            @Override
+            public void iterationComplete(LearningMethod method, TrainingMetrics metrics) {
+                Assert.assertSame(train, method);
+                Assert.assertEquals(++calls[0], metrics.getIterationCount());
+            }
+        });
+
+        for(int i=0;i<5;i++) {
+            train.iteration();
+        }
+
+        TrainingMetrics metrics = train.getMetrics();
+        Assert.assertEquals(5, calls[0]);
+        Assert.assertEquals(20, metrics.getSampleCount());
+        Assert.assertTrue(metrics.getForwardTime() > 0);
+        Assert.assertTrue(metrics.getBackwardTime() > 0);
+        Assert.assertTrue(metrics.getIterationTime() >= metrics.getForwardTime() + metrics.getBackwardTime());
+        Assert.assertTrue(metrics.getSamplesPerSecond() > 0);
+    }
 }
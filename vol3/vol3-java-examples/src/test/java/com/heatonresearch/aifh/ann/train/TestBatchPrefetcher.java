@@ -0,0 +1,53 @@
+package com.heatonresearch.aifh.ann.train;
+
+import com.heatonresearch.aifh.AIFHError;
+import com.heatonresearch.aifh.ann.BasicNetwork;
+import com.heatonresearch.aifh.general.data.BasicData;
+import com.heatonresearch.aifh.randomize.LinearCongruentialRandom;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+public class TestBatchPrefetcher {
+
+    @Test
+    public void testBatches() {
+        final List<BasicData> data = TestGradientCalc.buildData(20);
+        final Thread trainer = Thread.currentThread();
+        BatchPrefetcher prefetcher = new BatchPrefetcher(data, 7, new LinearCongruentialRandom(1), 2) {
+            @Override
+            protected BasicData prepare(BasicData element) {
+                Assert.assertNotSame(trainer, Thread.currentThread());
+                return element;
+            }
+        };
+
+        for(int i=0;i<10;i++) {
+            List<BasicData> batch = prefetcher.next();
+            Assert.assertEquals(7, batch.size());
+            Assert.assertTrue(data.containsAll(batch));
+        }
+        prefetcher.shutdown();
+
+        try {
+            prefetcher.next();
+            Assert.fail("The prefetcher should be shut down.");
+        } catch(AIFHError ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testBackPropagation() {
+        BasicNetwork network = TestGradientCalc.buildNetwork();
+        BackPropagation train = new BackPropagation(network, TestGradientCalc.buildData(100), 0.01, 0.9);
+        train.setBatchSize(10);
+        train.setPrefetchDepth(3);
+        for(int i=0;i<20;i++) {
+            train.iteration();
+        }
+        Assert.assertEquals(200, train.getMetrics().getSampleCount());
+        train.finishTraining();
+    }
+}
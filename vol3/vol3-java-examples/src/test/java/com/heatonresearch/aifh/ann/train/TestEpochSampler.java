@@ -0,0 +1,58 @@
+package com.heatonresearch.aifh.ann.train;
+
+import com.heatonresearch.aifh.ann.BasicNetwork;
+import com.heatonresearch.aifh.randomize.LinearCongruentialRandom;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestEpochSampler {
+
+    @Test
+    public void testEpoch() {
+        EpochSampler sampler = new EpochSampler(10, new LinearCongruentialRandom(5));
+        int[] indexes = new int[5];
+        int[] seen = new int[10];
+        for(int batch=0;batch<2;batch++) {
+            sampler.next(indexes, 5);
+            for(int i=0;i<5;i++) {
+                if( i>0 ) {
+                    Assert.assertTrue(indexes[i-1] < indexes[i]);
+                }
+                seen[indexes[i]]++;
+            }
+        }
+        // every row exactly once in the first epoch
+        for(int count: seen) {
+            Assert.assertEquals(1, count);
+        }
+        Assert.assertEquals(0, sampler.getEpoch());
+        sampler.next(indexes, 3);
+        Assert.assertEquals(1, sampler.getEpoch());
+    }
+
+    @Test
+    public void testDeterministic() {
+        EpochSampler a = new EpochSampler(50, new LinearCongruentialRandom(7));
+        EpochSampler b = new EpochSampler(50, new LinearCongruentialRandom(7));
+        int[] ia = new int[20];
+        int[] ib = new int[20];
+        for(int i=0;i<10;i++) {
+            a.next(ia, 20);
+            b.next(ib, 20);
+            Assert.assertArrayEquals(ia, ib);
+        }
+    }
+
+    @Test
+    public void testSequentialWraps() {
+        BasicNetwork network = TestGradientCalc.buildNetwork();
+        // 7 does not divide 20, the old code ran off the end of the training set
+        BackPropagation train = new BackPropagation(network, TestGradientCalc.buildData(20), 0.01, 0.9);
+        train.setStochastic(null);
+        train.setBatchSize(7);
+        for(int i=0;i<10;i++) {
+            train.iteration();
+        }
+        Assert.assertEquals(70, train.getMetrics().getSampleCount());
+    }
+}
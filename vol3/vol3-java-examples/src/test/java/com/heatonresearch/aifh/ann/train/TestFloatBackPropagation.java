@@ -0,0 +1,102 @@
+package com.heatonresearch.aifh.ann.train;
+
+import com.heatonresearch.aifh.ann.BasicNetwork;
+import com.heatonresearch.aifh.ann.FloatNetwork;
+import com.heatonresearch.aifh.ann.TestBasicNetwork;
+import com.heatonresearch.aifh.ann.train.error.CrossEntropyErrorFunction;
+import com.heatonresearch.aifh.error.ErrorCalculationMSE;
+import com.heatonresearch.aifh.general.data.BasicData;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+public class TestFloatBackPropagation implements GradientCalcOwner {
+
+    @Test
+    public void testComputeMatchesDouble() {
+        BasicNetwork network = TestGradientCalc.buildNetwork();
+        FloatNetwork floatNetwork = new FloatNetwork(network);
+        double[] expected = new double[3];
+        double[] actual = new double[3];
+
+        for(BasicData item: TestGradientCalc.buildData(10)) {
+            network.compute(item.getInput(), expected);
+            floatNetwork.compute(item.getInput(), actual);
+            Assert.assertArrayEquals(expected, actual, 1e-5);
+        }
+    }
+
+    @Test
+    public void testGradientsMatchDouble() {
+        BasicNetwork network = TestGradientCalc.buildNetwork();
+        List<BasicData> data = TestGradientCalc.buildData(70);
+
+        GradientCalc calc = new GradientCalc(network, new CrossEntropyErrorFunction(), this);
+        calc.process(new ErrorCalculationMSE(), data);
+
+        FloatGradientCalc floatCalc = new FloatGradientCalc(new FloatNetwork(network),
+                new CrossEntropyErrorFunction(), this);
+        floatCalc.process(new ErrorCalculationMSE(), data);
+
+        for(int i=0;i<calc.getGradients().length;i++) {
+            Assert.assertEquals(calc.getGradients()[i], floatCalc.getGradients()[i], 1e-4);
+        }
+    }
+
+    @Test
+    public void testXOR() {
+        BasicNetwork network = TestBasicNetwork.buildSimpleXOR();
+        List<BasicData> trainingData = BasicData.combineXY(TestBackPropagation.XOR_INPUT,
+                TestBackPropagation.XOR_IDEAL);
+        FloatBackPropagation train = new FloatBackPropagation(network, trainingData, 0.7, 0.9);
+
+        int epoch = 0;
+        do {
+            train.iteration();
+            epoch++;
+        } while(train.getLastError() > 0.01 && epoch<1000);
+        Assert.assertTrue(train.getLastError() <= 0.01);
+
+        // the trained weights are copied back into the double network after each iteration
+        double[] output = new double[1];
+        for(int i=0;i<TestBackPropagation.XOR_INPUT.length;i++) {
+            network.compute(TestBackPropagation.XOR_INPUT[i], output);
+            Assert.assertEquals(TestBackPropagation.XOR_IDEAL[i][0], output[0], 0.25);
+        }
+    }
+
+    @Test
+    public void testSequentialBatches() {
+        // 10 rows in batches of 3, the batches wrap around the end of the training set
+        List<BasicData> data = TestGradientCalc.buildData(10);
+        BasicNetwork network = TestGradientCalc.buildNetwork();
+        BasicNetwork floatTrained = TestGradientCalc.buildNetwork();
+
+        BackPropagation train = new BackPropagation(network, data, 0.01, 0.9);
+        train.setBatchSize(3);
+        train.setStochastic(null);
+        FloatBackPropagation floatTrain = new FloatBackPropagation(floatTrained, data, 0.01, 0.9);
+        floatTrain.setBatchSize(3);
+        floatTrain.setStochastic(null);
+
+        // the double network is current after every iteration, without finishTraining
+        for(int i=0;i<10;i++) {
+            train.iteration();
+            floatTrain.iteration();
+            Assert.assertArrayEquals(network.getWeights(), floatTrained.getWeights(), 1e-4);
+        }
+        train.finishTraining();
+        floatTrain.finishTraining();
+    }
+
+    @Override
+    public double getL1() {
+        return 0;
+    }
+
+    @Override
+    public double getL2() {
+        return 0;
+    }
+}
@@ -0,0 +1,157 @@
+package com.heatonresearch.aifh.ann.train;
+
+import com.heatonresearch.aifh.ann.BasicLayer;
+import com.heatonresearch.aifh.ann.BasicNetwork;
+import com.heatonresearch.aifh.ann.activation.ActivationReLU;
+import com.heatonresearch.aifh.ann.activation.ActivationSigmoid;
+import com.heatonresearch.aifh.ann.activation.ActivationSoftMax;
+import com.heatonresearch.aifh.ann.randomize.RangeRandomizeNetwork;
+import com.heatonresearch.aifh.ann.train.error.CrossEntropyErrorFunction;
+import com.heatonresearch.aifh.error.ErrorCalculationMSE;
+import com.heatonresearch.aifh.general.data.BasicData;
+import com.heatonresearch.aifh.general.data.SparseBasicData;
+import com.heatonresearch.aifh.randomize.GenerateRandom;
+import com.heatonresearch.aifh.randomize.LinearCongruentialRandom;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class TestGradientCalc implements GradientCalcOwner {
+
+    public static BasicNetwork buildNetwork() {
+        BasicNetwork network = new BasicNetwork();
+        network.addLayer(new BasicLayer(null,true,5));
+        network.addLayer(new BasicLayer(new ActivationReLU(),true,7));
+        network.addLayer(new BasicLayer(new ActivationSigmoid(),true,6));
+        network.addLayer(new BasicLayer(new ActivationSoftMax(),false,3));
+        network.finalizeStructure();
+
+        RangeRandomizeNetwork randomize = new RangeRandomizeNetwork();
+        randomize.setRnd(new LinearCongruentialRandom(10));
+        randomize.randomize(network);
+        return network;
+    }
+
+    public static List<BasicData> buildData(int count) {
+        GenerateRandom rnd = new LinearCongruentialRandom(42);
+        List<BasicData> result = new ArrayList<>();
+        for(int i=0;i<count;i++) {
+            BasicData item = new BasicData(5,3);
+            for(int j=0;j<5;j++) {
+                item.getInput()[j] = rnd.nextDouble(-1,1);
+            }
+            item.getIdeal()[rnd.nextInt(3)] = 1.0;
+            result.add(item);
+        }
+        return result;
+    }
+
+    @Test
+    public void testBatchMatchesSingle() {
+        BasicNetwork network = buildNetwork();
+        // more rows than a single batch holds, and not a multiple of four
+        List<BasicData> data = buildData(70);
+
+        GradientCalc single = new GradientCalc(network, new CrossEntropyErrorFunction(), this);
+        ErrorCalculationMSE singleError = new ErrorCalculationMSE();
+        for(BasicData item: data) {
+            single.process(singleError, item.getInput(), item.getIdeal());
+        }
+
+        GradientCalc batch = new GradientCalc(network, new CrossEntropyErrorFunction(), this);
+        ErrorCalculationMSE batchError = new ErrorCalculationMSE();
+        batch.process(batchError, data);
+
+        Assert.assertArrayEquals(single.getGradients(), batch.getGradients(), 1e-12);
+        Assert.assertEquals(singleError.calculate(), batchError.calculate(), 1e-12);
+    }
+
+    @Test
+    public void testParallelMatchesSingle() {
+        BasicNetwork network = buildNetwork();
+        List<BasicData> data = buildData(70);
+
+        GradientCalc single = new GradientCalc(network, new CrossEntropyErrorFunction(), this);
+        ErrorCalculationMSE singleError = new ErrorCalculationMSE();
+        single.process(singleError, data);
+
+        GradientCalc target = new GradientCalc(network, new CrossEntropyErrorFunction(), this);
+        ErrorCalculationMSE parallelError = new ErrorCalculationMSE();
+        ParallelGradientCalc parallel = new ParallelGradientCalc(network, new CrossEntropyErrorFunction(), this,
+                parallelError, 3);
+        parallel.process(target, parallelError, data);
+        parallel.shutdown();
+
+        Assert.assertArrayEquals(single.getGradients(), target.getGradients(), 1e-12);
+        Assert.assertEquals(singleError.calculate(), parallelError.calculate(), 1e-12);
+    }
+
+    @Test
+    public void testSparseMatchesDense() {
+        BasicNetwork network = buildNetwork();
+        List<BasicData> data = buildData(70);
+        // mostly zero inputs, every third element is left dense so the batches mix both kinds of row
+        for(int i=0;i<data.size();i++) {
+            double[] input = data.get(i).getInput();
+            for(int j=0;j<input.length;j++) {
+                if( (i+j)%3!=0 ) {
+                    input[j] = 0;
+                }
+            }
+        }
+        List<BasicData> sparse = SparseBasicData.convert(data);
+        for(int i=0;i<sparse.size();i+=3) {
+            sparse.set(i, data.get(i));
+        }
+        Assert.assertArrayEquals(data.get(1).getInput(), sparse.get(1).getInput(), 0);
+
+        GradientCalc dense = new GradientCalc(network, new CrossEntropyErrorFunction(), this);
+        ErrorCalculationMSE denseError = new ErrorCalculationMSE();
+        dense.process(denseError, data);
+
+        GradientCalc calc = new GradientCalc(network, new CrossEntropyErrorFunction(), this);
+        ErrorCalculationMSE sparseError = new ErrorCalculationMSE();
+        calc.process(sparseError, sparse);
+        // the same rows again, so that sparse rows replace sparse rows in the batch
+        calc.process(sparseError, sparse);
+        dense.process(denseError, data);
+
+        Assert.assertArrayEquals(dense.getGradients(), calc.getGradients(), 0);
+        Assert.assertEquals(denseError.calculate(), sparseError.calculate(), 0);
+    }
+
+    @Test
+    public void testRegularization() {
+        BasicNetwork network = buildNetwork();
+        GradientCalc calc = new GradientCalc(network, new CrossEntropyErrorFunction(), new GradientCalcOwner() {
+            @Override
+            public double getL1() {
+                return 0.1;
+            }
+
+            @Override
+            public double getL2() {
+                return 0.01;
+            }
+        });
+        calc.applyRegularization();
+
+        double[] weights = network.getWeights();
+        for(int i=0;i<weights.length;i++) {
+            double expected = 0.1*Math.signum(weights[i]) + 0.02*weights[i];
+            Assert.assertEquals(expected, calc.getGradients()[i], 1e-12);
+        }
+    }
+
+    @Override
+    public double getL1() {
+        return 0;
+    }
+
+    @Override
+    public double getL2() {
+        return 0;
+    }
+}
@@ -0,0 +1,131 @@
+package com.heatonresearch.aifh.ann.train;
+
+import com.heatonresearch.aifh.AIFHError;
+import com.heatonresearch.aifh.ann.BasicLayer;
+import com.heatonresearch.aifh.ann.BasicNetwork;
+import com.heatonresearch.aifh.ann.DropoutLayer;
+import com.heatonresearch.aifh.ann.activation.ActivationReLU;
+import com.heatonresearch.aifh.ann.activation.ActivationSoftMax;
+import com.heatonresearch.aifh.ann.randomize.XaiverRandomizeNetwork;
+import com.heatonresearch.aifh.general.data.BasicData;
+import com.heatonresearch.aifh.general.data.DataUtil;
+import com.heatonresearch.aifh.general.data.SparseBasicData;
+import com.heatonresearch.aifh.randomize.GenerateRandom;
+import com.heatonresearch.aifh.randomize.LinearCongruentialRandom;
+import com.heatonresearch.aifh.util.ArrayUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class TestHogwildPropagation {
+
+    /**
+     * A learnable problem, the class is the largest of the first three inputs.
+     */
+    private static List<BasicData> buildData(int count) {
+        GenerateRandom rnd = new LinearCongruentialRandom(42);
+        List<BasicData> result = new ArrayList<>();
+        for(int i=0;i<count;i++) {
+            BasicData item = new BasicData(5,3);
+            for(int j=0;j<5;j++) {
+                item.getInput()[j] = rnd.nextDouble(-1,1);
+            }
+            double[] first = new double[3];
+            System.arraycopy(item.getInput(), 0, first, 0, 3);
+            item.getIdeal()[ArrayUtil.indexOfLargest(first)] = 1.0;
+            result.add(item);
+        }
+        return result;
+    }
+
+    private static BasicNetwork buildNetwork() {
+        BasicNetwork network = new BasicNetwork();
+        network.addLayer(new BasicLayer(null,true,5));
+        network.addLayer(new BasicLayer(new ActivationReLU(),true,16));
+        network.addLayer(new BasicLayer(new ActivationSoftMax(),false,3));
+        network.finalizeStructure();
+
+        XaiverRandomizeNetwork randomize = new XaiverRandomizeNetwork();
+        randomize.setRnd(new LinearCongruentialRandom(10));
+        randomize.randomize(network);
+        return network;
+    }
+
+    /**
+     * Synchronous SGD, one row per batch and no momentum.
+     */
+    private static BasicNetwork trainSynchronous(List<BasicData> data, double rate, int epochs) {
+        BasicNetwork network = buildNetwork();
+        BackPropagation train = new BackPropagation(network, data, rate, 0);
+        train.setNesterovUpdate(false);
+        train.setBatchSize(1);
+        train.setStochastic(new LinearCongruentialRandom(11));
+        for(int i=0;i<epochs*data.size();i++) {
+            train.iteration();
+        }
+        train.finishTraining();
+        return network;
+    }
+
+    private static BasicNetwork trainHogwild(List<BasicData> data, double rate, int epochs, int threads) {
+        BasicNetwork network = buildNetwork();
+        HogwildPropagation train = new HogwildPropagation(network, data, rate);
+        train.setRnd(new LinearCongruentialRandom(11));
+        train.setThreadCount(threads);
+        for(int i=0;i<epochs;i++) {
+            train.iteration();
+        }
+        train.finishTraining();
+        Assert.assertEquals(epochs * data.size(), train.getMetrics().getSampleCount());
+        Assert.assertTrue(train.getMetrics().getForwardTime() > 0);
+        Assert.assertTrue(train.getMetrics().getUpdateTime() > 0);
+        return network;
+    }
+
+    @Test
+    public void testSingleThreadMatchesSynchronous() {
+        List<BasicData> data = buildData(100);
+        // one thread visits the rows in the same order as a synchronous epoch
+        BasicNetwork sync = trainSynchronous(data, 0.005, 3);
+        BasicNetwork hogwild = trainHogwild(data, 0.005, 3, 1);
+        Assert.assertArrayEquals(sync.getWeights(), hogwild.getWeights(), 0);
+    }
+
+    @Test
+    public void testSparseMatchesDense() {
+        List<BasicData> data = buildData(100);
+        // zero most of the inputs, so the sparse update only visits a few first layer weights
+        for(int i=0;i<data.size();i++) {
+            for(int j=0;j<5;j++) {
+                if( (i+j)%3!=0 ) {
+                    data.get(i).getInput()[j] = 0;
+                }
+            }
+        }
+        BasicNetwork dense = trainHogwild(data, 0.005, 3, 1);
+        BasicNetwork sparse = trainHogwild(SparseBasicData.convert(data), 0.005, 3, 1);
+        Assert.assertArrayEquals(dense.getWeights(), sparse.getWeights(), 1e-10);
+    }
+
+    @Test
+    public void testConvergence() {
+        List<BasicData> data = buildData(500);
+        double syncWrong = DataUtil.calculateClassificationError(data, trainSynchronous(data, 0.005, 30));
+        double hogwildWrong = DataUtil.calculateClassificationError(data, trainHogwild(data, 0.005, 30, 4));
+        Assert.assertTrue(syncWrong < 0.05);
+        // the threads race, so allow a little slack
+        Assert.assertTrue(hogwildWrong < syncWrong + 0.02);
+    }
+
+    @Test(expected = AIFHError.class)
+    public void testDropout() {
+        BasicNetwork network = new BasicNetwork();
+        network.addLayer(new BasicLayer(null,true,5));
+        network.addLayer(new DropoutLayer(new ActivationReLU(),true,16,0.5));
+        network.addLayer(new BasicLayer(new ActivationSoftMax(),false,3));
+        network.finalizeStructure();
+        new HogwildPropagation(network, buildData(10), 0.01);
+    }
+}
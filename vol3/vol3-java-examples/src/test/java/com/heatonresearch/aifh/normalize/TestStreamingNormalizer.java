@@ -0,0 +1,126 @@
+package com.heatonresearch.aifh.normalize;
+
+import com.heatonresearch.aifh.AIFHError;
+import com.heatonresearch.aifh.general.data.BasicData;
+import com.heatonresearch.aifh.general.data.BinaryDataWriter;
+import com.heatonresearch.aifh.randomize.GenerateRandom;
+import com.heatonresearch.aifh.randomize.LinearCongruentialRandom;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.List;
+
+public class TestStreamingNormalizer {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File createFile() throws IOException {
+        final String[] colors = {"red", "green", "blue", "?"};
+        final String[] species = {"setosa", "versicolor", "virginica", "other"};
+        GenerateRandom rnd = new LinearCongruentialRandom(42);
+        File file = folder.newFile("data.csv");
+        try (PrintWriter out = new PrintWriter(file)) {
+            out.println("a,b,color,species");
+            for (int i = 0; i < 500; i++) {
+                out.print(rnd.nextDouble(-5, 5) + ",");
+                out.print((i % 10 == 0 ? "?" : String.valueOf(rnd.nextDouble(100))) + ",");
+                out.println(colors[rnd.nextInt(colors.length)] + "," + species[rnd.nextInt(species.length)]);
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Read a binary training file, the values of each row, inputs then ideals.
+     */
+    private static double[][] readFile(File file, int inputCount, int idealCount) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+        Assert.assertEquals(BinaryDataWriter.MAGIC, buffer.getInt());
+        Assert.assertEquals(BinaryDataWriter.VERSION, buffer.getInt());
+        Assert.assertEquals(inputCount, buffer.getInt());
+        Assert.assertEquals(idealCount, buffer.getInt());
+        int valueSize = buffer.getInt();
+        buffer.getInt();
+        double[][] result = new double[(int) buffer.getLong()][inputCount + idealCount];
+        Assert.assertEquals(BinaryDataWriter.HEADER_SIZE, buffer.position());
+        Assert.assertEquals(BinaryDataWriter.HEADER_SIZE + result.length * (inputCount + idealCount) * valueSize,
+                buffer.limit());
+        for (double[] row : result) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] = valueSize == 4 ? buffer.getFloat() : buffer.getDouble();
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void testMatchesDataSet() throws IOException {
+        File file = createFile();
+        File output = folder.newFile("data.bin");
+
+        StreamingNormalizer norm = new StreamingNormalizer();
+        norm.encodeEquilateral(3, true, 0, 1);
+        norm.normalizeRange(0, false, -1, 1);
+        norm.normalizeZScore(1, false);
+        norm.encodeOneOfN(2, false, 0, 1);
+        norm.normalize(file, output, false);
+
+        // the same, in memory, the encodings are applied right to left so that the columns do not move
+        DataSet ds = DataSet.load(file);
+        Assert.assertEquals(ds.enumerateClasses(3), norm.getClasses(3));
+        Assert.assertEquals(ds.getStandardDeviation(1), norm.getStandardDeviation(1), 1e-10);
+        ds.encodeEquilateral(3, 0, 1);
+        ds.encodeOneOfN(2, 0, 1);
+        ds.normalizeZScore(1);
+        ds.normalizeRange(0, -1, 1);
+        List<BasicData> expected = ds.extractSupervised(0, 6, 6, 3);
+
+        Assert.assertEquals(500, norm.getRowCount());
+        Assert.assertEquals(6, norm.getInputCount());
+        Assert.assertEquals(3, norm.getIdealCount());
+        double[][] rows = readFile(output, 6, 3);
+        Assert.assertEquals(expected.size(), rows.length);
+        for (int i = 0; i < rows.length; i++) {
+            for (int j = 0; j < 6; j++) {
+                Assert.assertEquals(expected.get(i).getInput()[j], rows[i][j], 1e-10);
+            }
+            for (int j = 0; j < 3; j++) {
+                Assert.assertEquals(expected.get(i).getIdeal()[j], rows[i][6 + j], 1e-10);
+            }
+        }
+    }
+
+    @Test
+    public void testSinglePrecision() throws IOException {
+        File file = createFile();
+        File output = folder.newFile("data.bin");
+
+        StreamingNormalizer norm = new StreamingNormalizer();
+        norm.normalizeRange(0, false, 0, 1);
+        norm.encodeOneOfN(3, true, 0, 1);
+        norm.normalize(file, output, true);
+
+        double[][] rows = readFile(output, 1, 4);
+        Assert.assertEquals(500, rows.length);
+        for (double[] row : rows) {
+            Assert.assertTrue(row[0] >= 0 && row[0] <= 1);
+            Assert.assertEquals(1, row[1] + row[2] + row[3] + row[4], 0);
+        }
+    }
+
+    @Test(expected = AIFHError.class)
+    public void testDuplicateColumn() {
+        StreamingNormalizer norm = new StreamingNormalizer();
+        norm.normalizeZScore(1, false);
+        norm.normalizeRange(1, false, 0, 1);
+    }
+}
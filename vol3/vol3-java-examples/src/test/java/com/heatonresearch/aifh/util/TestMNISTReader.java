@@ -0,0 +1,180 @@
+package com.heatonresearch.aifh.util;
+
+import com.heatonresearch.aifh.AIFHError;
+import com.heatonresearch.aifh.ann.BasicLayer;
+import com.heatonresearch.aifh.ann.BasicNetwork;
+import com.heatonresearch.aifh.ann.BatchBuffers;
+import com.heatonresearch.aifh.ann.activation.ActivationSigmoid;
+import com.heatonresearch.aifh.ann.activation.ActivationSoftMax;
+import com.heatonresearch.aifh.general.data.BasicData;
+import com.heatonresearch.aifh.general.data.DataSource;
+import com.heatonresearch.aifh.general.data.ListDataSource;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+public class TestMNISTReader {
+
+    private static final int COUNT = 7;
+    private static final int ROWS = 3;
+    private static final int COLS = 4;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static int pixel(int image, int i) {
+        return (image * 37 + i * 23) % 256;
+    }
+
+    private static int label(int image) {
+        return (image * 3) % 10;
+    }
+
+    private static DataOutputStream open(File file) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        if (file.getName().endsWith(".gz")) {
+            out = new GZIPOutputStream(out);
+        }
+        return new DataOutputStream(out);
+    }
+
+    private MNISTReader createReader(String suffix, int depth) throws IOException {
+        File labels = new File(folder.getRoot(), "labels" + suffix);
+        File images = new File(folder.getRoot(), "images" + suffix);
+        try (DataOutputStream out = open(labels)) {
+            out.writeInt(2049);
+            out.writeInt(COUNT);
+            for (int i = 0; i < COUNT; i++) {
+                out.writeByte(label(i));
+            }
+        }
+        try (DataOutputStream out = open(images)) {
+            out.writeInt(2051);
+            out.writeInt(COUNT);
+            out.writeInt(ROWS);
+            out.writeInt(COLS);
+            for (int i = 0; i < COUNT; i++) {
+                for (int j = 0; j < ROWS * COLS; j++) {
+                    out.writeByte(pixel(i, j));
+                }
+            }
+        }
+        return new MNISTReader(labels.toString(), images.toString(), depth);
+    }
+
+    private void checkData(MNISTReader reader, int depth) {
+        Assert.assertEquals(COUNT, reader.size());
+        Assert.assertEquals(ROWS, reader.getNumRows());
+        Assert.assertEquals(COLS, reader.getNumCols());
+        Assert.assertEquals(ROWS * COLS * depth, reader.getInputCount());
+
+        List<BasicData> data = reader.getData();
+        List<BasicData> view = reader.getDataView();
+        Assert.assertEquals(COUNT, data.size());
+        Assert.assertEquals(COUNT, view.size());
+        for (int i = 0; i < COUNT; i++) {
+            double[] input = data.get(i).getInput();
+            Assert.assertEquals(ROWS * COLS * depth, input.length);
+            for (int j = 0; j < input.length; j++) {
+                Assert.assertEquals(((double) pixel(i, j % (ROWS * COLS))) / 255.0, input[j], 0);
+            }
+            double[] ideal = data.get(i).getIdeal();
+            Assert.assertEquals(10, ideal.length);
+            Assert.assertEquals(label(i), ArrayUtil.indexOfLargest(ideal));
+            Assert.assertEquals(1.0, ideal[label(i)], 0);
+            Assert.assertEquals(label(i), reader.getLabel(i));
+
+            Assert.assertArrayEquals(input, view.get(i).getInput(), 0);
+            Assert.assertArrayEquals(ideal, view.get(i).getIdeal(), 0);
+        }
+    }
+
+    @Test
+    public void testRead() throws IOException {
+        checkData(createReader("", 1), 1);
+    }
+
+    @Test
+    public void testCompressed() throws IOException {
+        checkData(createReader(".gz", 1), 1);
+    }
+
+    @Test
+    public void testDepth() throws IOException {
+        checkData(createReader("", 3), 3);
+    }
+
+    @Test
+    public void testBatch() throws IOException {
+        MNISTReader reader = createReader("", 1);
+        int inputCount = reader.getInputCount();
+        double[] input = new double[3 * inputCount];
+        double[] ideal = new double[3 * 10];
+        // the buffers start dirty, so the batch must clear the ideal
+        Arrays.fill(ideal, 5);
+        reader.readBatch(2, 3, input, ideal);
+        for (int i = 0; i < 3; i++) {
+            BasicData expected = reader.getData().get(2 + i);
+            for (int j = 0; j < inputCount; j++) {
+                Assert.assertEquals(expected.getInput()[j], input[i * inputCount + j], 0);
+            }
+            for (int j = 0; j < 10; j++) {
+                Assert.assertEquals(expected.getIdeal()[j], ideal[i * 10 + j], 0);
+            }
+        }
+
+        double[] target = new double[inputCount + 5];
+        reader.readInput(4, target, 5);
+        Assert.assertEquals(0, target[4], 0);
+        Assert.assertEquals(((double) pixel(4, 0)) / 255.0, target[5], 0);
+    }
+
+    @Test
+    public void testBatchBuffers() throws IOException {
+        MNISTReader reader = createReader("", 1);
+        BasicNetwork network = new BasicNetwork();
+        network.addLayer(new BasicLayer(null, true, ROWS * COLS));
+        network.addLayer(new BasicLayer(new ActivationSigmoid(), true, 4));
+        network.addLayer(new BasicLayer(new ActivationSoftMax(), false, 10));
+        network.finalizeStructure();
+        network.reset();
+
+        // the reader scales straight into the buffers, any other source is copied
+        DataSource[] sources = {reader, new ListDataSource(reader.getData())};
+        for(DataSource source: sources) {
+            BatchBuffers buffers = new BatchBuffers(network, 4);
+            buffers.setRowCount(3);
+            for (int row = 0; row < 3; row++) {
+                buffers.setInput(row, source, 2 + row);
+            }
+            network.compute(buffers);
+            double[] output = new double[10];
+            for (int row = 0; row < 3; row++) {
+                buffers.getOutput(row, output);
+                Assert.assertArrayEquals(network.computeRegression(reader.getData().get(2 + row).getInput()),
+                        output, 1e-12);
+            }
+        }
+    }
+
+    @Test(expected = AIFHError.class)
+    public void testMagic() throws IOException {
+        File labels = folder.newFile("bad-labels");
+        File images = folder.newFile("bad-images");
+        try (DataOutputStream out = open(labels)) {
+            out.writeInt(1234);
+            out.writeInt(0);
+        }
+        new MNISTReader(labels.toString(), images.toString(), 1);
+    }
+}